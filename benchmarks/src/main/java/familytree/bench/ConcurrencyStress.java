@@ -0,0 +1,204 @@
+package familytree.bench;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Person;
+import familytree.service.ConcurrentFamilyTree;
+import familytree.service.FamilyTree;
+import familytree.service.PersonGraph;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Hammers a tree from many threads with a read-heavy mix of lookups, traversals, links and marriages,
+ * then checks the invariants (two parents at most, parent/child lists agree, no cycles, one active
+ * marriage per person). Runs the same load against ConcurrentFamilyTree and a single global lock.
+ * Usage: ConcurrencyStress [threads=#cpus] [seconds=3] [people=20000] [writePercent=10]
+ */
+public final class ConcurrencyStress {
+
+    /** The operations under test, so both locking schemes run the same workload. */
+    interface Ops {
+        Person getPerson(String id);
+        List<Person> childrenOf(String id);
+        List<Person> siblingsOf(String id);
+        boolean isAncestor(String a, String b);
+        List<List<Person>> ancestorsOf(String id, int generations);
+        Person addPerson(String name, Gender gender, int birthYear);
+        void link(String parentId, String childId);
+        void marry(String a, String b, int year);
+        void divorce(String a, String b, int year);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int people = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        for (String mode : new String[] {"global-lock", "concurrent"}) {
+            FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+            String[] ids = populate(tree, people);
+            Ops ops = mode.equals("concurrent") ? concurrent(new ConcurrentFamilyTree(tree)) : globalLock(tree);
+            LongAdder done = new LongAdder(), rejected = new LongAdder();
+            long elapsed = run(ops, ids, threads, seconds, writePercent, done, rejected);
+            System.out.printf("%-12s %2d threads: %,12.0f ops/s  (%,d ops, %,d rejected)%n", mode, threads,
+                    done.sum() * 1e9 / elapsed, done.sum(), rejected.sum());
+            String broken = checkInvariants(tree);
+            if (broken != null) throw new IllegalStateException(mode + ": " + broken);
+        }
+        System.out.println("invariants hold");
+    }
+
+    private static String[] populate(FamilyTree tree, int people) {
+        String[] ids = new String[people];
+        SplittableRandom rnd = new SplittableRandom(7);
+        for (int i = 0; i < people; i++) {
+            ids[i] = tree.addPerson("Person " + i, i % 2 == 0 ? Gender.MALE : Gender.FEMALE, 1800 + i / 100, null).getId();
+            if (i >= 100) {
+                tree.linkParentChild(ids[i - 100 - rnd.nextInt(Math.min(i - 100, 500) + 1)], ids[i]);
+            }
+        }
+        return ids;
+    }
+
+    private static long run(Ops ops, String[] ids, int threads, int seconds, int writePercent,
+                            LongAdder done, LongAdder rejected) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1), finished = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            Thread worker = new Thread(() -> {
+                SplittableRandom rnd = new SplittableRandom(seed);
+                try {
+                    start.await();
+                    long n = 0;
+                    while (!stop.get()) {
+                        try { step(ops, ids, rnd, writePercent); } catch (IllegalArgumentException ex) { rejected.increment(); }
+                        n++;
+                    }
+                    done.add(n);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        Thread.sleep(seconds * 1000L);
+        stop.set(true);
+        finished.await();
+        return System.nanoTime() - t0;
+    }
+
+    private static void step(Ops ops, String[] ids, SplittableRandom rnd, int writePercent) {
+        String a = ids[rnd.nextInt(ids.length)], b = ids[rnd.nextInt(ids.length)];
+        int dice = rnd.nextInt(100);
+        if (dice < writePercent) {
+            switch (dice % 5) {
+                case 0: case 1: ops.link(a, b); break;   // random pairs: many are rejected as cycles or third parents
+                case 2: ops.marry(a, b, 2000); break;
+                case 3: ops.divorce(a, b, 2010); break;
+                default: ops.addPerson("Extra", Gender.OTHER, 2000); break;
+            }
+            return;
+        }
+        switch (dice % 8) {
+            case 0: case 1: case 2: ops.getPerson(a); break;
+            case 3: case 4: ops.childrenOf(a); break;
+            case 5: ops.siblingsOf(a); break;
+            case 6: ops.isAncestor(a, b); break;
+            default: ops.ancestorsOf(a, 3); break;
+        }
+    }
+
+    // ---- locking schemes ----
+
+    private static Ops concurrent(ConcurrentFamilyTree t) {
+        return new Ops() {
+            public Person getPerson(String id) { return t.getPerson(id); }
+            public List<Person> childrenOf(String id) { return t.childrenOf(id); }
+            public List<Person> siblingsOf(String id) { return t.siblingsOf(id); }
+            public boolean isAncestor(String a, String b) { return t.isAncestor(a, b); }
+            public List<List<Person>> ancestorsOf(String id, int g) { return t.ancestorsOf(id, g); }
+            public Person addPerson(String name, Gender gender, int y) { return t.addPerson(name, gender, y, null); }
+            public void link(String p, String c) { t.linkParentChild(p, c); }
+            public void marry(String a, String b, int y) { t.marry(a, b, y); }
+            public void divorce(String a, String b, int y) { t.divorce(a, b, y); }
+        };
+    }
+
+    private static Ops globalLock(FamilyTree t) {
+        ReentrantLock lock = new ReentrantLock();
+        return new Ops() {
+            private <T> T locked(Supplier<T> op) {
+                lock.lock();
+                try { return op.get(); } finally { lock.unlock(); }
+            }
+            public Person getPerson(String id) { return locked(() -> t.getPerson(id)); }
+            public List<Person> childrenOf(String id) { return locked(() -> t.childrenOf(id)); }
+            public List<Person> siblingsOf(String id) { return locked(() -> t.siblingsOf(id)); }
+            public boolean isAncestor(String a, String b) { return locked(() -> t.isAncestor(a, b)); }
+            public List<List<Person>> ancestorsOf(String id, int g) { return locked(() -> t.ancestorsOf(id, g)); }
+            public Person addPerson(String name, Gender gender, int y) { return locked(() -> t.addPerson(name, gender, y, null)); }
+            public void link(String p, String c) { locked(() -> { t.linkParentChild(p, c); return null; }); }
+            public void marry(String a, String b, int y) { locked(() -> { t.marry(a, b, y); return null; }); }
+            public void divorce(String a, String b, int y) { locked(() -> { t.divorce(a, b, y); return null; }); }
+        };
+    }
+
+    // ---- invariants ----
+
+    /** Null if the tree is consistent, otherwise a description of the first violation found. */
+    static String checkInvariants(FamilyTree tree) {
+        PersonGraph g = tree.graph();
+        int n = g.size();
+        int[] indegree = new int[n];
+        for (int v = 0; v < n; v++) {
+            int p0 = g.parent(v, 0), p1 = g.parent(v, 1);
+            if (p0 == PersonGraph.NONE && p1 != PersonGraph.NONE) return "parent slots out of order at " + g.idOf(v);
+            if (p0 != PersonGraph.NONE && p0 == p1) return "duplicate parent of " + g.idOf(v);
+            indegree[v] = g.parentCount(v);
+            for (int slot = 0; slot < indegree[v]; slot++) {
+                if (!hasChild(g, g.parent(v, slot), v)) return "child list misses " + g.idOf(v);
+            }
+            for (int i = 0; i < g.childCount(v); i++) {
+                if (!g.hasParent(g.child(v, i), v)) return "parent slots miss " + g.idOf(v);
+            }
+            Person p = g.person(v);
+            long active = p.getMarriages().stream().filter(Marriage::isActive).count();
+            if (active > 1) return p.getId() + " has " + active + " active marriages";
+            for (Marriage m : p.getMarriages()) {
+                String other = m.getSpouseAId().equals(p.getId()) ? m.getSpouseBId() : m.getSpouseAId();
+                if (!tree.getPerson(other).getMarriages().contains(m)) return "one-sided marriage of " + p.getId();
+            }
+        }
+        ArrayDeque<Integer> ready = new ArrayDeque<>();
+        for (int v = 0; v < n; v++) if (indegree[v] == 0) ready.add(v);
+        int seen = 0;
+        while (!ready.isEmpty()) {
+            int v = ready.poll();
+            seen++;
+            for (int i = 0; i < g.childCount(v); i++) if (--indegree[g.child(v, i)] == 0) ready.add(g.child(v, i));
+        }
+        return seen == n ? null : "cycle among " + (n - seen) + " people";
+    }
+
+    private static boolean hasChild(PersonGraph g, int parent, int child) {
+        for (int i = 0; i < g.childCount(parent); i++) if (g.child(parent, i) == child) return true;
+        return false;
+    }
+}
@@ -0,0 +1,154 @@
+package familytree.bench;
+
+import familytree.server.TreeServer;
+import familytree.service.ConcurrentFamilyTree;
+import familytree.service.FamilyTree;
+import familytree.service.Histogram;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for TreeServer over raw keep-alive sockets. Each connection runs on a virtual thread
+ * and writes {@code pipeline} requests back to back before reading their responses, so depth > 1
+ * exercises HTTP/1.1 pipelining; a response's latency is measured from the write of its batch. The mix
+ * is person lookups, children, siblings, spouse and three generations of ancestors on random people.
+ * Without host:port a population is generated (PopulationGenerator) and served in-process on a free
+ * port; with one, people are assumed to have the default ids P001 ... up to {@code people}.
+ * Usage: HttpLoad [people=100000] [connections=16] [seconds=10] [pipeline=1] [host:port]
+ */
+public final class HttpLoad {
+    private static final int WARMUP_SECONDS = 2;
+    private static final String[] PATHS = {"", "", "", "", "", "/children", "/children", "/siblings", "/siblings", "/spouse",
+            "/ancestors?generations=3"};
+
+    public static void main(String[] args) throws Exception {
+        int people = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int pipeline = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        TreeServer server = null;
+        InetSocketAddress target;
+        if (args.length > 4) {
+            String[] hp = args[4].split(":");
+            target = new InetSocketAddress(hp[0], Integer.parseInt(hp[1]));
+        } else {
+            FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+            System.out.println(new PopulationGenerator(42).people(people).generate(tree));
+            people = tree.graph().size();
+            server = TreeServer.start(new ConcurrentFamilyTree(tree), new InetSocketAddress("127.0.0.1", 0), null);
+            target = new InetSocketAddress("127.0.0.1", server.port());
+        }
+
+        Histogram latency = new Histogram();
+        LongAdder done = new LongAdder(), failed = new LongAdder();
+        long start = System.nanoTime(), measureFrom = start + WARMUP_SECONDS * 1_000_000_000L;
+        long until = measureFrom + seconds * 1_000_000_000L;
+        List<Thread> clients = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            int n = people, seed = c;
+            clients.add(Thread.ofVirtual().start(() -> {
+                try {
+                    client(target, n, pipeline, new SplittableRandom(seed), measureFrom, until, latency, done, failed);
+                } catch (IOException e) {
+                    failed.increment();
+                    System.err.println("connection failed: " + e);
+                }
+            }));
+        }
+        for (Thread t : clients) t.join();
+        if (server != null) server.close();
+
+        double elapsed = seconds;
+        System.out.printf(Locale.ROOT, "%d connections, pipeline %d: %,d requests in %d s = %,.0f req/s, %d failed%n",
+                connections, pipeline, done.sum(), seconds, done.sum() / elapsed, failed.sum());
+        System.out.printf(Locale.ROOT, "latency us: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                latency.percentile(50) / 1e3, latency.percentile(90) / 1e3, latency.percentile(99) / 1e3,
+                latency.percentile(99.9) / 1e3, latency.max() / 1e3);
+    }
+
+    private static void client(InetSocketAddress target, int people, int pipeline, SplittableRandom rnd, long measureFrom,
+                               long until, Histogram latency, LongAdder done, LongAdder failed) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(target);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            String host = "Host: " + target.getHostString() + ":" + target.getPort() + "\r\n\r\n";
+            long now;
+            while ((now = System.nanoTime()) < until) {
+                for (int i = 0; i < pipeline; i++) {
+                    String id = id(1 + rnd.nextInt(people));
+                    out.write(("GET /people/" + id + PATHS[rnd.nextInt(PATHS.length)] + " HTTP/1.1\r\n" + host).getBytes(StandardCharsets.US_ASCII));
+                }
+                out.flush();
+                for (int i = 0; i < pipeline; i++) {
+                    int status = readResponse(in);
+                    if (now < measureFrom) continue;
+                    latency.record(System.nanoTime() - now);
+                    done.increment();
+                    if (status != 200) failed.increment();
+                }
+            }
+        }
+    }
+
+    private static String id(int n) { return n < 10 ? "P00" + n : n < 100 ? "P0" + n : "P" + n; }
+
+    // Reads one response and returns its status; the body is skipped (Content-Length or chunked).
+    private static int readResponse(InputStream in) throws IOException {
+        String statusLine = line(in);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        long length = -1;
+        boolean chunked = false;
+        for (String h; !(h = line(in)).isEmpty(); ) {
+            String lower = h.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("content-length:")) length = Long.parseLong(h.substring(15).trim());
+            else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) chunked = true;
+        }
+        if (chunked) {
+            for (long size; (size = Long.parseLong(line(in).trim(), 16)) > 0; ) {
+                skip(in, size);
+                line(in);
+            }
+            while (!line(in).isEmpty()) { }   // trailers
+        } else if (length > 0) {
+            skip(in, length);
+        }
+        return status;
+    }
+
+    private static String line(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder(64);
+        for (int c; (c = in.read()) != '\n'; ) {
+            if (c < 0) throw new EOFException("connection closed");
+            if (c != '\r') sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static void skip(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long k = in.skip(n);
+            if (k <= 0) {
+                if (in.read() < 0) throw new EOFException("connection closed");
+                k = 1;
+            }
+            n -= k;
+        }
+    }
+}
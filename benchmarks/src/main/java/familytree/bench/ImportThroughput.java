@@ -0,0 +1,92 @@
+package familytree.bench;
+
+import familytree.io.CsvImporter;
+import familytree.io.GedcomImporter;
+import familytree.service.FamilyTree;
+import familytree.service.ImportReport;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes a synthetic pedigree as CSV and GEDCOM and measures bulk-import throughput.
+ * Usage: ImportThroughput [people=1000000] [seed=42]
+ */
+public final class ImportThroughput {
+    private static final int FOUNDERS = 1000;
+    private static final int WINDOW = 5000;
+
+    public static void main(String[] args) throws IOException {
+        int people = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        Path dir = Files.createTempDirectory("familytree-import");
+        Path csv = dir.resolve("synthetic.csv");
+        Path ged = dir.resolve("synthetic.ged");
+        writeSynthetic(people, seed, csv, ged);
+        System.out.printf("%d people -> %s (%d MB), %s (%d MB)%n", people,
+                csv.getFileName(), Files.size(csv) >> 20, ged.getFileName(), Files.size(ged) >> 20);
+
+        ImportReport c = CsvImporter.importFile(newTree(), csv);
+        System.out.println("CSV:    " + c.summary());
+        ImportReport g = GedcomImporter.importFile(newTree(), ged);
+        System.out.println("GEDCOM: " + g.summary());
+        Files.delete(csv);
+        Files.delete(ged);
+        Files.delete(dir);
+    }
+
+    private static FamilyTree newTree() { return new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer()); }
+
+    /** Founders, then families of 1-4 children whose two parents come from a sliding window of earlier people. */
+    static void writeSynthetic(int people, long seed, Path csv, Path ged) throws IOException {
+        Random rnd = new Random(seed);
+        boolean[] married = new boolean[people];
+        try (BufferedWriter c = Files.newBufferedWriter(csv, StandardCharsets.UTF_8);
+             BufferedWriter g = Files.newBufferedWriter(ged, StandardCharsets.UTF_8)) {
+            g.write("0 HEAD\n1 GEDC\n2 VERS 5.5\n1 CHAR UTF-8\n");
+            int next = 0, fam = 0;
+            while (next < people) {
+                if (next < FOUNDERS) { person(c, g, next++, people, rnd); continue; }
+                int lo = Math.max(0, next - WINDOW), hi = Math.max(lo + 2, next - WINDOW / 5);
+                int a = lo + rnd.nextInt(hi - lo), b = lo + rnd.nextInt(hi - lo);
+                if (a == b) continue;
+                int kids = Math.min(1 + rnd.nextInt(4), people - next);
+                g.write("0 @F" + fam++ + "@ FAM\n1 HUSB @I" + a + "@\n1 WIFE @I" + b + "@\n");
+                boolean marry = !married[a] && !married[b];
+                if (marry) {
+                    married[a] = married[b] = true;
+                    int year = Math.max(birth(a, people), birth(b, people)) + 20;
+                    c.write("MARRY," + a + "," + b + "," + year + "\n");
+                    g.write("1 MARR\n2 DATE " + year + "\n");
+                }
+                for (int k = 0; k < kids; k++) g.write("1 CHIL @I" + (next + k) + "@\n");
+                for (int k = 0; k < kids; k++) {
+                    int child = next++;
+                    person(c, g, child, people, rnd);
+                    c.write("PARENT," + a + "," + child + "\nPARENT," + b + "," + child + "\n");
+                }
+            }
+            g.write("0 TRLR\n");
+        }
+    }
+
+    private static void person(BufferedWriter c, BufferedWriter g, int i, int people, Random rnd) throws IOException {
+        String gender = rnd.nextBoolean() ? "MALE" : "FEMALE";
+        int born = birth(i, people);
+        boolean dead = born < 1930;
+        String name = "Given" + (i % 997) + " Surname" + (i % 7919);
+        c.write("PERSON," + i + "," + name + "," + gender + "," + born + (dead ? "," + (born + 60) : "") + "\n");
+        g.write("0 @I" + i + "@ INDI\n1 NAME Given" + (i % 997) + " /Surname" + (i % 7919) + "/\n1 SEX "
+                + gender.charAt(0) + "\n1 BIRT\n2 DATE " + born + "\n");
+        if (dead) g.write("1 DEAT\n2 DATE " + (born + 60) + "\n");
+    }
+
+    // Monotonic in index, so parents (earlier indexes) are never born after their children.
+    private static int birth(int i, int people) { return 1000 + (int) (i * 1000L / people); }
+}
@@ -0,0 +1,256 @@
+package familytree.bench;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import familytree.service.FamilyTree;
+import familytree.service.IntList;
+import familytree.service.PersonFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Seeded multi-generation population, built through FamilyTree's public API (addPerson,
+ * linkParentChild, marry, divorce). Founders are born about {@code generations} generations before
+ * PersonFactory.CURRENT_YEAR; in each cohort a share of the adults marry (a first cousin with the
+ * cousin-marriage probability, otherwise a random partner of the same cohort), couples have a
+ * Poisson number of children while both are alive and the mother is under 45, some divorce and
+ * remarry, and the children form the next cohort. When a cohort dies out or reaches the present
+ * before the target size, a new wave of founders starts over. The same seed and settings always give
+ * the same people, links and ids, whatever else runs in the JVM.
+ */
+public final class PopulationGenerator {
+    private static final String[] GIVEN_M = {"James", "John", "Robert", "Michael", "William", "David", "Thomas", "Daniel", "Luis", "Kenji"};
+    private static final String[] GIVEN_F = {"Mary", "Patricia", "Jennifer", "Linda", "Elizabeth", "Susan", "Sarah", "Ana", "Zoë", "Yuki"};
+    private static final String[] SURNAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Müller", "Tanaka",
+            "Nguyen", "O'Brien", "Kowalski", "Rossi", "Silva", "Haddad", "Novak", "Kim", "Singh", "Dubois"};
+    private static final int ADULT = 18, LAST_BIRTH_AGE = 45, GENERATION_YEARS = 30;
+
+    private final long seed;
+    private int people = 10_000;
+    private int generations = 10;
+    private double fertility = 2.6;
+    private int lifespanMean = 72, lifespanSd = 14;
+    private double marriageRate = 0.85, divorceRate = 0.15, remarriageRate = 0.5, cousinMarriage = 0.02;
+
+    /** Counts of what a run created. */
+    public static final class Summary {
+        public final int people, founders, links, marriages, divorces, cousinMarriages;
+
+        Summary(int people, int founders, int links, int marriages, int divorces, int cousinMarriages) {
+            this.people = people; this.founders = founders; this.links = links;
+            this.marriages = marriages; this.divorces = divorces; this.cousinMarriages = cousinMarriages;
+        }
+
+        @Override public String toString() {
+            return String.format("%d people (%d founders), %d links, %d marriages (%d cousins), %d divorces",
+                    people, founders, links, marriages, cousinMarriages, divorces);
+        }
+    }
+
+    public PopulationGenerator(long seed) { this.seed = seed; }
+
+    public PopulationGenerator people(int n) {
+        if (n < 2) throw new IllegalArgumentException("people >= 2 required");
+        this.people = n;
+        return this;
+    }
+
+    /** Generations between the first founders and the present; sets the start year. */
+    public PopulationGenerator generations(int n) {
+        if (n < 1) throw new IllegalArgumentException("generations >= 1 required");
+        this.generations = n;
+        return this;
+    }
+
+    /** Mean children per married couple. */
+    public PopulationGenerator fertility(double mean) {
+        if (mean < 0) throw new IllegalArgumentException("fertility >= 0 required");
+        this.fertility = mean;
+        return this;
+    }
+
+    public PopulationGenerator lifespan(int mean, int sd) {
+        if (mean < 1 || sd < 0) throw new IllegalArgumentException("lifespan mean >= 1 and sd >= 0 required");
+        this.lifespanMean = mean;
+        this.lifespanSd = sd;
+        return this;
+    }
+
+    public PopulationGenerator marriageRate(double p) { this.marriageRate = probability(p); return this; }
+    public PopulationGenerator divorceRate(double p) { this.divorceRate = probability(p); return this; }
+    public PopulationGenerator remarriageRate(double p) { this.remarriageRate = probability(p); return this; }
+    public PopulationGenerator cousinMarriage(double p) { this.cousinMarriage = probability(p); return this; }
+
+    private static double probability(double p) {
+        if (!(p >= 0 && p <= 1)) throw new IllegalArgumentException("probability in [0, 1] required");
+        return p;
+    }
+
+    /** Adds the population to {@code tree}; ids come from the tree's own allocator. */
+    public Summary generate(FamilyTree tree) { return new Run(tree).run(); }
+
+    /** Per-run state: the generator's view of everyone it added, by creation index. */
+    private final class Run {
+        final FamilyTree tree;
+        final Random rnd = new Random(seed);
+        String[] ids = new String[1024];
+        int[] birth = new int[1024], death = new int[1024], divorced = new int[1024];
+        boolean[] female = new boolean[1024], married = new boolean[1024];
+        byte[] surname = new byte[1024];   // index into SURNAMES, passed down the male line
+        int size, founders, links, marriages, divorces, cousins;
+
+        Run(FamilyTree tree) { this.tree = tree; }
+
+        Summary run() {
+            int start = PersonFactory.CURRENT_YEAR - generations * GENERATION_YEARS;
+            while (size < people) {
+                int[] cohort = founders(start, foundersFor(people - size));
+                while (cohort.length > 0 && size < people) cohort = nextCohort(cohort);
+            }
+            return new Summary(size, founders, links, marriages, divorces, cousins);
+        }
+
+        // Enough founders that `generations` cohorts of the expected growth reach the target.
+        private int foundersFor(int remaining) {
+            double r = marriageRate * fertility / 2, total = 0, g = 1;
+            for (int i = 0; i < generations; i++, g *= r) total += g;
+            return (int) Math.min(remaining, Math.max(2, Math.ceil(remaining / Math.max(total, 1))));
+        }
+
+        private int[] founders(int start, int n) {
+            int[] cohort = new int[n];
+            for (int i = 0; i < n; i++) cohort[i] = add(start + rnd.nextInt(20), rnd.nextBoolean(), rnd.nextInt(SURNAMES.length));
+            founders += n;
+            return cohort;
+        }
+
+        private int[] nextCohort(int[] cohort) {
+            List<Integer> men = new ArrayList<>(), women = new ArrayList<>();
+            for (int v : cohort) if (adult(v)) (female[v] ? women : men).add(v);
+            shuffle(men);
+            shuffle(women);
+            IntList next = new IntList();
+            List<Integer> singleMen = new ArrayList<>(), singleWomen = new ArrayList<>();
+            int w = 0;
+            for (int m : men) {
+                if (rnd.nextDouble() >= marriageRate) continue;
+                int f = rnd.nextDouble() < cousinMarriage ? cousinOf(m) : -1;
+                boolean cousin = f >= 0;
+                while (f < 0 && w < women.size()) { int c = women.get(w++); if (!married[c]) f = c; }
+                if (f < 0) break;
+                if (family(m, f, Math.max(birth[m], birth[f]) + ADULT + rnd.nextInt(15), fertility, next) && cousin) cousins++;
+                if (divorced[m] != 0) { singleMen.add(m); singleWomen.add(f); }
+            }
+            // Divorcees of the cohort may remarry each other, and usually have fewer children.
+            shuffle(singleWomen);
+            for (int i = 0, j = 0; i < singleMen.size() && j < singleWomen.size(); i++) {
+                if (rnd.nextDouble() >= remarriageRate) continue;
+                int m = singleMen.get(i), f = singleWomen.get(j++);
+                family(m, f, Math.max(divorced[m], divorced[f]) + 1 + rnd.nextInt(5), fertility / 2, next);
+            }
+            int[] out = new int[next.size()];
+            for (int i = 0; i < out.length; i++) out[i] = next.get(i);
+            return out;
+        }
+
+        // Marries the couple if both are alive and it is not in the future, then adds their children to `next`.
+        private boolean family(int m, int f, int year, double meanChildren, IntList next) {
+            if (year > PersonFactory.CURRENT_YEAR || year > death[m] || year > death[f]) return false;
+            tree.marry(ids[m], ids[f], year);
+            married[m] = married[f] = true;
+            marriages++;
+            int end = Math.min(Math.min(death[m], death[f]), Math.min(birth[f] + LAST_BIRTH_AGE, PersonFactory.CURRENT_YEAR));
+            if (rnd.nextDouble() < divorceRate) {
+                int split = year + 1 + rnd.nextInt(15);
+                if (split <= PersonFactory.CURRENT_YEAR && split <= Math.min(death[m], death[f])) {
+                    tree.divorce(ids[m], ids[f], split);
+                    divorced[m] = divorced[f] = split;
+                    divorces++;
+                    end = Math.min(end, split);
+                }
+            }
+            for (int k = poisson(meanChildren); k > 0 && end > year && size < people; k--) {
+                int c = add(year + 1 + rnd.nextInt(end - year), rnd.nextBoolean(), surname[m]);
+                tree.linkParentChild(ids[m], ids[c]);
+                tree.linkParentChild(ids[f], ids[c]);
+                links += 2;
+                next.add(c);
+            }
+            return true;
+        }
+
+        private boolean adult(int v) { return death[v] - birth[v] >= ADULT && birth[v] + ADULT <= PersonFactory.CURRENT_YEAR; }
+
+        // An unmarried adult woman among the man's first cousins: parent -> grandparent -> aunt/uncle -> child.
+        private int cousinOf(int m) {
+            Person self = tree.getPerson(ids[m]);
+            for (String parent : self.getParentIds()) {
+                for (String grand : tree.getPerson(parent).getParentIds()) {
+                    for (Person aunt : tree.childrenOf(grand)) {
+                        if (aunt.getId().equals(parent) || self.getParentIds().contains(aunt.getId())) continue;
+                        for (Person cousin : tree.childrenOf(aunt.getId())) {
+                            int c = indexOf(cousin);
+                            if (c >= 0 && female[c] && !married[c] && adult(c) && !shareParent(self, cousin)) return c;
+                        }
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private boolean shareParent(Person a, Person b) {
+            Set<String> pa = a.getParentIds();
+            for (String p : b.getParentIds()) if (pa.contains(p)) return true;
+            return false;
+        }
+
+        private int add(int birthYear, boolean isFemale, int family) {
+            if (size == ids.length) {
+                int cap = size * 2;
+                ids = Arrays.copyOf(ids, cap);
+                birth = Arrays.copyOf(birth, cap);
+                death = Arrays.copyOf(death, cap);
+                divorced = Arrays.copyOf(divorced, cap);
+                female = Arrays.copyOf(female, cap);
+                married = Arrays.copyOf(married, cap);
+                surname = Arrays.copyOf(surname, cap);
+            }
+            int age = (int) Math.round(lifespanMean + rnd.nextGaussian() * lifespanSd);
+            int died = birthYear + Math.max(0, Math.min(110, age));
+            String given = isFemale ? GIVEN_F[rnd.nextInt(GIVEN_F.length)] : GIVEN_M[rnd.nextInt(GIVEN_M.length)];
+            Integer deathYear = died <= PersonFactory.CURRENT_YEAR ? died : null;
+            Person p = tree.addPerson(given + " " + SURNAMES[family], isFemale ? Gender.FEMALE : Gender.MALE, birthYear, deathYear);
+            int v = size++;
+            ids[v] = p.getId();
+            birth[v] = birthYear;
+            death[v] = deathYear == null ? Integer.MAX_VALUE : died;
+            female[v] = isFemale;
+            surname[v] = (byte) family;
+            return v;
+        }
+
+        // Creation index of a person this run added; the tree's node order is the creation order.
+        private int indexOf(Person p) {
+            int v = p.getNode() - (tree.graph().size() - size);
+            return v >= 0 && v < size && ids[v].equals(p.getId()) ? v : -1;
+        }
+
+        private int poisson(double mean) {
+            double limit = Math.exp(-mean), prod = rnd.nextDouble();
+            int k = 0;
+            while (prod > limit) { prod *= rnd.nextDouble(); k++; }
+            return k;
+        }
+
+        private void shuffle(List<Integer> list) {
+            for (int i = list.size() - 1; i > 0; i--) {
+                int j = rnd.nextInt(i + 1);
+                list.set(i, list.set(j, list.get(i)));
+            }
+        }
+    }
+}
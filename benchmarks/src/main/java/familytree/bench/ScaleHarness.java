@@ -0,0 +1,114 @@
+package familytree.bench;
+
+import familytree.service.FamilyTree;
+import familytree.service.PersonGraph;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Generates populations of increasing size and reports, per step, build time, retained heap per person
+ * and latency percentiles of common queries (traversal cache off, so every query does its work).
+ * With trees > 1 that many identical populations are generated concurrently, each tree with its own
+ * id allocator, and their fingerprints are compared to show that parallel runs stay deterministic.
+ * Usage: ScaleHarness [steps=10000,100000,1000000] [seed=42] [trees=1] [queries=20000]
+ */
+public final class ScaleHarness {
+
+    public static void main(String[] args) throws Exception {
+        int[] steps = Arrays.stream((args.length > 0 ? args[0] : "10000,100000,1000000").split(",")).mapToInt(Integer::parseInt).toArray();
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        int trees = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int queries = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+
+        for (int people : steps) {
+            long before = usedHeap();
+            long t0 = System.nanoTime();
+            List<FamilyTree> built = build(people, seed, trees);
+            long buildMs = (System.nanoTime() - t0) / 1_000_000;
+            long heap = (usedHeap() - before) / trees;
+            FamilyTree tree = built.get(0);
+            int n = tree.graph().size();
+            System.out.printf("%,d people: built in %,d ms (%d tree%s), %,d MB heap, %d bytes/person%n",
+                    n, buildMs, trees, trees == 1 ? "" : "s in parallel", heap >> 20, heap / n);
+            long fp = fingerprint(tree);
+            for (int i = 1; i < built.size(); i++)
+                if (fingerprint(built.get(i)) != fp) throw new IllegalStateException("tree " + i + " differs from tree 0");
+
+            tree.setCacheLimits(0, 0);
+            Random rnd = new Random(seed);
+            String[] ids = new String[1024];
+            for (int i = 0; i < ids.length; i++) ids[i] = tree.graph().person(rnd.nextInt(n)).getId();
+            latency("getPerson", queries, i -> tree.getPerson(ids[i & 1023]));
+            latency("isAncestor", queries, i -> tree.isAncestor(ids[i & 1023], ids[(i * 7 + 1) & 1023]));
+            latency("siblingsOf", queries, i -> tree.siblingsOf(ids[i & 1023]));
+            latency("ancestorsOf(4)", queries, i -> tree.ancestorsOf(ids[i & 1023], 4));
+            latency("descendantsOf(3)", queries, i -> tree.descendantsOf(ids[i & 1023], 3));
+            latency("relation", queries / 10, i -> tree.relation(ids[i & 1023], ids[(i * 7 + 1) & 1023]));
+            built.clear();
+        }
+    }
+
+    private static List<FamilyTree> build(int people, long seed, int trees) throws Exception {
+        PopulationGenerator generator = new PopulationGenerator(seed).people(people);
+        ExecutorService pool = Executors.newFixedThreadPool(trees);
+        try {
+            List<Future<PopulationGenerator.Summary>> summaries = new ArrayList<>();
+            List<FamilyTree> built = new ArrayList<>();
+            for (int i = 0; i < trees; i++) {
+                FamilyTree t = newTree();
+                built.add(t);
+                summaries.add(pool.submit(() -> generator.generate(t)));
+            }
+            System.out.println("  " + summaries.get(0).get());
+            for (Future<PopulationGenerator.Summary> f : summaries) f.get();
+            return built;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static FamilyTree newTree() { return new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer()); }
+
+    private static void latency(String name, int count, IntConsumer query) {
+        for (int i = 0; i < Math.min(count, 2000); i++) query.accept(i);   // warm-up
+        long[] nanos = new long[count];
+        for (int i = 0; i < count; i++) {
+            long t = System.nanoTime();
+            query.accept(i);
+            nanos[i] = System.nanoTime() - t;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("  %-17s p50 %8.2f  p90 %8.2f  p99 %8.2f  p99.9 %8.2f  max %9.2f us%n", name,
+                pct(nanos, 0.50), pct(nanos, 0.90), pct(nanos, 0.99), pct(nanos, 0.999), nanos[count - 1] / 1e3);
+    }
+
+    private static double pct(long[] sorted, double q) { return sorted[(int) Math.min(sorted.length - 1, q * sorted.length)] / 1e3; }
+
+    private static long fingerprint(FamilyTree tree) {
+        PersonGraph g = tree.graph();
+        long h = 17;
+        for (int v = 0; v < g.size(); v++) {
+            h = h * 31 + g.person(v).getId().hashCode();
+            h = h * 31 + g.person(v).getBirthYear();
+            h = h * 31 + g.parent(v, 0);
+            h = h * 31 + g.parent(v, 1);
+            h = h * 31 + g.person(v).getMarriages().size();
+        }
+        return h;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
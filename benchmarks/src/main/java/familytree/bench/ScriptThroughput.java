@@ -0,0 +1,80 @@
+package familytree.bench;
+
+import familytree.cli.Main;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes a CLI script (people, parent links and marriages, then a mix of read commands: SHOW,
+ * SIBLINGS, SPOUSE, ANCESTORS and runs of RELATION queries from one person) and runs it through
+ * {@code Main --script --quiet}, which reports commands per second on completion.
+ * Usage: ScriptThroughput [people=100000] [queries=1000000] [seed=42]
+ */
+public final class ScriptThroughput {
+    private static final int GENERATIONS = 6;
+
+    public static void main(String[] args) throws IOException {
+        int people = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+        Path script = Files.createTempFile("familytree-script", ".txt");
+        long lines = writeScript(people, queries, seed, script);
+        System.out.printf("%,d lines -> %s (%d MB)%n", lines, script, Files.size(script) >> 20);
+        try {
+            Main.main(new String[] {"--script", script.toString(), "--quiet"});
+        } finally {
+            Files.delete(script);
+        }
+    }
+
+    static long writeScript(int people, int queries, long seed, Path script) throws IOException {
+        Random rnd = new Random(seed);
+        long lines = 0;
+        boolean[] married = new boolean[people];
+        try (BufferedWriter w = Files.newBufferedWriter(script, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < people; i++, lines++) {
+                w.write("ADD_PERSON \"Given" + (i % 997) + " Surname" + (i % 7919) + "\" "
+                        + (rnd.nextBoolean() ? "MALE" : "FEMALE") + " " + birth(i, people) + "\n");
+            }
+            // Each person past the first generation gets two parents from the generation before.
+            int window = Math.max(2, people / GENERATIONS);
+            for (int child = window; child < people; child++) {
+                int lo = Math.max(0, child - window), a = lo + rnd.nextInt(child - lo), b = lo + rnd.nextInt(child - lo);
+                w.write("ADD_PARENT_CHILD " + id(a) + " " + id(child) + "\n");
+                lines++;
+                if (a == b) continue;
+                w.write("ADD_PARENT_CHILD " + id(b) + " " + id(child) + "\n");
+                lines++;
+                if (!married[a] && !married[b]) {
+                    married[a] = married[b] = true;
+                    w.write("MARRY " + id(a) + " " + id(b) + " " + (Math.max(birth(a, people), birth(b, people)) + 20) + "\n");
+                    lines++;
+                }
+            }
+            for (int q = 0; q < queries; ) {
+                String p = id(rnd.nextInt(people));
+                switch (rnd.nextInt(5)) {
+                    case 0: w.write("SHOW " + p + "\n"); q++; break;
+                    case 1: w.write("SIBLINGS " + p + "\n"); q++; break;
+                    case 2: w.write("SPOUSE " + p + "\n"); q++; break;
+                    case 3: w.write("ANCESTORS " + p + " 3\n"); q++; break;
+                    default:
+                        for (int k = 0; k < 16 && q < queries; k++, q++) w.write("RELATION " + p + " " + id(rnd.nextInt(people)) + "\n");
+                }
+            }
+            lines += queries;
+        }
+        return lines;
+    }
+
+    // Ids as the tree's default allocator hands them out, in the script's creation order.
+    private static String id(int i) { return String.format("P%03d", i + 1); }
+
+    // Monotonic in index, so parents (earlier indexes) are never born after their children, and all are adults.
+    private static int birth(int i, int people) { return 1600 + (int) (400L * i / people); }
+}
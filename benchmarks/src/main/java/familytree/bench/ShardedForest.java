@@ -0,0 +1,165 @@
+package familytree.bench;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import familytree.service.ConcurrentFamilyTree;
+import familytree.service.FamilyTree;
+import familytree.service.ShardedRegistry;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A forest of unrelated families built and queried from several threads, once on one ConcurrentFamilyTree
+ * and once on a ShardedRegistry. Each family is a founding couple and {@code GENERATIONS} generations of
+ * two children per couple, each child marrying a newcomer; after that every thread runs ancestor and
+ * descendant traversals from random family members. A final phase marries people across families, which
+ * makes the registry move families between shards, and checks that traversals still agree.
+ * Usage: ShardedForest [families=2000] [shards=4] [threads=4]
+ */
+public final class ShardedForest {
+    private static final int GENERATIONS = 4;
+    private static final int QUERIES = 200_000;
+
+    /** Both registries behind the operations the workload uses. */
+    interface Ops {
+        Person add(String name, Gender gender, int birthYear, String relativeId);
+        void link(String parentId, String childId);
+        void marry(String a, String b, int year);
+        List<List<Person>> ancestorsOf(String id, int generations);
+        List<List<Person>> descendantsOf(String id, int generations);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int families = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int shards = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        ConcurrentFamilyTree single = new ConcurrentFamilyTree(new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer()));
+        ShardedRegistry sharded = new ShardedRegistry(shards, new BFSTraversal(), new IndentedTreeRenderer());
+        List<String[]> singleIds = run("single tree", ops(single), families, threads);
+        List<String[]> shardedIds = run(shards + " shards", ops(sharded), families, threads);
+        System.out.printf("shard sizes %s, ghost edges %d%n", Arrays.toString(sharded.shardSizes()), sharded.ghostEdges());
+
+        // Cross-family marriages: the registry moves one family into the other's shard each time.
+        SplittableRandom rnd = new SplittableRandom(1);
+        int moved = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i + 1 < families; i += 2) {
+            String[] a = shardedIds.get(i), b = shardedIds.get(i + 1);
+            String x = a[a.length - 1], y = b[b.length - 1];   // unmarried youngest members
+            if (sharded.shardOf(x) != sharded.shardOf(y)) moved++;
+            sharded.marry(x, y, 2020);
+            single.marry(singleIds.get(i)[a.length - 1], singleIds.get(i + 1)[b.length - 1], 2020);
+        }
+        System.out.printf("%d cross-family marriages, %d moved a family: %.1f ms; shard sizes %s%n", families / 2, moved,
+                (System.nanoTime() - t0) / 1e6, Arrays.toString(sharded.shardSizes()));
+        for (int q = 0; q < 1000; q++) {
+            int f = rnd.nextInt(families);
+            String[] s = singleIds.get(f), h = shardedIds.get(f);
+            int k = rnd.nextInt(s.length);
+            if (sizes(single.descendantsOf(s[k], GENERATIONS)) != sizes(sharded.descendantsOf(h[k], GENERATIONS)))
+                throw new IllegalStateException("descendants of " + h[k] + " differ");
+        }
+        System.out.println("traversals agree");
+    }
+
+    private static List<String[]> run(String name, Ops ops, int families, int threads) throws InterruptedException {
+        List<String[]> ids = new ArrayList<>();
+        for (int f = 0; f < families; f++) ids.add(null);
+        AtomicInteger next = new AtomicInteger();
+        long t0 = System.nanoTime();
+        parallel(threads, t -> {
+            for (int f; (f = next.getAndIncrement()) < families; ) ids.set(f, family(ops, f));
+        });
+        long built = System.nanoTime() - t0;
+        t0 = System.nanoTime();
+        parallel(threads, t -> {
+            SplittableRandom rnd = new SplittableRandom(t);
+            for (int q = 0; q < QUERIES / threads; q++) {
+                String[] family = ids.get(rnd.nextInt(families));
+                String id = family[rnd.nextInt(family.length)];
+                if (rnd.nextBoolean()) ops.ancestorsOf(id, GENERATIONS); else ops.descendantsOf(id, GENERATIONS);
+            }
+        });
+        long queried = System.nanoTime() - t0;
+        System.out.printf("%-12s %d threads: built %,d families in %.0f ms, %,.0f traversals/s%n", name, threads, families,
+                built / 1e6, QUERIES * 1e9 / queried);
+        return ids;
+    }
+
+    // Founders, then per generation two children per couple, each married to a newcomer; ids in creation order.
+    private static String[] family(Ops ops, int f) {
+        List<String> ids = new ArrayList<>();
+        String father = ops.add("Founder " + f, Gender.MALE, 1850, null).getId();
+        String mother = ops.add("Founder Wife " + f, Gender.FEMALE, 1852, father).getId();
+        ops.marry(father, mother, 1875);
+        ids.add(father);
+        ids.add(mother);
+        List<String[]> couples = List.<String[]>of(new String[] {father, mother});
+        for (int g = 1; g <= GENERATIONS; g++) {
+            List<String[]> nextCouples = new ArrayList<>();
+            for (String[] couple : couples) {
+                for (int k = 0; k < 2; k++) {
+                    int born = 1850 + 25 * g + k;
+                    String child = ops.add("Child " + f + "." + g + "." + k, k == 0 ? Gender.MALE : Gender.FEMALE, born, couple[0]).getId();
+                    ops.link(couple[0], child);
+                    ops.link(couple[1], child);
+                    ids.add(child);
+                    if (g == GENERATIONS) continue;
+                    String spouse = ops.add("In-law " + f + "." + g + "." + k, k == 0 ? Gender.FEMALE : Gender.MALE, born, child).getId();
+                    ops.marry(child, spouse, born + 22);
+                    ids.add(spouse);
+                    nextCouples.add(new String[] {child, spouse});
+                }
+            }
+            couples = nextCouples;
+        }
+        return ids.toArray(new String[0]);
+    }
+
+    private static int sizes(List<List<Person>> levels) {
+        int n = 0;
+        for (List<Person> level : levels) n += level.size();
+        return n;
+    }
+
+    private interface Task { void run(int thread); }
+
+    private static void parallel(int threads, Task task) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers.add(Thread.ofPlatform().start(() -> task.run(id)));
+        }
+        for (Thread w : workers) w.join();
+    }
+
+    private static Ops ops(ConcurrentFamilyTree tree) {
+        return new Ops() {
+            public Person add(String name, Gender gender, int birthYear, String relativeId) { return tree.addPerson(name, gender, birthYear, null); }
+            public void link(String parentId, String childId) { tree.linkParentChild(parentId, childId); }
+            public void marry(String a, String b, int year) { tree.marry(a, b, year); }
+            public List<List<Person>> ancestorsOf(String id, int generations) { return tree.ancestorsOf(id, generations); }
+            public List<List<Person>> descendantsOf(String id, int generations) { return tree.descendantsOf(id, generations); }
+        };
+    }
+
+    private static Ops ops(ShardedRegistry registry) {
+        return new Ops() {
+            public Person add(String name, Gender gender, int birthYear, String relativeId) {
+                return relativeId == null ? registry.addPerson(name, gender, birthYear, null)
+                        : registry.addPerson(name, gender, birthYear, null, relativeId);
+            }
+            public void link(String parentId, String childId) { registry.linkParentChild(parentId, childId); }
+            public void marry(String a, String b, int year) { registry.marry(a, b, year); }
+            public List<List<Person>> ancestorsOf(String id, int generations) { return registry.ancestorsOf(id, generations); }
+            public List<List<Person>> descendantsOf(String id, int generations) { return registry.descendantsOf(id, generations); }
+        };
+    }
+}
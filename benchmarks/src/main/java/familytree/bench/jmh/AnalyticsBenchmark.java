@@ -0,0 +1,90 @@
+package familytree.bench.jmh;
+
+import familytree.bench.PopulationGenerator;
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Person;
+import familytree.service.FamilyTree;
+import familytree.service.GroupStats;
+import familytree.service.PersonGraph;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-population aggregates: the columnar scans behind DEMOGRAPHICS against the same aggregate
+ * computed by walking Person objects, on a generated population.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyticsBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private FamilyTree tree;
+
+    @Setup
+    public void build() {
+        tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        new PopulationGenerator(42).people(size).generate(tree);
+        tree.lifespanByGeneration();   // builds the columns outside the measurement
+    }
+
+    @Benchmark
+    public GroupStats lifespanByGeneration() { return tree.lifespanByGeneration(); }
+
+    @Benchmark
+    public GroupStats genderByDecade() { return tree.genderByDecade(1700, 2025, Gender.MALE); }
+
+    @Benchmark
+    public GroupStats ageAtFirstMarriageByDecade() { return tree.ageAtFirstMarriageByDecade(); }
+
+    /** Baseline for genderByDecade: the same counts from Person getters. */
+    @Benchmark
+    public long[] genderByDecadeObjects() {
+        PersonGraph graph = tree.graph();
+        long[] counts = new long[33], males = new long[33];
+        for (int v = 0; v < graph.size(); v++) {
+            Person p = graph.person(v);
+            int b = p.getBirthYear();
+            if (b < 1700 || b > 2025) continue;
+            counts[(b - 1700) / 10]++;
+            if (p.getGender() == Gender.MALE) males[(b - 1700) / 10]++;
+        }
+        return males;
+    }
+
+    /** Baseline for ageAtFirstMarriageByDecade: each person's marriage list, then the same grouping. */
+    @Benchmark
+    public long[] ageAtFirstMarriageObjects() {
+        PersonGraph graph = tree.graph();
+        long[] counts = new long[64], sums = new long[64];
+        for (int v = 0; v < graph.size(); v++) {
+            Person p = graph.person(v);
+            int first = Integer.MAX_VALUE;
+            for (Marriage m : p.getMarriages()) first = Math.min(first, m.getMarriageYear());
+            if (first == Integer.MAX_VALUE) continue;
+            int k = Math.floorMod(p.getBirthYear() / 10, 64);
+            counts[k]++;
+            sums[k] += first - p.getBirthYear();
+        }
+        return sums;
+    }
+}
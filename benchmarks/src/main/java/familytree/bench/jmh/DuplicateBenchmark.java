@@ -0,0 +1,61 @@
+package familytree.bench.jmh;
+
+import familytree.bench.PopulationGenerator;
+import familytree.model.Person;
+import familytree.service.Duplicate;
+import familytree.service.DuplicateFinder;
+import familytree.service.FamilyTree;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full duplicate search over generated populations of growing size, one in a hundred people entered
+ * twice with a letter missing and the birth year off by up to two. The generator's few names make
+ * every block overflow into sorted windows, the worst case for the blocking, so time per person
+ * should stay about flat as the size grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DuplicateBenchmark {
+    @Param({"25000", "100000"})
+    public int size;
+
+    private DuplicateFinder finder;
+
+    @Setup
+    public void build() {
+        FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        new PopulationGenerator(42).people(size).generate(tree);
+        SplittableRandom rnd = new SplittableRandom(7);
+        List<Person> people = List.copyOf(tree.allPeople());
+        for (int i = 0, n = people.size(); i < n / 100; i++) {
+            Person p = people.get(rnd.nextInt(n));
+            String name = p.getFullName();
+            int cut = 1 + rnd.nextInt(name.length() - 2);
+            tree.addPerson(name.substring(0, cut) + name.substring(cut + 1), p.getGender(), p.getBirthYear() + rnd.nextInt(5) - 2, null);
+        }
+        finder = DuplicateFinder.of(tree);
+    }
+
+    @Benchmark
+    public List<Duplicate> find() { return finder.find(DuplicateFinder.DEFAULT_MIN_SCORE, 100); }
+}
@@ -0,0 +1,68 @@
+package familytree.bench.jmh;
+
+import familytree.bench.PopulationGenerator;
+import familytree.model.Person;
+import familytree.service.FamilyTree;
+import familytree.service.Lineage;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Descendant counts for the 64 people with the largest families in a generated population: the
+ * maintained lineage counts against a full descendantsOf traversal per person, and a top-10 ranking.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineageBenchmark {
+    private static final int PEOPLE = 64;
+    private static final int GENERATIONS = 64;   // deeper than any generated population
+
+    @Param({"100000"})
+    public int size;
+
+    private FamilyTree tree;
+    private String[] people;   // ids of the largest families
+    private int next;
+
+    @Setup
+    public void build() {
+        tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        new PopulationGenerator(42).people(size).generate(tree);
+        List<Lineage> largest = tree.topLineages(Lineage.Measure.DESCENDANTS, PEOPLE);   // also builds the index
+        people = new String[PEOPLE];
+        for (int i = 0; i < PEOPLE; i++) people[i] = largest.get(i).getPerson().getId();
+        tree.setCacheLimits(0, 0);   // no cached traversals for the baseline
+    }
+
+    @Benchmark
+    public int descendants() { return tree.lineage(people[next++ & (PEOPLE - 1)]).getDescendants(); }
+
+    /** Baseline for descendants(): every generation below the person, then the sizes. */
+    @Benchmark
+    public int descendantsTraversal() {
+        int n = -1;   // level 0 is the person
+        for (List<Person> level : tree.descendantsOf(people[next++ & (PEOPLE - 1)], GENERATIONS)) n += level.size();
+        return n;
+    }
+
+    @Benchmark
+    public List<Lineage> top10() { return tree.topLineages(Lineage.Measure.DESCENDANTS, 10); }
+}
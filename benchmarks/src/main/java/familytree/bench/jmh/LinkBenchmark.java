@@ -0,0 +1,64 @@
+package familytree.bench.jmh;
+
+import familytree.model.Gender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental linking, the path the CLI and interactive edits take (importers use BulkLoader): each
+ * call registers a child and links it to two people of the last generation, paying for the cycle check
+ * and the reachability update. The tree is rebuilt before every iteration so it grows by at most one
+ * iteration's worth of children.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LinkBenchmark {
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"8", "25"})
+    public int depth;
+
+    @Param({"2"})
+    public int branching;
+
+    @Param({"0.0", "0.5"})
+    public double collapse;
+
+    private SyntheticPedigree pedigree;
+    private Random rnd;
+
+    @Setup(Level.Iteration)
+    public void build() {
+        pedigree = SyntheticPedigree.build(size, depth, branching, collapse, 42L);
+        rnd = new Random(3L);
+    }
+
+    @Benchmark
+    public String linkParentChild() {
+        String child = pedigree.tree.addPerson("Child", Gender.FEMALE, 2100, null).getId();
+        String a = pedigree.leaf(rnd), b;
+        do b = pedigree.leaf(rnd); while (b.equals(a));
+        pedigree.tree.linkParentChild(a, child);
+        pedigree.tree.linkParentChild(b, child);
+        return child;
+    }
+}
@@ -0,0 +1,101 @@
+package familytree.bench.jmh;
+
+import familytree.bench.PopulationGenerator;
+import familytree.model.Marriage;
+import familytree.model.Person;
+import familytree.service.FamilyTree;
+import familytree.service.PathFinder;
+import familytree.service.PersonGraph;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Degrees of separation over parent, child and spouse links between random pairs of a generated
+ * population: PathFinder one pair at a time and as a batch, against a one-sided BFS over Person
+ * objects. All three stop after {@code MAX_HOPS}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathBenchmark {
+    private static final int PAIRS = 256;
+    private static final int MAX_HOPS = 12;
+
+    @Param({"100000"})
+    public int size;
+
+    private FamilyTree tree;
+    private PathFinder paths;
+    private List<String> from, to;
+    private int next;
+
+    @Setup
+    public void build() {
+        tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        new PopulationGenerator(42).people(size).generate(tree);
+        paths = PathFinder.of(tree);
+        PersonGraph graph = tree.graph();
+        SplittableRandom rnd = new SplittableRandom(7);
+        from = new ArrayList<>();
+        to = new ArrayList<>();
+        for (int i = 0; i < PAIRS; i++) {
+            from.add(graph.idOf(rnd.nextInt(graph.size())));
+            to.add(graph.idOf(rnd.nextInt(graph.size())));
+        }
+    }
+
+    @Benchmark
+    public int degrees() {
+        int i = next++ & (PAIRS - 1);
+        return paths.degrees(from.get(i), to.get(i), PathFinder.ALL, MAX_HOPS);
+    }
+
+    /** All pairs in one call; divide by PAIRS to compare with degrees(). */
+    @Benchmark
+    public int[] degreesBatch() { return paths.degrees(from, to, PathFinder.ALL, MAX_HOPS); }
+
+    /** Baseline for degrees(): breadth-first from A alone, through Person getters and a hash map of distances. */
+    @Benchmark
+    public int degreesOneSided() {
+        int i = next++ & (PAIRS - 1);
+        String target = to.get(i);
+        Map<String, Integer> dist = new HashMap<>();
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        dist.put(from.get(i), 0);
+        queue.add(from.get(i));
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            int d = dist.get(id);
+            if (id.equals(target)) return d;
+            if (d == MAX_HOPS) continue;
+            Person p = tree.getPerson(id);
+            List<String> next = new ArrayList<>(p.getParentIds());
+            next.addAll(p.getChildrenIds());
+            for (Marriage m : p.getMarriages()) next.add(m.getOtherSpouseId(id));
+            for (String n : next) if (dist.putIfAbsent(n, d + 1) == null) queue.add(n);
+        }
+        return -1;
+    }
+}
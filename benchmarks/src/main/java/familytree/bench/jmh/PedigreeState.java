@@ -0,0 +1,50 @@
+package familytree.bench.jmh;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Shared read-only pedigree for the query benchmarks, one per parameter combination, plus a ring of
+ * pre-drawn probe ids so that choosing the next probe costs an array read.
+ */
+@State(Scope.Benchmark)
+public class PedigreeState {
+    static final int PROBES = 1024;   // power of two
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"8", "25"})
+    public int depth;
+
+    @Param({"2", "4"})
+    public int branching;
+
+    @Param({"0.0", "0.5"})
+    public double collapse;
+
+    SyntheticPedigree pedigree;
+    String[] leaves, founders, anyone;
+    private int cursor;
+
+    @Setup
+    public void build() {
+        pedigree = SyntheticPedigree.build(size, depth, branching, collapse, 42L);
+        Random rnd = new Random(7L);
+        leaves = new String[PROBES];
+        founders = new String[PROBES];
+        anyone = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            leaves[i] = pedigree.leaf(rnd);
+            founders[i] = pedigree.founder(rnd);
+            anyone[i] = pedigree.pick(rnd, rnd.nextInt(depth));
+        }
+    }
+
+    /** Index of the next probe; benchmarks are single-threaded per state, so no atomics. */
+    int next() { return cursor++ & (PROBES - 1); }
+}
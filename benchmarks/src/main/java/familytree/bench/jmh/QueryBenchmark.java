@@ -0,0 +1,40 @@
+package familytree.bench.jmh;
+
+import familytree.model.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Point queries: ancestry checks between the last and first generation, and sibling lookups. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Benchmark
+    public boolean isDescendant(PedigreeState s) {
+        int i = s.next();
+        return s.pedigree.tree.isDescendant(s.leaves[i], s.founders[i]);
+    }
+
+    /** Reverse direction: never true, so the index has to rule it out. */
+    @Benchmark
+    public boolean isDescendantNegative(PedigreeState s) {
+        int i = s.next();
+        return s.pedigree.tree.isDescendant(s.founders[i], s.leaves[i]);
+    }
+
+    @Benchmark
+    public List<Person> siblingsOf(PedigreeState s) {
+        return s.pedigree.tree.siblingsOf(s.anyone[s.next()]);
+    }
+}
@@ -0,0 +1,64 @@
+package familytree.bench.jmh;
+
+import familytree.model.Person;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import familytree.strategy.LineRenderer;
+import familytree.strategy.Renderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Renderers alone, over traversal results computed once in setup. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderBenchmark {
+    private static final int SAMPLES = 64;
+
+    @Param({"indented", "line"})
+    public String renderer;
+
+    private Renderer r;
+    private List<List<Person>>[] ancestries, descendants;
+    private int cursor;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void prepare(PedigreeState s) {
+        r = switch (renderer) {
+            case "indented" -> new IndentedTreeRenderer();
+            case "line" -> new LineRenderer();
+            default -> throw new IllegalArgumentException("Unknown renderer: " + renderer);
+        };
+        BFSTraversal bfs = new BFSTraversal();
+        Random rnd = new Random(11L);
+        ancestries = new List[SAMPLES];
+        descendants = new List[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            ancestries[i] = bfs.traverseAncestors(s.pedigree.tree, s.pedigree.leaf(rnd), s.depth);
+            descendants[i] = bfs.traverseDescendants(s.pedigree.tree, s.pedigree.founder(rnd), 4);
+        }
+    }
+
+    @Benchmark
+    public String renderAncestors() { return r.renderAncestors(ancestries[cursor++ & (SAMPLES - 1)]); }
+
+    @Benchmark
+    public String renderDescendants() { return r.renderDescendants(descendants[cursor++ & (SAMPLES - 1)]); }
+}
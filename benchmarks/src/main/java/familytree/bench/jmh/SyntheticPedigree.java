@@ -0,0 +1,65 @@
+package familytree.bench.jmh;
+
+import familytree.model.Gender;
+import familytree.service.BulkLoader;
+import familytree.service.FamilyTree;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+
+import java.util.Random;
+
+/**
+ * A reproducible pedigree of {@code depth} generations of {@code size / depth} people each. Every
+ * couple in a generation has {@code branching} children; the first parent is drawn at random from the
+ * generation above, and with probability {@code collapse} the second is a sibling or cousin of the first
+ * (a window of nearby people, who share parents or grandparents), otherwise anyone in that generation.
+ * Higher collapse means fewer distinct ancestors per person and more paths that rejoin.
+ */
+final class SyntheticPedigree {
+    final FamilyTree tree;
+    final String[] ids;   // by node; generation g occupies [g * width, (g + 1) * width)
+    final int width, depth;
+
+    private SyntheticPedigree(FamilyTree tree, String[] ids, int width, int depth) {
+        this.tree = tree; this.ids = ids; this.width = width; this.depth = depth;
+    }
+
+    static SyntheticPedigree build(int size, int depth, int branching, double collapse, long seed) {
+        if (depth < 1 || branching < 1 || size < 2 * depth) throw new IllegalArgumentException("Need size >= 2 * depth, depth >= 1, branching >= 1");
+        int width = size / depth;
+        Random rnd = new Random(seed);
+        FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        BulkLoader loader = tree.bulkLoader();
+        int[] nodes = new int[width * depth];
+        for (int i = 0; i < nodes.length; i++) {
+            int gen = i / width;
+            nodes[i] = loader.addPerson("Person " + i, i % 2 == 0 ? Gender.MALE : Gender.FEMALE, 1800 + 25 * gen, null);
+        }
+        int window = 2 * branching;   // a couple's children sit together, so neighbours are kin
+        for (int gen = 1; gen < depth; gen++) {
+            int above = (gen - 1) * width, first = gen * width;
+            for (int c = 0; c < width; c += branching) {
+                int a = rnd.nextInt(width), b;
+                do {
+                    b = rnd.nextDouble() < collapse
+                            ? Math.floorMod(a + rnd.nextInt(2 * window + 1) - window, width)
+                            : rnd.nextInt(width);
+                } while (b == a);
+                for (int k = c; k < Math.min(c + branching, width); k++) {
+                    loader.link(nodes[above + a], nodes[first + k]);
+                    loader.link(nodes[above + b], nodes[first + k]);
+                }
+            }
+        }
+        loader.finish();
+        String[] ids = new String[nodes.length];
+        for (int i = 0; i < nodes.length; i++) ids[i] = tree.graph().person(nodes[i]).getId();
+        return new SyntheticPedigree(tree, ids, width, depth);
+    }
+
+    /** Someone from generation {@code gen}, chosen at random. */
+    String pick(Random rnd, int gen) { return ids[gen * width + rnd.nextInt(width)]; }
+
+    String founder(Random rnd) { return pick(rnd, 0); }
+    String leaf(Random rnd) { return pick(rnd, depth - 1); }
+}
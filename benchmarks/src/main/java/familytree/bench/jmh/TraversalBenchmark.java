@@ -0,0 +1,60 @@
+package familytree.bench.jmh;
+
+import familytree.model.Person;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.DFSTraversal;
+import familytree.strategy.TraversalStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Strategy traversals called directly, bypassing FamilyTree's result cache: full ancestry of a person in
+ * the last generation, and a founder's descendants over {@code generations} levels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TraversalBenchmark {
+
+    @Param({"bfs", "dfs"})
+    public String strategy;
+
+    @Param({"4"})
+    public int generations;
+
+    private TraversalStrategy traversal;
+
+    @Setup
+    public void choose() {
+        traversal = switch (strategy) {
+            case "bfs" -> new BFSTraversal();
+            case "dfs" -> new DFSTraversal();
+            default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        };
+    }
+
+    @Benchmark
+    public List<List<Person>> ancestors(PedigreeState s) {
+        return traversal.traverseAncestors(s.pedigree.tree, s.leaves[s.next()], s.depth);
+    }
+
+    @Benchmark
+    public List<List<Person>> descendants(PedigreeState s) {
+        return traversal.traverseDescendants(s.pedigree.tree, s.founders[s.next()], generations);
+    }
+}
@@ -1,52 +1,274 @@
 package familytree.cli;
 
+import familytree.io.CsvImporter;
+import familytree.io.GedcomImporter;
 import familytree.model.*;
 import familytree.strategy.IndentedTreeRenderer;
 import familytree.strategy.BFSTraversal;
+import familytree.server.TreeServer;
+import familytree.service.ConcurrentFamilyTree;
 import familytree.service.FamilyTree;
+import familytree.service.GroupStats;
+import familytree.service.ImportReport;
+import familytree.service.FamilyPath;
+import familytree.service.Kinship;
+import familytree.service.Lineage;
+import familytree.service.PathFinder;
+import familytree.service.Duplicate;
+import familytree.service.DuplicateFinder;
+import familytree.service.PersonQuery;
+import familytree.service.SearchPage;
+import familytree.service.Relationship;
+import familytree.service.Journal;
+import familytree.service.Metrics;
+import familytree.service.MetricsDump;
+import familytree.service.TreeHistory;
+import familytree.service.TreeStore;
+import familytree.service.TreeVersion;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * CLI (keeps same commands). Uses BFS + IndentedTreeRenderer by default.
+ * Interactive by default; {@code --script <file>} or {@code --batch} (stdin) run a script instead: no
+ * prompts, output flushed only when the buffer fills and at the end, '#' comment lines, runs of
+ * RELATION queries from the same person answered by one relations() call, and a throughput summary
+ * on stderr. {@code --quiet} drops command output and prints only errors (with line numbers) and totals.
+ * {@code --serve <port>} skips the prompt (after running any script) and serves the tree read-only
+ * over HTTP/JSON until the process is stopped; see TreeServer.
  */
 public class Main {
-    private static final Scanner scanner = new Scanner(System.in);
-    private static final FamilyTree registry = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+    private static final int RELATION_BATCH = 4096;
+    // All output goes through here; renders stream into it as they are traversed. Interactive mode
+    // flushes after each command, batch mode when the buffer fills.
+    private static PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()), 1 << 16));
+    private static PrintWriter errors = out;   // the real output even when --quiet discards `out`
+    private static boolean quiet;
+    private static long commands, failures;
+    private static FamilyTree registry = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+    private static TreeStore store; // set with --data <dir>: snapshot + journal persistence
+    private static TreeHistory history; // set with --history: a version per changing command
+    // Shared by every tree the session loads; STATS prints it, --metrics <file> dumps it periodically.
+    private static final Metrics metrics = new Metrics();
+    private static final com.sun.management.ThreadMXBean threads = allocationCounter();
 
-    public static void main(String[] args) {
-        System.out.println("Family Tree CLI — type HELP for commands, QUIT to exit.");
+    public static void main(String[] args) throws IOException {
+        Path dataDir = null, metricsFile = null, script = null;
+        long interval = 60;
+        int port = -1;
+        boolean batch = false, tracked = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--data": dataDir = Path.of(argument(args, ++i)); break;
+                case "--metrics": metricsFile = Path.of(argument(args, ++i)); break;
+                case "--metrics-interval": interval = Long.parseLong(argument(args, ++i)); break;
+                case "--script": script = Path.of(argument(args, ++i)); batch = true; break;
+                case "--batch": batch = true; break;
+                case "--quiet": quiet = true; break;
+                case "--serve": port = Integer.parseInt(argument(args, ++i)); break;
+                case "--history": tracked = true; break;
+                default: throw new IllegalArgumentException("Usage: Main [--data <dir>] [--metrics <file> [--metrics-interval <seconds>]]"
+                        + " [--script <file> | --batch] [--quiet] [--serve <port>] [--history]");
+            }
+        }
+        if (quiet && !batch) throw new IllegalArgumentException("--quiet requires --script or --batch");
+        if (quiet) out = new PrintWriter(Writer.nullWriter());
+        BufferedReader in = script != null
+                ? new BufferedReader(new InputStreamReader(Files.newInputStream(script), StandardCharsets.UTF_8), 1 << 16)
+                : new BufferedReader(new InputStreamReader(System.in), 1 << 16);
+        if (dataDir != null) {
+            store = TreeStore.open(dataDir, new BFSTraversal(), new IndentedTreeRenderer(),
+                    Journal.Durability.GROUPED, 20);
+            registry = store.tree();
+        }
+        registry.setMetrics(metrics);
+        if (tracked) history = TreeHistory.track(registry);
+        MetricsDump dump = metricsFile == null ? null : new MetricsDump(metricsFile, Duration.ofSeconds(interval), () -> metrics.report(registry));
+        try (in) {
+            if (batch) batch(in); else if (port < 0) repl(in);
+            if (port >= 0) serve(port);
+        } finally {
+            out.flush();
+            errors.flush();
+            if (dump != null) dump.close();
+            if (store != null) store.close();
+        }
+    }
+
+    // Serves until the JVM is told to stop; the shutdown hook waits for main's cleanup (journal, metrics dump).
+    private static void serve(int port) throws IOException {
+        TreeServer server = TreeServer.start(new ConcurrentFamilyTree(registry), new InetSocketAddress(port), metrics);
+        errors.printf("Serving on http://localhost:%d/ (Ctrl-C to stop)%n", server.port());
+        errors.flush();
+        CountDownLatch stop = new CountDownLatch(1);
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stop.countDown();
+            try { main.join(10_000); } catch (InterruptedException ignored) { }
+        }));
+        while (stop.getCount() > 0) {
+            try { stop.await(); } catch (InterruptedException ignored) { }
+        }
+        server.close();
+    }
+
+    private static String argument(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException(args[i - 1] + " requires a value");
+        return args[i];
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t
+                && t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled() ? t : null;
+    }
+
+    private static void repl(BufferedReader in) throws IOException {
+        out.println("Family Tree CLI — type HELP for commands, QUIT to exit.");
+        long lineNo = 0;
         while (true) {
-            System.out.print("> ");
-            if (!scanner.hasNextLine()) break;
-            String line = scanner.nextLine().trim();
+            out.print("> ");
+            out.flush();
+            String line = in.readLine();
+            if (line == null) break;
+            lineNo++;
+            line = line.trim();
             if (line.isEmpty()) continue;
-            String[] tokens = splitQuoted(line);
-            String cmd = tokens[0].toUpperCase(Locale.ROOT);
+            boolean more = dispatch(tokenize(line), lineNo);
+            out.flush();
+            if (!more) return;
+        }
+    }
+
+    private static void batch(BufferedReader in) throws IOException {
+        long start = System.nanoTime(), lineNo = 0;
+        List<String[]> relations = new ArrayList<>();
+        List<Long> relationLines = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') continue;
+            String[] tokens = tokenize(line);
+            // RELATION queries from the same person are gathered and answered together.
+            boolean relation = tokens.length == 3 && tokens[0].equalsIgnoreCase("RELATION");
+            if (!relations.isEmpty() && (!relation || !tokens[1].equals(relations.get(0)[1]) || relations.size() == RELATION_BATCH)) {
+                relations(relations, relationLines);
+            }
+            if (relation) {
+                relations.add(tokens);
+                relationLines.add(lineNo);
+                continue;
+            }
+            if (!dispatch(tokens, lineNo)) break;
+        }
+        relations(relations, relationLines);
+        out.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        PrintWriter summary = quiet ? errors : new PrintWriter(System.err);
+        summary.printf("%d commands in %.3f s (%.0f commands/s), %d errors%n", commands, seconds, commands / Math.max(seconds, 1e-9), failures);
+        summary.flush();
+    }
 
+    // One relations() call for the group; if it fails (an unknown id, say), each query runs on its own.
+    private static void relations(List<String[]> group, List<Long> lines) {
+        if (group.isEmpty()) return;
+        List<Relationship> answers = null;
+        if (group.size() > 1) {
+            long t0 = System.nanoTime();
+            List<String> others = new ArrayList<>(group.size());
+            for (String[] tokens : group) others.add(tokens[2]);
             try {
-                switch (cmd) {
-                    case "QUIT": case "EXIT": System.out.println("Bye."); return;
-                    case "HELP": printHelp(); break;
-                    case "ADD_PERSON": cmdAddPerson(tokens); break;
-                    case "ADD_PARENT_CHILD": cmdAddParentChild(tokens); break;
-                    case "MARRY": cmdMarry(tokens); break;
-                    case "ANCESTORS": cmdAncestors(tokens); break;
-                    case "DESCENDANTS": cmdDescendants(tokens); break;
-                    case "SIBLINGS": cmdSiblings(tokens); break;
-                    case "SHOW": cmdShow(tokens); break;
-                    case "LIST": cmdList(); break;
-                    default: System.out.println("Unknown command. Type HELP.");
-                }
-            } catch (Exception ex) {
-                System.out.println("ERROR: " + ex.getMessage());
+                answers = registry.relations(group.get(0)[1], others);
+            } catch (RuntimeException ex) {
+                answers = null;
+            }
+            if (answers != null) {
+                for (Relationship r : answers) printRelation(r);
+                commands += group.size();
+                metrics.command("RELATION (batched)", System.nanoTime() - t0, 0, null);
+            }
+        }
+        if (answers == null) for (int i = 0; i < group.size(); i++) dispatch(group.get(i), lines.get(i));
+        group.clear();
+        lines.clear();
+    }
+
+    /** Runs one command and records it; false once the command was QUIT. */
+    private static boolean dispatch(String[] tokens, long lineNo) {
+        String cmd = tokens[0].toUpperCase(Locale.ROOT);
+        long t0 = System.nanoTime(), allocated = threads != null ? threads.getCurrentThreadAllocatedBytes() : 0;
+        Throwable failure = null;
+        commands++;
+
+        try {
+            switch (cmd) {
+                case "QUIT": case "EXIT": out.println("Bye."); return false;
+                case "HELP": printHelp(); break;
+                case "ADD_PERSON": cmdAddPerson(tokens); break;
+                case "ADD_PARENT_CHILD": cmdAddParentChild(tokens); break;
+                case "MARRY": cmdMarry(tokens); break;
+                case "ANCESTORS": cmdAncestors(tokens); break;
+                case "DESCENDANTS": cmdDescendants(tokens); break;
+                case "SIBLINGS": cmdSiblings(tokens); break;
+                case "SPOUSE": cmdSpouse(tokens); break;
+                case "MARRIAGES": cmdMarriages(tokens); break;
+                case "RELATION": cmdRelation(tokens); break;
+                case "KINSHIP": cmdKinship(tokens); break;
+                case "PATH": cmdPath(tokens); break;
+                case "CENSUS": cmdCensus(tokens); break;
+                case "DEMOGRAPHICS": cmdDemographics(tokens); break;
+                case "SHOW": cmdShow(tokens); break;
+                case "TOP": cmdTop(tokens); break;
+                case "DUPLICATES": cmdDuplicates(tokens); break;
+                case "MERGE": cmdMerge(tokens); break;
+                case "LIST": cmdList(); break;
+                case "FIND": case "SEARCH": cmdFind(tokens); break;
+                case "IMPORT": cmdImport(tokens); break;
+                case "SAVE": cmdSave(tokens); break;
+                case "LOAD": cmdLoad(tokens); break;
+                case "COMPACT": cmdCompact(); break;
+                case "STATS": cmdStats(); break;
+                case "HISTORY": cmdHistory(); break;
+                case "UNDO": cmdUndo(); break;
+                case "CHECKOUT": cmdCheckout(tokens); break;
+                case "DIFF": cmdDiff(tokens); break;
+                default: cmd = "UNKNOWN"; failures++; error(lineNo, "Unknown command. Type HELP.");
             }
+        } catch (Exception ex) {
+            failure = ex;
+            failures++;
+            error(lineNo, "ERROR: " + ex.getMessage());
         }
+        if (history != null) history.commit(String.join(" ", tokens));   // a no-op unless the command changed something
+        metrics.command(cmd, System.nanoTime() - t0,
+                threads != null ? threads.getCurrentThreadAllocatedBytes() - allocated : 0, failure);
+        return true;
+    }
+
+    // With --quiet, errors are all that is printed, so they say where they came from.
+    private static void error(long lineNo, String message) {
+        if (quiet) errors.print("line " + lineNo + ": ");
+        errors.println(message);
     }
 
     private static void printHelp() {
-        System.out.println("""
+        out.println("""
                 Commands:
                   ADD_PERSON "<Full Name>" <Gender> <BirthYear> [DeathYear]
                   ADD_PARENT_CHILD <parentId> <childId>
@@ -54,8 +276,25 @@ public class Main {
                   ANCESTORS <personId> <generations>
                   DESCENDANTS <personId> <generations>
                   SIBLINGS <personId>
+                  SPOUSE <personId> [Year]
+                  MARRIAGES <Year|Y1-Y2> | MARRIAGES DECADES <Y1-Y2>
+                  RELATION <personAId> <personBId>
+                  KINSHIP [personId [otherId]]   (no ids: everyone, most inbred first)
+                  PATH <personAId> <personBId> [parent,child,spouse] [maxHops]   (shortest chain of links)
+                  CENSUS <Year> [personId]      (with an id: living descendants)
+                  DEMOGRAPHICS <Y1-Y2>          (lifespan by generation; by birth decade: male share, age at first marriage)
                   SHOW <personId>
+                  TOP <descendants|living|ancestors> [N]   (most distinct descendants, living descendants or ancestors)
+                  DUPLICATES [minScore] [N]     (likely duplicate records, best match first; minScore 0-1, default 0.85)
+                  MERGE <keepId> <dropId>       (move the duplicate's links and marriages to the kept record)
                   LIST
+                  FIND [name="<prefix words>"] [born=Y1-Y2] [died=Y1-Y2] [gender=G] [alive|deceased] [page=N] [size=N]
+                  IMPORT <file.ged|file.csv>
+                  SAVE <file>
+                  LOAD <file>
+                  COMPACT            (with --data <dir>)
+                  STATS              (latency percentiles, traversal and cache counters, errors per command)
+                  HISTORY | UNDO | CHECKOUT <version> | DIFF <version> [version]   (with --history)
                   HELP
                   QUIT
                 """);
@@ -68,55 +307,328 @@ public class Main {
         int birthYear = Integer.parseInt(tokens[3]);
         Integer deathYear = tokens.length >= 5 ? Integer.valueOf(tokens[4]) : null;
         Person p = registry.addPerson(fullName, gender, birthYear, deathYear);
-        System.out.println("-> " + p.getId());
+        out.println("-> " + p.getId());
     }
 
     private static void cmdAddParentChild(String[] tokens) {
         if (tokens.length != 3) throw new IllegalArgumentException("Usage: ADD_PARENT_CHILD <parentId> <childId>");
         registry.linkParentChild(tokens[1], tokens[2]);
-        System.out.println("OK");
+        out.println("OK");
     }
 
     private static void cmdMarry(String[] tokens) {
         if (tokens.length != 4) throw new IllegalArgumentException("Usage: MARRY <personAId> <personBId> <Year>");
         registry.marry(tokens[1], tokens[2], Integer.parseInt(tokens[3]));
-        System.out.println("OK");
+        out.println("OK");
     }
 
-    private static void cmdAncestors(String[] tokens) {
+    private static void cmdAncestors(String[] tokens) throws IOException {
         if (tokens.length != 3) throw new IllegalArgumentException("Usage: ANCESTORS <personId> <generations>");
-        System.out.println(registry.renderAncestors(tokens[1], Integer.parseInt(tokens[2])));
+        registry.renderAncestors(tokens[1], Integer.parseInt(tokens[2]), out);
+        out.append(System.lineSeparator());
     }
 
-    private static void cmdDescendants(String[] tokens) {
+    private static void cmdDescendants(String[] tokens) throws IOException {
         if (tokens.length != 3) throw new IllegalArgumentException("Usage: DESCENDANTS <personId> <generations>");
-        System.out.println(registry.renderDescendants(tokens[1], Integer.parseInt(tokens[2])));
+        registry.renderDescendants(tokens[1], Integer.parseInt(tokens[2]), out);
+        out.append(System.lineSeparator());
+    }
+
+    private static void cmdRelation(String[] tokens) {
+        if (tokens.length != 3) throw new IllegalArgumentException("Usage: RELATION <personAId> <personBId>");
+        printRelation(registry.relation(tokens[1], tokens[2]));
+    }
+
+    private static void printRelation(Relationship r) {
+        out.println(r.describe());
+        for (Relationship.CommonAncestor c : r.getLowestCommonAncestors()) out.println("  via " + c);
+    }
+
+    private static void cmdPath(String[] tokens) {
+        String usage = "Usage: PATH <personAId> <personBId> [parent,child,spouse] [maxHops]";
+        if (tokens.length < 3 || tokens.length > 5) throw new IllegalArgumentException(usage);
+        Set<PathFinder.Link> links = PathFinder.ALL;
+        int maxHops = Integer.MAX_VALUE;
+        for (int i = 3; i < tokens.length; i++) {
+            if (Character.isDigit(tokens[i].charAt(0))) { maxHops = Integer.parseInt(tokens[i]); continue; }
+            links = EnumSet.noneOf(PathFinder.Link.class);
+            for (String l : tokens[i].split(",")) links.add(PathFinder.Link.valueOf(l.trim().toUpperCase(Locale.ROOT)));
+        }
+        Optional<FamilyPath> path = PathFinder.of(registry).shortestPath(tokens[1], tokens[2], links, maxHops);
+        if (path.isEmpty()) {
+            out.println("No chain of links between " + tokens[1] + " and " + tokens[2]
+                    + (maxHops != Integer.MAX_VALUE ? " within " + maxHops + " hops" : ""));
+            return;
+        }
+        out.println(path.get().hops() + " hops:");
+        out.println(path.get().describe());
+    }
+
+    private static void cmdKinship(String[] tokens) {
+        if (tokens.length > 3) throw new IllegalArgumentException("Usage: KINSHIP [personId [otherId]]");
+        Kinship kinship = registry.kinship();
+        if (tokens.length == 2) {
+            out.printf("F(%s) = %.6f%n", tokens[1], kinship.inbreeding(tokens[1]));
+        } else if (tokens.length == 3) {
+            double phi = kinship.coancestry(tokens[1], tokens[2]);
+            out.printf("kinship(%s, %s) = %.6f (relatedness %.6f)%n", tokens[1], tokens[2], phi, 2 * phi);
+        } else {
+            double[] f = kinship.inbreedingAll(true);
+            Integer[] inbred = IntStream.range(0, f.length).filter(v -> f[v] > 0).boxed()
+                    .sorted((x, y) -> Double.compare(f[y], f[x])).toArray(Integer[]::new);
+            out.printf("%d of %d people inbred (mean F %.6f)%n", inbred.length, f.length,
+                    Arrays.stream(f).average().orElse(0));
+            for (int i = 0; i < Math.min(10, inbred.length); i++) {
+                out.printf("  %s F = %.6f%n", registry.graph().idOf(inbred[i]), f[inbred[i]]);
+            }
+        }
+    }
+
+    private static void cmdCensus(String[] tokens) {
+        if (tokens.length < 2 || tokens.length > 3) throw new IllegalArgumentException("Usage: CENSUS <Year> [personId]");
+        int year = Integer.parseInt(tokens[1]);
+        if (tokens.length == 3) {
+            out.printf("Living descendants of %s in %d: %d%n", tokens[2], year, registry.livingDescendants(tokens[2], year));
+            return;
+        }
+        out.printf("Alive in %d: %d%n", year, registry.aliveIn(year));
+        int[] ages = registry.ageHistogram(year, 10);
+        for (int k = 0; k < ages.length; k++) out.printf("  %3d-%-3d %d%n", 10 * k, 10 * k + 9, ages[k]);
+    }
+
+    private static void cmdDemographics(String[] tokens) {
+        if (tokens.length != 2) throw new IllegalArgumentException("Usage: DEMOGRAPHICS <Y1-Y2>");
+        int[] r = yearRange(tokens[1]);
+        GroupStats life = registry.lifespanByGeneration();
+        out.println("Lifespan by generation (deceased):");
+        for (int k = 0; k < life.groups(); k++)
+            if (life.count(k) > 0) out.printf("  gen %d: %d, mean %.1f years%n", life.key(k), life.count(k), life.mean(k));
+        GroupStats male = registry.genderByDecade(r[0], r[1], Gender.MALE);
+        GroupStats wed = registry.ageAtFirstMarriageByDecade();
+        out.println("Births by decade (male share, mean age at first marriage):");
+        for (int k = 0; k < male.groups(); k++) {
+            int w = (male.key(k) - (wed.groups() > 0 ? wed.key(0) : 0)) / 10;
+            boolean married = wed.groups() > 0 && w >= 0 && w < wed.groups() && wed.count(w) > 0;
+            if (male.count(k) > 0)
+                out.printf("  %ds: %d, %.1f%% male, %s%n", male.key(k), male.count(k), 100 * male.mean(k),
+                        married ? String.format("%.1f", wed.mean(w)) : "-");
+        }
     }
 
     private static void cmdSiblings(String[] tokens) {
         if (tokens.length != 2) throw new IllegalArgumentException("Usage: SIBLINGS <personId>");
         List<Person> s = registry.siblingsOf(tokens[1]);
-        if (s.isEmpty()) System.out.println("<none>");
-        else System.out.println(s.stream().map(p -> p.getId() + " " + p.getFullName()).collect(Collectors.joining(", ")));
+        if (s.isEmpty()) out.println("<none>");
+        else out.println(s.stream().map(p -> p.getId() + " " + p.getFullName()).collect(Collectors.joining(", ")));
+    }
+
+    private static void cmdSpouse(String[] tokens) {
+        if (tokens.length < 2 || tokens.length > 3) throw new IllegalArgumentException("Usage: SPOUSE <personId> [Year]");
+        Optional<Person> s = tokens.length == 2 ? registry.spouseOf(tokens[1]) : registry.spouseOf(tokens[1], Integer.parseInt(tokens[2]));
+        out.println(s.map(p -> p.getId() + " " + p.getFullName()).orElse("<none>"));
+    }
+
+    private static void cmdMarriages(String[] tokens) {
+        if (tokens.length == 3 && tokens[1].equalsIgnoreCase("DECADES")) {
+            int[] r = yearRange(tokens[2]);
+            int[] counts = registry.marriagesPerDecade(r[0], r[1]);
+            int first = Math.floorDiv(r[0], 10) * 10;
+            for (int i = 0; i < counts.length; i++) out.printf("  %ds: %d%n", first + 10 * i, counts[i]);
+            return;
+        }
+        if (tokens.length != 2) throw new IllegalArgumentException("Usage: MARRIAGES <Year|Y1-Y2> | MARRIAGES DECADES <Y1-Y2>");
+        int[] r = yearRange(tokens[1]);
+        List<Marriage> ms = registry.marriagesBetween(r[0], r[1]);
+        if (ms.isEmpty()) { out.println("<none>"); return; }
+        out.println(ms.size() + " marriage(s)");
+        for (Marriage m : ms.subList(0, Math.min(50, ms.size()))) {
+            out.printf("  %s - %s (married %d%s)%n", m.getSpouseAId(), m.getSpouseBId(), m.getMarriageYear(),
+                    m.getDivorceYear() != null ? " divorced " + m.getDivorceYear() : "");
+        }
+        if (ms.size() > 50) out.println("  ...");
     }
 
     private static void cmdShow(String[] tokens) {
         if (tokens.length != 2) throw new IllegalArgumentException("Usage: SHOW <personId>");
         Person p = registry.getPerson(tokens[1]);
-        System.out.println(p.oneLineSummary());
-        System.out.println("Parents: " + String.join(", ", p.getParentIds()));
-        System.out.println("Children: " + String.join(", ", p.getChildrenIds()));
-        System.out.println("Marriages:");
+        out.println(p.oneLineSummary());
+        registry.mergedInto(tokens[1]).ifPresent(id -> out.println("Merged into: " + id));
+        out.println("Parents: " + String.join(", ", p.getParentIds()));
+        out.println("Children: " + String.join(", ", p.getChildrenIds()));
+        out.println("Marriages:");
         for (var m : p.getMarriages()) {
-            System.out.printf("  %s - %s (married %d%s)%n",
+            out.printf("  %s - %s (married %d%s)%n",
                     m.getSpouseAId(), m.getSpouseBId(), m.getMarriageYear(),
                     m.getDivorceYear() != null ? " divorced " + m.getDivorceYear() : "");
         }
+        out.println("Lineage: " + registry.lineage(tokens[1]).describe());
+    }
+
+    private static void cmdTop(String[] tokens) {
+        if (tokens.length < 2 || tokens.length > 3) throw new IllegalArgumentException("Usage: TOP <descendants|living|ancestors> [N]");
+        String what = tokens[1].toUpperCase(Locale.ROOT);
+        Lineage.Measure measure = what.equals("LIVING") ? Lineage.Measure.LIVING_DESCENDANTS : Lineage.Measure.valueOf(what);
+        int n = tokens.length == 3 ? Integer.parseInt(tokens[2]) : 10;
+        for (Lineage l : registry.topLineages(measure, n)) {
+            out.printf("  %s%7d  %s%n", l.isExact(measure) ? " " : "~", l.get(measure), l.getPerson().oneLineSummary());
+        }
+    }
+
+    private static void cmdDuplicates(String[] tokens) {
+        if (tokens.length > 3) throw new IllegalArgumentException("Usage: DUPLICATES [minScore] [N]");
+        double minScore = tokens.length >= 2 ? Double.parseDouble(tokens[1]) : DuplicateFinder.DEFAULT_MIN_SCORE;
+        int n = tokens.length == 3 ? Integer.parseInt(tokens[2]) : 20;
+        List<Duplicate> found = DuplicateFinder.of(registry).find(minScore, n);
+        if (found.isEmpty()) out.println("No likely duplicates.");
+        for (Duplicate d : found) out.println("  " + d.describe());
+    }
+
+    private static void cmdMerge(String[] tokens) {
+        if (tokens.length != 3) throw new IllegalArgumentException("Usage: MERGE <keepId> <dropId>");
+        registry.merge(tokens[1], tokens[2]);
+        out.println("Merged " + tokens[2] + " into " + tokens[1] + ".");
     }
 
     private static void cmdList() {
-        System.out.println("All people:");
-        registry.allPeople().forEach(p -> System.out.println("  " + p.oneLineSummary()));
+        out.println("All people:");
+        registry.allPeople().forEach(p -> out.println("  " + p.oneLineSummary()));
+    }
+
+    private static void cmdFind(String[] tokens) {
+        PersonQuery q = new PersonQuery();
+        int page = 1, size = 20;
+        for (int i = 1; i < tokens.length; i++) {
+            String t = tokens[i];
+            int eq = t.indexOf('=');
+            String key = (eq < 0 ? t : t.substring(0, eq)).toLowerCase(Locale.ROOT), value = eq < 0 ? "" : t.substring(eq + 1);
+            switch (key) {
+                case "name": q.name(value); break;
+                case "born": { int[] r = yearRange(value); q.bornBetween(r[0], r[1]); break; }
+                case "died": { int[] r = yearRange(value); q.diedBetween(r[0], r[1]); break; }
+                case "gender": q.gender(Gender.valueOf(value.toUpperCase(Locale.ROOT))); break;
+                case "alive": q.alive(true); break;
+                case "deceased": q.alive(false); break;
+                case "page": page = Integer.parseInt(value); break;
+                case "size": size = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown FIND criterion: " + t);
+            }
+        }
+        if (page < 1) throw new IllegalArgumentException("page >= 1 required");
+        SearchPage result = registry.search(q.page((page - 1) * size, size));
+        if (result.getTotal() == 0) { out.println("<none>"); return; }
+        out.println("Showing " + (result.getOffset() + 1) + "-" + (result.getOffset() + result.getPeople().size())
+                + " of " + result.getTotal() + (result.hasMore() ? " (page=" + (page + 1) + " for more)" : ""));
+        result.getPeople().forEach(p -> out.println("  " + p.oneLineSummary()));
+    }
+
+    // "1850-1900", or a single year
+    private static int[] yearRange(String value) {
+        int dash = value.indexOf('-', 1);
+        return dash < 0 ? new int[] {Integer.parseInt(value), Integer.parseInt(value)}
+                : new int[] {Integer.parseInt(value.substring(0, dash)), Integer.parseInt(value.substring(dash + 1))};
+    }
+
+    private static void cmdImport(String[] tokens) throws IOException {
+        if (tokens.length != 2) throw new IllegalArgumentException("Usage: IMPORT <file.ged|file.csv>");
+        Path path = Path.of(tokens[1]);
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        ImportReport report = name.endsWith(".ged") || name.endsWith(".gedcom")
+                ? GedcomImporter.importFile(registry, path)
+                : CsvImporter.importFile(registry, path);
+        out.println(report.summary());
+        report.getProblems().forEach(p -> out.println("  " + p));
+    }
+
+    private static void cmdSave(String[] tokens) throws IOException {
+        if (tokens.length != 2) throw new IllegalArgumentException("Usage: SAVE <file>");
+        registry.save(Path.of(tokens[1]));
+        out.println("OK");
+    }
+
+    private static void cmdLoad(String[] tokens) throws IOException {
+        if (tokens.length != 2) throw new IllegalArgumentException("Usage: LOAD <file>");
+        if (store != null) throw new IllegalArgumentException("LOAD is not available with --data");
+        long start = System.nanoTime();
+        registry = FamilyTree.load(Path.of(tokens[1]), new BFSTraversal(), new IndentedTreeRenderer());
+        registry.setMetrics(metrics);
+        if (history != null) history = TreeHistory.track(registry);
+        out.printf("Loaded %d people in %d ms%n", registry.graph().size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void cmdCompact() throws IOException {
+        if (store == null) throw new IllegalArgumentException("COMPACT requires --data <dir>");
+        store.compact();
+        out.println("OK (compacting in background)");
+    }
+
+    private static TreeHistory history() {
+        if (history == null) throw new IllegalArgumentException("Versions are kept only with --history");
+        return history;
+    }
+
+    private static void cmdHistory() {
+        TreeVersion head = history().head();
+        for (TreeVersion v : history.versions())
+            out.printf("%s%4d  %,d people  %s%n", v == head ? "*" : " ", v.number(), v.size(), v.label());
+    }
+
+    private static void cmdUndo() {
+        if (store != null) throw new IllegalArgumentException("UNDO is not available with --data");
+        int from = history().head().number();
+        replaceRegistry(history.undo(new BFSTraversal(), new IndentedTreeRenderer()));
+        out.printf("Undid version %d, now at %d%n", from, history.head().number());
+    }
+
+    private static void cmdCheckout(String[] tokens) {
+        if (tokens.length != 2) throw new IllegalArgumentException("Usage: CHECKOUT <version>");
+        if (store != null) throw new IllegalArgumentException("CHECKOUT is not available with --data");
+        replaceRegistry(history().checkout(Integer.parseInt(tokens[1]), new BFSTraversal(), new IndentedTreeRenderer()));
+        out.printf("At version %d (%,d people)%n", history.head().number(), history.head().size());
+    }
+
+    private static void replaceRegistry(FamilyTree tree) {
+        registry = tree;
+        registry.setMetrics(metrics);
+    }
+
+    private static void cmdDiff(String[] tokens) {
+        if (tokens.length < 2 || tokens.length > 3) throw new IllegalArgumentException("Usage: DIFF <version> [version]");
+        TreeVersion from = history().version(Integer.parseInt(tokens[1]));
+        TreeVersion to = tokens.length == 3 ? history.version(Integer.parseInt(tokens[2])) : history.head();
+        List<TreeVersion.Change> changes = from.diff(to);
+        out.printf("%d people differ between %d and %d%n", changes.size(), from.number(), to.number());
+        for (TreeVersion.Change c : changes) out.printf("  %s: %s%n", c.getId(), c.describe());
+    }
+
+    private static void cmdStats() {
+        out.print(metrics.report(registry));
+    }
+
+    // Fast path for the usual line of ids, numbers and whole "quoted phrases": one substring per token.
+    // Anything else (a quote inside a word, an unterminated quote) goes through splitQuoted.
+    private static String[] tokenize(String line) {
+        String[] t = new String[6];
+        int n = 0, len = line.length();
+        for (int i = 0; i < len; ) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) { i++; continue; }
+            int from = i, to;
+            if (c == '"') {
+                to = line.indexOf('"', i + 1);
+                if (to < 0 || (to + 1 < len && !Character.isWhitespace(line.charAt(to + 1)))) return splitQuoted(line);
+                from = i + 1;
+                i = to + 1;
+            } else {
+                while (i < len && !Character.isWhitespace(line.charAt(i))) {
+                    if (line.charAt(i) == '"') return splitQuoted(line);
+                    i++;
+                }
+                to = i;
+            }
+            if (n == t.length) t = Arrays.copyOf(t, n * 2);
+            t[n++] = line.substring(from, to);
+        }
+        return n == t.length ? t : Arrays.copyOf(t, n);
     }
 
     // Helper: split tokens but keep quoted phrase together
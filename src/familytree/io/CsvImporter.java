@@ -0,0 +1,106 @@
+package familytree.io;
+
+import familytree.model.Gender;
+import familytree.service.BulkLoader;
+import familytree.service.FamilyTree;
+import familytree.service.ImportReport;
+import familytree.service.PersonGraph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams a simple CSV edge format into a FamilyTree through a BulkLoader:
+ * <pre>
+ * PERSON,&lt;key&gt;,&lt;Full Name&gt;,&lt;Gender&gt;,&lt;BirthYear&gt;[,&lt;DeathYear&gt;]
+ * PARENT,&lt;parentKey&gt;,&lt;childKey&gt;
+ * MARRY,&lt;aKey&gt;,&lt;bKey&gt;,&lt;Year&gt;[,&lt;DivorceYear&gt;]
+ * </pre>
+ * Keys are file-local; a key not defined by a PERSON line is looked up as an existing registry id.
+ * Fields may be double-quoted. Blank lines and lines starting with '#' are skipped.
+ */
+public final class CsvImporter {
+    private CsvImporter() {}
+
+    public static ImportReport importFile(FamilyTree tree, Path path) throws IOException {
+        BulkLoader loader = tree.bulkLoader();
+        ImportReport report = loader.report();
+        Map<String, Integer> keys = new HashMap<>();
+        List<String> f = new ArrayList<>(6);
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank() || line.charAt(0) == '#') continue;
+                report.countRecord();
+                split(line, f);
+                try {
+                    switch (f.get(0).toUpperCase(Locale.ROOT)) {
+                        case "PERSON": {
+                            need(f, 5);
+                            if (keys.containsKey(f.get(1))) throw new IllegalArgumentException("duplicate key " + f.get(1));
+                            Integer death = f.size() > 5 && !f.get(5).isEmpty() ? Integer.valueOf(f.get(5)) : null;
+                            keys.put(f.get(1), loader.addPerson(f.get(2), Gender.valueOf(f.get(3).toUpperCase(Locale.ROOT)),
+                                    Integer.parseInt(f.get(4)), death));
+                            break;
+                        }
+                        case "PARENT":
+                            need(f, 3);
+                            loader.link(resolve(loader.graph(), keys, f.get(1)), resolve(loader.graph(), keys, f.get(2)));
+                            break;
+                        case "MARRY": {
+                            need(f, 4);
+                            Integer divorce = f.size() > 4 && !f.get(4).isEmpty() ? Integer.valueOf(f.get(4)) : null;
+                            loader.marry(resolve(loader.graph(), keys, f.get(1)), resolve(loader.graph(), keys, f.get(2)),
+                                    Integer.parseInt(f.get(3)), divorce);
+                            break;
+                        }
+                        default: throw new IllegalArgumentException("unknown record type " + f.get(0));
+                    }
+                } catch (IllegalArgumentException ex) {
+                    report.problem("line " + lineNo + ": " + ex.getMessage());
+                }
+            }
+        }
+        return loader.finish();
+    }
+
+    static int resolve(PersonGraph graph, Map<String, Integer> keys, String key) {
+        Integer node = keys.get(key);
+        if (node != null) return node;
+        int existing = graph.nodeOf(key);
+        if (existing == PersonGraph.NONE) throw new IllegalArgumentException("unknown person key " + key);
+        return existing;
+    }
+
+    private static void need(List<String> f, int n) {
+        if (f.size() < n) throw new IllegalArgumentException(f.get(0) + " needs " + (n - 1) + " fields");
+    }
+
+    // Splits one CSV line into the reused list; quotes group commas, "" is a literal quote.
+    private static void split(String line, List<String> out) {
+        out.clear();
+        StringBuilder cur = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') { cur.append('"'); i++; }
+                else inQuotes = !inQuotes;
+            } else if (c == ',' && !inQuotes) {
+                out.add(cur.toString().strip());
+                cur.setLength(0);
+            } else cur.append(c);
+        }
+        out.add(cur.toString().strip());
+    }
+}
@@ -0,0 +1,200 @@
+package familytree.io;
+
+import familytree.model.Gender;
+import familytree.service.BulkLoader;
+import familytree.service.FamilyTree;
+import familytree.service.ImportReport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams a GEDCOM 5.5 file into a FamilyTree through a BulkLoader. Only what the model holds is read:
+ * INDI (NAME, SEX, BIRT/DEAT DATE) and FAM (HUSB, WIFE, CHIL, MARR/DIV DATE). Years are taken from the
+ * last 3-4 digit number of a DATE value. One record is buffered at a time; FAM records that reference
+ * individuals defined later in the file are kept aside and resolved at the end.
+ */
+public final class GedcomImporter {
+    private GedcomImporter() {}
+
+    public static ImportReport importFile(FamilyTree tree, Path path) throws IOException {
+        Reader r = new Reader(tree.bulkLoader());
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                r.lineNo++;
+                r.line(line.strip());
+            }
+        }
+        r.flush();
+        for (Family fam : r.deferred) r.applyFamily(fam, true);
+        return r.loader.finish();
+    }
+
+    private static final class Family {
+        String xref, husb, wife;
+        final List<String> children = new ArrayList<>(4);
+        Integer marriageYear, divorceYear;
+        int lineNo;
+    }
+
+    private static final class Reader {
+        final BulkLoader loader;
+        final ImportReport report;
+        final Map<String, Integer> xrefs = new HashMap<>();
+        final List<Family> deferred = new ArrayList<>();
+        int lineNo;
+
+        // current level-0 record
+        String type, xref, name, sex, event;
+        Integer birthYear, deathYear;
+        int recordLine;
+        Family fam;
+
+        Reader(BulkLoader loader) {
+            this.loader = loader;
+            this.report = loader.report();
+        }
+
+        void line(String line) {
+            if (!line.isEmpty() && line.charAt(0) == '\uFEFF') line = line.substring(1);
+            if (line.isEmpty()) return;
+            int sp1 = line.indexOf(' ');
+            int level;
+            try {
+                level = Integer.parseInt(sp1 < 0 ? line : line.substring(0, sp1));
+            } catch (NumberFormatException ex) { level = -1; }
+            if (sp1 < 0 || level < 0) { report.problem("line " + lineNo + ": malformed"); return; }
+            String rest = line.substring(sp1 + 1);
+            String ref = null;
+            if (rest.startsWith("@")) {
+                int end = rest.indexOf("@ ", 1);
+                if (end > 0) { ref = rest.substring(0, end + 1); rest = rest.substring(end + 2); }
+            }
+            int sp2 = rest.indexOf(' ');
+            String tag = sp2 < 0 ? rest : rest.substring(0, sp2);
+            String value = sp2 < 0 ? "" : rest.substring(sp2 + 1).strip();
+
+            if (level == 0) {
+                flush();
+                type = tag;
+                xref = ref;
+                recordLine = lineNo;
+                if ("INDI".equals(tag) || "FAM".equals(tag)) report.countRecord();
+                if ("FAM".equals(tag)) { fam = new Family(); fam.xref = ref; fam.lineNo = lineNo; }
+                return;
+            }
+            if ("INDI".equals(type)) {
+                if (level == 1) {
+                    event = tag;
+                    if ("NAME".equals(tag) && name == null) name = personalName(value);
+                    else if ("SEX".equals(tag)) sex = value;
+                } else if (level == 2 && "DATE".equals(tag)) {
+                    if ("BIRT".equals(event)) birthYear = year(value);
+                    else if ("DEAT".equals(event)) deathYear = year(value);
+                }
+            } else if ("FAM".equals(type)) {
+                if (level == 1) {
+                    event = tag;
+                    switch (tag) {
+                        case "HUSB": fam.husb = value; break;
+                        case "WIFE": fam.wife = value; break;
+                        case "CHIL": fam.children.add(value); break;
+                        default: break;
+                    }
+                } else if (level == 2 && "DATE".equals(tag)) {
+                    if ("MARR".equals(event)) fam.marriageYear = year(value);
+                    else if ("DIV".equals(event)) fam.divorceYear = year(value);
+                }
+            }
+        }
+
+        void flush() {
+            try {
+                if ("INDI".equals(type)) {
+                    if (birthYear == null) throw new IllegalArgumentException("no birth year");
+                    int node = loader.addPerson(name == null ? "Unknown" : name, gender(sex), birthYear, deathYear);
+                    if (xref != null) xrefs.put(xref, node);
+                } else if ("FAM".equals(type)) {
+                    applyFamily(fam, false);
+                }
+            } catch (IllegalArgumentException ex) {
+                report.problem("line " + recordLine + " " + (xref == null ? type : xref) + ": " + ex.getMessage());
+            }
+            type = xref = name = sex = event = null;
+            birthYear = deathYear = null;
+            fam = null;
+        }
+
+        void applyFamily(Family f, boolean last) {
+            if (!last && !resolvable(f)) { deferred.add(f); return; }
+            try {
+                Integer husb = node(f.husb), wife = node(f.wife);
+                for (String c : f.children) {
+                    int child = node(c);
+                    if (husb != null) loader.link(husb, child);
+                    if (wife != null) loader.link(wife, child);
+                }
+                if (husb != null && wife != null && f.marriageYear != null)
+                    loader.marry(husb, wife, f.marriageYear, f.divorceYear);
+            } catch (IllegalArgumentException ex) {
+                report.problem("line " + f.lineNo + " " + f.xref + ": " + ex.getMessage());
+            }
+        }
+
+        boolean resolvable(Family f) {
+            if (f.husb != null && !xrefs.containsKey(f.husb)) return false;
+            if (f.wife != null && !xrefs.containsKey(f.wife)) return false;
+            for (String c : f.children) if (!xrefs.containsKey(c)) return false;
+            return true;
+        }
+
+        Integer node(String ref) {
+            if (ref == null) return null;
+            Integer n = xrefs.get(ref);
+            if (n == null) throw new IllegalArgumentException("unknown individual " + ref);
+            return n;
+        }
+    }
+
+    // "John /Smith/ Jr" -> "John Smith Jr": drop surname slashes and collapse whitespace.
+    private static String personalName(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '/' || Character.isWhitespace(c)) {
+                if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') sb.append(' ');
+            } else sb.append(c);
+        }
+        return sb.toString().strip();
+    }
+
+    private static Gender gender(String sex) {
+        if (sex == null || sex.isEmpty()) return Gender.OTHER;
+        switch (Character.toUpperCase(sex.charAt(0))) {
+            case 'M': return Gender.MALE;
+            case 'F': return Gender.FEMALE;
+            default: return Gender.OTHER;
+        }
+    }
+
+    // Last run of 3-4 digits in a GEDCOM date ("12 JAN 1850", "ABT 1850", "BET 1840 AND 1850").
+    private static Integer year(String date) {
+        Integer found = null;
+        for (int i = 0; i < date.length(); ) {
+            if (!Character.isDigit(date.charAt(i))) { i++; continue; }
+            int j = i;
+            while (j < date.length() && Character.isDigit(date.charAt(j))) j++;
+            if (j - i == 3 || j - i == 4) found = Integer.parseInt(date.substring(i, j));
+            i = j;
+        }
+        return found;
+    }
+}
@@ -7,7 +7,7 @@ public class Marriage {
     private final String spouseAId;
     private final String spouseBId;
     private final int marriageYear;
-    private Integer divorceYear;
+    private volatile Integer divorceYear;
 
     public Marriage(String a, String b, int marriageYear) {
         if (a == null || b == null) throw new IllegalArgumentException("spouse ids required");
@@ -22,7 +22,7 @@ public class Marriage {
     public int getMarriageYear() { return marriageYear; }
     public Integer getDivorceYear() { return divorceYear; }
 
-    public void setDivorceYear(int year) {
+    void setDivorceYear(int year) {
         if (year < marriageYear) throw new IllegalArgumentException("Divorce before marriage?");
         this.divorceYear = year;
     }
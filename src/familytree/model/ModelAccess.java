@@ -0,0 +1,33 @@
+package familytree.model;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The registry's handle on Person internals: attaching a person to its graph, restoring saved state
+ * and rewriting marriages behind the registry's indexes. Claimed once, by the service layer when it
+ * first loads; any later claim fails, so application code cannot get one.
+ */
+public final class ModelAccess {
+    private static final AtomicBoolean CLAIMED = new AtomicBoolean();
+
+    private ModelAccess() {}
+
+    public static ModelAccess claim() {
+        if (!CLAIMED.compareAndSet(false, true)) throw new IllegalStateException("Model access was already claimed");
+        return new ModelAccess();
+    }
+
+    public void attach(Person p, PersonLinks links, int node) { p.attach(links, node); }
+
+    /** Sets the death year of a not yet attached person as saved, even if it now precedes the birth year. */
+    public void restoreDeathYear(Person p, Integer deathYear) { p.restoreDeathYear(deathYear); }
+
+    /** Adds a marriage the registry has just indexed, or is restoring. */
+    public void addMarriage(Person p, Marriage m) { p.addMarriage(m); }
+
+    /** Ends a marriage; the registry moves its interval in the same step. */
+    public void setDivorceYear(Marriage m, int year) { m.setDivorceYear(year); }
+
+    /** Replaces {@code old} with {@code next} in the person's marriages, or drops it if {@code next} is null. */
+    public void replaceMarriage(Person p, Marriage old, Marriage next) { p.replaceMarriage(old, next); }
+}
@@ -9,10 +9,10 @@ public abstract class Person {
     private int birthYear;
     private Integer deathYear; // nullable
 
-    // relationships - encapsulated
-    private final Set<String> parentIds = new LinkedHashSet<>(2);
-    private final Set<String> childrenIds = new LinkedHashSet<>();
-    private final List<Marriage> marriages = new ArrayList<>();
+    // relationships - parent/child edges are owned by the registry's graph
+    private PersonLinks graph;
+    private int node = PersonLinks.NONE;
+    private volatile List<Marriage> marriages = List.of(); // copy-on-write: readers never see a list mid-update
 
     protected Person(String id, String fullName, Gender gender, int birthYear, Integer deathYear) {
         this.id = Objects.requireNonNull(id, "id cannot be null");
@@ -29,43 +29,65 @@ public abstract class Person {
     public int getBirthYear() { return birthYear; }
     public Integer getDeathYear() { return deathYear; }
 
-    // Encapsulated access to relationship ids
-    public Set<String> getParentIds() { return Collections.unmodifiableSet(parentIds); }
-    public Set<String> getChildrenIds() { return Collections.unmodifiableSet(childrenIds); }
-    public List<Marriage> getMarriages() { return Collections.unmodifiableList(marriages); }
+    // Encapsulated access to relationship ids (read-only views over the graph)
+    public Set<String> getParentIds() { return graph == null ? Set.of() : graph.parentIds(node); }
+    public Set<String> getChildrenIds() { return graph == null ? Set.of() : graph.childrenIds(node); }
+    public List<Marriage> getMarriages() { return marriages; }
+
+    /** Dense node id inside the owning registry, or PersonLinks.NONE if not registered. */
+    public int getNode() { return node; }
 
     // Controlled setters & validation
     public void setFullName(String fullName) {
         if (fullName == null || fullName.isBlank()) throw new IllegalArgumentException("Full name cannot be blank");
+        String old = this.fullName;
         this.fullName = fullName.strip();
+        if (graph != null) graph.nameChanged(this, old);
     }
 
     public void setBirthYear(int birthYear) {
         if (birthYear < 1000 || birthYear > 3000) throw new IllegalArgumentException("Birth year implausible");
+        int old = this.birthYear;
         this.birthYear = birthYear;
+        if (graph != null) graph.birthYearChanged(this, old);
     }
 
     public void setDeathYear(Integer deathYear) {
         if (deathYear != null && deathYear < birthYear) throw new IllegalArgumentException("Death year before birth");
+        Integer old = this.deathYear;
         this.deathYear = deathYear;
+        if (graph != null) graph.deathYearChanged(this, old);
     }
 
-    // Package-private relationship mutators (only registry/service should call)
-    public void addParentId(String parentId) {
-        if (parentId == null) throw new IllegalArgumentException("parentId null");
-        if (parentIds.size() >= 2 && !parentIds.contains(parentId))
-            throw new IllegalArgumentException("Person cannot have more than 2 parents");
-        parentIds.add(parentId);
+    // Relationship mutators (the registry reaches the package-private ones through ModelAccess)
+    void attach(PersonLinks graph, int node) {
+        if (this.graph != null) throw new IllegalStateException(id + " already registered");
+        this.graph = Objects.requireNonNull(graph);
+        this.node = node;
     }
-    public void removeParentId(String parentId) { parentIds.remove(parentId); }
 
-    public void addChildId(String childId) {
-        if (childId == null) throw new IllegalArgumentException("childId null");
-        childrenIds.add(childId);
+    /** Sets a saved death year without the birth check; a later birth-year edit may have moved the birth past it. */
+    void restoreDeathYear(Integer deathYear) {
+        if (graph != null) throw new IllegalStateException(id + " already registered");
+        this.deathYear = deathYear;
     }
-    public void removeChildId(String childId) { childrenIds.remove(childId); }
 
-    public void addMarriage(Marriage m) { marriages.add(m); }
+    void addMarriage(Marriage m) {
+        List<Marriage> next = new ArrayList<>(marriages.size() + 1);
+        next.addAll(marriages);
+        next.add(m);
+        marriages = List.copyOf(next);
+    }
+
+    /** Replaces {@code old} with {@code next}, in place, or drops it if {@code next} is null; used when merging people. */
+    void replaceMarriage(Marriage old, Marriage next) {
+        List<Marriage> out = new ArrayList<>(marriages.size());
+        for (Marriage m : marriages) {
+            if (m != old) out.add(m);
+            else if (next != null) out.add(next);
+        }
+        marriages = List.copyOf(out);
+    }
 
     // Computed
     public boolean isAlive() { return deathYear == null; }
@@ -77,8 +99,11 @@ public abstract class Person {
     // Marriage rules: default allow marriage; subclasses may override
     public boolean canMarry() { return true; }
 
+    // At most one marriage is active, and it is normally the latest; FamilyTree keeps an index as well.
     public Optional<Marriage> getActiveMarriage() {
-        return marriages.stream().filter(Marriage::isActive).findFirst();
+        List<Marriage> ms = marriages;
+        for (int i = ms.size() - 1; i >= 0; i--) if (ms.get(i).isActive()) return Optional.of(ms.get(i));
+        return Optional.empty();
     }
 
     public Optional<String> getActiveSpouseId() {
@@ -93,7 +118,7 @@ public abstract class Person {
                 birthYear,
                 (deathYear != null ? " d." + deathYear : ""),
                 getActiveSpouseId().orElse("none"),
-                childrenIds.size());
+                graph == null ? 0 : graph.childCount(node));
     }
 
     @Override public boolean equals(Object o) {
@@ -0,0 +1,20 @@
+package familytree.model;
+
+import java.util.Set;
+
+/**
+ * Where a registered Person reads its parent and child ids from and reports its own edits to.
+ * Implemented by the registry's graph; the model never depends on the service layer directly.
+ */
+public interface PersonLinks {
+    /** The node of a person that belongs to no registry. */
+    int NONE = -1;
+
+    Set<String> parentIds(int node);
+    Set<String> childrenIds(int node);
+    int childCount(int node);
+
+    void nameChanged(Person p, String old);
+    void birthYearChanged(Person p, int old);
+    void deathYearChanged(Person p, Integer old);
+}
@@ -0,0 +1,106 @@
+package familytree.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming JSON encoder straight to UTF-8 bytes: values are written as they are produced, numbers
+ * digit by digit and strings char by char, so a response never exists as one String. Commas are
+ * tracked per nesting level (up to 64 levels); the caller is trusted to nest correctly.
+ */
+final class JsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'}, TRUE = {'t', 'r', 'u', 'e'}, FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private final OutputStream out;
+    private final byte[] digits = new byte[20];
+    private long open;      // bit d: level d already has an element, so the next one needs a comma
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter(OutputStream out) { this.out = out; }
+
+    JsonWriter beginObject() throws IOException { return begin('{'); }
+    JsonWriter endObject() throws IOException { return end('}'); }
+    JsonWriter beginArray() throws IOException { return begin('['); }
+    JsonWriter endArray() throws IOException { return end(']'); }
+
+    JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String s) throws IOException {
+        separate();
+        if (s == null) out.write(NULL); else string(s);
+        return this;
+    }
+
+    JsonWriter value(long n) throws IOException {
+        separate();
+        if (n == Long.MIN_VALUE) { out.write(Long.toString(n).getBytes()); return this; }
+        if (n < 0) { out.write('-'); n = -n; }
+        int i = digits.length;
+        do { digits[--i] = (byte) ('0' + n % 10); n /= 10; } while (n > 0);
+        out.write(digits, i, digits.length - i);
+        return this;
+    }
+
+    JsonWriter value(Integer n) throws IOException {
+        if (n == null) return nullValue();
+        return value(n.longValue());
+    }
+
+    JsonWriter value(boolean b) throws IOException {
+        separate();
+        out.write(b ? TRUE : FALSE);
+        return this;
+    }
+
+    JsonWriter nullValue() throws IOException {
+        separate();
+        out.write(NULL);
+        return this;
+    }
+
+    private JsonWriter begin(char c) throws IOException {
+        separate();
+        out.write(c);
+        depth++;
+        open &= ~(1L << depth);
+        return this;
+    }
+
+    private JsonWriter end(char c) throws IOException {
+        out.write(c);
+        depth--;
+        return this;
+    }
+
+    // A comma before every element but the first of its level; none between a name and its value.
+    private void separate() throws IOException {
+        if (afterName) { afterName = false; return; }
+        if ((open & (1L << depth)) != 0) out.write(',');
+        else open |= 1L << depth;
+    }
+
+    private void string(String s) throws IOException {
+        out.write('"');
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') { out.write('\\'); out.write(c); }
+            else if (c < 0x20) { out.write('\\'); out.write('u'); out.write('0'); out.write('0'); out.write(HEX[c >> 4]); out.write(HEX[c & 15]); }
+            else if (c < 0x80) out.write(c);
+            else if (c < 0x800) { out.write(0xc0 | c >> 6); out.write(0x80 | c & 0x3f); }
+            else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out.write(0xf0 | cp >> 18); out.write(0x80 | cp >> 12 & 0x3f); out.write(0x80 | cp >> 6 & 0x3f); out.write(0x80 | cp & 0x3f);
+            } else if (Character.isSurrogate(c)) out.write('?');
+            else { out.write(0xe0 | c >> 12); out.write(0x80 | c >> 6 & 0x3f); out.write(0x80 | c & 0x3f); }
+        }
+        out.write('"');
+    }
+}
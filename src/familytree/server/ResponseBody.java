@@ -0,0 +1,72 @@
+package familytree.server;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Response output that decides the framing late: a body within {@code limit} bytes is sent on close
+ * with a Content-Length; a larger one switches to chunked transfer when the buffer first fills and
+ * streams from then on. Either way the connection stays usable for keep-alive. The buffer starts small
+ * and doubles up to the limit, since most bodies are a few hundred bytes.
+ */
+final class ResponseBody extends OutputStream {
+    private final HttpExchange exchange;
+    private final int status;
+    private final int limit;
+    private byte[] buf = new byte[512];
+    private int count;
+    private OutputStream body;   // set once headers are sent
+
+    ResponseBody(HttpExchange exchange, int status, String contentType, int limit) {
+        this.exchange = exchange;
+        this.status = status;
+        this.limit = limit;
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length) full(1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > buf.length - count) {
+            full(len);
+            if (len > buf.length - count) { body.write(b, off, len); return; }
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    // Grows the buffer while under the limit, else commits to chunked transfer and drains it.
+    private void full(int needed) throws IOException {
+        if (body == null && buf.length < limit) {
+            int size = buf.length;
+            while (size < limit && size - count < needed) size *= 2;
+            buf = Arrays.copyOf(buf, Math.min(size, limit));
+            if (buf.length - count >= needed) return;
+        }
+        if (body == null) {
+            exchange.sendResponseHeaders(status, 0);
+            body = exchange.getResponseBody();
+        }
+        body.write(buf, 0, count);
+        count = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, count == 0 ? -1 : count);
+            body = exchange.getResponseBody();
+        }
+        body.write(buf, 0, count);
+        count = 0;
+        body.close();
+    }
+}
@@ -0,0 +1,260 @@
+package familytree.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import familytree.model.Marriage;
+import familytree.model.Person;
+import familytree.service.ConcurrentFamilyTree;
+import familytree.service.Metrics;
+import familytree.service.Relationship;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Read-only HTTP/JSON front for a tree on the JDK's built-in server, one virtual thread per request.
+ * Connections are HTTP/1.1 keep-alive and pipelined requests on one are answered in order. Bodies are
+ * encoded straight into the response: small ones go out with a Content-Length, large traversals and
+ * renders stream chunked. Endpoints (all GET):
+ *   /people/{id}                                  person with parents, children and marriages
+ *   /people/{id}/children | siblings | spouse
+ *   /people/{id}/ancestors?generations=N          levels of people; likewise descendants
+ *   /people/{id}/ancestors/render?generations=N   the renderer's text; likewise descendants
+ *   /relation?a={id}&b={id}
+ *   /stats                                        the Metrics report, when the server has Metrics
+ * Unknown people are 404, bad parameters 400, with {"error": message}.
+ */
+public final class TreeServer implements Closeable {
+    private static final int BUFFER = 16 * 1024;
+
+    static {
+        // Small responses go out as headers then body; without this Nagle holds the body back for an ACK.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final ConcurrentFamilyTree tree;
+    private final Metrics metrics;
+    private final HttpServer http;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Starts serving {@code tree} on {@code address} (port 0 picks a free one); {@code metrics} may be null. */
+    public static TreeServer start(ConcurrentFamilyTree tree, InetSocketAddress address, Metrics metrics) throws IOException {
+        return new TreeServer(tree, address, metrics);
+    }
+
+    private TreeServer(ConcurrentFamilyTree tree, InetSocketAddress address, Metrics metrics) throws IOException {
+        this.tree = tree;
+        this.metrics = metrics;
+        this.http = HttpServer.create(address, 1024);
+        http.createContext("/", this::handle);
+        http.setExecutor(workers);
+        http.start();
+    }
+
+    public int port() { return http.getAddress().getPort(); }
+
+    /** Stops accepting, lets requests in flight finish for up to a second, then stops their threads. */
+    @Override
+    public void close() {
+        http.stop(1);
+        workers.shutdownNow();
+    }
+
+    private static final class NotFound extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotFound(String message) { super(message, null, false, false); }
+    }
+
+    private void handle(HttpExchange ex) {
+        long t0 = System.nanoTime();
+        String route = ex.getRequestMethod() + " ?";
+        Throwable failure = null;
+        try (ex) {
+            if (!ex.getRequestMethod().equals("GET")) {
+                ex.getResponseHeaders().set("Allow", "GET");
+                error(ex, 405, "Only GET is supported");
+                return;
+            }
+            String path = ex.getRequestURI().getRawPath(), query = ex.getRequestURI().getRawQuery();
+            String[] seg = path.split("/");   // leading "" for the root slash
+            try {
+                if (seg.length >= 3 && seg[1].equals("people")) {
+                    String id = decode(seg[2]);
+                    String what = seg.length > 3 ? seg[3] : "", render = seg.length > 4 ? seg[4] : null;
+                    route = "GET /people/{id}" + (what.isEmpty() ? "" : "/" + what) + (render == null ? "" : "/" + render);
+                    if (seg.length > 5 || (render != null && !render.equals("render"))) throw new NotFound("No such resource: " + path);
+                    switch (what) {
+                        case "": person(ex, id); break;
+                        case "children": person(id); people(ex, tree.childrenOf(id)); break;
+                        case "siblings": person(id); people(ex, tree.siblingsOf(id)); break;
+                        case "spouse": spouse(ex, id); break;
+                        case "ancestors": case "descendants": generations(ex, id, what.equals("ancestors"), intParam(query, "generations"), render != null); break;
+                        default: throw new NotFound("No such resource: " + path);
+                    }
+                } else if (path.equals("/relation")) {
+                    route = "GET /relation";
+                    relation(ex, param(query, "a"), param(query, "b"));
+                } else if (path.equals("/stats") && metrics != null) {
+                    route = "GET /stats";
+                    try (Writer w = new OutputStreamWriter(new ResponseBody(ex, 200, "text/plain; charset=utf-8", BUFFER), StandardCharsets.UTF_8)) {
+                        w.write(metrics.report(tree.tree()));
+                    }
+                } else {
+                    throw new NotFound("No such resource: " + path);
+                }
+            } catch (NotFound e) {
+                failure = e;
+                error(ex, 404, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                failure = e;
+                error(ex, 400, e.getMessage());
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;   // the client went away, or a bug: the exchange is closed either way
+        } finally {
+            if (metrics != null) metrics.command(route, System.nanoTime() - t0, 0, failure);
+        }
+    }
+
+    // ---- endpoints ----
+
+    private void person(HttpExchange ex, String id) throws IOException {
+        Person p = person(id);
+        try (ResponseBody body = json(ex, 200)) {
+            JsonWriter w = new JsonWriter(body);
+            w.beginObject();
+            fields(w, p);
+            w.name("parents").beginArray();
+            for (String parent : tree.parentIds(id)) w.value(parent);   // copied under the lock, unlike p's live views
+            w.endArray().name("children").beginArray();
+            for (String child : tree.childIds(id)) w.value(child);
+            w.endArray().name("marriages").beginArray();
+            for (Marriage m : List.copyOf(p.getMarriages())) {
+                w.beginObject().name("spouse").value(m.getOtherSpouseId(p.getId())).name("year").value(m.getMarriageYear())
+                        .name("divorced").value(m.getDivorceYear()).endObject();
+            }
+            w.endArray().endObject();
+        }
+    }
+
+    private void people(HttpExchange ex, List<Person> people) throws IOException {
+        try (ResponseBody body = json(ex, 200)) {
+            JsonWriter w = new JsonWriter(body);
+            w.beginArray();
+            for (Person p : people) summary(w, p);
+            w.endArray();
+        }
+    }
+
+    private void spouse(HttpExchange ex, String id) throws IOException {
+        person(id);
+        Optional<Person> spouse = tree.spouseOf(id);
+        try (ResponseBody body = json(ex, 200)) {
+            JsonWriter w = new JsonWriter(body);
+            if (spouse.isPresent()) summary(w, spouse.get()); else w.nullValue();
+        }
+    }
+
+    private void generations(HttpExchange ex, String id, boolean up, int generations, boolean render) throws IOException {
+        person(id);
+        if (render) {
+            try (Writer w = new OutputStreamWriter(new ResponseBody(ex, 200, "text/plain; charset=utf-8", BUFFER), StandardCharsets.UTF_8)) {
+                if (up) tree.renderAncestors(id, generations, w); else tree.renderDescendants(id, generations, w);
+            }
+            return;
+        }
+        List<List<Person>> levels = up ? tree.ancestorsOf(id, generations) : tree.descendantsOf(id, generations);
+        try (ResponseBody body = json(ex, 200)) {
+            JsonWriter w = new JsonWriter(body);
+            w.beginArray();
+            for (List<Person> level : levels) {
+                w.beginArray();
+                for (Person p : level) summary(w, p);
+                w.endArray();
+            }
+            w.endArray();
+        }
+    }
+
+    private void relation(HttpExchange ex, String a, String b) throws IOException {
+        person(a);
+        person(b);
+        Relationship r = tree.relation(a, b);
+        try (ResponseBody body = json(ex, 200)) {
+            JsonWriter w = new JsonWriter(body);
+            w.beginObject().name("a").value(a).name("b").value(b).name("relationship").value(r.getName())
+                    .name("description").value(r.describe()).name("commonAncestors").beginArray();
+            for (Relationship.CommonAncestor c : r.getLowestCommonAncestors()) {
+                w.beginObject().name("id").value(c.getPerson().getId()).name("fromA").value(c.getFromA())
+                        .name("fromB").value(c.getFromB()).endObject();
+            }
+            w.endArray().endObject();
+        }
+    }
+
+    // ---- helpers ----
+
+    private Person person(String id) {
+        try {
+            return tree.getPerson(id);
+        } catch (IllegalArgumentException e) {
+            throw new NotFound(e.getMessage());
+        }
+    }
+
+    private static void summary(JsonWriter w, Person p) throws IOException {
+        w.beginObject();
+        fields(w, p);
+        w.endObject();
+    }
+
+    private static void fields(JsonWriter w, Person p) throws IOException {
+        w.name("id").value(p.getId()).name("name").value(p.getFullName()).name("gender").value(p.getGender().name())
+                .name("birthYear").value(p.getBirthYear()).name("deathYear").value(p.getDeathYear());
+    }
+
+    private static ResponseBody json(HttpExchange ex, int status) {
+        return new ResponseBody(ex, status, "application/json", BUFFER);
+    }
+
+    private static void error(HttpExchange ex, int status, String message) throws IOException {
+        try (ResponseBody body = json(ex, status)) {
+            new JsonWriter(body).beginObject().name("error").value(message).endObject();
+        }
+    }
+
+    private static String param(String query, String name) {
+        if (query != null) {
+            for (int from = 0; from < query.length(); ) {
+                int amp = query.indexOf('&', from), end = amp < 0 ? query.length() : amp;
+                if (query.startsWith(name, from) && end > from + name.length() && query.charAt(from + name.length()) == '=')
+                    return decode(query.substring(from + name.length() + 1, end));
+                from = end + 1;
+            }
+        }
+        throw new IllegalArgumentException("Missing parameter: " + name);
+    }
+
+    private static int intParam(String query, String name) {
+        String value = param(query, name);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer: " + value);
+        }
+    }
+
+    private static String decode(String s) {
+        return s.indexOf('%') < 0 && s.indexOf('+') < 0 ? s : URLDecoder.decode(s, StandardCharsets.UTF_8);
+    }
+}
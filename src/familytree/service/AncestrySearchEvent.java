@@ -0,0 +1,23 @@
+package familytree.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An ancestor check the reachability filters could not answer, so the bidirectional search ran:
+ * a descendant query, or the cycle check of a new link.
+ */
+@Name("familytree.AncestrySearch")
+@Label("Ancestry Search")
+@Category("Family Tree")
+@Description("Bidirectional search behind isAncestor/isDescendant and the link cycle check")
+final class AncestrySearchEvent extends Event {
+    @Label("Nodes Expanded")
+    int expanded;
+
+    @Label("Found")
+    boolean found;
+}
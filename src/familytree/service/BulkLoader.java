@@ -0,0 +1,204 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+
+import java.util.Arrays;
+
+/**
+ * Batch entry point for importers. People are registered immediately; parent/child links and
+ * marriages are buffered as int node pairs and validated together in finish(): one pass counts
+ * parents per child (reporting every 3+-parent violation) and one topological pass over the
+ * existing graph plus the new links reports every cycle. Links are applied all-or-nothing and
+ * the reachability index is rebuilt once instead of being maintained per link.
+ */
+public final class BulkLoader {
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+
+    private final FamilyTree tree;
+    private final PersonGraph graph;
+    private final ImportReport report = new ImportReport();
+    private final IntList linkParents = new IntList();
+    private final IntList linkChildren = new IntList();
+    private final IntList marriages = new IntList();   // a, b, year, divorceYear|NO_YEAR
+    private final long startNanos = System.nanoTime();
+    private int people;
+    private boolean finished;
+
+    BulkLoader(FamilyTree tree, PersonGraph graph) {
+        this.tree = tree;
+        this.graph = graph;
+    }
+
+    public ImportReport report() { return report; }
+    public PersonGraph graph() { return graph; }
+
+    public int addPerson(String fullName, Gender gender, int birthYear, Integer deathYear) {
+        checkOpen();
+        Person p = tree.addPerson(fullName, gender, birthYear, deathYear);
+        people++;
+        return p.getNode();
+    }
+
+    public void link(int parent, int child) {
+        checkOpen();
+        linkParents.add(parent);
+        linkChildren.add(child);
+    }
+
+    public void marry(int a, int b, int year, Integer divorceYear) {
+        checkOpen();
+        marriages.add(a);
+        marriages.add(b);
+        marriages.add(year);
+        marriages.add(divorceYear == null ? NO_YEAR : divorceYear);
+    }
+
+    public ImportReport finish() {
+        checkOpen();
+        finished = true;
+        boolean apply = validateLinks();
+        int applied = 0;
+        if (apply) {
+            TreeListener[] listeners = graph.listeners();
+            for (int i = 0; i < linkParents.size(); i++) {
+                int p = linkParents.get(i), c = linkChildren.get(i);
+                if (!graph.addEdge(p, c)) continue;
+                applied++;
+                for (TreeListener l : listeners) l.linked(p, c);
+            }
+            tree.rebuildIndexes();
+        }
+        int married = 0;
+        for (int i = 0; i < marriages.size(); i += 4) {
+            String a = graph.idOf(marriages.get(i)), b = graph.idOf(marriages.get(i + 1));
+            try {
+                tree.marry(a, b, marriages.get(i + 2));
+                if (marriages.get(i + 3) != NO_YEAR) tree.divorce(a, b, marriages.get(i + 3));
+                married++;
+            } catch (IllegalArgumentException ex) {
+                report.problem("Marriage " + a + " - " + b + ": " + ex.getMessage());
+            }
+        }
+        report.finished(people, applied, married, apply, System.nanoTime() - startNanos);
+        return report;
+    }
+
+    // Validation over the existing graph plus buffered links, all in primitive arrays.
+    private boolean validateLinks() {
+        int before = report.getProblems().size();
+        int n = graph.size();
+        int e = linkParents.size();
+        long[] keys = new long[e];                  // child << 32 | parent, deduplicated below
+        int k = 0;
+        for (int i = 0; i < e; i++) {
+            int p = linkParents.get(i), c = linkChildren.get(i);
+            if (p == c) { report.problem(graph.idOf(c) + " cannot be own parent"); continue; }
+            if (graph.hasParent(c, p)) continue;
+            keys[k++] = ((long) c << 32) | p;
+        }
+        Arrays.sort(keys, 0, k);
+        int unique = 0;
+        for (int i = 0; i < k; i++) if (unique == 0 || keys[i] != keys[unique - 1]) keys[unique++] = keys[i];
+
+        int[] indegree = new int[n];
+        for (int v = 0; v < n; v++) indegree[v] = graph.parentCount(v);
+        for (int i = 0; i < unique; ) {
+            int c = (int) (keys[i] >>> 32);
+            int j = i;
+            while (j < unique && (int) (keys[j] >>> 32) == c) j++;
+            indegree[c] += j - i;
+            if (indegree[c] > 2) {
+                StringBuilder sb = new StringBuilder(graph.idOf(c)).append(" would have ").append(indegree[c]).append(" parents:");
+                for (int s = 0; s < 2; s++) if (graph.parent(c, s) != PersonGraph.NONE) sb.append(' ').append(graph.idOf(graph.parent(c, s)));
+                for (int x = i; x < j; x++) sb.append(' ').append(graph.idOf((int) keys[x]));
+                report.problem(sb.toString());
+            }
+            i = j;
+        }
+
+        // CSR of new links by parent, so the union graph can be walked without boxing.
+        int[] start = new int[n + 1];
+        for (int i = 0; i < unique; i++) start[(int) keys[i] + 1]++;
+        for (int v = 0; v < n; v++) start[v + 1] += start[v];
+        int[] adj = new int[unique];
+        int[] fill = Arrays.copyOf(start, n);
+        for (int i = 0; i < unique; i++) adj[fill[(int) keys[i]]++] = (int) (keys[i] >>> 32);
+
+        // Kahn: whatever is never released is on or downstream of a cycle.
+        int[] pending = indegree;
+        IntList queue = new IntList(Math.max(1, n));
+        for (int v = 0; v < n; v++) if (pending[v] == 0) queue.add(v);
+        for (int head = 0; head < queue.size(); head++) {
+            int v = queue.get(head);
+            int deg = degree(v, start);
+            for (int x = 0; x < deg; x++) {
+                int c = childAt(v, x, start, adj);
+                if (--pending[c] == 0) queue.add(c);
+            }
+        }
+        if (queue.size() < n) reportCycles(n, pending, start, adj);
+        return report.getProblems().size() == before;
+    }
+
+    /** Tarjan SCC (iterative) over unreleased nodes; every non-trivial component is one cycle report. */
+    private void reportCycles(int n, int[] pending, int[] start, int[] adj) {
+        int[] index = new int[n], low = new int[n], iter = new int[n];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[n];
+        IntList stack = new IntList(), call = new IntList();
+        int counter = 0;
+        for (int root = 0; root < n; root++) {
+            if (pending[root] == 0 || index[root] != -1) continue;
+            call.add(root);
+            index[root] = low[root] = counter++;
+            stack.add(root);
+            onStack[root] = true;
+            while (!call.isEmpty()) {
+                int v = call.get(call.size() - 1);
+                if (iter[v] < degree(v, start)) {
+                    int c = childAt(v, iter[v]++, start, adj);
+                    if (pending[c] == 0) continue;
+                    if (index[c] == -1) {
+                        index[c] = low[c] = counter++;
+                        stack.add(c);
+                        onStack[c] = true;
+                        call.add(c);
+                    } else if (onStack[c]) {
+                        low[v] = Math.min(low[v], index[c]);
+                    }
+                    continue;
+                }
+                call.pop();
+                if (!call.isEmpty()) {
+                    int parent = call.get(call.size() - 1);
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] != index[v]) continue;
+                IntList members = new IntList();
+                int m;
+                do { m = stack.pop(); onStack[m] = false; members.add(m); } while (m != v);
+                if (members.size() > 1) report.problem("Cycle among " + describe(members));
+            }
+        }
+    }
+
+    private int degree(int v, int[] start) { return graph.childCount(v) + start[v + 1] - start[v]; }
+
+    private int childAt(int v, int x, int[] start, int[] adj) {
+        int own = graph.childCount(v);
+        return x < own ? graph.child(v, x) : adj[start[v] + x - own];
+    }
+
+    private String describe(IntList nodes) {
+        StringBuilder sb = new StringBuilder();
+        int shown = Math.min(nodes.size(), 10);
+        for (int i = shown - 1; i >= 0; i--) sb.append(graph.idOf(nodes.get(i))).append(i > 0 ? ", " : "");
+        if (nodes.size() > shown) sb.append(", ... (").append(nodes.size()).append(" people)");
+        return sb.toString();
+    }
+
+    private void checkOpen() {
+        if (finished) throw new IllegalStateException("Bulk load already finished");
+    }
+}
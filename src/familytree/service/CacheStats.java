@@ -0,0 +1,37 @@
+package familytree.service;
+
+/** Counters of the traversal/render cache at the time of the call. */
+public final class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int entries;
+
+    CacheStats(long hits, long misses, long evictions, long invalidations, int entries) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.entries = entries;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    /** Entries dropped to stay within the size bounds. */
+    public long getEvictions() { return evictions; }
+    /** Entries found stale on lookup because a person they cover changed. */
+    public long getInvalidations() { return invalidations; }
+    public int getEntries() { return entries; }
+
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries, %d hits, %d misses (%.1f%% hit rate), %d evictions, %d invalidations",
+                entries, hits, misses, 100 * hitRate(), evictions, invalidations);
+    }
+}
@@ -0,0 +1,267 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Birth/death timeline counts, kept current as a TreeListener. Everyone sits in a 2D Fenwick tree
+ * indexed by (birth year, death year) over a window of years, with one extra death column for the
+ * living, so "born in [b1, b2] and still alive in Y" is a rectangle sum in O(log^2 window). Alive
+ * counts and each age bucket are one such sum. The window widens (and the tree is rebuilt in
+ * O(window^2)) when a year falls outside it, up to MAX_SPAN years, which covers every valid birth year;
+ * a death after the window is counted in its last year and also listed in {@code late} for queries
+ * beyond it. Living descendants of a person come from the descendant cone's birth and death years,
+ * sorted once and then answered for any year by binary search. The last CONES cones are cached; a
+ * relink drops those rooted at the parent or its ancestors and a year change those rooted at the
+ * person's ancestors, the only cones either can alter, so a miss walks one whole cone but unrelated
+ * edits never cause one. A person counts as alive in every year from birth to death inclusive; records
+ * merged away are not counted at all.
+ */
+final class CensusIndex implements TreeListener {
+    private static final int MAX_SPAN = 2048;
+    private static final int ALIVE = Integer.MAX_VALUE;
+    private static final int CONES = 64;
+
+    private final PersonGraph graph;
+    private final ReachabilityIndex reachability;
+    private int[] birth = new int[16], death = new int[16];   // per node; death ALIVE while living
+    private int size;
+    private int lo, cap;     // window [lo, lo + cap); death column cap holds the living
+    private int[] tree;      // (cap + 1) x (cap + 2), 1-based
+    private final IntList late = new IntList();
+    private final BitSet removed = new BitSet();   // merged away: out of the tree, the cones and late
+    private final LinkedHashMap<Integer, Cone> cones = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Descendants' years, sorted; the dead ones only in {@code deaths}. */
+    private static final class Cone {
+        final int[] births, deaths;
+        Cone(int[] births, int[] deaths) { this.births = births; this.deaths = deaths; }
+    }
+
+    /** Counts everyone already registered; afterwards listener events keep it current. */
+    CensusIndex(PersonGraph graph, ReachabilityIndex reachability) {
+        this.graph = graph;
+        this.reachability = reachability;
+        for (int v = 0; v < graph.size(); v++) {
+            record(graph.person(v));
+            if (graph.isRemoved(v)) removed.set(v);
+        }
+        rebuild();
+    }
+
+    // ---- maintenance ----
+
+    @Override
+    public synchronized void personAdded(Person p) {
+        record(p);
+        place(p.getNode());
+    }
+
+    @Override
+    public synchronized void birthYearChanged(Person p, int oldYear) {
+        int v = p.getNode();
+        if (removed.get(v)) return;
+        remove(v);
+        birth[v] = p.getBirthYear();
+        place(v);
+        forget(v, false);
+    }
+
+    @Override
+    public synchronized void deathYearChanged(Person p, Integer oldYear) {
+        int v = p.getNode();
+        if (removed.get(v)) return;
+        remove(v);
+        death[v] = p.getDeathYear() == null ? ALIVE : p.getDeathYear();
+        place(v);
+        forget(v, false);
+    }
+
+    @Override
+    public synchronized void removed(Person p) {
+        int v = p.getNode();
+        if (removed.get(v)) return;
+        remove(v);
+        removed.set(v);
+        forget(v, true);
+    }
+
+    // The parent's ancestors are the same before and after the edge changes, so this holds for both.
+    @Override public synchronized void linked(int parent, int child) { forget(parent, true); }
+    @Override public synchronized void unlinked(int parent, int child) { forget(parent, true); }
+
+    /** After a bulk load, which reports links before the reachability index has caught up. */
+    synchronized void linksRebuilt() { cones.clear(); }
+
+    // Drops the cached cones rooted at ancestors of v, and at v itself if {@code own}.
+    private void forget(int v, boolean own) {
+        if (!cones.isEmpty()) cones.keySet().removeIf(u -> u == v ? own : reachability.isAncestor(u, v));
+    }
+
+    private void record(Person p) {
+        int v = p.getNode();
+        if (v >= birth.length) {
+            int c = Math.max(v + 1, birth.length * 2);
+            birth = Arrays.copyOf(birth, c);
+            death = Arrays.copyOf(death, c);
+        }
+        birth[v] = p.getBirthYear();
+        death[v] = p.getDeathYear() == null ? ALIVE : p.getDeathYear();
+        size = Math.max(size, v + 1);
+    }
+
+    private void place(int v) {
+        if (!counted(v)) return;
+        boolean deathOutside = death[v] != ALIVE && death[v] >= lo + cap && cap < MAX_SPAN;
+        if (birth[v] < lo || birth[v] >= lo + cap || deathOutside) { rebuild(); return; }
+        add(v, 1);
+        if (isLate(v)) late.add(v);
+    }
+
+    private void remove(int v) {
+        if (!counted(v)) return;
+        add(v, -1);
+        if (!isLate(v)) return;
+        IntList kept = new IntList(Math.max(1, late.size() - 1));
+        for (int i = 0; i < late.size(); i++) if (late.get(i) != v) kept.add(late.get(i));
+        late.clear();
+        for (int i = 0; i < kept.size(); i++) late.add(kept.get(i));
+    }
+
+    private boolean isLate(int v) { return death[v] != ALIVE && death[v] >= lo + cap; }
+
+    // Someone born after their recorded death was never alive, as cone() has it; they stay out of the tree.
+    private boolean counted(int v) { return death[v] == ALIVE || death[v] >= birth[v]; }
+
+    // Picks a window with room to spare around everyone's years and refills the tree in O(window^2).
+    private void rebuild() {
+        int minB = Integer.MAX_VALUE, maxB = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int v = removed.nextClearBit(0); v < size; v = removed.nextClearBit(v + 1)) {
+            minB = Math.min(minB, birth[v]);
+            maxB = Math.max(maxB, birth[v]);
+            maxY = Math.max(maxY, death[v] == ALIVE ? birth[v] : Math.max(birth[v], death[v]));
+        }
+        if (minB > maxB) { minB = maxB = maxY = PersonFactory.CURRENT_YEAR; }
+        int span = maxY - minB + 1;
+        cap = Math.min(MAX_SPAN, Integer.highestOneBit(span + 63) << 1);   // at least 64 years to spare
+        lo = minB - Math.max(0, (cap - span) / 2);
+        if (maxB >= lo + cap) lo = maxB - cap + 1;
+        int cols = cap + 2;
+        tree = new int[(cap + 1) * cols];
+        late.clear();
+        for (int v = removed.nextClearBit(0); v < size; v = removed.nextClearBit(v + 1)) {
+            if (!counted(v)) continue;
+            tree[(birth[v] - lo + 1) * cols + column(death[v]) + 1]++;
+            if (isLate(v)) late.add(v);
+        }
+        // Raw counts to Fenwick form, one dimension at a time.
+        for (int i = 1; i <= cap; i++)
+            for (int j = 1; j <= cap + 1; j++) { int k = j + (j & -j); if (k <= cap + 1) tree[i * cols + k] += tree[i * cols + j]; }
+        for (int j = 1; j <= cap + 1; j++)
+            for (int i = 1; i <= cap; i++) { int k = i + (i & -i); if (k <= cap) tree[k * cols + j] += tree[i * cols + j]; }
+    }
+
+    private int column(int deathYear) { return deathYear == ALIVE ? cap : Math.min(deathYear - lo, cap - 1); }
+
+    private void add(int v, int delta) {
+        int cols = cap + 2;
+        for (int i = birth[v] - lo + 1; i <= cap; i += i & -i)
+            for (int j = column(death[v]) + 1; j <= cap + 1; j += j & -j) tree[i * cols + j] += delta;
+    }
+
+    // People with birth index <= b and death column <= d (0-based, inclusive); 0 when either is negative.
+    private int prefix(int b, int d) {
+        int cols = cap + 2, sum = 0;
+        for (int i = Math.min(b, cap - 1) + 1; i > 0; i -= i & -i)
+            for (int j = Math.min(d, cap) + 1; j > 0; j -= j & -j) sum += tree[i * cols + j];
+        return sum;
+    }
+
+    // ---- queries ----
+
+    synchronized int aliveIn(int year) { return bornAliveIn(Integer.MIN_VALUE, year, year); }
+
+    /** Counts of people alive in {@code year} by age: index k holds ages [k * width, (k + 1) * width). */
+    synchronized int[] ageHistogram(int year, int width) {
+        if (width < 1) throw new IllegalArgumentException("bucket width >= 1 required");
+        long oldest = Math.max(0L, (long) year - lo);
+        if (oldest / width >= 1 << 20) throw new IllegalArgumentException("Year out of range: " + year);
+        int[] out = new int[(int) (oldest / width) + 1];
+        int used = 0;
+        for (int k = 0; k < out.length; k++) {
+            long first = (long) year - (long) (k + 1) * width + 1, last = (long) year - (long) k * width;
+            out[k] = bornAliveIn((int) Math.max(Integer.MIN_VALUE, first), (int) last, year);
+            if (out[k] > 0) used = k + 1;
+        }
+        return Arrays.copyOf(out, used);
+    }
+
+    // Born in [from, to] and alive in `year`.
+    private int bornAliveIn(int from, int to, int year) {
+        to = Math.min(to, year);
+        if (from > to || to < lo) return 0;
+        int b1 = (int) Math.max(0, (long) from - lo), b2 = (int) Math.min(cap - 1, (long) to - lo);
+        if (b1 > b2) return 0;
+        int d = year - lo < cap ? year - lo : cap;   // deaths in the window before `year` are excluded
+        int count = prefix(b2, cap) - prefix(b1 - 1, cap) - prefix(b2, d - 1) + prefix(b1 - 1, d - 1);
+        if (d == cap) {   // beyond the window: late deaths in or after `year` are alive too
+            for (int i = 0; i < late.size(); i++) {
+                int v = late.get(i);
+                if (death[v] >= year && birth[v] >= from && birth[v] <= to) count++;
+            }
+        }
+        return count;
+    }
+
+    /** Descendants of {@code node} (not counting them) alive in {@code year}; O(cone) when not cached, else O(log cone). */
+    synchronized int livingDescendants(int node, int year) {
+        Cone c = cones.get(node);
+        if (c == null) c = cone(node);
+        return upTo(c.births, year) - upTo(c.deaths, year - 1);
+    }
+
+    private Cone cone(int node) {
+        BitSet seen = new BitSet(size);
+        IntList queue = new IntList(), dead = new IntList();
+        queue.add(node);
+        seen.set(node);
+        for (int h = 0; h < queue.size(); h++) {
+            int v = queue.get(h);
+            for (int i = 0; i < graph.childCount(v); i++) {
+                int c = graph.child(v, i);
+                if (!seen.get(c)) { seen.set(c); queue.add(c); }
+            }
+        }
+        IntList born = new IntList(queue.size());
+        for (int h = 1; h < queue.size(); h++) {
+            int v = queue.get(h);
+            if (death[v] < birth[v] || removed.get(v)) continue;   // born after their death, or merged away
+            born.add(birth[v]);
+            if (death[v] != ALIVE) dead.add(death[v]);
+        }
+        int[] births = born.toArray();
+        Arrays.sort(births);
+        int[] deaths = dead.toArray();
+        Arrays.sort(deaths);
+        Cone c = new Cone(births, deaths);
+        cones.put(node, c);
+        Iterator<Map.Entry<Integer, Cone>> eldest = cones.entrySet().iterator();
+        while (cones.size() > CONES) { eldest.next(); eldest.remove(); }
+        return c;
+    }
+
+    // Number of sorted values <= x.
+    private static int upTo(int[] sorted, int x) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= x) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
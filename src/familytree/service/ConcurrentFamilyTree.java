@@ -0,0 +1,199 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Person;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe front for a FamilyTree. Point reads (getPerson, childrenOf, siblingsOf, spouseOf) run
+ * optimistically under a StampedLock and retry under the read lock only if a writer intervened;
+ * traversals, renders and isAncestor, whose search must not see a link half applied, hold the read lock. Adding people and linking take the write lock
+ * briefly: acyclicity is a property of the whole graph, so links need one global order, and the
+ * reachability index keeps each one O(1) in the common case. Marriages and attribute updates touch
+ * only the people involved, so they share the read lock and serialize on per-person lock stripes.
+ * Listeners may be called from several threads at once in this mode.
+ */
+public final class ConcurrentFamilyTree {
+    private static final int STRIPES = 64;
+
+    private final FamilyTree tree;
+    private final PersonGraph graph;
+    private final StampedLock lock = new StampedLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final PathFinder paths;
+    private final DuplicateFinder duplicates;
+
+    public ConcurrentFamilyTree(FamilyTree tree) {
+        this.tree = tree;
+        this.graph = tree.graph();
+        this.paths = PathFinder.of(tree);
+        this.duplicates = DuplicateFinder.of(tree);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+    }
+
+    /** The wrapped tree; using it directly bypasses the locking. */
+    public FamilyTree tree() { return tree; }
+
+    // ---- reads ----
+
+    public Person getPerson(String id) { return optimistic(() -> tree.getPerson(id)); }
+    public List<Person> childrenOf(String id) { return optimistic(() -> tree.childrenOf(id)); }
+    public List<Person> siblingsOf(String id) { return optimistic(() -> tree.siblingsOf(id)); }
+    /** Copies, unlike Person.getParentIds(), so they stay valid while others relink. */
+    public Set<String> parentIds(String id) { return optimistic(() -> new LinkedHashSet<>(tree.getPerson(id).getParentIds())); }
+    public Set<String> childIds(String id) { return optimistic(() -> new LinkedHashSet<>(tree.getPerson(id).getChildrenIds())); }
+    public Optional<Person> spouseOf(String id) { return optimistic(() -> tree.spouseOf(id)); }
+    public boolean isAncestor(String ancestorId, String descendantId) {
+        return shared(() -> tree.isAncestor(ancestorId, descendantId));
+    }
+
+    public Optional<Person> spouseOf(String id, int year) { return shared(() -> tree.spouseOf(id, year)); }
+    public List<Marriage> marriagesBetween(int fromYear, int toYear) { return shared(() -> tree.marriagesBetween(fromYear, toYear)); }
+    public int[] marriagesPerDecade(int fromYear, int toYear) { return shared(() -> tree.marriagesPerDecade(fromYear, toYear)); }
+
+    public int aliveIn(int year) { return shared(() -> tree.aliveIn(year)); }
+    public int[] ageHistogram(int year, int bucketYears) { return shared(() -> tree.ageHistogram(year, bucketYears)); }
+    public int livingDescendants(String id, int year) { return shared(() -> tree.livingDescendants(id, year)); }
+    public GroupStats lifespanByGeneration() { return shared(tree::lifespanByGeneration); }
+    public GroupStats genderByDecade(int fromYear, int toYear, Gender gender) { return shared(() -> tree.genderByDecade(fromYear, toYear, gender)); }
+    public GroupStats ageAtFirstMarriageByDecade() { return shared(tree::ageAtFirstMarriageByDecade); }
+
+    public Lineage lineage(String id) { return shared(() -> tree.lineage(id)); }
+    public List<Lineage> topLineages(Lineage.Measure measure, int n) { return shared(() -> tree.topLineages(measure, n)); }
+
+    public Optional<String> mergedInto(String id) { return shared(() -> tree.mergedInto(id)); }
+    public List<Duplicate> duplicates(double minScore, int limit) { return shared(() -> duplicates.find(minScore, limit)); }
+
+    public Relationship relation(String aId, String bId) { return shared(() -> tree.relation(aId, bId)); }
+
+    public Optional<FamilyPath> shortestPath(String aId, String bId, Set<PathFinder.Link> links, int maxHops) {
+        return shared(() -> paths.shortestPath(aId, bId, links, maxHops));
+    }
+
+    /** The whole batch runs under one read lock, spread over the common pool. */
+    public List<Optional<FamilyPath>> shortestPaths(List<String> from, List<String> to, Set<PathFinder.Link> links, int maxHops) {
+        return shared(() -> paths.shortestPaths(from, to, links, maxHops));
+    }
+
+    public int[] degrees(List<String> from, List<String> to, Set<PathFinder.Link> links, int maxHops) {
+        return shared(() -> paths.degrees(from, to, links, maxHops));
+    }
+
+    public SearchPage search(PersonQuery query) { return shared(() -> tree.search(query)); }
+
+    public int size() { return optimistic(graph::size); }
+
+    /** Copy of everyone registered at the time of the call. */
+    public List<Person> allPeople() { return shared(() -> new ArrayList<>(tree.allPeople())); }
+
+    public List<List<Person>> ancestorsOf(String id, int generations) { return shared(() -> tree.ancestorsOf(id, generations)); }
+    public List<List<Person>> descendantsOf(String id, int generations) { return shared(() -> tree.descendantsOf(id, generations)); }
+    public String renderAncestors(String id, int generations) { return shared(() -> tree.renderAncestors(id, generations)); }
+    public String renderDescendants(String id, int generations) { return shared(() -> tree.renderDescendants(id, generations)); }
+
+    /** Renders into a buffer under the read lock and writes it to {@code out} after, so a slow reader never holds up writers. */
+    public void renderAncestors(String id, int generations, Appendable out) throws IOException {
+        buffered(buf -> tree.renderAncestors(id, generations, buf), out);
+    }
+
+    public void renderDescendants(String id, int generations, Appendable out) throws IOException {
+        buffered(buf -> tree.renderDescendants(id, generations, buf), out);
+    }
+
+    // ---- structural writes ----
+
+    public Person addPerson(String fullName, Gender gender, int birthYear, Integer deathYear) {
+        return exclusive(() -> tree.addPerson(fullName, gender, birthYear, deathYear));
+    }
+
+    public void linkParentChild(String parentId, String childId) {
+        exclusive(() -> { tree.linkParentChild(parentId, childId); return null; });
+    }
+
+    public void unlinkParentChild(String parentId, String childId) {
+        exclusive(() -> { tree.unlinkParentChild(parentId, childId); return null; });
+    }
+
+    public void merge(String keepId, String dropId) {
+        exclusive(() -> { tree.merge(keepId, dropId); return null; });
+    }
+
+    // ---- per-person writes ----
+
+    public void marry(String aId, String bId, int year) {
+        striped(aId, bId, () -> tree.marry(aId, bId, year));
+    }
+
+    public void divorce(String aId, String bId, int year) {
+        striped(aId, bId, () -> tree.divorce(aId, bId, year));
+    }
+
+    public void setFullName(String id, String fullName) { striped(id, id, () -> tree.getPerson(id).setFullName(fullName)); }
+    public void setBirthYear(String id, int year) { striped(id, id, () -> tree.getPerson(id).setBirthYear(year)); }
+    public void setDeathYear(String id, Integer year) { striped(id, id, () -> tree.getPerson(id).setDeathYear(year)); }
+
+    // ---- locking ----
+
+    // A read racing a writer may see torn state and fail or return garbage; validate() catches both.
+    private <T> T optimistic(Supplier<T> read) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = read.get();
+                if (lock.validate(stamp)) return result;
+            } catch (RuntimeException ex) {
+                if (lock.validate(stamp)) throw ex;
+            }
+        }
+        return shared(read);
+    }
+
+    private <T> T shared(Supplier<T> read) {
+        long stamp = lock.readLock();
+        try { return read.get(); } finally { lock.unlockRead(stamp); }
+    }
+
+    private interface Render { void to(StringBuilder buf) throws IOException; }
+
+    private void buffered(Render render, Appendable out) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        long stamp = lock.readLock();
+        try { render.to(buf); } finally { lock.unlockRead(stamp); }
+        out.append(buf);
+    }
+
+    private <T> T exclusive(Supplier<T> write) {
+        long stamp = lock.writeLock();
+        try { return write.get(); } finally { lock.unlockWrite(stamp); }
+    }
+
+    // Stripes are taken in index order, so two writers never wait on each other in a cycle.
+    private void striped(String aId, String bId, Runnable write) {
+        long stamp = lock.readLock();
+        try {
+            int a = stripe(graph.require(aId)), b = stripe(graph.require(bId));
+            ReentrantLock first = stripes[Math.min(a, b)], second = stripes[Math.max(a, b)];
+            first.lock();
+            try {
+                if (second != first) second.lock();
+                try { write.run(); } finally { if (second != first) second.unlock(); }
+            } finally {
+                first.unlock();
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int stripe(int node) { return (PersonGraph.mix(node) & 0x7fffffff) % STRIPES; }
+}
@@ -0,0 +1,27 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+/** Two records that probably describe the same person, as found by DuplicateFinder. */
+public final class Duplicate {
+    private final Person a, b;
+    private final double score;
+
+    Duplicate(Person a, Person b, double score) {
+        this.a = a;
+        this.b = b;
+        this.score = score;
+    }
+
+    /** The record registered first. */
+    public Person getA() { return a; }
+    public Person getB() { return b; }
+    /** From 0 to 1; how alike the names, years and relatives of the two records are. */
+    public double getScore() { return score; }
+
+    /** E.g. "0.94  P012 John Smith (1850)  ~  P873 Jon Smith (1851)". */
+    public String describe() {
+        return String.format("%.2f  %s %s (%d)  ~  %s %s (%d)", score, a.getId(), a.getFullName(), a.getBirthYear(),
+                b.getId(), b.getFullName(), b.getBirthYear());
+    }
+}
@@ -0,0 +1,301 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Likely duplicate people, found without comparing everyone with everyone. Each person gets a few
+ * blocking keys, each paired with a five-year birth bucket:
+ * - the Soundex code of their last name with the initial of their first name;
+ * - the Soundex code of their first name with the first and last letter of their last name (first
+ *   names vary far less than last names, so an initial alone would make blocks of every John);
+ * - two MinHash bands over the letter trigrams of their last name, for the typos Soundex misses.
+ * Every key is taken under two bucketings two years apart, so births up to two years apart always
+ * share a bucket. Only people sharing a key are compared; a block too big to compare pairwise is
+ * sorted by name and birth year and each person compared with the next few instead, which bounds the
+ * comparisons per person. Candidate pairs are scored in parallel on the Jaro-Winkler similarity of
+ * first and last names, birth and death years and relatives: shared ones raise a score, known parents
+ * that clearly differ lower it. Pairs of different gender are ruled out, as are pairs merge() would
+ * refuse: one descending from the other, or the two married to each other. Merged records are skipped.
+ * The tree is read live: keep it still while a search runs, e.g. under ConcurrentFamilyTree's read lock.
+ */
+public final class DuplicateFinder {
+    /** A score most true duplicates reach and few look-alike relatives do. */
+    public static final double DEFAULT_MIN_SCORE = 0.85;
+
+    private static final int KINDS = 4;         // two Soundex keys, two MinHash bands
+    private static final int KEYS = 2 * KINDS;  // each under two bucketings
+    private static final int MAX_BLOCK = 32;    // bigger blocks are compared through a sorted window
+    private static final int WINDOW = 16;
+    private static final int BUCKET_YEARS = 5;
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final FamilyTree tree;
+    private final PersonGraph graph;
+    private final MarriageRegistry marriages;
+    private final ReachabilityIndex reachability;
+
+    private DuplicateFinder(FamilyTree tree) {
+        this.tree = tree;
+        this.graph = tree.graph();
+        this.marriages = tree.marriages();
+        this.reachability = tree.reachability();
+    }
+
+    public static DuplicateFinder of(FamilyTree tree) { return new DuplicateFinder(tree); }
+
+    /** Pairs scoring at least {@code minScore}, best first, at most {@code limit} of them. */
+    public List<Duplicate> find(double minScore, int limit) {
+        if (minScore < 0 || minScore > 1) throw new IllegalArgumentException("minScore must be between 0 and 1");
+        if (limit < 0) throw new IllegalArgumentException("limit must be >= 0");
+        Records r = new Records(graph.size());
+        long[] pairs = candidates(r);
+        double[] scores = new double[pairs.length];
+        IntStream.range(0, pairs.length).parallel().forEach(i -> scores[i] = score(r, (int) (pairs[i] >>> 32), (int) pairs[i]));
+        return IntStream.range(0, pairs.length).filter(i -> scores[i] >= minScore).boxed()
+                .sorted(Comparator.<Integer>comparingDouble(i -> -scores[i]).thenComparingLong(i -> pairs[i]))
+                .limit(limit)
+                .map(i -> new Duplicate(graph.person((int) (pairs[i] >>> 32)), graph.person((int) pairs[i]), scores[i]))
+                .collect(Collectors.toList());
+    }
+
+    /** Distinct candidate pairs, each {@code (long) lowerNode << 32 | higherNode}, in ascending order. */
+    long[] candidates(Records r) {
+        // One entry per person and key, (key << 32 | node); sorting brings each block together.
+        long[] entries = new long[KEYS * r.size];
+        IntStream.range(0, r.size).parallel().forEach(v -> r.keys(v, entries, KEYS * v));
+        Arrays.parallelSort(entries);
+        IntList starts = new IntList();
+        int from = 0;
+        while (from < entries.length && entries[from] < 0) from++;   // people without keys
+        for (int i = from; i < entries.length; i++) if (i == from || entries[i] >>> 32 != entries[i - 1] >>> 32) starts.add(i);
+        starts.add(entries.length);
+        long[] pairs = IntStream.range(0, starts.size() - 1).parallel()
+                .mapToObj(b -> block(r, entries, starts.get(b), starts.get(b + 1)))
+                .flatMapToLong(Arrays::stream).toArray();
+        Arrays.parallelSort(pairs);
+        int n = 0;
+        for (int i = 0; i < pairs.length; i++) if (i == 0 || pairs[i] != pairs[i - 1]) pairs[n++] = pairs[i];
+        return Arrays.copyOf(pairs, n);
+    }
+
+    private static long[] block(Records r, long[] entries, int from, int to) {
+        int size = to - from;
+        if (size < 2) return new long[0];
+        int[] nodes = new int[size];
+        for (int i = 0; i < size; i++) nodes[i] = (int) entries[from + i];
+        int window = size;
+        if (size > MAX_BLOCK) {
+            long[] byRank = new long[size];
+            for (int i = 0; i < size; i++) byRank[i] = (long) r.rank()[nodes[i]] << 32 | nodes[i];
+            Arrays.sort(byRank);
+            for (int i = 0; i < size; i++) nodes[i] = (int) byRank[i];
+            window = WINDOW;
+        }
+        long[] out = new long[(int) Math.min((long) size * (size - 1) / 2, (long) size * window)];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size && j <= i + window; j++) {
+                int a = Math.min(nodes[i], nodes[j]), b = Math.max(nodes[i], nodes[j]);
+                if (a != b) out[n++] = (long) a << 32 | b;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    // ---- scoring ----
+
+    /** Whether two people could be one on their own details, relatives aside: same gender, births within two years, alike names. */
+    static boolean alike(Person a, Person b) {
+        if (a.getGender() != b.getGender() || Math.abs(a.getBirthYear() - b.getBirthYear()) > 2) return false;
+        List<String> x = PersonIndex.normalizedWords(a.getFullName()), y = PersonIndex.normalizedWords(b.getFullName());
+        if (x.isEmpty() || y.isEmpty()) return false;
+        return nameSimilarity(x.get(0), x.get(x.size() - 1), y.get(0), y.get(y.size() - 1)) >= DEFAULT_MIN_SCORE;
+    }
+
+    // The less alike of the two names weighs most: a shared surname says little about a different first name.
+    private static double nameSimilarity(String firstA, String lastA, String firstB, String lastB) {
+        double first = jaroWinkler(firstA, firstB), last = jaroWinkler(lastA, lastB);
+        return 0.5 * Math.min(first, last) + 0.2 * first + 0.3 * last;
+    }
+
+    private double score(Records r, int a, int b) {
+        if (r.gender[a] != r.gender[b]) return 0;
+        if (reachability.isAncestor(a, b) || reachability.isAncestor(b, a)) return 0;
+        IntList ra = relatives(a), rb = relatives(b);
+        for (int i = 0; i < ra.size(); i++) if (ra.get(i) == b) return 0;   // married to each other; parents and children were ruled out above
+        double years = yearSimilarity(r.birth[a], r.birth[b]);
+        if (r.death[a] != NO_YEAR && r.death[b] != NO_YEAR) years = (years + yearSimilarity(r.death[a], r.death[b])) / 2;
+        double base = 0.65 * nameSimilarity(r.first[a], r.last[a], r.first[b], r.last[b]) + 0.35 * years;
+        int pa = graph.parentCount(a), pb = graph.parentCount(b);
+        if (pa > 0 && pb > 0 && overlap(r, ra, 0, pa, rb, 0, pb) == 0) base *= 0.85;   // namesakes with other parents
+        if (ra.isEmpty() || rb.isEmpty()) return base;
+        // Shared relatives back a match up; other differences prove little, as records often come from different sources.
+        return Math.max(base, 0.75 * base + 0.25 * overlap(r, ra, 0, ra.size(), rb, 0, rb.size()));
+    }
+
+    private IntList relatives(int v) {
+        IntList out = new IntList();
+        for (int s = 0; s < 2; s++) if (graph.parent(v, s) != PersonGraph.NONE) out.add(graph.parent(v, s));
+        for (int i = 0, c = graph.childCount(v); i < c; i++) out.add(graph.child(v, i));
+        marriages.spousesOf(v, out);
+        return out;
+    }
+
+    // Share of the smaller of two runs of relatives found in the other: the same person, or a namesake born within two years.
+    private static double overlap(Records r, IntList ra, int fromA, int toA, IntList rb, int fromB, int toB) {
+        int matched = 0;
+        boolean aSmaller = toA - fromA <= toB - fromB;
+        for (int i = aSmaller ? fromA : fromB, end = aSmaller ? toA : toB; i < end; i++) {
+            int x = (aSmaller ? ra : rb).get(i);
+            for (int j = aSmaller ? fromB : fromA, stop = aSmaller ? toB : toA; j < stop; j++) {
+                int y = (aSmaller ? rb : ra).get(j);
+                if (x == y || r.code[x] != 0 && r.code[x] == r.code[y] && Math.abs(r.birth[x] - r.birth[y]) <= 2) { matched++; break; }
+            }
+        }
+        return (double) matched / Math.min(toA - fromA, toB - fromB);
+    }
+
+    // 1 for the same year, falling off quadratically: records often disagree by a year or two, rarely by five.
+    private static double yearSimilarity(int x, int y) {
+        double d = Math.abs(x - y) / (double) BUCKET_YEARS;
+        return Math.max(0, 1 - d * d);
+    }
+
+    /** Jaro similarity, raised for a common prefix of up to four characters. */
+    static double jaroWinkler(String s, String t) {
+        if (s.equals(t)) return 1;
+        int ls = s.length(), lt = t.length();
+        if (ls == 0 || lt == 0) return 0;
+        int range = Math.max(0, Math.max(ls, lt) / 2 - 1);
+        boolean[] ms = new boolean[ls], mt = new boolean[lt];
+        int matches = 0;
+        for (int i = 0; i < ls; i++) {
+            for (int j = Math.max(0, i - range), end = Math.min(lt, i + range + 1); j < end; j++) {
+                if (mt[j] || s.charAt(i) != t.charAt(j)) continue;
+                ms[i] = mt[j] = true;
+                matches++;
+                break;
+            }
+        }
+        if (matches == 0) return 0;
+        int transposed = 0;
+        for (int i = 0, j = 0; i < ls; i++) {
+            if (!ms[i]) continue;
+            while (!mt[j]) j++;
+            if (s.charAt(i) != t.charAt(j++)) transposed++;
+        }
+        double m = matches;
+        double jaro = (m / ls + m / lt + (m - transposed / 2.0) / m) / 3;
+        int prefix = 0;
+        while (prefix < Math.min(4, Math.min(ls, lt)) && s.charAt(prefix) == t.charAt(prefix)) prefix++;
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+
+    /** American Soundex of the a-z letters of a lower-case word, packed as letter * 1000 + digits; 0 if none. */
+    static int soundex(String word) {
+        int code = 0, digits = 0, last = -1;
+        for (int i = 0; i < word.length() && digits < 3; i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') continue;
+            int d = "01230120022455012623010202".charAt(c - 'a') - '0';
+            if (code == 0) {
+                code = (c - 'a' + 1) * 1000;
+                last = d;
+            } else if (d != 0 && d != last) {
+                code += d * (digits == 0 ? 100 : digits == 1 ? 10 : 1);
+                digits++;
+                last = d;
+            } else if (c != 'h' && c != 'w') {
+                last = d;   // a vowel separates repeated codes; h and w do not
+            }
+        }
+        return code;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ h >>> 16;
+    }
+
+    /** Normalized name, name code, years and gender of every node, read once per search. */
+    final class Records {
+        final int size;
+        final String[] name, first, last;
+        final int[] given, surname, code, birth, death;   // code: both Soundex codes, to match relatives by
+        final byte[] gender;
+        final boolean[] skip;
+        private int[] rank;   // position in name and birth-year order, for blocks compared through a window
+
+        Records(int size) {
+            this.size = size;
+            name = new String[size];
+            first = new String[size];
+            last = new String[size];
+            given = new int[size];
+            surname = new int[size];
+            code = new int[size];
+            birth = new int[size];
+            death = new int[size];
+            gender = new byte[size];
+            skip = new boolean[size];
+            IntStream.range(0, size).parallel().forEach(this::read);
+        }
+
+        private void read(int v) {
+            Person p = graph.person(v);
+            List<String> words = PersonIndex.normalizedWords(p.getFullName());
+            name[v] = String.join(" ", words);
+            first[v] = words.isEmpty() ? "" : words.get(0);
+            last[v] = words.isEmpty() ? "" : words.get(words.size() - 1);
+            given[v] = soundex(first[v]);
+            surname[v] = soundex(last[v]);
+            code[v] = given[v] * 27000 + surname[v];
+            birth[v] = p.getBirthYear();
+            death[v] = p.getDeathYear() == null ? NO_YEAR : p.getDeathYear();
+            gender[v] = (byte) p.getGender().ordinal();
+            skip[v] = words.isEmpty() || tree.isMerged(v);
+        }
+
+        synchronized int[] rank() {
+            if (rank == null) {
+                Integer[] order = IntStream.range(0, size).boxed().toArray(Integer[]::new);
+                Arrays.parallelSort(order, Comparator.<Integer, String>comparing(v -> name[v]).thenComparingInt(v -> birth[v]));
+                rank = new int[size];
+                for (int i = 0; i < size; i++) rank[order[i]] = i;
+            }
+            return rank;
+        }
+
+        /** Writes the node's KEYS entries at {@code at}, or -1s if it takes no part. */
+        void keys(int v, long[] out, int at) {
+            if (skip[v]) { Arrays.fill(out, at, at + KEYS, -1L); return; }
+            String l = last[v], s = " " + l + " ";
+            int[] min = new int[SEEDS.length];
+            Arrays.fill(min, Integer.MAX_VALUE);
+            for (int i = 0; i + 3 <= s.length(); i++) {
+                int h = (s.charAt(i) * 31 + s.charAt(i + 1)) * 31 + s.charAt(i + 2);
+                for (int k = 0; k < SEEDS.length; k++) min[k] = Math.min(min[k], mix(h ^ SEEDS[k]));
+            }
+            // A typo inside one name still leaves the other name's Soundex code and this one's first and last letters intact.
+            int[] kinds = {surname[v] * 27 + given[v] / 1000, mix(given[v] * 31 + l.charAt(0)) * 31 + l.charAt(l.length() - 1),
+                    mix(min[0] * 31 + min[1]), mix(min[2] * 31 + min[3])};
+            for (int t = 0; t < 2; t++) {
+                int bucket = Math.floorDiv(birth[v] + 2 * t, BUCKET_YEARS);
+                for (int k = 0; k < KINDS; k++) {
+                    int key = mix(mix(mix(k * 2 + t) ^ bucket) ^ kinds[k]) & 0x7FFFFFFF;
+                    out[at + KINDS * t + k] = (long) key << 32 | v;
+                }
+            }
+        }
+    }
+}
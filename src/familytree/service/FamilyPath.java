@@ -0,0 +1,36 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+import java.util.List;
+
+/** A shortest chain of parent, child and spouse links from one person to another, as found by PathFinder. */
+public final class FamilyPath {
+    private final List<Person> people;
+    private final List<PathFinder.Link> links;
+
+    FamilyPath(List<Person> people, List<PathFinder.Link> links) {
+        this.people = List.copyOf(people);
+        this.links = List.copyOf(links);
+    }
+
+    public Person getFrom() { return people.get(0); }
+    public Person getTo() { return people.get(people.size() - 1); }
+    /** Everyone on the chain, from first to last. */
+    public List<Person> getPeople() { return people; }
+    /** What each person is to the one before: {@code getLinks().get(i)} leads from person i to person i + 1. */
+    public List<PathFinder.Link> getLinks() { return links; }
+    public int hops() { return links.size(); }
+
+    /** One line per person, each after the link that reaches them, e.g. "  spouse  P002 Mary Jones". */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        Person first = people.get(0);
+        sb.append(first.getId()).append(' ').append(first.getFullName());
+        for (int i = 0; i < links.size(); i++) {
+            Person p = people.get(i + 1);
+            sb.append(System.lineSeparator()).append(String.format("  %-7s %s %s", links.get(i).label(), p.getId(), p.getFullName()));
+        }
+        return sb.toString();
+    }
+}
@@ -2,131 +2,764 @@ package familytree.service;
 
 import familytree.service.PersonFactory;
 import familytree.model.*;
+import familytree.strategy.GenerationVisitor;
 import familytree.strategy.Renderer;
 import familytree.strategy.TraversalStrategy;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * In-memory registry. Uses TraversalStrategy (Strategy pattern) for traversal.
  */
 public final class FamilyTree {
-    private final Map<String, Person> people = new LinkedHashMap<>();
+    public static final int DEFAULT_CACHE_ENTRIES = 256;
+    public static final long DEFAULT_CACHE_PEOPLE = 1_000_000;
+    private static final long OFF = Long.MIN_VALUE;   // no start time: nobody is measuring
+
+    private final PersonGraph graph;
+    private final IdAllocator ids;
+    private final ReachabilityIndex reachability;
+    private final MarriageRegistry marriages;
+    private final RelationshipCalculator relationships;
+    private PersonIndex personIndex;   // built on the first search, then kept current as a listener
+    private CensusIndex census;        // likewise, on the first census query
+    private PopulationColumns columns; // likewise, on the first demographics query
+    private LineageIndex lineage;      // likewise, on the first lineage query
+    private Kinship kinship;           // likewise, on the first kinship query
+    private final Map<Integer, Integer> merged = new LinkedHashMap<>();   // dropped node -> kept node
+    private TraversalCache cache;
     private TraversalStrategy traversalStrategy;
     private Renderer renderer;
+    private Metrics metrics;           // null: not instrumented
 
     public FamilyTree(TraversalStrategy traversalStrategy, Renderer renderer) {
+        this(traversalStrategy, renderer, IdAllocator.sequential());
+    }
+
+    /** A tree whose new people get their ids from {@code ids}. */
+    public FamilyTree(TraversalStrategy traversalStrategy, Renderer renderer, IdAllocator ids) {
+        this(traversalStrategy, renderer, ids, new PersonGraph(), null, null);
+    }
+
+    FamilyTree(TraversalStrategy traversalStrategy, Renderer renderer, IdAllocator ids, PersonGraph graph,
+               ReachabilityIndex reachability, MarriageRegistry marriages) {
         this.traversalStrategy = Objects.requireNonNull(traversalStrategy);
         this.renderer = Objects.requireNonNull(renderer);
+        this.ids = Objects.requireNonNull(ids);
+        this.graph = graph;
+        this.reachability = reachability != null ? reachability : new ReachabilityIndex(graph);
+        this.marriages = marriages != null ? marriages : new MarriageRegistry(graph);
+        graph.addListener(this.marriages);
+        this.relationships = new RelationshipCalculator(graph, this.reachability);
+        setCacheLimits(DEFAULT_CACHE_ENTRIES, DEFAULT_CACHE_PEOPLE);
     }
 
+    /** Loads a binary snapshot through a memory map; people are materialized on first access. */
+    public static FamilyTree load(Path path, TraversalStrategy traversalStrategy, Renderer renderer) throws IOException {
+        return Snapshot.load(path, traversalStrategy, renderer);
+    }
+
+    public void save(Path path) throws IOException {
+        Snapshot.save(this, path);
+    }
+
+    ReachabilityIndex reachability() { return reachability; }
+    MarriageRegistry marriages() { return marriages; }
+
+    public IdAllocator ids() { return ids; }
+
     public Person addPerson(String fullName, Gender gender, int birthYear, Integer deathYear) {
-        Person p = PersonFactory.create(fullName, gender, birthYear, deathYear);
-        if (people.containsKey(p.getId())) throw new IllegalArgumentException("Duplicate id: " + p.getId());
-        people.put(p.getId(), p);
+        long t0 = start();
+        try {
+            return register(PersonFactory.create(ids.next(), fullName, gender, birthYear, deathYear));
+        } finally {
+            done(Metrics.Op.ADD_PERSON, t0);
+        }
+    }
+
+    /** Re-creates a person under a known id (journal replay); later generated ids skip past it. */
+    Person restorePerson(String id, String fullName, Gender gender, int birthYear, Integer deathYear) {
+        ids.reserve(id);
+        return register(PersonFactory.create(id, fullName, gender, birthYear, deathYear));
+    }
+
+    /**
+     * Re-creates a person as recorded elsewhere (a shard move, a checkout): the recorded class rather than
+     * one picked from the birth year, and the death year as is, even if a birth-year edit moved past it.
+     */
+    Person restorePerson(String id, String fullName, Gender gender, int birthYear, Integer deathYear, boolean minor) {
+        ids.reserve(id);
+        return register(PersonFactory.restore(id, fullName, gender, birthYear, deathYear, minor));
+    }
+
+    private Person register(Person p) {
+        reachability.onAdd(graph.add(p));
+        for (TreeListener l : graph.listeners()) l.personAdded(p);
         return p;
     }
 
+    public void addListener(TreeListener listener) { graph.addListener(listener); }
+    public void removeListener(TreeListener listener) { graph.removeListener(listener); }
+
+    /** Starts a batch load: links are buffered and validated once in BulkLoader.finish(). */
+    public BulkLoader bulkLoader() { return new BulkLoader(this, graph); }
+
+    synchronized void rebuildIndexes() {
+        reachability.rebuild();
+        if (columns != null) columns.depthsChanged();
+        if (census != null) census.linksRebuilt();
+        if (lineage != null) lineage.rebuild();
+    }
+
     public Person getPerson(String id) {
-        Person p = people.get(id);
-        if (p == null) throw new IllegalArgumentException("Unknown person id: " + id);
-        return p;
+        long t0 = start();
+        try {
+            return graph.person(graph.require(id));
+        } finally {
+            done(Metrics.Op.GET_PERSON, t0);
+        }
+    }
+
+    /** Everyone in the tree, in the order they were added; records merged into someone else are left out. */
+    public Collection<Person> allPeople() { return graph.allPeople(); }
+
+    /** Indexed search by name prefix, birth/death year range, gender and living status; one page per call. */
+    public SearchPage search(PersonQuery query) {
+        long t0 = start();
+        try {
+            return personIndex().search(query);
+        } finally {
+            done(Metrics.Op.SEARCH, t0);
+        }
     }
 
-    public Collection<Person> allPeople() { return Collections.unmodifiableCollection(people.values()); }
+    private synchronized PersonIndex personIndex() {
+        if (personIndex == null) {
+            personIndex = new PersonIndex(graph);
+            graph.addListener(personIndex);
+        }
+        return personIndex;
+    }
+
+    synchronized boolean hasPersonIndex() { return personIndex != null; }
+
+    /** Number of people alive at some point of {@code year} (born in or before it, dying in or after it). */
+    public int aliveIn(int year) {
+        long t0 = start();
+        try {
+            return census().aliveIn(year);
+        } finally {
+            done(Metrics.Op.CENSUS, t0);
+        }
+    }
+
+    /** People alive in {@code year} by age: index k counts ages [k * bucketYears, (k + 1) * bucketYears). */
+    public int[] ageHistogram(int year, int bucketYears) {
+        long t0 = start();
+        try {
+            return census().ageHistogram(year, bucketYears);
+        } finally {
+            done(Metrics.Op.CENSUS, t0);
+        }
+    }
+
+    /** How many of the person's descendants were alive in {@code year}. */
+    public int livingDescendants(String id, int year) {
+        long t0 = start();
+        try {
+            return census().livingDescendants(graph.require(id), year);
+        } finally {
+            done(Metrics.Op.CENSUS, t0);
+        }
+    }
+
+    private synchronized CensusIndex census() {
+        if (census == null) {
+            census = new CensusIndex(graph, reachability);
+            graph.addListener(census);
+        }
+        return census;
+    }
+
+    synchronized boolean hasCensus() { return census != null; }
+
+    /** Lifespans of the deceased by generation depth (longest path from a root): mean(k) is the average in years. */
+    public GroupStats lifespanByGeneration() {
+        long t0 = start();
+        try {
+            return columns().lifespanByGeneration();
+        } finally {
+            done(Metrics.Op.DEMOGRAPHICS, t0);
+        }
+    }
+
+    /** Births in [fromYear, toYear] by decade; sum(k) counts those of {@code gender}, so mean(k) is its share. */
+    public GroupStats genderByDecade(int fromYear, int toYear, Gender gender) {
+        long t0 = start();
+        try {
+            return columns().genderByDecade(fromYear, toYear, Objects.requireNonNull(gender));
+        } finally {
+            done(Metrics.Op.DEMOGRAPHICS, t0);
+        }
+    }
+
+    /** Age at first marriage of everyone who married, by birth decade: mean(k) is the average age. */
+    public GroupStats ageAtFirstMarriageByDecade() {
+        long t0 = start();
+        try {
+            return columns().ageAtFirstMarriageByDecade();
+        } finally {
+            done(Metrics.Op.DEMOGRAPHICS, t0);
+        }
+    }
+
+    private synchronized PopulationColumns columns() {
+        if (columns == null) {
+            columns = new PopulationColumns(graph, reachability);
+            graph.addListener(columns);
+        }
+        return columns;
+    }
+
+    synchronized boolean hasColumns() { return columns != null; }
+
+    /** Distinct descendants, living descendants and ancestors of the person; large counts are estimates. */
+    public Lineage lineage(String id) {
+        long t0 = start();
+        try {
+            return lineageIndex().lineage(graph.require(id));
+        } finally {
+            done(Metrics.Op.LINEAGE, t0);
+        }
+    }
+
+    /** The {@code n} people with the most of {@code measure}, most first. */
+    public List<Lineage> topLineages(Lineage.Measure measure, int n) {
+        long t0 = start();
+        try {
+            return lineageIndex().top(measure.ordinal(), n);
+        } finally {
+            done(Metrics.Op.LINEAGE, t0);
+        }
+    }
+
+    private synchronized LineageIndex lineageIndex() {
+        if (lineage == null) {
+            lineage = new LineageIndex(graph, reachability);
+            graph.addListener(lineage);
+        }
+        return lineage;
+    }
+
+    synchronized boolean hasLineage() { return lineage != null; }
+
+    /** Inbreeding and coancestry; one instance per tree, created on first use and kept current. */
+    public synchronized Kinship kinship() {
+        if (kinship == null) {
+            kinship = new Kinship(this);
+            graph.addListener(kinship);
+        }
+        return kinship;
+    }
+
+    /** Int-indexed storage; strategies traverse node ids directly and map back to Person at the end. */
+    public PersonGraph graph() { return graph; }
 
     // Link parent->child. Enforce rules: max 2 parents, prevent cycles.
     public void linkParentChild(String parentId, String childId) {
+        long t0 = start();
+        try {
+            link(parentId, childId);
+        } finally {
+            done(Metrics.Op.LINK, t0);
+        }
+    }
+
+    private void link(String parentId, String childId) {
         if (parentId.equals(childId)) throw new IllegalArgumentException("Cannot be own parent");
-        Person parent = getPerson(parentId);
-        Person child = getPerson(childId);
-        if (child.getParentIds().size() >= 2 && !child.getParentIds().contains(parentId))
-            throw new IllegalArgumentException("Child already has two parents");
+        int parent = graph.require(parentId);
+        int child = graph.require(childId);
+        if (graph.hasParent(child, parent)) return;
+        if (graph.parentCount(child) >= 2) throw new IllegalArgumentException("Child already has two parents");
 
         // Prevent cycles: parent cannot be descendant of child
-        if (isDescendant(parentId, childId)) throw new IllegalArgumentException("Link would create a cycle");
+        if (reachability.isAncestor(child, parent)) throw new IllegalArgumentException("Link would create a cycle");
+
+        graph.addEdge(parent, child);
+        reachability.onLink(parent, child);
+        for (TreeListener l : graph.listeners()) l.linked(parent, child);
+    }
+
+    public void unlinkParentChild(String parentId, String childId) {
+        long t0 = start();
+        try {
+            int parent = graph.require(parentId);
+            int child = graph.require(childId);
+            if (!graph.hasParent(child, parent)) throw new IllegalArgumentException(parentId + " is not a parent of " + childId);
+            unlink(parent, child);
+        } finally {
+            done(Metrics.Op.UNLINK, t0);
+        }
+    }
 
-        // perform link
-        ((Person) child).addParentId(parentId);
-        ((Person) parent).addChildId(childId);
+    private void unlink(int parent, int child) {
+        graph.removeEdge(parent, child);
+        reachability.onUnlink(parent, child);
+        for (TreeListener l : graph.listeners()) l.unlinked(parent, child);
     }
 
     // Marriage: disallow if either cannot marry, or already has active spouse
     public void marry(String aId, String bId, int year) {
+        long t0 = start();
+        try {
+            wed(aId, bId, year);
+        } finally {
+            done(Metrics.Op.MARRY, t0);
+        }
+    }
+
+    private void wed(String aId, String bId, int year) {
         if (aId.equals(bId)) throw new IllegalArgumentException("Cannot marry oneself");
-        Person a = getPerson(aId);
-        Person b = getPerson(bId);
+        int an = graph.require(aId), bn = graph.require(bId);
+        Person a = graph.person(an);
+        Person b = graph.person(bn);
         if (!a.canMarry()) throw new IllegalArgumentException(aId + " is not allowed to marry (age/rule)");
         if (!b.canMarry()) throw new IllegalArgumentException(bId + " is not allowed to marry (age/rule)");
-        if (a.getActiveSpouseId().isPresent()) throw new IllegalArgumentException(aId + " already has active spouse");
-        if (b.getActiveSpouseId().isPresent()) throw new IllegalArgumentException(bId + " already has active spouse");
+        if (marriages.activeOf(an) != MarriageRegistry.NONE) throw new IllegalArgumentException(aId + " already has active spouse");
+        if (marriages.activeOf(bn) != MarriageRegistry.NONE) throw new IllegalArgumentException(bId + " already has active spouse");
 
         Marriage m = new Marriage(aId, bId, year);
-        ((Person) a).addMarriage(m);
-        ((Person) b).addMarriage(m);
+        PersonGraph.MODEL.addMarriage(a, m);
+        PersonGraph.MODEL.addMarriage(b, m);
+        marriages.married(m, an, bn);
+        for (TreeListener l : graph.listeners()) l.married(m);
+    }
+
+    /**
+     * Re-records a marriage as it was, without marry()'s rules: a spouse may since have become a Minor.
+     * Record ended marriages before the open ones, so no one's current spouse is displaced.
+     */
+    void restoreMarriage(String aId, String bId, int year, Integer divorceYear) {
+        int an = graph.require(aId), bn = graph.require(bId);
+        Marriage m = new Marriage(aId, bId, year);
+        PersonGraph.MODEL.addMarriage(graph.person(an), m);
+        PersonGraph.MODEL.addMarriage(graph.person(bn), m);
+        marriages.married(m, an, bn);
+        for (TreeListener l : graph.listeners()) l.married(m);
+        if (divorceYear == null) return;
+        PersonGraph.MODEL.setDivorceYear(m, divorceYear);
+        marriages.divorced(marriages.activeOf(an), divorceYear);
+        for (TreeListener l : graph.listeners()) l.divorced(m);
     }
 
     public void divorce(String aId, String bId, int year) {
-        Person a = getPerson(aId);
-        Person b = getPerson(bId);
-        Optional<Marriage> am = a.getMarriages().stream().filter(m -> m.isActive() && m.involves(bId)).findFirst();
-        if (am.isEmpty()) throw new IllegalArgumentException("No active marriage between " + aId + " and " + bId);
-        am.get().setDivorceYear(year);
+        long t0 = start();
+        try {
+            int an = graph.require(aId), bn = graph.require(bId);
+            int i = marriages.activeOf(an);
+            if (i == MarriageRegistry.NONE || marriages.spouseIn(i, an) != bn)
+                throw new IllegalArgumentException("No active marriage between " + aId + " and " + bId);
+            Marriage m = marriages.marriage(i);
+            PersonGraph.MODEL.setDivorceYear(m, year);
+            marriages.divorced(i, year);
+            for (TreeListener l : graph.listeners()) l.divorced(m);
+        } finally {
+            done(Metrics.Op.DIVORCE, t0);
+        }
+    }
+
+    /**
+     * Merges the duplicate record {@code dropId} into {@code keepId}. The dropped person's parents, children and
+     * marriages move to the kept one, under the usual rules: at most two parents, no cycles, one active spouse.
+     * A marriage of the dropped person in the same year as one of the kept person's, to the same spouse or to
+     * one who looks like a duplicate of them (see DuplicateFinder), is taken for the same marriage entered
+     * twice and removed, so a couple entered twice can be merged one spouse at a time. Nothing changes unless
+     * every rule holds. Node ids are never reused, so the dropped record stays registered, without links or
+     * marriages, but leaves allPeople(), search and the census; mergedInto() names the person who replaced it.
+     */
+    public void merge(String keepId, String dropId) {
+        long t0 = start();
+        try {
+            int keep = graph.require(keepId), drop = graph.require(dropId);
+            if (keep == drop) throw new IllegalArgumentException("Cannot merge a person into themselves");
+            if (merged.containsKey(drop)) throw new IllegalArgumentException(dropId + " was already merged into " + mergedInto(dropId).get());
+            if (merged.containsKey(keep)) throw new IllegalArgumentException(keepId + " was merged into " + mergedInto(keepId).get());
+            if (reachability.isAncestor(keep, drop) || reachability.isAncestor(drop, keep))
+                throw new IllegalArgumentException(keepId + " and " + dropId + " are ancestor and descendant");
+            Set<Integer> parents = new LinkedHashSet<>();
+            for (int v : new int[] {keep, drop}) for (int s = 0; s < 2; s++) if (graph.parent(v, s) != PersonGraph.NONE) parents.add(graph.parent(v, s));
+            if (parents.size() > 2) throw new IllegalArgumentException("Merged person would have " + parents.size() + " parents");
+            Person kept = graph.person(keep), dropped = graph.person(drop);
+            boolean keptActive = marriages.activeOf(keep) != MarriageRegistry.NONE;
+            for (Marriage m : dropped.getMarriages()) {
+                if (m.involves(keepId)) throw new IllegalArgumentException(keepId + " and " + dropId + " are married to each other");
+                if (keptActive && m.isActive() && twinOf(kept, dropped, m) == null)
+                    throw new IllegalArgumentException(keepId + " and " + dropId + " both have an active spouse");
+            }
+
+            for (int s = 1; s >= 0; s--) {
+                int q = graph.parent(drop, s);
+                if (q == PersonGraph.NONE) continue;
+                unlink(q, drop);
+                if (!graph.hasParent(keep, q)) link(graph.idOf(q), keepId);
+            }
+            while (graph.childCount(drop) > 0) {
+                int c = graph.child(drop, 0);
+                unlink(drop, c);
+                if (!graph.hasParent(c, keep)) link(keepId, graph.idOf(c));
+            }
+            absorb(keep, drop);
+        } finally {
+            done(Metrics.Op.MERGE, t0);
+        }
+    }
+
+    /** The person a merged record was merged into, following later merges; empty for everyone else. */
+    public Optional<String> mergedInto(String id) {
+        Integer v = merged.get(graph.require(id));
+        if (v == null) return Optional.empty();
+        for (Integer next; (next = merged.get(v)) != null; ) v = next;
+        return Optional.of(graph.idOf(v));
+    }
+
+    boolean isMerged(int node) { return merged.containsKey(node); }
+
+    /** Dropped and kept node of every merge, in pairs, in the order they happened. */
+    int[] merges() {
+        int[] out = new int[2 * merged.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : merged.entrySet()) { out[i++] = e.getKey(); out[i++] = e.getValue(); }
+        return out;
+    }
+
+    /** Re-records merges from a snapshot, as returned by merges(). */
+    void restoreMerges(int[] pairs) {
+        for (int i = 0; i < pairs.length; i += 2) { merged.put(pairs[i], pairs[i + 1]); graph.remove(pairs[i]); }
     }
 
+    /** Moves the marriages of {@code drop} to {@code keep} and records the merge; its links were moved already (journal replay). */
+    void absorb(int keep, int drop) {
+        Person kept = graph.person(keep), dropped = graph.person(drop);
+        List<Marriage> own = dropped.getMarriages(), removed = new ArrayList<>();
+        marriages.transfer(drop, keep, i -> {
+            Marriage m = marriages.marriage(i);
+            Person spouse = graph.person(marriages.spouseIn(i, drop));
+            Marriage replaced = null;
+            if (twinOf(kept, dropped, m) == null) {
+                replaced = m.getSpouseAId().equals(dropped.getId()) ? new Marriage(kept.getId(), spouse.getId(), m.getMarriageYear())
+                        : new Marriage(spouse.getId(), kept.getId(), m.getMarriageYear());
+                if (m.getDivorceYear() != null) PersonGraph.MODEL.setDivorceYear(replaced, m.getDivorceYear());
+                PersonGraph.MODEL.addMarriage(kept, replaced);
+            } else {
+                removed.add(m);
+            }
+            PersonGraph.MODEL.replaceMarriage(spouse, find(spouse, m), replaced);
+            return replaced;
+        });
+        for (Marriage m : own) PersonGraph.MODEL.replaceMarriage(dropped, m, null);
+        merged.put(drop, keep);
+        graph.remove(drop);
+        for (TreeListener l : graph.listeners()) l.merged(kept, dropped, removed);
+        for (TreeListener l : graph.listeners()) l.removed(dropped);
+    }
+
+    // The kept person's marriage that {@code m} of the dropped one duplicates, or null.
+    private Marriage twinOf(Person kept, Person dropped, Marriage m) {
+        Person spouse = graph.person(graph.require(m.getOtherSpouseId(dropped.getId())));
+        for (Marriage k : kept.getMarriages()) {
+            if (k.getMarriageYear() != m.getMarriageYear()) continue;
+            Person other = graph.person(graph.require(k.getOtherSpouseId(kept.getId())));
+            if (other == spouse || DuplicateFinder.alike(other, spouse)) return k;
+        }
+        return null;
+    }
+
+    // The person's own copy of a marriage (snapshot-decoded people may hold equal, separate objects).
+    private static Marriage find(Person p, Marriage m) {
+        for (Marriage x : p.getMarriages())
+            if (x == m || x.getSpouseAId().equals(m.getSpouseAId()) && x.getSpouseBId().equals(m.getSpouseBId()) && x.getMarriageYear() == m.getMarriageYear()) return x;
+        return m;
+    }
+
+    /** Who the person was married to during {@code year}: divorce or either spouse's death ends a marriage. */
+    public Optional<Person> spouseOf(String id, int year) {
+        long t0 = start();
+        try {
+            int v = marriages.spouseAsOf(graph.require(id), year);
+            return v == MarriageRegistry.NONE ? Optional.empty() : Optional.of(graph.person(v));
+        } finally {
+            done(Metrics.Op.SPOUSE, t0);
+        }
+    }
+
+    /** Marriages in effect at some point of [fromYear, toYear], ordered by marriage year. */
+    public List<Marriage> marriagesBetween(int fromYear, int toYear) {
+        long t0 = start();
+        try {
+            return marriages.overlapping(fromYear, toYear);
+        } finally {
+            done(Metrics.Op.MARRIAGES, t0);
+        }
+    }
+
+    /** Marriages contracted in [fromYear, toYear] per decade; index 0 is the decade containing fromYear. */
+    public int[] marriagesPerDecade(int fromYear, int toYear) {
+        long t0 = start();
+        try {
+            return marriages.perDecade(fromYear, toYear);
+        } finally {
+            done(Metrics.Op.MARRIAGES, t0);
+        }
+    }
+
+    int marriageCount() { return marriages.size(); }
+
     public boolean isDescendant(String candidateId, String ancestorId) {
-        Person ancestor = getPerson(ancestorId);
-        Deque<String> dq = new ArrayDeque<>(ancestor.getChildrenIds());
-        while (!dq.isEmpty()) {
-            String cur = dq.removeFirst();
-            if (cur.equals(candidateId)) return true;
-            dq.addAll(getPerson(cur).getChildrenIds());
+        return isAncestor(ancestorId, candidateId);
+    }
+
+    /** True if ancestorId is a (strict) ancestor of descendantId; answered from the reachability index. */
+    public boolean isAncestor(String ancestorId, String descendantId) {
+        long t0 = start();
+        try {
+            return reachability.isAncestor(graph.require(ancestorId), graph.require(descendantId));
+        } finally {
+            done(Metrics.Op.IS_ANCESTOR, t0);
+        }
+    }
+
+    /** How A is related to B: named relationship plus every lowest common ancestor with distances. */
+    public Relationship relation(String aId, String bId) {
+        long t0 = start();
+        try {
+            return relationships.relate(graph.require(aId), graph.require(bId));
+        } finally {
+            done(Metrics.Op.RELATION, t0);
+        }
+    }
+
+    /** Relationships of A to each of {@code otherIds}; the upward search from A is done once for all. */
+    public List<Relationship> relations(String aId, Collection<String> otherIds) {
+        long t0 = start();
+        try {
+            int a = graph.require(aId);
+            int[] others = new int[otherIds.size()];
+            int i = 0;
+            for (String id : otherIds) others[i++] = graph.require(id);
+            return relationships.relateAll(a, others);
+        } finally {
+            done(Metrics.Op.RELATION, t0);
         }
-        return false;
     }
 
     public List<Person> childrenOf(String id) {
-        Person p = getPerson(id);
-        return p.getChildrenIds().stream().map(this::getPerson).collect(Collectors.toList());
+        long t0 = start();
+        try {
+            int node = graph.require(id);
+            IntList kids = new IntList(graph.childCount(node));
+            for (int i = 0; i < graph.childCount(node); i++) kids.add(graph.child(node, i));
+            return graph.people(kids);
+        } finally {
+            done(Metrics.Op.CHILDREN, t0);
+        }
     }
 
     public Optional<Person> spouseOf(String id) {
-        Person p = getPerson(id);
-        return p.getActiveSpouseId().map(this::getPerson);
+        long t0 = start();
+        try {
+            int v = graph.require(id), i = marriages.activeOf(v);
+            return i == MarriageRegistry.NONE ? Optional.empty() : Optional.of(graph.person(marriages.spouseIn(i, v)));
+        } finally {
+            done(Metrics.Op.SPOUSE, t0);
+        }
     }
 
     public List<Person> siblingsOf(String id) {
-        Person p = getPerson(id);
-        Set<String> parents = p.getParentIds();
-        if (parents.isEmpty()) return Collections.emptyList();
-        LinkedHashSet<String> s = new LinkedHashSet<>();
-        for (String pid : parents) {
-            Person par = people.get(pid);
-            if (par == null) continue;
-            for (String childId : par.getChildrenIds()) if (!childId.equals(id)) s.add(childId);
+        long t0 = start();
+        try {
+            int node = graph.require(id);
+            IntList s = new IntList();
+            for (int slot = 0; slot < 2; slot++) {
+                int par = graph.parent(node, slot);
+                if (par == PersonGraph.NONE) continue;
+                for (int i = 0; i < graph.childCount(par); i++) {
+                    int c = graph.child(par, i);
+                    if (c != node && (slot == 0 || !graph.hasParent(c, graph.parent(node, 0)))) s.add(c);
+                }
+            }
+            return graph.people(s);
+        } finally {
+            done(Metrics.Op.SIBLINGS, t0);
         }
-        return s.stream().map(this::getPerson).collect(Collectors.toList());
     }
 
-    // Delegates to TraversalStrategy
+    // Delegates to TraversalStrategy; results are cached until a person they cover is relinked
     public List<List<Person>> ancestorsOf(String id, int generations) {
         if (generations < 0) throw new IllegalArgumentException("generations >= 0 required");
-        return traversalStrategy.traverseAncestors(this, id, generations);
+        long t0 = start();
+        try {
+            return traversal(id, generations, true);
+        } finally {
+            done(Metrics.Op.ANCESTORS, t0);
+        }
     }
 
     public List<List<Person>> descendantsOf(String id, int generations) {
         if (generations < 0) throw new IllegalArgumentException("generations >= 0 required");
-        return traversalStrategy.traverseDescendants(this, id, generations);
+        long t0 = start();
+        try {
+            return traversal(id, generations, false);
+        } finally {
+            done(Metrics.Op.DESCENDANTS, t0);
+        }
+    }
+
+    private List<List<Person>> traversal(String id, int generations, boolean up) {
+        int node = graph.require(id);
+        TraversalStrategy s = traversalStrategy;
+        List<List<Person>> hit = cache.traversal(node, up, generations, s);
+        if (hit != null) return hit;
+        int at = cache.now();
+        TraversalEvent event = new TraversalEvent();
+        event.begin();
+        long t0 = metrics != null ? System.nanoTime() : OFF;
+        List<List<Person>> result = up ? s.traverseAncestors(this, id, generations) : s.traverseDescendants(this, id, generations);
+        if (t0 != OFF || event.shouldCommit()) {
+            int nodes = 0;
+            for (List<Person> level : result) nodes += level.size();
+            traversed(s, up, generations, nodes, t0, event);
+        }
+        cache.putTraversal(node, up, generations, s, result, at);
+        return result;
+    }
+
+    private void traversed(TraversalStrategy s, boolean up, int generations, int nodes, long t0, TraversalEvent event) {
+        Metrics m = metrics;
+        if (m != null && t0 != OFF) m.traversal(nodes, System.nanoTime() - t0);
+        if (event.shouldCommit()) {
+            event.strategy = s.getClass().getSimpleName();
+            event.up = up;
+            event.generations = generations;
+            event.nodes = nodes;
+            event.commit();
+        }
     }
 
     // Rendering helper
     public String renderAncestors(String id, int generations) {
-        return renderer.renderAncestors(ancestorsOf(id, generations));
+        long t0 = start();
+        try {
+            return render(id, generations, true);
+        } finally {
+            done(Metrics.Op.RENDER, t0);
+        }
     }
 
     public String renderDescendants(String id, int generations) {
-        return renderer.renderDescendants(descendantsOf(id, generations));
+        long t0 = start();
+        try {
+            return render(id, generations, false);
+        } finally {
+            done(Metrics.Op.RENDER, t0);
+        }
+    }
+
+    private String render(String id, int generations, boolean up) {
+        if (generations < 0) throw new IllegalArgumentException("generations >= 0 required");
+        int node = graph.require(id);
+        TraversalStrategy s = traversalStrategy;
+        Renderer r = renderer;
+        String hit = cache.render(node, up, generations, s, r);
+        if (hit != null) return hit;
+        int at = cache.now();
+        List<List<Person>> gens = traversal(id, generations, up);
+        long t0 = metrics != null ? System.nanoTime() : OFF;
+        String text = up ? r.renderAncestors(gens) : r.renderDescendants(gens);
+        Metrics m = metrics;
+        if (m != null && t0 != OFF) m.render(System.nanoTime() - t0);
+        cache.putRender(node, up, generations, s, r, gens, text, at);
+        return text;
+    }
+
+    /** Bounds the traversal/render cache by entries and by people held across entries; 0 entries disables it. */
+    public void setCacheLimits(int maxEntries, long maxPeople) {
+        if (maxEntries < 0 || maxPeople < 0) throw new IllegalArgumentException("Cache limits must be >= 0");
+        if (cache != null) graph.removeListener(cache);
+        cache = new TraversalCache(maxEntries, maxPeople);
+        graph.addListener(cache);
+    }
+
+    public CacheStats cacheStats() { return cache.stats(); }
+
+    /** Streams the rendering to {@code out} generation by generation instead of building one String. */
+    public void renderAncestors(String id, int generations, Appendable out) throws IOException {
+        stream(id, generations, true, out);
+    }
+
+    public void renderDescendants(String id, int generations, Appendable out) throws IOException {
+        stream(id, generations, false, out);
+    }
+
+    private void stream(String id, int generations, boolean up, Appendable out) throws IOException {
+        if (generations < 0) throw new IllegalArgumentException("generations >= 0 required");
+        long t0 = start();
+        TraversalStrategy s = traversalStrategy;
+        GenerationVisitor visitor = up ? renderer.ancestorsTo(out) : renderer.descendantsTo(out);
+        TraversalEvent event = new TraversalEvent();
+        event.begin();
+        try {
+            if (t0 == OFF && !event.shouldCommit()) {
+                if (up) s.visitAncestors(this, id, generations, visitor); else s.visitDescendants(this, id, generations, visitor);
+                visitor.done();
+                return;
+            }
+            // Instrumented: count the people streamed and split the time between strategy and renderer.
+            int[] nodes = {0};
+            long[] rendering = {0};
+            GenerationVisitor counting = (depth, people) -> {
+                nodes[0] += people.size();
+                long r0 = System.nanoTime();
+                visitor.generation(depth, people);
+                rendering[0] += System.nanoTime() - r0;
+            };
+            if (up) s.visitAncestors(this, id, generations, counting); else s.visitDescendants(this, id, generations, counting);
+            long r0 = System.nanoTime();
+            visitor.done();
+            rendering[0] += System.nanoTime() - r0;
+            Metrics m = metrics;
+            if (m != null && t0 != OFF) m.render(rendering[0]);
+            traversed(s, up, generations, nodes[0], t0 == OFF ? OFF : t0 + rendering[0], event);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            done(Metrics.Op.RENDER, t0);
+        }
+    }
+
+    /**
+     * Records latencies and ancestor-check work into {@code metrics} from now on; null switches that off.
+     * JFR events (familytree.Operation, .Traversal, .AncestrySearch) are emitted whenever a recording
+     * enables them, with or without Metrics.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        reachability.setMetrics(metrics);
+    }
+
+    public Metrics metrics() { return metrics; }
+
+    // Operation timing: the clock is read only when Metrics or a JFR recording is listening.
+    private long start() { return metrics != null || OperationEvent.recording() ? System.nanoTime() : OFF; }
+
+    private void done(Metrics.Op op, long t0) {
+        if (t0 == OFF) return;
+        long nanos = System.nanoTime() - t0;
+        Metrics m = metrics;
+        if (m != null) m.record(op, nanos);
+        OperationEvent.emit(op, nanos);
     }
 
     // setters to change strategy/renderer at runtime (polymorphism)
@@ -0,0 +1,36 @@
+package familytree.service;
+
+/** Counts and sums per group from a column scan; group k holds keys [firstKey + k * width, firstKey + (k + 1) * width). */
+public final class GroupStats {
+    private final int firstKey;
+    private final int width;
+    private final long[] counts;
+    private final long[] sums;
+
+    GroupStats(int firstKey, int width, long[] counts, long[] sums) {
+        this.firstKey = firstKey;
+        this.width = width;
+        this.counts = counts;
+        this.sums = sums;
+    }
+
+    public int groups() { return counts.length; }
+    /** First key of group k, e.g. the generation or the first year of the decade. */
+    public int key(int k) { return firstKey + k * width; }
+    public long count(int k) { return counts[k]; }
+    public long sum(int k) { return sums[k]; }
+    /** Mean of the summed value over group k; NaN for an empty group. */
+    public double mean(int k) { return counts[k] == 0 ? Double.NaN : (double) sums[k] / counts[k]; }
+
+    public long totalCount() {
+        long n = 0;
+        for (long c : counts) n += c;
+        return n;
+    }
+
+    public double overallMean() {
+        long n = 0, s = 0;
+        for (int k = 0; k < counts.length; k++) { n += counts[k]; s += sums[k]; }
+        return n == 0 ? Double.NaN : (double) s / n;
+    }
+}
@@ -0,0 +1,67 @@
+package familytree.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram of non-negative longs in the style of HdrHistogram: values below 32 get a
+ * bucket each, and every power of two above that is split into 32 equal buckets, so a percentile is
+ * reported within about 3% of the recorded value at any magnitude, in a fixed 1888 buckets.
+ * Recording is lock-free (one atomic increment, plus a CAS only when a new maximum is seen);
+ * percentiles read while others record are approximate, never torn.
+ */
+public final class Histogram {
+    private static final int SUB_BITS = 5, SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB + (63 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder(), sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        long m = max.get();
+        while (v > m && !max.compareAndSet(m, v)) m = max.get();
+    }
+
+    public long count() { return count.sum(); }
+    public long sum() { return sum.sum(); }
+    public long max() { return max.get(); }
+
+    public double mean() {
+        long n = count();
+        return n == 0 ? 0 : (double) sum() / n;
+    }
+
+    /** Smallest value at or below which {@code percent} of the recorded values fall, to bucket precision. */
+    public long percentile(double percent) {
+        if (!(percent >= 0 && percent <= 100)) throw new IllegalArgumentException("percentile in [0, 100] required");
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * total)), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highest(i), max());
+        }
+        return max();
+    }
+
+    private static int bucket(long v) {
+        if (v < SUB) return (int) v;
+        int e = 63 - Long.numberOfLeadingZeros(v);
+        return SUB + (e - SUB_BITS) * SUB + (int) (v >>> (e - SUB_BITS)) - SUB;
+    }
+
+    // Largest value that lands in bucket i.
+    private static long highest(int i) {
+        if (i < SUB) return i;
+        int shift = (i - SUB) / SUB;
+        long lower = (long) ((i - SUB) % SUB + SUB) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
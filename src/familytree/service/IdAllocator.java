@@ -0,0 +1,22 @@
+package familytree.service;
+
+/**
+ * Hands out person ids for one FamilyTree. Each tree owns its allocator, so trees built side by side
+ * (tests, generators, parallel imports) get reproducible ids that do not depend on each other.
+ */
+public interface IdAllocator {
+    /** A fresh id, unused in this tree. */
+    String next();
+
+    /** Records an id assigned elsewhere (journal replay) so that next() never returns it. */
+    void reserve(String id);
+
+    /** Sequence position saved with snapshots; allocators without one return 0. */
+    default int counter() { return 0; }
+
+    /** Restores a position saved by counter(): later ids come after it. */
+    default void advance(int counter) {}
+
+    /** "P001", "P002", ... counting up from 1, widening past "P999". */
+    static IdAllocator sequential() { return new SequentialIdAllocator("P", 3); }
+}
@@ -0,0 +1,47 @@
+package familytree.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Outcome of a bulk load: counts, throughput and every problem found, collected rather than thrown. */
+public final class ImportReport {
+    private final List<String> problems = new ArrayList<>();
+    private long records;
+    private int people;
+    private int links;
+    private int marriages;
+    private boolean linksApplied;
+    private long elapsedNanos;
+
+    public void problem(String message) { problems.add(message); }
+    public void countRecord() { records++; }
+
+    void finished(int people, int links, int marriages, boolean linksApplied, long elapsedNanos) {
+        this.people = people;
+        this.links = links;
+        this.marriages = marriages;
+        this.linksApplied = linksApplied;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<String> getProblems() { return Collections.unmodifiableList(problems); }
+    public boolean hasProblems() { return !problems.isEmpty(); }
+    public long getRecords() { return records; }
+    public int getPeople() { return people; }
+    public int getLinks() { return links; }
+    public int getMarriages() { return marriages; }
+    /** False when validation failed and no parent/child link of the batch was applied. */
+    public boolean isLinksApplied() { return linksApplied; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double recordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+    }
+
+    public String summary() {
+        return String.format("%d records, %d people, %d links%s, %d marriages, %d problems in %d ms (%.0f records/s)",
+                records, people, links, linksApplied ? "" : " (NOT applied)", marriages, problems.size(),
+                elapsedNanos / 1_000_000, recordsPerSecond());
+    }
+}
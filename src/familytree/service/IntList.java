@@ -0,0 +1,51 @@
+package familytree.service;
+
+import java.util.Arrays;
+
+/** Minimal growable int array, used for node-id frontiers and adjacency without boxing. */
+public final class IntList {
+    private int[] data;
+    private int size;
+
+    public IntList() { this(8); }
+    public IntList(int capacity) { this.data = new int[Math.max(1, capacity)]; }
+
+    public void add(int v) {
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        data[size++] = v;
+    }
+
+    /** Inserts {@code v} into a list kept in ascending order. */
+    public void addSorted(int v) {
+        int i = Arrays.binarySearch(data, 0, size, v);
+        if (i < 0) i = -i - 1;
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        System.arraycopy(data, i, data, i + 1, size - i);
+        data[i] = v;
+        size++;
+    }
+
+    /** Removes {@code v} from a list kept in ascending order, in place; false if it was not there. */
+    public boolean removeSorted(int v) {
+        int i = Arrays.binarySearch(data, 0, size, v);
+        if (i < 0) return false;
+        System.arraycopy(data, i + 1, data, i, size - i - 1);
+        size--;
+        return true;
+    }
+
+    public int get(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException(i + " >= " + size);
+        return data[i];
+    }
+
+    public int pop() {
+        if (size == 0) throw new IllegalStateException("empty");
+        return data[--size];
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public void clear() { size = 0; }
+    public int[] toArray() { return Arrays.copyOf(data, size); }
+}
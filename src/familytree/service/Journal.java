@@ -0,0 +1,279 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Person;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of registry mutations. Registered as a TreeListener, it encodes each
+ * applied mutation as one compact record: {@code [int length][byte type][payload][int crc32]}, with
+ * people referenced by node id. Records collect in a buffer; a flusher thread writes and fsyncs them in
+ * groups. In SYNC mode a mutation returns once its record is durable (concurrent writers share one
+ * fsync); in GROUPED mode it returns at once and the flusher syncs every {@code groupWindowMillis}.
+ */
+public final class Journal implements TreeListener, Closeable {
+    public enum Durability { SYNC, GROUPED }
+
+    static final byte ADD_PERSON = 1, LINK = 2, UNLINK = 3, MARRY = 4, DIVORCE = 5,
+            SET_NAME = 6, SET_BIRTH = 7, SET_DEATH = 8, MERGE = 9;
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+    private static final int MAX_RECORD = 1 << 18;
+
+    private final PersonGraph graph;
+    private final Durability durability;
+    private final long groupWindowMillis;
+    private final Object lock = new Object();        // guards the append buffer and sequence numbers
+    private final Object writeLock = new Object();   // held while a batch is written to the channel
+    private final Thread flusher;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private ByteBuffer active = ByteBuffer.allocate(2 * MAX_RECORD);
+    private ByteBuffer writing = ByteBuffer.allocate(2 * MAX_RECORD);
+    private long appended, durable;
+    private IOException failure;
+    private boolean closed;
+
+    Journal(PersonGraph graph, Path segment, Durability durability, long groupWindowMillis) throws IOException {
+        this.graph = graph;
+        this.durability = durability;
+        this.groupWindowMillis = groupWindowMillis;
+        this.channel = openSegment(segment);
+        this.flusher = new Thread(this::flushLoop, "familytree-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    static FileChannel openSegment(Path segment) throws IOException {
+        FileChannel ch = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        ch.position(ch.size());
+        return ch;
+    }
+
+    // ---- TreeListener: encode applied mutations ----
+
+    @Override public void personAdded(Person p) {
+        Integer d = p.getDeathYear();
+        append(ADD_PERSON, b -> {
+            putString(b, p.getId());
+            putString(b, p.getFullName());
+            b.put((byte) p.getGender().ordinal());
+            b.putInt(p.getBirthYear());
+            b.putInt(d == null ? NO_YEAR : d);
+        });
+    }
+    @Override public void linked(int parent, int child) { append(LINK, b -> b.putInt(parent).putInt(child)); }
+    @Override public void unlinked(int parent, int child) { append(UNLINK, b -> b.putInt(parent).putInt(child)); }
+    @Override public void married(Marriage m) {
+        int a = graph.require(m.getSpouseAId()), c = graph.require(m.getSpouseBId());
+        append(MARRY, b -> b.putInt(a).putInt(c).putInt(m.getMarriageYear()));
+    }
+    @Override public void divorced(Marriage m) {
+        int a = graph.require(m.getSpouseAId()), c = graph.require(m.getSpouseBId());
+        append(DIVORCE, b -> b.putInt(a).putInt(c).putInt(m.getDivorceYear()));
+    }
+    // The moved links were journaled as LINK/UNLINK records just before; this one moves the marriages.
+    @Override public void merged(Person kept, Person dropped, List<Marriage> removed) {
+        append(MERGE, b -> b.putInt(kept.getNode()).putInt(dropped.getNode()));
+    }
+    @Override public void nameChanged(Person p, String old) {
+        append(SET_NAME, b -> { b.putInt(p.getNode()); putString(b, p.getFullName()); });
+    }
+    @Override public void birthYearChanged(Person p, int old) {
+        append(SET_BIRTH, b -> b.putInt(p.getNode()).putInt(p.getBirthYear()));
+    }
+    @Override public void deathYearChanged(Person p, Integer old) {
+        Integer d = p.getDeathYear();
+        append(SET_DEATH, b -> b.putInt(p.getNode()).putInt(d == null ? NO_YEAR : d));
+    }
+
+    private interface Payload { void write(ByteBuffer b); }
+
+    private void append(byte type, Payload payload) {
+        long seq;
+        synchronized (lock) {
+            if (closed) throw new IllegalStateException("Journal closed");
+            if (failure != null) throw new UncheckedIOException("Journal write failed", failure);
+            if (active.remaining() < MAX_RECORD) active = grow(active);
+            int start = active.position();
+            active.putInt(0).put(type);
+            payload.write(active);
+            int len = active.position() - start - 4;
+            active.putInt(start, len);
+            crc.reset();
+            crc.update(active.array(), start + 4, len);
+            active.putInt((int) crc.getValue());
+            seq = ++appended;
+            if (start == 0 || durability == Durability.SYNC) lock.notifyAll();   // wake an idle flusher
+        }
+        if (durability == Durability.SYNC) awaitDurable(seq);
+    }
+
+    // ---- group commit ----
+
+    /** Blocks until every record appended so far is on disk. */
+    public void flush() { awaitDurable(appendedSeq()); }
+
+    private long appendedSeq() { synchronized (lock) { return appended; } }
+
+    private void awaitDurable(long seq) {
+        synchronized (lock) {
+            lock.notifyAll();
+            while (durable < seq && failure == null) {
+                try { lock.wait(); } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for journal sync");
+                }
+            }
+            if (failure != null && durable < seq) throw new UncheckedIOException("Journal write failed", failure);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (lock) {
+                while (active.position() == 0 && !closed) {
+                    try { lock.wait(); } catch (InterruptedException ex) { return; }
+                }
+                if (closed && active.position() == 0) return;
+                if (durability == Durability.GROUPED && groupWindowMillis > 0 && !closed) {
+                    try { lock.wait(groupWindowMillis); } catch (InterruptedException ex) { return; }
+                }
+            }
+            synchronized (writeLock) { writeBatch(); }
+        }
+    }
+
+    // Swaps buffers under the append lock, then writes and fsyncs without blocking appenders.
+    private void writeBatch() {
+        long target;
+        synchronized (lock) {
+            ByteBuffer t = writing; writing = active; active = t;
+            active.clear();
+            target = appended;
+        }
+        try {
+            writing.flip();
+            while (writing.hasRemaining()) channel.write(writing);
+            channel.force(false);
+            writing.clear();
+            synchronized (lock) { durable = Math.max(durable, target); lock.notifyAll(); }
+        } catch (IOException ex) {
+            synchronized (lock) { failure = ex; lock.notifyAll(); }
+        }
+    }
+
+    /** Drains pending records into the current segment, then continues in {@code next}. */
+    void rotate(Path next) throws IOException {
+        FileChannel nextChannel = openSegment(next);
+        synchronized (writeLock) {
+            writeBatch();
+            channel.close();
+            channel = nextChannel;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) { closed = true; lock.notifyAll(); }
+        try { flusher.join(); } catch (InterruptedException ex) { Thread.currentThread().interrupt(); }
+        synchronized (writeLock) {
+            writeBatch();
+            channel.close();
+        }
+        if (failure != null) throw failure;
+    }
+
+    // ---- replay ----
+
+    /**
+     * Applies every intact record of a segment to the tree (which must not have the journal attached).
+     * A torn or corrupt tail, e.g. from a crash mid-write, is truncated. Returns the records applied.
+     */
+    static long replay(FamilyTree tree, Path segment) throws IOException {
+        long applied = 0, good = 0;
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+            CRC32 check = new CRC32();
+            while (true) {
+                int read = ch.read(buf);
+                buf.flip();
+                boolean corrupt = false;
+                while (buf.remaining() >= 4) {
+                    int len = buf.getInt(buf.position());
+                    if (len <= 0 || len > MAX_RECORD) { corrupt = true; break; }
+                    if (buf.remaining() < len + 8) break;
+                    byte[] rec = new byte[len];
+                    buf.position(buf.position() + 4);
+                    buf.get(rec);
+                    check.reset();
+                    check.update(rec);
+                    if ((int) check.getValue() != buf.getInt()) { corrupt = true; break; }
+                    apply(tree, ByteBuffer.wrap(rec));
+                    good += len + 8;
+                    applied++;
+                }
+                if (corrupt || read < 0) break;
+                buf.compact();
+                if (!buf.hasRemaining()) buf = grow(buf);
+            }
+            if (good < ch.size()) ch.truncate(good);
+        }
+        return applied;
+    }
+
+    private static void apply(FamilyTree tree, ByteBuffer r) {
+        PersonGraph g = tree.graph();
+        switch (r.get()) {
+            case ADD_PERSON: {
+                String id = getString(r), name = getString(r);
+                Gender gender = Gender.values()[r.get()];
+                int birth = r.getInt(), death = r.getInt();
+                tree.restorePerson(id, name, gender, birth, death == NO_YEAR ? null : death);
+                break;
+            }
+            case LINK: tree.linkParentChild(g.idOf(r.getInt()), g.idOf(r.getInt())); break;
+            case UNLINK: tree.unlinkParentChild(g.idOf(r.getInt()), g.idOf(r.getInt())); break;
+            case MARRY: tree.marry(g.idOf(r.getInt()), g.idOf(r.getInt()), r.getInt()); break;
+            case DIVORCE: tree.divorce(g.idOf(r.getInt()), g.idOf(r.getInt()), r.getInt()); break;
+            case SET_NAME: g.person(r.getInt()).setFullName(getString(r)); break;
+            case SET_BIRTH: g.person(r.getInt()).setBirthYear(r.getInt()); break;
+            case SET_DEATH: {
+                Person p = g.person(r.getInt());
+                int d = r.getInt();
+                p.setDeathYear(d == NO_YEAR ? null : d);
+                break;
+            }
+            case MERGE: tree.absorb(r.getInt(), r.getInt()); break;
+            default: throw new IllegalStateException("Unknown journal record type");
+        }
+    }
+
+    private static void putString(ByteBuffer b, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IllegalArgumentException("String too long for journal");
+        b.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getShort() & 0xFFFF];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer grow(ByteBuffer b) {
+        ByteBuffer bigger = ByteBuffer.allocate(b.capacity() * 2);
+        b.flip();
+        return bigger.put(b);
+    }
+}
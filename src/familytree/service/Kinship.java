@@ -0,0 +1,279 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Wright's inbreeding coefficients and coancestry (kinship) over the pedigree, by the Meuwissen-Luo
+ * method: with A = L D L' the additive relationship matrix, F(i) = sum L(i,k)^2 D(k) - 1 over i and
+ * its ancestors k, and D(k) = 1/2 - (F(sire) + F(dam)) / 4 (an unknown parent counts as F = -1).
+ * A row of L is built sparsely by walking ancestors youngest-first from a heap keyed by topological
+ * level, so cost follows ancestry size and pedigree collapse only merges paths instead of multiplying
+ * them. F is memoized per node; single queries compute just the missing ancestry, in level order.
+ * Each tree keeps one Kinship, registered as a listener: a link or unlink forgets F for the child and
+ * its descendants, which is all it can change. Scratch space is pooled, at most one per core is kept.
+ */
+public final class Kinship implements TreeListener {
+    private static final int SPARE_WORKSPACES = Runtime.getRuntime().availableProcessors();
+
+    private final PersonGraph graph;
+    private final ReachabilityIndex reachability;
+    private double[] inbreeding;   // NaN until computed; a computed node's ancestors are all computed
+    private final ConcurrentLinkedQueue<Workspace> idle = new ConcurrentLinkedQueue<>();
+
+    Kinship(FamilyTree tree) {
+        this.graph = tree.graph();
+        this.reachability = tree.reachability();
+        this.inbreeding = new double[Math.max(16, graph.size())];
+        Arrays.fill(inbreeding, Double.NaN);
+    }
+
+    /** The tree's Kinship; same as {@code tree.kinship()}. */
+    public static Kinship of(FamilyTree tree) { return tree.kinship(); }
+
+    /** Wright's inbreeding coefficient F: the kinship of the person's two parents. */
+    public double inbreeding(String id) {
+        int node = graph.require(id);
+        Workspace w = borrow();
+        try {
+            ensure(new int[] {node}, w);
+        } finally {
+            release(w);
+        }
+        return inbreeding[node];
+    }
+
+    /** Coancestry: probability that alleles drawn at random from each are identical by descent. */
+    public double coancestry(String aId, String bId) {
+        int a = graph.require(aId), b = graph.require(bId);
+        Workspace w = borrow();
+        try {
+            ensure(new int[] {a, b}, w);
+            return w.coancestry(a, b);
+        } finally {
+            release(w);
+        }
+    }
+
+    /** Coancestry of each pair {@code (as[i], bs[i])}, sharing one pass over the union of ancestries. */
+    public double[] coancestry(List<String> as, List<String> bs) {
+        if (as.size() != bs.size()) throw new IllegalArgumentException("Pair lists differ in length");
+        int[] nodes = new int[as.size() * 2];
+        for (int i = 0; i < as.size(); i++) {
+            nodes[2 * i] = graph.require(as.get(i));
+            nodes[2 * i + 1] = graph.require(bs.get(i));
+        }
+        Workspace w = borrow();
+        try {
+            ensure(nodes, w);
+            double[] out = new double[as.size()];
+            for (int i = 0; i < out.length; i++) out[i] = w.coancestry(nodes[2 * i], nodes[2 * i + 1]);
+            return out;
+        } finally {
+            release(w);
+        }
+    }
+
+    /**
+     * Inbreeding coefficient of everyone, indexed by PersonGraph node. Generations (topological levels)
+     * are processed in order; in parallel mode the people of one level are spread over the common pool.
+     */
+    public double[] inbreedingAll(boolean parallel) {
+        int n = graph.size();
+        int maxLevel = 0;
+        for (int v = 0; v < n; v++) maxLevel = Math.max(maxLevel, reachability.levelOf(v));
+        int[] start = new int[maxLevel + 2];
+        for (int v = 0; v < n; v++) start[reachability.levelOf(v) + 1]++;
+        for (int l = 0; l <= maxLevel; l++) start[l + 1] += start[l];
+        int[] byLevel = new int[n], fill = Arrays.copyOf(start, maxLevel + 1);
+        for (int v = 0; v < n; v++) byLevel[fill[reachability.levelOf(v)]++] = v;
+
+        for (int l = 0; l <= maxLevel; l++) {
+            IntStream range = IntStream.range(start[l], start[l + 1]);
+            if (parallel && start[l + 1] - start[l] > 256) range = range.parallel();
+            range.forEach(i -> {
+                if (!Double.isNaN(inbreeding[byLevel[i]])) return;
+                Workspace w = borrow();
+                try {
+                    compute(byLevel[i], w);
+                } finally {
+                    release(w);
+                }
+            });
+        }
+        return Arrays.copyOf(inbreeding, n);
+    }
+
+    // ---- kept current ----
+
+    @Override
+    public void personAdded(Person p) {
+        int n = p.getNode() + 1, old = inbreeding.length;
+        if (n <= old) return;
+        inbreeding = Arrays.copyOf(inbreeding, Math.max(n, 2 * old));
+        Arrays.fill(inbreeding, old, inbreeding.length, Double.NaN);
+    }
+
+    @Override public void linked(int parent, int child) { forget(child); }
+    @Override public void unlinked(int parent, int child) { forget(child); }
+
+    // Clears F below and at {@code v}; a node already clear has no computed descendants.
+    private void forget(int v) {
+        IntList stack = new IntList();
+        stack.add(v);
+        while (!stack.isEmpty()) {
+            int u = stack.pop();
+            if (Double.isNaN(inbreeding[u])) continue;
+            inbreeding[u] = Double.NaN;
+            for (int i = 0; i < graph.childCount(u); i++) stack.add(graph.child(u, i));
+        }
+    }
+
+    private Workspace borrow() {
+        int n = graph.size();
+        for (Workspace w; (w = idle.poll()) != null; ) if (w.row.length >= n) return w;   // outgrown ones are dropped
+        return new Workspace(Math.max(16, inbreeding.length));
+    }
+
+    private void release(Workspace w) { if (idle.size() < SPARE_WORKSPACES) idle.offer(w); }
+
+    // ---- memoized evaluation ----
+
+    // Computes F for the nodes and any ancestors still missing it, parents before children.
+    private void ensure(int[] nodes, Workspace w) {
+        IntList missing = new IntList();
+        int stamp = w.nextStamp();
+        for (int v : nodes) if (w.mark[v] != stamp && Double.isNaN(inbreeding[v])) { w.mark[v] = stamp; missing.add(v); }
+        for (int i = 0; i < missing.size(); i++) {
+            int v = missing.get(i);
+            for (int s = 0; s < 2; s++) {
+                int p = graph.parent(v, s);
+                if (p != PersonGraph.NONE && w.mark[p] != stamp && Double.isNaN(inbreeding[p])) { w.mark[p] = stamp; missing.add(p); }
+            }
+        }
+        long[] order = new long[missing.size()];
+        for (int i = 0; i < order.length; i++) order[i] = key(missing.get(i));
+        Arrays.sort(order);
+        for (long k : order) compute((int) k, w);
+    }
+
+    private void compute(int v, Workspace w) {
+        int s = graph.parent(v, 0), d = graph.parent(v, 1);
+        if (s == PersonGraph.NONE || d == PersonGraph.NONE) { inbreeding[v] = 0; return; }
+        inbreeding[v] = w.sumSquares(v) - 1;
+    }
+
+    private double within(int k) {
+        return 0.5 - 0.25 * (parentF(graph.parent(k, 0)) + parentF(graph.parent(k, 1)));
+    }
+
+    private double parentF(int p) { return p == PersonGraph.NONE ? -1 : inbreeding[p]; }
+
+    // Higher level first, so every descendant of k in a row is finished before k is popped.
+    private long key(int node) { return ((long) reachability.levelOf(node) << 32) | node; }
+
+    /** Pooled scratch, one per concurrent query: dense row values addressed sparsely, visit stamps and a max-heap of keys. */
+    private final class Workspace {
+        final double[] row, other;
+        final int[] mark;
+        final int[] otherMark;
+        long[] heap = new long[64];
+        int heapSize, stamp, otherStamp;
+
+        Workspace(int n) {
+            row = new double[n];
+            other = new double[n];
+            mark = new int[n];
+            otherMark = new int[n];
+        }
+
+        int nextStamp() {
+            if (++stamp <= 0) { Arrays.fill(mark, 0); stamp = 1; }
+            return stamp;
+        }
+
+        /** Sum of L(v,k)^2 D(k) over v and its ancestors: the diagonal entry A(v,v) = 1 + F(v). */
+        double sumSquares(int v) {
+            double sum = 0;
+            int st = walkStart(v);
+            while (heapSize > 0) {
+                int k = (int) pop();
+                double l = row[k];
+                sum += l * l * within(k);
+                spread(k, l, st);
+            }
+            return sum;
+        }
+
+        /** A(a,b) / 2, from the sparse rows of L for a and b. */
+        double coancestry(int a, int b) {
+            if (++otherStamp <= 0) { Arrays.fill(otherMark, 0); otherStamp = 1; }
+            int st = walkStart(a);
+            while (heapSize > 0) {
+                int k = (int) pop();
+                double l = row[k];
+                other[k] = l;
+                otherMark[k] = otherStamp;
+                spread(k, l, st);
+            }
+            double sum = 0;
+            st = walkStart(b);
+            while (heapSize > 0) {
+                int k = (int) pop();
+                double l = row[k];
+                if (otherMark[k] == otherStamp) sum += other[k] * l * within(k);
+                spread(k, l, st);
+            }
+            return sum / 2;
+        }
+
+        private int walkStart(int v) {
+            int st = nextStamp();
+            heapSize = 0;
+            mark[v] = st;
+            row[v] = 1;
+            push(key(v));
+            return st;
+        }
+
+        private void spread(int k, double l, int st) {
+            for (int s = 0; s < 2; s++) {
+                int p = graph.parent(k, s);
+                if (p == PersonGraph.NONE) continue;
+                if (mark[p] != st) { mark[p] = st; row[p] = 0; push(key(p)); }
+                row[p] += 0.5 * l;
+            }
+        }
+
+        private void push(long key) {
+            if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] >= key) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = key;
+        }
+
+        private long pop() {
+            long top = heap[0], last = heap[--heapSize];
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= heapSize) break;
+                if (c + 1 < heapSize && heap[c + 1] > heap[c]) c++;
+                if (heap[c] <= last) break;
+                heap[i] = heap[c];
+                i = c;
+            }
+            if (heapSize > 0) heap[i] = last;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+/** How many distinct descendants, living descendants and ancestors a person has, as kept by FamilyTree. */
+public final class Lineage {
+    /** What a ranking orders people by. */
+    public enum Measure { DESCENDANTS, LIVING_DESCENDANTS, ANCESTORS }
+
+    private final Person person;
+    private final int descendants, livingDescendants, ancestors;
+    private final int exact;   // bit per Measure ordinal
+
+    Lineage(Person person, int descendants, int livingDescendants, int ancestors, int exact) {
+        this.person = person;
+        this.descendants = descendants;
+        this.livingDescendants = livingDescendants;
+        this.ancestors = ancestors;
+        this.exact = exact;
+    }
+
+    public Person getPerson() { return person; }
+    /** Everyone below the person, each counted once however many lines lead to them. */
+    public int getDescendants() { return descendants; }
+    /** Descendants with no death year. */
+    public int getLivingDescendants() { return livingDescendants; }
+    /** Everyone above the person, each counted once under pedigree collapse. */
+    public int getAncestors() { return ancestors; }
+
+    public int get(Measure measure) {
+        return switch (measure) {
+            case DESCENDANTS -> descendants;
+            case LIVING_DESCENDANTS -> livingDescendants;
+            case ANCESTORS -> ancestors;
+        };
+    }
+
+    /** False if the count is a HyperLogLog estimate, which happens above a hundred or so people. */
+    public boolean isExact(Measure measure) { return (exact & 1 << measure.ordinal()) != 0; }
+
+    /** E.g. "12 descendants (9 living), ~1480 ancestors"; "~" marks an estimate. */
+    public String describe() {
+        return String.format("%s%d descendants (%s%d living), %s%d ancestors", mark(Measure.DESCENDANTS), descendants,
+                mark(Measure.LIVING_DESCENDANTS), livingDescendants, mark(Measure.ANCESTORS), ancestors);
+    }
+
+    private String mark(Measure measure) { return isExact(measure) ? "" : "~"; }
+}
@@ -0,0 +1,330 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Distinct descendants, living descendants and ancestors of everyone, kept current as a TreeListener.
+ * Each person holds one set per measure: a sorted array of node ids while it has at most EXACT_LIMIT
+ * members, then a HyperLogLog sketch of 2^P one-byte registers (standard error 1.04 / sqrt(2^P), about
+ * 4.6%). Both are unions, so a person reachable through two lines is counted once. The descendants of
+ * p are the union over its children c of {c} and the descendants of c, and symmetrically for ancestors,
+ * so a link merges the new members into the parent's ancestors (or the child's descendants) and stops
+ * wherever a set does not change: everything beyond it already contains that set. Sketches cannot
+ * forget, so an unlink recomputes the affected cone exactly, in topological-level order, and a death
+ * does the same for the living sets above the person. Counts are cached per person, so lookups are
+ * O(1) and a top-N ranking is one scan.
+ */
+final class LineageIndex implements TreeListener {
+    static final int DESCENDANTS = 0, LIVING = 1, ANCESTORS = 2;   // Lineage.Measure ordinals
+    private static final int EXACT_LIMIT = 128;
+    private static final int P = 9, M = 1 << P;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    private final PersonGraph graph;
+    private final ReachabilityIndex reachability;
+    private Object[][] sets = new Object[3][16];   // per measure and node: null (empty), int[] or byte[]
+    private int[][] counts = new int[3][16];
+    private boolean[] alive = new boolean[16];
+    private int[] mark = new int[16];
+    private int epoch;
+    private boolean changed;   // set by union()
+    private final IntList work = new IntList();
+
+    /** Counts everyone already registered; afterwards listener events keep it current. */
+    LineageIndex(PersonGraph graph, ReachabilityIndex reachability) {
+        this.graph = graph;
+        this.reachability = reachability;
+        rebuild();
+    }
+
+    // ---- maintenance ----
+
+    /** Recomputes every set in topological order; used after bulk loads, which add edges without events. */
+    synchronized void rebuild() {
+        int n = graph.size();
+        ensureCapacity(n);
+        for (Object[] s : sets) Arrays.fill(s, 0, n, null);
+        for (int v = 0; v < n; v++) alive[v] = graph.person(v).isAlive();
+        int[] order = byLevel(n);
+        for (int i = n - 1; i >= 0; i--) recomputeBelow(order[i]);
+        for (int i = 0; i < n; i++) recomputeAbove(order[i]);
+    }
+
+    @Override
+    public synchronized void personAdded(Person p) {
+        int v = p.getNode();
+        ensureCapacity(v + 1);
+        for (int m = 0; m < 3; m++) { sets[m][v] = null; counts[m][v] = 0; }
+        alive[v] = p.isAlive();
+    }
+
+    @Override
+    public synchronized void linked(int parent, int child) {
+        mergeUp(parent, DESCENDANTS, add(copy(sets[DESCENDANTS][child]), child));
+        Object living = copy(sets[LIVING][child]);
+        mergeUp(parent, LIVING, alive[child] ? add(living, child) : living);
+        mergeDown(child, add(copy(sets[ANCESTORS][parent]), parent));
+    }
+
+    @Override
+    public synchronized void unlinked(int parent, int child) {
+        IntList up = cone(parent, true);
+        for (int i = up.size() - 1; i >= 0; i--) recomputeBelow(up.get(i));
+        IntList down = cone(child, false);
+        for (int i = 0; i < down.size(); i++) recomputeAbove(down.get(i));
+    }
+
+    @Override
+    public synchronized void deathYearChanged(Person p, Integer oldYear) {
+        int v = p.getNode();
+        if (alive[v] == p.isAlive()) return;
+        alive[v] = p.isAlive();
+        if (alive[v]) {
+            for (int s = 0; s < 2; s++) if (graph.parent(v, s) != PersonGraph.NONE) mergeUp(graph.parent(v, s), LIVING, add(null, v));
+            return;
+        }
+        // v leaves the living sets of everyone above it. It comes last in its own cone, and its own set stays.
+        IntList up = cone(v, true);
+        for (int i = up.size() - 2; i >= 0; i--) recompute(up.get(i), LIVING);
+    }
+
+    // Merges {@code members} into the measure's set of {@code from} and its ancestors, up to where nothing changes.
+    private void mergeUp(int from, int measure, Object members) {
+        if (members == null) return;
+        work.clear();
+        work.add(from);
+        while (!work.isEmpty()) {
+            int n = work.pop();
+            sets[measure][n] = union(sets[measure][n], members);
+            if (!changed) continue;
+            counts[measure][n] = count(sets[measure][n]);
+            for (int s = 0; s < 2; s++) if (graph.parent(n, s) != PersonGraph.NONE) work.add(graph.parent(n, s));
+        }
+    }
+
+    private void mergeDown(int from, Object members) {
+        work.clear();
+        work.add(from);
+        while (!work.isEmpty()) {
+            int n = work.pop();
+            sets[ANCESTORS][n] = union(sets[ANCESTORS][n], members);
+            if (!changed) continue;
+            counts[ANCESTORS][n] = count(sets[ANCESTORS][n]);
+            for (int i = 0; i < graph.childCount(n); i++) work.add(graph.child(n, i));
+        }
+    }
+
+    private void recomputeBelow(int v) {
+        recompute(v, DESCENDANTS);
+        recompute(v, LIVING);
+    }
+
+    private void recompute(int v, int measure) {
+        Object s = null;
+        for (int i = 0; i < graph.childCount(v); i++) {
+            int c = graph.child(v, i);
+            s = union(s, sets[measure][c]);
+            if (measure == DESCENDANTS || alive[c]) s = add(s, c);
+        }
+        sets[measure][v] = s;
+        counts[measure][v] = count(s);
+    }
+
+    private void recomputeAbove(int v) {
+        Object s = null;
+        for (int k = 0; k < 2; k++) {
+            int q = graph.parent(v, k);
+            if (q == PersonGraph.NONE) continue;
+            s = add(union(s, sets[ANCESTORS][q]), q);
+        }
+        sets[ANCESTORS][v] = s;
+        counts[ANCESTORS][v] = count(s);
+    }
+
+    // {@code v} and everyone above it (or below it), in ascending topological level.
+    private IntList cone(int v, boolean up) {
+        int stamp = nextEpoch();
+        IntList cone = new IntList();
+        cone.add(v);
+        mark[v] = stamp;
+        for (int head = 0; head < cone.size(); head++) {
+            int n = cone.get(head);
+            int degree = up ? 2 : graph.childCount(n);
+            for (int i = 0; i < degree; i++) {
+                int x = up ? graph.parent(n, i) : graph.child(n, i);
+                if (x != PersonGraph.NONE && mark[x] != stamp) { mark[x] = stamp; cone.add(x); }
+            }
+        }
+        long[] order = new long[cone.size()];
+        for (int i = 0; i < order.length; i++) order[i] = ((long) reachability.levelOf(cone.get(i)) << 32) | cone.get(i);
+        Arrays.sort(order);
+        IntList sorted = new IntList(order.length);
+        for (long key : order) sorted.add((int) key);
+        return sorted;
+    }
+
+    // All nodes in ascending topological level, by counting sort.
+    private int[] byLevel(int n) {
+        int maxLevel = 0;
+        for (int v = 0; v < n; v++) maxLevel = Math.max(maxLevel, reachability.levelOf(v));
+        int[] start = new int[maxLevel + 2];
+        for (int v = 0; v < n; v++) start[reachability.levelOf(v) + 1]++;
+        for (int l = 0; l <= maxLevel; l++) start[l + 1] += start[l];
+        int[] order = new int[n];
+        for (int v = 0; v < n; v++) order[start[reachability.levelOf(v)]++] = v;
+        return order;
+    }
+
+    // ---- lookups ----
+
+    /** The counts of one node; a set still held exactly gives an exact count. */
+    synchronized Lineage lineage(int v) {
+        int exact = 0;
+        for (int m = 0; m < 3; m++) if (!(sets[m][v] instanceof byte[])) exact |= 1 << m;
+        return new Lineage(graph.person(v), counts[DESCENDANTS][v], counts[LIVING][v], counts[ANCESTORS][v], exact);
+    }
+
+    /** The {@code n} nodes with the highest counts of the measure, highest first; ties go to the earlier node. */
+    synchronized List<Lineage> top(int measure, int n) {
+        if (n <= 0) return List.of();
+        int[] c = counts[measure];
+        PriorityQueue<Long> best = new PriorityQueue<>(n + 1);
+        for (int v = 0; v < graph.size(); v++) {
+            long key = ((long) c[v] << 32) | (Integer.MAX_VALUE - v);
+            if (best.size() < n) best.add(key);
+            else if (key > best.peek()) { best.poll(); best.add(key); }
+        }
+        List<Lineage> out = new ArrayList<>(best.size());
+        while (!best.isEmpty()) out.add(lineage(Integer.MAX_VALUE - (int) (long) best.poll()));
+        Collections.reverse(out);
+        return out;
+    }
+
+    // ---- sets ----
+
+    private static Object copy(Object s) {
+        return s instanceof int[] a ? a.clone() : s instanceof byte[] r ? r.clone() : null;
+    }
+
+    /** {@code into} (owned, and updated in place when a sketch) with {@code from} added; sets {@code changed}. */
+    private Object union(Object into, Object from) {
+        changed = false;
+        if (from == null) return into;
+        if (into == null) {
+            changed = true;
+            return copy(from);
+        }
+        if (into instanceof int[] a && from instanceof int[] b) {
+            int[] merged = merge(a, b);
+            if (merged.length == a.length) return into;
+            changed = true;
+            return merged.length <= EXACT_LIMIT ? merged : registers(merged);
+        }
+        byte[] regs = into instanceof byte[] r ? r : registers((int[]) into);
+        boolean grown = false;   // if just promoted, against the registers of the old members
+        if (from instanceof int[] b) {
+            for (int v : b) grown |= offer(regs, v);
+        } else {
+            byte[] other = (byte[]) from;
+            for (int j = 0; j < M; j++) if (other[j] > regs[j]) { regs[j] = other[j]; grown = true; }
+        }
+        changed = grown;
+        return grown ? regs : into;
+    }
+
+    private Object add(Object s, int v) {
+        if (s == null) return new int[] {v};
+        if (s instanceof byte[] regs) {
+            offer(regs, v);
+            return regs;
+        }
+        int[] a = (int[]) s;
+        int i = Arrays.binarySearch(a, v);
+        if (i >= 0) return a;
+        i = -i - 1;
+        if (a.length == EXACT_LIMIT) {
+            byte[] regs = registers(a);
+            offer(regs, v);
+            return regs;
+        }
+        int[] out = new int[a.length + 1];
+        System.arraycopy(a, 0, out, 0, i);
+        out[i] = v;
+        System.arraycopy(a, i, out, i + 1, a.length - i);
+        return out;
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) out[k++] = a[i++];
+            else if (a[i] > b[j]) out[k++] = b[j++];
+            else { out[k++] = a[i++]; j++; }
+        }
+        while (i < a.length) out[k++] = a[i++];
+        while (j < b.length) out[k++] = b[j++];
+        return k == out.length ? out : Arrays.copyOf(out, k);
+    }
+
+    private static byte[] registers(int[] members) {
+        byte[] regs = new byte[M];
+        for (int v : members) offer(regs, v);
+        return regs;
+    }
+
+    // Adds one node to a sketch; true if a register rose.
+    private static boolean offer(byte[] regs, int v) {
+        long h = hash(v);
+        int j = (int) (h >>> (64 - P));
+        byte rank = (byte) (Long.numberOfLeadingZeros(h << P | 1L << (P - 1)) + 1);
+        if (rank <= regs[j]) return false;
+        regs[j] = rank;
+        return true;
+    }
+
+    private static int count(Object s) {
+        if (s == null) return 0;
+        if (s instanceof int[] a) return a.length;
+        byte[] regs = (byte[]) s;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : regs) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        }
+        double e = ALPHA * M * M / sum;
+        if (e <= 2.5 * M && zeros > 0) e = M * Math.log((double) M / zeros);   // linear counting for small sets
+        return (int) Math.round(e);
+    }
+
+    // SplitMix64 finalizer: node ids are dense, so they need full mixing before their bits are split.
+    private static long hash(int v) {
+        long z = (v + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private int nextEpoch() {
+        if (++epoch <= 0) { Arrays.fill(mark, 0); epoch = 1; }
+        return epoch;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= alive.length) return;
+        int cap = Math.max(n, alive.length * 2);
+        for (int m = 0; m < 3; m++) {
+            sets[m] = Arrays.copyOf(sets[m], cap);
+            counts[m] = Arrays.copyOf(counts[m], cap);
+        }
+        alive = Arrays.copyOf(alive, cap);
+        mark = Arrays.copyOf(mark, cap);
+    }
+}
@@ -0,0 +1,293 @@
+package familytree.service;
+
+import familytree.model.Marriage;
+import familytree.model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Every marriage in the tree, by dense marriage id, with:
+ * - the active marriage of each person, so spouse lookups and marry/divorce checks are O(1);
+ * - the marriages of each person, for as-of-year spouse lookups;
+ * - an interval tree over the years each marriage lasted, [marriage year, end], where the end is the
+ *   divorce year or the first spouse's death, and open while both live and stay married.
+ * The interval tree is keyed by marriage year: a complete binary tree over a range of years whose
+ * leaves hold the marriages contracted that year and whose inner nodes keep the latest end below them,
+ * so an overlap query only descends where something can still be in effect. The range doubles when a
+ * marriage falls outside it. A divorce or a death can only bring an end forward; leaf maxima count
+ * how many marriages reach them and are rescanned only when that count drops to zero.
+ * Synchronized, since a ConcurrentFamilyTree marries disjoint couples from several threads.
+ */
+final class MarriageRegistry implements TreeListener {
+    static final int NONE = -1;
+    private static final int OPEN = Integer.MAX_VALUE;
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+
+    private final PersonGraph graph;
+    private final IntFunction<Marriage> decoder;   // marriages restored from a snapshot, decoded on demand
+    private Marriage[] marriages = new Marriage[16];
+    private int[] spouseA = new int[16], spouseB = new int[16], start = new int[16], end = new int[16];
+    private int count, retired;
+    private int[] active = new int[0];
+    private IntList[] ofNode = new IntList[0];
+
+    // Interval tree: node k covers years [lo + l, lo + r); children 2k, 2k+1; leaves at cap + (year - lo).
+    private int lo, cap;
+    private IntList[] byYear;
+    private int[] maxEnd, atMax;
+
+    MarriageRegistry(PersonGraph graph) { this(graph, null); }
+
+    MarriageRegistry(PersonGraph graph, IntFunction<Marriage> decoder) {
+        this.graph = graph;
+        this.decoder = decoder;
+    }
+
+    // ---- maintenance ----
+
+    synchronized void married(Marriage m, int a, int b) {
+        int i = append(m, a, b, m.getMarriageYear(), endOf(OPEN, death(a), death(b)));
+        active[a] = active[b] = i;
+    }
+
+    synchronized void divorced(int i, int year) {
+        if (active[spouseA[i]] == i) active[spouseA[i]] = NONE;
+        if (active[spouseB[i]] == i) active[spouseB[i]] = NONE;
+        shorten(i, endOf(year, death(spouseA[i]), death(spouseB[i])));
+    }
+
+    /** A marriage from a snapshot; its Marriage object is decoded on first access. */
+    void restore(int a, int b, int year, int divorceYear, int deathA, int deathB) {
+        int i = append(null, a, b, year, endOf(divorceYear == NO_YEAR ? OPEN : divorceYear,
+                deathA == NO_YEAR ? OPEN : deathA, deathB == NO_YEAR ? OPEN : deathB));
+        if (divorceYear == NO_YEAR) active[a] = active[b] = i;
+    }
+
+    @Override
+    public synchronized void deathYearChanged(Person p, Integer oldYear) { refreshEnds(p.getNode()); }
+
+    // Ends of the node's marriages after its death year (or, on a merge, the person behind it) changed.
+    private void refreshEnds(int v) {
+        if (v >= ofNode.length || ofNode[v] == null) return;
+        IntList ms = ofNode[v];
+        for (int k = 0; k < ms.size(); k++) {
+            int i = ms.get(k);
+            Integer divorce = marriage(i).getDivorceYear();
+            int e = endOf(divorce == null ? OPEN : divorce, death(spouseA[i]), death(spouseB[i]));
+            if (e < end[i]) shorten(i, e); else if (e > end[i]) reinsert(i, e);
+        }
+    }
+
+    /**
+     * Hands every marriage of {@code from} to {@code to}. {@code rewrite} gives the Marriage each one becomes,
+     * or null for a duplicate of one {@code to} already has, which is retired. Ends follow {@code to}'s death.
+     */
+    synchronized void transfer(int from, int to, IntFunction<Marriage> rewrite) {
+        if (from >= ofNode.length || ofNode[from] == null) return;
+        IntList ms = ofNode[from];
+        int wasActive = active[from];
+        ofNode[from] = null;
+        active[from] = NONE;
+        ensureNodes(to + 1);
+        for (int k = 0; k < ms.size(); k++) {
+            int i = ms.get(k);
+            Marriage next = rewrite.apply(i);
+            if (next == null) { retire(i, from); continue; }
+            if (spouseA[i] == from) spouseA[i] = to; else spouseB[i] = to;
+            marriages[i] = next;
+            marriagesOf(to).add(i);
+            if (i == wasActive) active[to] = i;
+        }
+        refreshEnds(to);
+    }
+
+    // Takes a marriage out of every index; its slot stays, unused.
+    private void retire(int i, int from) {
+        int other = spouseA[i] == from ? spouseB[i] : spouseA[i];
+        if (active[other] == i) active[other] = NONE;
+        ofNode[other] = without(ofNode[other], i);
+        int leaf = start[i] - lo, k = cap + leaf;
+        byYear[leaf] = without(byYear[leaf], i);
+        int max = Integer.MIN_VALUE, n = 0;
+        for (int j = 0; byYear[leaf] != null && j < byYear[leaf].size(); j++) {
+            int x = end[byYear[leaf].get(j)];
+            if (x > max) { max = x; n = 1; } else if (x == max) n++;
+        }
+        maxEnd[k] = max;
+        atMax[leaf] = n;
+        for (k >>= 1; k > 0; k >>= 1) maxEnd[k] = Math.max(maxEnd[2 * k], maxEnd[2 * k + 1]);
+        spouseA[i] = spouseB[i] = NONE;
+        retired++;
+    }
+
+    private static IntList without(IntList list, int value) {
+        IntList out = new IntList(Math.max(1, list.size() - 1));
+        for (int j = 0; j < list.size(); j++) if (list.get(j) != value) out.add(list.get(j));
+        return out.isEmpty() ? null : out;
+    }
+
+    private int append(Marriage m, int a, int b, int year, int e) {
+        if (count == start.length) {
+            int c = count * 2;
+            marriages = Arrays.copyOf(marriages, c);
+            spouseA = Arrays.copyOf(spouseA, c);
+            spouseB = Arrays.copyOf(spouseB, c);
+            start = Arrays.copyOf(start, c);
+            end = Arrays.copyOf(end, c);
+        }
+        int i = count++;
+        marriages[i] = m;
+        spouseA[i] = a; spouseB[i] = b; start[i] = year; end[i] = Math.max(year, e);
+        ensureNodes(Math.max(a, b) + 1);
+        marriagesOf(a).add(i);
+        marriagesOf(b).add(i);
+        insert(i);
+        return i;
+    }
+
+    private void ensureNodes(int n) {
+        if (n <= active.length) return;
+        int c = Math.max(n, active.length * 2);
+        int old = active.length;
+        active = Arrays.copyOf(active, c);
+        Arrays.fill(active, old, c, NONE);
+        ofNode = Arrays.copyOf(ofNode, c);
+    }
+
+    private IntList marriagesOf(int v) {
+        if (ofNode[v] == null) ofNode[v] = new IntList(1);
+        return ofNode[v];
+    }
+
+    private int death(int v) {
+        Integer d = graph.person(v).getDeathYear();
+        return d == null ? OPEN : d;
+    }
+
+    private static int endOf(int divorce, int deathA, int deathB) { return Math.min(divorce, Math.min(deathA, deathB)); }
+
+    // ---- lookups ----
+
+    synchronized int size() { return count - retired; }
+
+    synchronized int activeOf(int node) { return node < active.length ? active[node] : NONE; }
+
+    synchronized int spouseIn(int i, int node) { return spouseA[i] == node ? spouseB[i] : spouseA[i]; }
+
+    synchronized Marriage marriage(int i) {
+        Marriage m = marriages[i];
+        if (m == null) marriages[i] = m = decoder.apply(i);
+        return m;
+    }
+
+    /** Appends everyone {@code node} has married, former spouses included, to {@code out}. */
+    synchronized void spousesOf(int node, IntList out) {
+        if (node >= ofNode.length || ofNode[node] == null) return;
+        IntList ms = ofNode[node];
+        for (int k = 0; k < ms.size(); k++) {
+            int i = ms.get(k);
+            out.add(spouseA[i] == node ? spouseB[i] : spouseA[i]);
+        }
+    }
+
+    /** The person's spouse during {@code year}, or NONE; the latest marriage wins in a remarriage year. */
+    synchronized int spouseAsOf(int node, int year) {
+        if (node >= ofNode.length || ofNode[node] == null) return NONE;
+        IntList ms = ofNode[node];
+        int best = NONE;
+        for (int k = 0; k < ms.size(); k++) {
+            int i = ms.get(k);
+            if (start[i] <= year && end[i] >= year && (best == NONE || start[i] >= start[best])) best = i;
+        }
+        return best == NONE ? NONE : (spouseA[best] == node ? spouseB[best] : spouseA[best]);
+    }
+
+    /** Marriages in effect at some point of [from, to], by marriage year. */
+    synchronized List<Marriage> overlapping(int from, int to) {
+        IntList hits = new IntList();
+        if (cap > 0 && from <= to) collect(1, 0, cap, from, to, hits);
+        List<Marriage> out = new ArrayList<>(hits.size());
+        for (int k = 0; k < hits.size(); k++) out.add(marriage(hits.get(k)));
+        return out;
+    }
+
+    /** Marriages contracted in [from, to], per decade: index 0 is the decade containing {@code from}. */
+    synchronized int[] perDecade(int from, int to) {
+        int first = Math.floorDiv(from, 10), last = Math.floorDiv(to, 10);
+        int[] out = new int[Math.max(0, last - first + 1)];
+        for (int y = Math.max(from, lo); cap > 0 && y <= to && y < lo + cap; y++) {
+            IntList ms = byYear[y - lo];
+            if (ms != null) out[Math.floorDiv(y, 10) - first] += ms.size();
+        }
+        return out;
+    }
+
+    private void collect(int k, int l, int r, int from, int to, IntList hits) {
+        if (lo + l > to || maxEnd[k] < from) return;
+        if (r - l == 1) {
+            IntList ms = byYear[l];
+            if (ms == null) return;
+            for (int j = 0; j < ms.size(); j++) if (end[ms.get(j)] >= from) hits.add(ms.get(j));
+            return;
+        }
+        int mid = (l + r) >>> 1;
+        collect(2 * k, l, mid, from, to, hits);
+        collect(2 * k + 1, mid, r, from, to, hits);
+    }
+
+    // ---- interval tree ----
+
+    private void insert(int i) {
+        int y = start[i];
+        if (cap == 0 || y < lo || y >= lo + cap) { grow(y); return; }   // grow re-inserts everyone
+        int leaf = y - lo;
+        if (byYear[leaf] == null) byYear[leaf] = new IntList(2);
+        byYear[leaf].add(i);
+        int k = cap + leaf;
+        if (end[i] > maxEnd[k]) { maxEnd[k] = end[i]; atMax[leaf] = 1; } else if (end[i] == maxEnd[k]) atMax[leaf]++;
+        for (k >>= 1; k > 0 && maxEnd[k] < end[i]; k >>= 1) maxEnd[k] = end[i];
+    }
+
+    private void grow(int year) {
+        int from = cap == 0 ? year : Math.min(lo, year), to = cap == 0 ? year : Math.max(lo + cap - 1, year);
+        int c = Math.max(64, Integer.highestOneBit(Math.max(1, to - from)) << 1);
+        lo = from - (c - (to - from + 1)) / 2;   // leave room on both sides
+        cap = c;
+        byYear = new IntList[cap];
+        maxEnd = new int[2 * cap];
+        Arrays.fill(maxEnd, Integer.MIN_VALUE);
+        atMax = new int[cap];
+        for (int i = 0; i < count; i++) if (spouseA[i] != NONE) insert(i);   // retired ones have no spouses
+    }
+
+    private void shorten(int i, int e) {
+        e = Math.max(start[i], e);
+        int old = end[i];
+        if (e >= old) return;
+        end[i] = e;
+        int leaf = start[i] - lo, k = cap + leaf;
+        if (old == maxEnd[k] && --atMax[leaf] == 0) {
+            int max = Integer.MIN_VALUE, n = 0;
+            IntList ms = byYear[leaf];
+            for (int j = 0; j < ms.size(); j++) {
+                int x = end[ms.get(j)];
+                if (x > max) { max = x; n = 1; } else if (x == max) n++;
+            }
+            maxEnd[k] = max;
+            atMax[leaf] = n;
+            for (k >>= 1; k > 0; k >>= 1) maxEnd[k] = Math.max(maxEnd[2 * k], maxEnd[2 * k + 1]);
+        }
+    }
+
+    // An end moved later (a death year cleared or corrected); rare enough to fix up like an insert.
+    private void reinsert(int i, int e) {
+        int leaf = start[i] - lo, k = cap + leaf;
+        if (end[i] == maxEnd[k]) atMax[leaf]--;
+        end[i] = e;
+        if (e > maxEnd[k]) { maxEnd[k] = e; atMax[leaf] = 1; } else if (e == maxEnd[k]) atMax[leaf]++;
+        for (k >>= 1; k > 0 && maxEnd[k] < e; k >>= 1) maxEnd[k] = e;
+    }
+}
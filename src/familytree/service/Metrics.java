@@ -0,0 +1,136 @@
+package familytree.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process counters for a FamilyTree (see FamilyTree.setMetrics): a latency histogram per operation,
+ * people visited and time spent per strategy traversal and per render, how ancestor checks (descendant
+ * queries and link cycle checks) were answered and how much searching the unanswered ones took, and,
+ * for front ends, per-command latency, allocation and errors. Everything is lock-free and can be shared
+ * by several trees, e.g. when the CLI loads a new one. Off by default; a tree without Metrics only
+ * checks a null field per operation.
+ */
+public final class Metrics {
+
+    /** Timed FamilyTree operations. */
+    public enum Op {
+        ADD_PERSON, LINK, UNLINK, MARRY, DIVORCE, GET_PERSON, IS_ANCESTOR, RELATION, CHILDREN, SIBLINGS,
+        SPOUSE, MARRIAGES, SEARCH, CENSUS, DEMOGRAPHICS, LINEAGE, MERGE, ANCESTORS, DESCENDANTS, RENDER
+    }
+
+    /** How an ancestor check was answered. */
+    enum Check { LEVEL, SKETCH, PARENT, SEARCH }
+
+    private final long started = System.currentTimeMillis();
+    private final Map<Op, Histogram> ops = new EnumMap<>(Op.class);
+    private final Histogram traversalNodes = new Histogram(), traversalNanos = new Histogram(), renderNanos = new Histogram();
+    private final LongAdder[] checks = new LongAdder[Check.values().length];
+    private final LongAdder found = new LongAdder();
+    private final Histogram searchNodes = new Histogram();
+    private final Map<String, Command> commands = new ConcurrentHashMap<>();
+
+    /** Latency, allocation and failures of one front-end command. */
+    private static final class Command {
+        final Histogram nanos = new Histogram();
+        final LongAdder allocated = new LongAdder(), errors = new LongAdder();
+        volatile String lastError;
+    }
+
+    public Metrics() {
+        for (Op op : Op.values()) ops.put(op, new Histogram());
+        for (int i = 0; i < checks.length; i++) checks[i] = new LongAdder();
+    }
+
+    public void record(Op op, long nanos) { ops.get(op).record(nanos); }
+
+    public Histogram latency(Op op) { return ops.get(op); }
+
+    /** A strategy run: people in the result (or streamed) and how long it took. */
+    void traversal(int nodes, long nanos) {
+        traversalNodes.record(nodes);
+        traversalNanos.record(nanos);
+    }
+
+    void render(long nanos) { renderNanos.record(nanos); }
+
+    void ancestryCheck(Check how) { checks[how.ordinal()].increment(); }
+
+    void ancestrySearch(int expanded, boolean hit) {
+        searchNodes.record(expanded);
+        if (hit) found.increment();
+    }
+
+    /** One command of a front end; {@code error} is null when it succeeded. */
+    public void command(String name, long nanos, long allocatedBytes, Throwable error) {
+        Command c = commands.computeIfAbsent(name, k -> new Command());
+        c.nanos.record(nanos);
+        if (allocatedBytes > 0) c.allocated.add(allocatedBytes);
+        if (error != null) {
+            c.errors.increment();
+            c.lastError = String.valueOf(error.getMessage());
+        }
+    }
+
+    public long errors() {
+        long n = 0;
+        for (Command c : commands.values()) n += c.errors.sum();
+        return n;
+    }
+
+    /** Plain-text summary of everything recorded so far, plus the tree's cache and index state. */
+    public String report(FamilyTree tree) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("uptime %.1f s%n", (System.currentTimeMillis() - started) / 1e3));
+        sb.append(String.format("%-16s %10s %10s %10s %10s %10s  (us)%n", "operation", "count", "p50", "p99", "p99.9", "max"));
+        for (Map.Entry<Op, Histogram> e : ops.entrySet())
+            if (e.getValue().count() > 0) sb.append(latencyRow(e.getKey().name(), e.getValue()));
+        if (traversalNanos.count() > 0) {
+            sb.append(latencyRow("strategy", traversalNanos));
+            sb.append(String.format("  people visited per traversal: mean %.1f, p50 %d, p99 %d, max %d%n", traversalNodes.mean(),
+                    traversalNodes.percentile(50), traversalNodes.percentile(99), traversalNodes.max()));
+        }
+        if (renderNanos.count() > 0) sb.append(latencyRow("renderer", renderNanos));
+
+        long total = 0;
+        for (LongAdder c : checks) total += c.sum();
+        if (total > 0) {
+            sb.append(String.format("ancestor checks: %d (level %.1f%%, sketch %.1f%%, parent %.1f%%, search %.1f%%)%n", total,
+                    share(Check.LEVEL, total), share(Check.SKETCH, total), share(Check.PARENT, total), share(Check.SEARCH, total)));
+            long searches = searchNodes.count();
+            if (searches > 0)
+                sb.append(String.format("  searches: %d found, nodes expanded mean %.1f, p99 %d, max %d%n", found.sum(),
+                        searchNodes.mean(), searchNodes.percentile(99), searchNodes.max()));
+        }
+
+        if (tree != null) {
+            sb.append("cache: ").append(tree.cacheStats()).append(System.lineSeparator());
+            sb.append(String.format("indexes: %d people, %d marriages, search index %s, census %s, columns %s, lineage %s%n",
+                    tree.graph().size(), tree.marriageCount(), tree.hasPersonIndex() ? "built" : "not built",
+                    tree.hasCensus() ? "built" : "not built", tree.hasColumns() ? "built" : "not built",
+                    tree.hasLineage() ? "built" : "not built"));
+        }
+
+        if (!commands.isEmpty()) {
+            sb.append(String.format("%-36s %10s %10s %10s %10s %10s  (us)  %8s %10s%n", "command", "count", "p50", "p99", "p99.9", "max", "errors", "alloc KB"));
+            for (Map.Entry<String, Command> e : new TreeMap<>(commands).entrySet()) {
+                Command c = e.getValue();
+                String row = latencyRow(String.format("%-36s", e.getKey()), c.nanos);
+                sb.append(row, 0, row.length() - System.lineSeparator().length())
+                        .append(String.format("  %8d %10d%n", c.errors.sum(), c.allocated.sum() >> 10));
+                if (c.lastError != null) sb.append("  last error: ").append(c.lastError).append(System.lineSeparator());
+            }
+        }
+        return sb.toString();
+    }
+
+    private double share(Check how, long total) { return 100.0 * checks[how.ordinal()].sum() / total; }
+
+    private static String latencyRow(String name, Histogram h) {
+        return String.format("%-16s %10d %10.1f %10.1f %10.1f %10.1f%n", name, h.count(),
+                h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.percentile(99.9) / 1e3, h.max() / 1e3);
+    }
+}
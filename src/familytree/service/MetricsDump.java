@@ -0,0 +1,54 @@
+package familytree.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Rewrites a metrics report to a local file at a fixed interval from a daemon thread, and once more on
+ * close. Each write goes to a temporary sibling that is then moved over the file, so a reader never
+ * sees a half-written report. A failed write is retried at the next tick.
+ */
+public final class MetricsDump implements Closeable {
+    private final Path file;
+    private final Supplier<String> report;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "familytree-metrics");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MetricsDump(Path file, Duration interval, Supplier<String> report) {
+        if (interval.isNegative() || interval.isZero()) throw new IllegalArgumentException("interval > 0 required");
+        this.file = file.toAbsolutePath();
+        this.report = report;
+        long millis = interval.toMillis();
+        timer.scheduleAtFixedRate(() -> {
+            try {
+                write();
+            } catch (IOException | RuntimeException ignored) {
+                // keep the schedule; the next tick tries again
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void write() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, "# " + Instant.now() + System.lineSeparator() + report.get());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        timer.shutdownNow();
+        write();
+    }
+}
@@ -0,0 +1,44 @@
+package familytree.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One FamilyTree operation, for JFR recordings. The registry times the call itself, so the event is
+ * committed afterwards with the measured duration as a field rather than through begin()/end().
+ * Disabled by default; enable it in a .jfc file or with {@code jfr configure familytree.Operation#enabled=true}.
+ */
+@Name("familytree.Operation")
+@Label("Registry Operation")
+@Category("Family Tree")
+@Description("A FamilyTree query or mutation and how long it took")
+@Enabled(false)
+@StackTrace(false)
+final class OperationEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(OperationEvent.class);
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Duration")
+    @Timespan
+    long nanos;
+
+    /** Whether a running recording wants these events; cheap enough to ask on every operation. */
+    static boolean recording() { return TYPE.isEnabled(); }
+
+    static void emit(Metrics.Op op, long nanos) {
+        OperationEvent e = new OperationEvent();
+        if (!e.shouldCommit()) return;
+        e.operation = op.name();
+        e.nanos = nanos;
+        e.commit();
+    }
+}
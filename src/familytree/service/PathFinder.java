@@ -0,0 +1,218 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Shortest chains of parent, child and spouse links between two people, by bidirectional BFS: both
+ * ends search level by level, the smaller frontier first, and the first person reached from both
+ * sides closes a shortest chain. The B side follows links in reverse. Former spouses count as
+ * spouses. Each thread keeps its own stamped visit arrays and frontiers, so a query allocates nothing
+ * after warm-up apart from the FamilyPath it returns. Batches are spread over the common pool.
+ * The tree is read live: keep it still while a query runs, e.g. under ConcurrentFamilyTree's read lock.
+ */
+public final class PathFinder {
+    /** What the next person on a chain is to the one before. */
+    public enum Link {
+        PARENT, CHILD, SPOUSE;
+
+        public String label() { return name().toLowerCase(Locale.ROOT); }
+    }
+
+    /** Every kind of link. */
+    public static final Set<Link> ALL = Collections.unmodifiableSet(EnumSet.allOf(Link.class));
+
+    private static final Link[] LINKS = Link.values();
+    private static final int PARALLEL_BATCH = 64;
+
+    private final PersonGraph graph;
+    private final MarriageRegistry marriages;
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    private PathFinder(FamilyTree tree) {
+        this.graph = tree.graph();
+        this.marriages = tree.marriages();
+    }
+
+    public static PathFinder of(FamilyTree tree) { return new PathFinder(tree); }
+
+    /** The shortest chain from A to B over {@code links}, at most {@code maxHops} long; empty if there is none. */
+    public Optional<FamilyPath> shortestPath(String aId, String bId, Set<Link> links, int maxHops) {
+        int a = graph.require(aId), b = graph.require(bId), mask = mask(links, maxHops);
+        Search s = searches.get();
+        return s.run(a, b, mask, maxHops) < 0 ? Optional.empty() : Optional.of(s.path(a, b));
+    }
+
+    /** Degrees of separation: the number of links on the shortest chain from A to B, or -1 if there is none. */
+    public int degrees(String aId, String bId, Set<Link> links, int maxHops) {
+        int a = graph.require(aId), b = graph.require(bId), mask = mask(links, maxHops);
+        return searches.get().run(a, b, mask, maxHops);
+    }
+
+    /** {@link #shortestPath} for each pair {@code (from[i], to[i])}, in parallel; ids are checked before any search. */
+    public List<Optional<FamilyPath>> shortestPaths(List<String> from, List<String> to, Set<Link> links, int maxHops) {
+        int[] nodes = nodes(from, to);
+        int mask = mask(links, maxHops);
+        List<Optional<FamilyPath>> out = new ArrayList<>(Collections.nCopies(from.size(), Optional.empty()));
+        pairs(from.size()).forEach(i -> {
+            Search s = searches.get();
+            int a = nodes[2 * i], b = nodes[2 * i + 1];
+            if (s.run(a, b, mask, maxHops) >= 0) out.set(i, Optional.of(s.path(a, b)));
+        });
+        return out;
+    }
+
+    /** {@link #degrees} for each pair {@code (from[i], to[i])}, in parallel. */
+    public int[] degrees(List<String> from, List<String> to, Set<Link> links, int maxHops) {
+        int[] nodes = nodes(from, to);
+        int mask = mask(links, maxHops);
+        int[] out = new int[from.size()];
+        pairs(out.length).forEach(i -> out[i] = searches.get().run(nodes[2 * i], nodes[2 * i + 1], mask, maxHops));
+        return out;
+    }
+
+    private int[] nodes(List<String> from, List<String> to) {
+        if (from.size() != to.size()) throw new IllegalArgumentException("Pair lists differ in length");
+        int[] nodes = new int[from.size() * 2];
+        for (int i = 0; i < from.size(); i++) {
+            nodes[2 * i] = graph.require(from.get(i));
+            nodes[2 * i + 1] = graph.require(to.get(i));
+        }
+        return nodes;
+    }
+
+    private static IntStream pairs(int n) {
+        IntStream range = IntStream.range(0, n);
+        return n > PARALLEL_BATCH ? range.parallel() : range;
+    }
+
+    // Links as bits by ordinal; checks the hop limit on the way, as every query needs both.
+    private static int mask(Set<Link> links, int maxHops) {
+        if (maxHops < 0) throw new IllegalArgumentException("maxHops must be >= 0");
+        int mask = 0;
+        for (Link l : links) mask |= 1 << l.ordinal();
+        return mask;
+    }
+
+    /** Per-thread scratch: visit stamps, distances and back pointers for each side, and two pairs of frontiers. */
+    private final class Search {
+        int[] markA = new int[0], markB = new int[0], distA = new int[0], distB = new int[0];
+        int[] prevA = new int[0], prevB = new int[0];   // the neighbour each person was reached from
+        byte[] linkA = new byte[0], linkB = new byte[0]; // Link ordinal from the A-side neighbour to this person
+        IntList frontA = new IntList(), frontB = new IntList(), next = new IntList(), spouses = new IntList();
+        int stamp, meet;
+
+        /** Length of the shortest chain from a to b, or -1; on success {@code meet} lies on it. */
+        int run(int a, int b, int mask, int maxHops) {
+            if (markA.length < graph.size()) grow(graph.size());
+            if (++stamp <= 0) {
+                Arrays.fill(markA, 0);
+                Arrays.fill(markB, 0);
+                stamp = 1;
+            }
+            frontA.clear();
+            frontB.clear();
+            markA[a] = stamp; distA[a] = 0; prevA[a] = PersonGraph.NONE;
+            markB[b] = stamp; distB[b] = 0; prevB[b] = PersonGraph.NONE;
+            if (a == b) { meet = a; return 0; }
+            frontA.add(a);
+            frontB.add(b);
+            for (int depthA = 0, depthB = 0; depthA + depthB < maxHops && !frontA.isEmpty() && !frontB.isEmpty(); ) {
+                boolean fromA = frontA.size() <= frontB.size();
+                IntList front = fromA ? frontA : frontB;
+                next.clear();
+                for (int i = 0; i < front.size(); i++) {
+                    if (fromA ? expandA(front.get(i), mask) : expandB(front.get(i), mask)) return distA[meet] + distB[meet];
+                }
+                // The level just found becomes the frontier; the old one is reused for the next level.
+                if (fromA) { frontA = next; next = front; depthA++; } else { frontB = next; next = front; depthB++; }
+            }
+            return -1;
+        }
+
+        // A side: forward links. True once a person already reached from B is reached.
+        private boolean expandA(int n, int mask) {
+            if ((mask & 1 << Link.PARENT.ordinal()) != 0)
+                for (int s = 0; s < 2; s++) if (visitA(n, graph.parent(n, s), Link.PARENT)) return true;
+            if ((mask & 1 << Link.CHILD.ordinal()) != 0)
+                for (int i = 0, c = graph.childCount(n); i < c; i++) if (visitA(n, graph.child(n, i), Link.CHILD)) return true;
+            if ((mask & 1 << Link.SPOUSE.ordinal()) != 0) {
+                spouses.clear();
+                marriages.spousesOf(n, spouses);
+                for (int i = 0; i < spouses.size(); i++) if (visitA(n, spouses.get(i), Link.SPOUSE)) return true;
+            }
+            return false;
+        }
+
+        // B side: links in reverse, so a parent of n is reached by a CHILD link and a child by a PARENT link.
+        private boolean expandB(int n, int mask) {
+            if ((mask & 1 << Link.CHILD.ordinal()) != 0)
+                for (int s = 0; s < 2; s++) if (visitB(n, graph.parent(n, s), Link.CHILD)) return true;
+            if ((mask & 1 << Link.PARENT.ordinal()) != 0)
+                for (int i = 0, c = graph.childCount(n); i < c; i++) if (visitB(n, graph.child(n, i), Link.PARENT)) return true;
+            if ((mask & 1 << Link.SPOUSE.ordinal()) != 0) {
+                spouses.clear();
+                marriages.spousesOf(n, spouses);
+                for (int i = 0; i < spouses.size(); i++) if (visitB(n, spouses.get(i), Link.SPOUSE)) return true;
+            }
+            return false;
+        }
+
+        private boolean visitA(int from, int v, Link link) {
+            if (v == PersonGraph.NONE || markA[v] == stamp) return false;
+            markA[v] = stamp; distA[v] = distA[from] + 1; prevA[v] = from; linkA[v] = (byte) link.ordinal();
+            next.add(v);
+            if (markB[v] != stamp) return false;
+            meet = v;
+            return true;
+        }
+
+        private boolean visitB(int from, int v, Link link) {
+            if (v == PersonGraph.NONE || markB[v] == stamp) return false;
+            markB[v] = stamp; distB[v] = distB[from] + 1; prevB[v] = from; linkB[v] = (byte) link.ordinal();
+            next.add(v);
+            if (markA[v] != stamp) return false;
+            meet = v;
+            return true;
+        }
+
+        /** The chain found by the last successful run(a, b, ...). */
+        FamilyPath path(int a, int b) {
+            List<Person> people = new ArrayList<>();
+            List<Link> links = new ArrayList<>();
+            for (int v = meet; v != a; v = prevA[v]) {
+                people.add(graph.person(v));
+                links.add(LINKS[linkA[v]]);
+            }
+            people.add(graph.person(a));
+            Collections.reverse(people);
+            Collections.reverse(links);
+            for (int v = meet; v != b; v = prevB[v]) {
+                links.add(LINKS[linkB[v]]);
+                people.add(graph.person(prevB[v]));
+            }
+            return new FamilyPath(people, links);
+        }
+
+        private void grow(int n) {
+            int c = Math.max(n, markA.length * 2);
+            markA = Arrays.copyOf(markA, c);
+            markB = Arrays.copyOf(markB, c);
+            distA = Arrays.copyOf(distA, c);
+            distB = Arrays.copyOf(distB, c);
+            prevA = Arrays.copyOf(prevA, c);
+            prevB = Arrays.copyOf(prevB, c);
+            linkA = Arrays.copyOf(linkA, c);
+            linkB = Arrays.copyOf(linkB, c);
+        }
+    }
+}
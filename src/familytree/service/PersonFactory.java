@@ -2,24 +2,15 @@ package familytree.service;
 
 import familytree.model.*;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
 /**
  * Simple factory to create Adult or Minor based on deterministic CURRENT_YEAR and age threshold 18.
- * Also generates deterministic IDs P001, P002 ... (useful for tests).
+ * Ids come from the owning tree's IdAllocator.
  */
 public final class PersonFactory {
     public static final int CURRENT_YEAR = 2025;
     private static final int ADULT_AGE = 18;
-    private static final AtomicInteger COUNTER = new AtomicInteger(0);
-
-    public static String nextId() {
-        int n = COUNTER.incrementAndGet();
-        return String.format("P%03d", n);
-    }
 
-    public static Person create(String fullName, Gender gender, int birthYear, Integer deathYear) {
-        String id = nextId();
+    public static Person create(String id, String fullName, Gender gender, int birthYear, Integer deathYear) {
         int age = CURRENT_YEAR - birthYear;
         if (age >= ADULT_AGE) {
             return new Adult(id, fullName, gender, birthYear, deathYear);
@@ -27,4 +18,14 @@ public final class PersonFactory {
             return new Minor(id, fullName, gender, birthYear, deathYear);
         }
     }
+
+    /**
+     * Re-creates a saved person as it was: the saved class rather than one picked from the birth year,
+     * and the death year as is, since a later setBirthYear may have moved the birth past it.
+     */
+    static Person restore(String id, String fullName, Gender gender, int birthYear, Integer deathYear, boolean minor) {
+        Person p = minor ? new Minor(id, fullName, gender, birthYear, null) : new Adult(id, fullName, gender, birthYear, null);
+        PersonGraph.MODEL.restoreDeathYear(p, deathYear);
+        return p;
+    }
 }
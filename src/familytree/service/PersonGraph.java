@@ -0,0 +1,284 @@
+package familytree.service;
+
+import familytree.model.ModelAccess;
+import familytree.model.Person;
+import familytree.model.PersonLinks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Compact int-indexed storage behind FamilyTree. Every person gets a dense node id (0..size-1)
+ * mapped to and from the external "P001"-style id. Parents live in a fixed two-slot int array,
+ * children in per-node int adjacency arrays, so traversals never hash strings or box ids.
+ * A graph restored from a snapshot starts with children in a read-only CSR base (copied to an
+ * own array on first change) and Person objects materialized from the PersonSource on demand.
+ */
+public final class PersonGraph implements PersonLinks {
+    public static final int NONE = PersonLinks.NONE;
+    static final ModelAccess MODEL = ModelAccess.claim();   // the service layer's one handle on Person internals
+    private static final VarHandle PERSONS = MethodHandles.arrayElementVarHandle(Person[].class);
+    private static final int[] NO_CHILDREN = new int[0];
+
+    private Person[] persons = new Person[16];
+    private int[] parents = new int[32];          // 2 slots per node, NONE when empty
+    private int[][] children = new int[16][];     // adjacency, first childCount[n] entries valid
+    private int[] childCount = new int[16];
+    private int[] slots = new int[32];            // open-addressing id index, stores node + 1
+    private int size;
+    private final BitSet removed = new BitSet();  // merged away: the id still resolves, the person no longer counts
+
+    // Snapshot-backed state: null children[n] means "still in the base CSR", null persons[n] "not materialized".
+    private PersonSource source;
+    private IntBuffer baseOffsets;
+    private IntBuffer baseAdj;
+
+    private TreeListener[] listeners = new TreeListener[0];
+
+    public PersonGraph() {}
+
+    /** Restores a graph over snapshot data; parents and slots are adopted, children stay in the CSR base. */
+    static PersonGraph restore(int size, int[] parents, IntBuffer childOffsets, IntBuffer childAdj,
+                               int[] slots, PersonSource source) {
+        PersonGraph g = new PersonGraph();
+        int cap = Math.max(16, size);
+        g.size = size;
+        g.persons = new Person[cap];
+        g.parents = parents.length >= 2 * cap ? parents : Arrays.copyOf(parents, 2 * cap);
+        g.children = new int[cap][];
+        g.childCount = new int[cap];
+        for (int n = 0; n < size; n++) g.childCount[n] = childOffsets.get(n + 1) - childOffsets.get(n);
+        g.slots = slots;
+        g.baseOffsets = childOffsets;
+        g.baseAdj = childAdj;
+        g.source = source;
+        return g;
+    }
+
+    public int size() { return size; }
+
+    public int add(Person p) {
+        if (nodeOf(p.getId()) != NONE) throw new IllegalArgumentException("Duplicate id: " + p.getId());
+        if (size == persons.length) grow();
+        int node = size++;
+        persons[node] = p;
+        parents[2 * node] = NONE;
+        parents[2 * node + 1] = NONE;
+        children[node] = NO_CHILDREN;
+        if (size * 2 > slots.length) rehash(slots.length * 2);
+        else insertSlot(node);
+        MODEL.attach(p, this, node);
+        return node;
+    }
+
+    /** Node for the external id, or NONE when unknown. */
+    public int nodeOf(String id) {
+        int mask = slots.length - 1;
+        for (int i = mix(id.hashCode()) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int n = slots[i] - 1;
+            if (persons[n] != null ? persons[n].getId().equals(id) : source.idEquals(n, id)) return n;
+        }
+        return NONE;
+    }
+
+    public int require(String id) {
+        int node = id == null ? NONE : nodeOf(id);
+        if (node == NONE) throw new IllegalArgumentException("Unknown person id: " + id);
+        return node;
+    }
+
+    public Person person(int node) {
+        Person p = (Person) PERSONS.getAcquire(persons, node);
+        return p != null ? p : materialize(node);
+    }
+
+    // Readers of a concurrent tree may race to materialize the same node; only one Person may win.
+    private synchronized Person materialize(int node) {
+        Objects.checkIndex(node, size);
+        Person p = persons[node];
+        if (p == null) {
+            p = source.materialize(node);
+            MODEL.attach(p, this, node);
+            PERSONS.setRelease(persons, node, p);
+        }
+        return p;
+    }
+
+    public String idOf(int node) { return persons[node] != null ? persons[node].getId() : source.idOf(node); }
+    boolean isMaterialized(int node) { return persons[node] != null; }
+
+    /** Marks a merged-away node; it keeps its id and links, but leaves allPeople() and the indexes. */
+    void remove(int node) { removed.set(node); }
+    boolean isRemoved(int node) { return removed.get(node); }
+
+    public int parent(int node, int slot) { return parents[2 * node + slot]; }
+    public int parentCount(int node) {
+        return (parents[2 * node] != NONE ? 1 : 0) + (parents[2 * node + 1] != NONE ? 1 : 0);
+    }
+    public boolean hasParent(int node, int parent) {
+        return parents[2 * node] == parent || parents[2 * node + 1] == parent;
+    }
+
+    @Override public int childCount(int node) { return childCount[node]; }
+    public int child(int node, int i) {
+        int[] cs = children[node];
+        return cs != null ? cs[i] : baseAdj.get(baseOffsets.get(node) + i);
+    }
+
+    /** Adds parent -> child; returns false if the edge already exists. */
+    public boolean addEdge(int parent, int child) {
+        if (hasParent(child, parent)) return false;
+        int base = 2 * child;
+        if (parents[base] == NONE) parents[base] = parent;
+        else if (parents[base + 1] == NONE) parents[base + 1] = parent;
+        else throw new IllegalArgumentException("Person cannot have more than 2 parents");
+        int[] cs = ownChildren(parent);
+        int n = childCount[parent];
+        if (n == cs.length) children[parent] = cs = Arrays.copyOf(cs, Math.max(2, n * 2));
+        cs[n] = child;
+        childCount[parent] = n + 1;
+        return true;
+    }
+
+    /** Moves {@code parent} into the first slot of {@code node}, as a recorded state had it; a no-op if it is there or absent. */
+    void firstParent(int node, int parent) {
+        int base = 2 * node;
+        if (parents[base + 1] == parent) { parents[base + 1] = parents[base]; parents[base] = parent; }
+    }
+
+    /** Removes parent -> child, keeping parent and child order stable; returns false if absent. */
+    public boolean removeEdge(int parent, int child) {
+        int base = 2 * child;
+        if (parents[base] == parent) { parents[base] = parents[base + 1]; parents[base + 1] = NONE; }
+        else if (parents[base + 1] == parent) parents[base + 1] = NONE;
+        else return false;
+        int[] cs = ownChildren(parent);
+        int n = childCount[parent];
+        for (int i = 0; i < n; i++) {
+            if (cs[i] == child) {
+                System.arraycopy(cs, i + 1, cs, i, n - i - 1);
+                childCount[parent] = n - 1;
+                break;
+            }
+        }
+        return true;
+    }
+
+    // Person views at the API boundary
+
+    public List<Person> people(IntList nodes) {
+        List<Person> out = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) out.add(person(nodes.get(i)));
+        return out;
+    }
+
+    /** Read-only view that materializes on access, for handing out a level without copying it. */
+    public List<Person> peopleView(IntList nodes) {
+        return new AbstractList<>() {
+            @Override public Person get(int i) { return person(nodes.get(i)); }
+            @Override public int size() { return nodes.size(); }
+        };
+    }
+
+    /** Everyone who counts, in node order; merged-away records are left out. */
+    public List<Person> allPeople() {
+        if (!removed.isEmpty()) {
+            List<Person> out = new ArrayList<>(size - removed.cardinality());
+            for (int v = removed.nextClearBit(0); v < size; v = removed.nextClearBit(v + 1)) out.add(person(v));
+            return out;
+        }
+        return new AbstractList<>() {
+            @Override public Person get(int i) {
+                Objects.checkIndex(i, size);
+                return person(i);
+            }
+            @Override public int size() { return size; }
+        };
+    }
+
+    @Override
+    public Set<String> parentIds(int node) {
+        return new AbstractSet<>() {
+            @Override public Iterator<String> iterator() { return idIterator(parentCount(node), i -> parent(node, i)); }
+            @Override public int size() { return parentCount(node); }
+        };
+    }
+
+    @Override
+    public Set<String> childrenIds(int node) {
+        return new AbstractSet<>() {
+            @Override public Iterator<String> iterator() { return idIterator(childCount[node], i -> child(node, i)); }
+            @Override public int size() { return childCount[node]; }
+        };
+    }
+
+    private Iterator<String> idIterator(int count, IntUnaryOperator at) {
+        return new Iterator<>() {
+            int i = 0;
+            @Override public boolean hasNext() { return i < count; }
+            @Override public String next() {
+                if (i >= count) throw new NoSuchElementException();
+                return idOf(at.applyAsInt(i++));
+            }
+        };
+    }
+
+    // Mutation events (Person setters report here; FamilyTree fires the structural ones)
+
+    void addListener(TreeListener l) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = Objects.requireNonNull(l);
+    }
+
+    void removeListener(TreeListener l) {
+        List<TreeListener> ls = new ArrayList<>(Arrays.asList(listeners));
+        ls.remove(l);
+        listeners = ls.toArray(new TreeListener[0]);
+    }
+
+    TreeListener[] listeners() { return listeners; }
+
+    @Override public void nameChanged(Person p, String old) { for (TreeListener l : listeners) l.nameChanged(p, old); }
+    @Override public void birthYearChanged(Person p, int old) { for (TreeListener l : listeners) l.birthYearChanged(p, old); }
+    @Override public void deathYearChanged(Person p, Integer old) { for (TreeListener l : listeners) l.deathYearChanged(p, old); }
+
+    // Internals
+
+    int[] slotTable() { return slots; }
+    PersonSource source() { return source; }
+
+    private int[] ownChildren(int node) {
+        int[] cs = children[node];
+        if (cs != null) return cs;
+        int from = baseOffsets.get(node), n = baseOffsets.get(node + 1) - from;
+        cs = n == 0 ? NO_CHILDREN : new int[n];
+        baseAdj.get(from, cs, 0, n);
+        children[node] = cs;
+        return cs;
+    }
+
+    private void grow() {
+        int cap = persons.length * 2;
+        persons = Arrays.copyOf(persons, cap);
+        parents = Arrays.copyOf(parents, cap * 2);
+        children = Arrays.copyOf(children, cap);
+        childCount = Arrays.copyOf(childCount, cap);
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int n = 0; n < size; n++) insertSlot(n);
+    }
+
+    private void insertSlot(int node) {
+        int mask = slots.length - 1;
+        int i = mix(idOf(node).hashCode()) & mask;
+        while (slots[i] != 0) i = (i + 1) & mask;
+        slots[i] = node + 1;
+    }
+
+    static int mix(int h) { return h ^ (h >>> 16) ^ (h >>> 7); }
+}
@@ -0,0 +1,172 @@
+package familytree.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Persistent hash array mapped trie from person id to PersonVersion. Each level consumes 5 bits of the
+ * id's hash; a node keeps a 32-bit bitmap of its occupied slots and a dense array holding, per slot,
+ * a PersonVersion or a child node. put() copies only the path to the changed slot, so it costs
+ * O(log32 n) time and memory and every earlier map stays valid and shares the rest. Ids whose full
+ * hashes collide end in a Collision leaf. diff() skips subtrees the two maps share.
+ */
+final class PersonHamt {
+    static final PersonHamt EMPTY = new PersonHamt(null, 0);
+
+    private final Object root;   // null, a PersonVersion, a Node or a Collision
+    private final int size;
+
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots;
+        Node(int bitmap, Object[] slots) { this.bitmap = bitmap; this.slots = slots; }
+    }
+
+    private static final class Collision {
+        final int hash;
+        final PersonVersion[] people;
+        Collision(int hash, PersonVersion[] people) { this.hash = hash; this.people = people; }
+    }
+
+    private PersonHamt(Object root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() { return size; }
+
+    private static int hash(String id) { return PersonGraph.mix(id.hashCode()); }
+
+    PersonVersion get(String id) {
+        int h = hash(id);
+        Object x = root;
+        for (int shift = 0; ; shift += 5) {
+            if (x instanceof Node n) {
+                int bit = 1 << ((h >>> shift) & 31);
+                if ((n.bitmap & bit) == 0) return null;
+                x = n.slots[Integer.bitCount(n.bitmap & (bit - 1))];
+            } else if (x instanceof PersonVersion p) {
+                return p.getId().equals(id) ? p : null;
+            } else if (x instanceof Collision c) {
+                for (PersonVersion p : c.people) if (p.getId().equals(id)) return p;
+                return null;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /** This map with {@code p} under its id, replacing any earlier version of that person. */
+    PersonHamt put(PersonVersion p) {
+        boolean[] added = new boolean[1];
+        Object r = put(root, p, hash(p.getId()), 0, added);
+        return r == root ? this : new PersonHamt(r, added[0] ? size + 1 : size);
+    }
+
+    private static Object put(Object x, PersonVersion p, int h, int shift, boolean[] added) {
+        if (x == null) {
+            added[0] = true;
+            return p;
+        }
+        if (x instanceof PersonVersion q) {
+            if (q.getId().equals(p.getId())) return q == p ? q : p;
+            added[0] = true;
+            return merge(q, hash(q.getId()), p, h, shift);
+        }
+        if (x instanceof Collision c) {
+            if (c.hash != h) {
+                added[0] = true;
+                return merge(c, c.hash, p, h, shift);
+            }
+            PersonVersion[] people = c.people;
+            for (int i = 0; i < people.length; i++) {
+                if (!people[i].getId().equals(p.getId())) continue;
+                if (people[i] == p) return c;
+                people = people.clone();
+                people[i] = p;
+                return new Collision(h, people);
+            }
+            added[0] = true;
+            people = Arrays.copyOf(people, people.length + 1);
+            people[people.length - 1] = p;
+            return new Collision(h, people);
+        }
+        Node n = (Node) x;
+        int bit = 1 << ((h >>> shift) & 31), i = Integer.bitCount(n.bitmap & (bit - 1));
+        if ((n.bitmap & bit) == 0) {
+            added[0] = true;
+            Object[] slots = new Object[n.slots.length + 1];
+            System.arraycopy(n.slots, 0, slots, 0, i);
+            slots[i] = p;
+            System.arraycopy(n.slots, i, slots, i + 1, n.slots.length - i);
+            return new Node(n.bitmap | bit, slots);
+        }
+        Object child = put(n.slots[i], p, h, shift + 5, added);
+        if (child == n.slots[i]) return n;
+        Object[] slots = n.slots.clone();
+        slots[i] = child;
+        return new Node(n.bitmap, slots);
+    }
+
+    // Two leaves that share the hash bits above {@code shift}: nodes down to where they part.
+    private static Object merge(Object a, int ha, PersonVersion b, int hb, int shift) {
+        if (shift >= 32) {
+            PersonVersion[] people;
+            if (a instanceof Collision c) {
+                people = Arrays.copyOf(c.people, c.people.length + 1);
+                people[c.people.length] = b;
+            } else {
+                people = new PersonVersion[] {(PersonVersion) a, b};
+            }
+            return new Collision(ha, people);
+        }
+        int ia = (ha >>> shift) & 31, ib = (hb >>> shift) & 31;
+        if (ia == ib) return new Node(1 << ia, new Object[] {merge(a, ha, b, hb, shift + 5)});
+        return new Node((1 << ia) | (1 << ib), ia < ib ? new Object[] {a, b} : new Object[] {b, a});
+    }
+
+    void forEach(Consumer<PersonVersion> action) { forEach(root, action); }
+
+    private static void forEach(Object x, Consumer<PersonVersion> action) {
+        if (x instanceof PersonVersion p) action.accept(p);
+        else if (x instanceof Collision c) for (PersonVersion p : c.people) action.accept(p);
+        else if (x instanceof Node n) for (Object s : n.slots) forEach(s, action);
+    }
+
+    /**
+     * Calls {@code changed(before, after)} for every id whose version differs between this map and
+     * {@code to}; either side is null where the id is missing. Shared subtrees are skipped by identity,
+     * so the cost follows the number of changed paths rather than the size of the maps.
+     */
+    void diff(PersonHamt to, BiConsumer<PersonVersion, PersonVersion> changed) { diff(root, to.root, changed); }
+
+    private static void diff(Object a, Object b, BiConsumer<PersonVersion, PersonVersion> changed) {
+        if (a == b) return;
+        if (a instanceof Node na && b instanceof Node nb) {
+            for (int bits = na.bitmap | nb.bitmap; bits != 0; bits &= bits - 1) {
+                int bit = bits & -bits;
+                diff(slot(na, bit), slot(nb, bit), changed);
+            }
+            return;
+        }
+        // A leaf against a leaf or a node: only the few people below are compared one by one.
+        Map<String, PersonVersion> before = new HashMap<>();
+        forEach(a, p -> before.put(p.getId(), p));
+        List<PersonVersion> after = new ArrayList<>();
+        forEach(b, after::add);
+        for (PersonVersion p : after) {
+            PersonVersion q = before.remove(p.getId());
+            if (q != p) changed.accept(q, p);
+        }
+        for (PersonVersion q : before.values()) changed.accept(q, null);
+    }
+
+    private static Object slot(Node n, int bit) {
+        return (n.bitmap & bit) == 0 ? null : n.slots[Integer.bitCount(n.bitmap & (bit - 1))];
+    }
+}
@@ -0,0 +1,193 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes for search, kept current as a TreeListener:
+ * - a sorted map from normalized name word to the nodes whose name contains it (prefix = sub-map);
+ * - birth and death year buckets, sorted by year, for range scans;
+ * - bitmaps per gender and for the living;
+ * - birth/death years as int columns, to filter a small candidate set without touching Person.
+ * Word and year buckets keep their nodes in ascending order, so an edit moves a node in place.
+ * A query starts from the name words when given, otherwise builds a bitmap from the year buckets,
+ * narrows it with the other criteria and returns the requested page. Records merged away leave every
+ * index. Synchronized, since a ConcurrentFamilyTree delivers attribute changes from several threads.
+ */
+final class PersonIndex implements TreeListener {
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+
+    private final PersonGraph graph;
+    private final NavigableMap<String, IntList> words = new TreeMap<>();
+    private final NavigableMap<Integer, IntList> births = new TreeMap<>();
+    private final NavigableMap<Integer, IntList> deaths = new TreeMap<>();
+    private final BitSet[] genders = new BitSet[Gender.values().length];
+    private final BitSet alive = new BitSet();
+    private final BitSet removed = new BitSet();   // merged away: in no bucket, and masked out of match-all
+    private int[] birthYear = new int[16];
+    private int[] deathYear = new int[16];
+    private int size;
+
+    /** Indexes everyone already registered; afterwards listener events keep it current. */
+    PersonIndex(PersonGraph graph) {
+        this.graph = graph;
+        for (int g = 0; g < genders.length; g++) genders[g] = new BitSet();
+        for (int v = 0; v < graph.size(); v++) {
+            if (graph.isRemoved(v)) removed.set(v);
+            else personAdded(graph.person(v));
+        }
+    }
+
+    // ---- maintenance ----
+
+    @Override
+    public synchronized void personAdded(Person p) {
+        int v = p.getNode();
+        if (v >= birthYear.length) {
+            int cap = Math.max(v + 1, birthYear.length * 2);
+            birthYear = Arrays.copyOf(birthYear, cap);
+            deathYear = Arrays.copyOf(deathYear, cap);
+        }
+        size = Math.max(size, v + 1);
+        for (String w : normalizedWords(p.getFullName())) add(words, w, v);
+        birthYear[v] = p.getBirthYear();
+        add(births, p.getBirthYear(), v);
+        setDeath(v, p.getDeathYear());
+        genders[p.getGender().ordinal()].set(v);
+    }
+
+    @Override
+    public synchronized void nameChanged(Person p, String oldName) {
+        int v = p.getNode();
+        if (removed.get(v)) return;
+        for (String w : normalizedWords(oldName)) remove(words, w, v);
+        for (String w : normalizedWords(p.getFullName())) add(words, w, v);
+    }
+
+    @Override
+    public synchronized void birthYearChanged(Person p, int oldYear) {
+        int v = p.getNode();
+        if (removed.get(v)) return;
+        remove(births, oldYear, v);
+        add(births, p.getBirthYear(), v);
+        birthYear[v] = p.getBirthYear();
+    }
+
+    @Override
+    public synchronized void deathYearChanged(Person p, Integer oldYear) {
+        int v = p.getNode();
+        if (removed.get(v)) return;
+        if (oldYear != null) remove(deaths, oldYear, v);
+        setDeath(v, p.getDeathYear());
+    }
+
+    @Override
+    public synchronized void removed(Person p) {
+        int v = p.getNode();
+        if (removed.get(v)) return;
+        for (String w : normalizedWords(p.getFullName())) remove(words, w, v);
+        remove(births, birthYear[v], v);
+        if (deathYear[v] != NO_YEAR) remove(deaths, deathYear[v], v);
+        genders[p.getGender().ordinal()].clear(v);
+        alive.clear(v);
+        removed.set(v);
+    }
+
+    private void setDeath(int v, Integer year) {
+        deathYear[v] = year == null ? NO_YEAR : year;
+        alive.set(v, year == null);
+        if (year != null) add(deaths, year, v);
+    }
+
+    private static <K> void add(Map<K, IntList> index, K key, int v) {
+        IntList nodes = index.get(key);
+        if (nodes == null) index.put(key, nodes = new IntList(2));
+        nodes.addSorted(v);
+    }
+
+    private static <K> void remove(Map<K, IntList> index, K key, int v) {
+        IntList nodes = index.get(key);
+        if (nodes == null) return;
+        nodes.removeSorted(v);
+        if (nodes.isEmpty()) index.remove(key);
+    }
+
+    // ---- queries ----
+
+    synchronized SearchPage search(PersonQuery q) {
+        BitSet match = null;
+        if (q.namePrefix != null) {
+            for (String w : normalizedWords(q.namePrefix)) {
+                BitSet hits = new BitSet(size);
+                for (IntList nodes : words.subMap(w, true, w + Character.MAX_VALUE, true).values()) mark(hits, nodes);
+                if (match == null) match = hits; else match.and(hits);
+            }
+            if (match == null) match = new BitSet();   // a name of only punctuation matches nobody
+        }
+        if (q.hasBirthRange()) match = range(match, births, birthYear, q.bornFrom, q.bornTo);
+        if (q.hasDeathRange()) match = range(match, deaths, deathYear, q.diedFrom, q.diedTo);
+        if (match == null) { match = new BitSet(size); match.set(0, size); match.andNot(removed); }
+        if (q.gender != null) match.and(genders[q.gender.ordinal()]);
+        if (q.alive != null) { if (q.alive) match.and(alive); else match.andNot(alive); }
+
+        int total = match.cardinality();
+        List<Person> page = new ArrayList<>(Math.min(q.limit, Math.max(0, total - q.offset)));
+        int v = match.nextSetBit(0);
+        for (int skip = 0; v >= 0 && skip < q.offset; skip++) v = match.nextSetBit(v + 1);
+        for (; v >= 0 && page.size() < q.limit; v = match.nextSetBit(v + 1)) page.add(graph.person(v));
+        return new SearchPage(page, total, q.offset);
+    }
+
+    // Filters a small candidate set through the year column; otherwise unions the year buckets.
+    private BitSet range(BitSet match, NavigableMap<Integer, IntList> buckets, int[] column, int from, int to) {
+        if (from > to) return new BitSet();
+        if (match != null && match.cardinality() < size / 64) {
+            for (int v = match.nextSetBit(0); v >= 0; v = match.nextSetBit(v + 1)) {
+                int y = column[v];
+                if (y == NO_YEAR || y < from || y > to) match.clear(v);
+            }
+            return match;
+        }
+        BitSet hits = new BitSet(size);
+        for (IntList nodes : buckets.subMap(from, true, to, true).values()) mark(hits, nodes);
+        if (match == null) return hits;
+        match.and(hits);
+        return match;
+    }
+
+    private static void mark(BitSet bits, IntList nodes) {
+        for (int i = 0; i < nodes.size(); i++) bits.set(nodes.get(i));
+    }
+
+    /** Distinct lower-case words with accents stripped: "Zoë O'Brien-Smith" -> [zoe, o, brien, smith]. */
+    static List<String> normalizedWords(String text) {
+        String plain = Normalizer.normalize(text, Normalizer.Form.NFD);
+        List<String> out = new ArrayList<>(3);
+        StringBuilder w = new StringBuilder();
+        for (int i = 0; i < plain.length(); i++) {
+            char c = plain.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                w.append(Character.toLowerCase(c));
+            } else if (w.length() > 0) {
+                addDistinct(out, w.toString());
+                w.setLength(0);
+            }
+        }
+        if (w.length() > 0) addDistinct(out, w.toString());
+        return out;
+    }
+
+    private static void addDistinct(List<String> out, String w) {
+        if (!out.contains(w)) out.add(w);
+    }
+}
@@ -0,0 +1,34 @@
+package familytree.service;
+
+import familytree.model.Gender;
+
+/**
+ * Criteria for FamilyTree.search; unset criteria match everyone. Name words match as prefixes of
+ * any word of the full name, ignoring case and accents, so "smi" finds "John Smith".
+ */
+public final class PersonQuery {
+    String namePrefix;
+    int bornFrom = Integer.MIN_VALUE, bornTo = Integer.MAX_VALUE;
+    int diedFrom = Integer.MIN_VALUE, diedTo = Integer.MAX_VALUE;
+    Gender gender;
+    Boolean alive;
+    int offset;
+    int limit = 20;
+
+    public PersonQuery name(String prefix) { this.namePrefix = prefix; return this; }
+    public PersonQuery bornBetween(int from, int to) { this.bornFrom = from; this.bornTo = to; return this; }
+    /** Implies deceased. */
+    public PersonQuery diedBetween(int from, int to) { this.diedFrom = from; this.diedTo = to; return this; }
+    public PersonQuery gender(Gender gender) { this.gender = gender; return this; }
+    public PersonQuery alive(boolean alive) { this.alive = alive; return this; }
+
+    public PersonQuery page(int offset, int limit) {
+        if (offset < 0 || limit < 1) throw new IllegalArgumentException("offset >= 0 and limit >= 1 required");
+        this.offset = offset;
+        this.limit = limit;
+        return this;
+    }
+
+    boolean hasBirthRange() { return bornFrom != Integer.MIN_VALUE || bornTo != Integer.MAX_VALUE; }
+    boolean hasDeathRange() { return diedFrom != Integer.MIN_VALUE || diedTo != Integer.MAX_VALUE; }
+}
@@ -0,0 +1,10 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+/** Backing store for people not yet materialized on the heap (a mapped snapshot). */
+interface PersonSource {
+    Person materialize(int node);
+    String idOf(int node);
+    boolean idEquals(int node, String id);
+}
@@ -0,0 +1,165 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Minor;
+import familytree.model.Person;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One person as of a TreeVersion: immutable, so a version can be read while the tree moves on. Changes
+ * make a new PersonVersion that shares everything it did not touch; parent, child and marriage arrays
+ * are copied on change, which costs O(degree).
+ */
+public final class PersonVersion {
+    private static final String[] NO_IDS = new String[0];
+    private static final Spouse[] NO_SPOUSES = new Spouse[0];
+
+    private final String id;
+    private final String fullName;
+    private final Gender gender;
+    private final int birthYear;
+    private final Integer deathYear;
+    private final boolean minor;
+    private final String[] parents;
+    private final String[] children;
+    private final Spouse[] marriages;
+    private final String mergedInto;
+
+    /** A marriage seen from one spouse; {@code first} if this person was named first (Marriage spouse A). */
+    public static final class Spouse {
+        private final String spouseId;
+        private final int year;
+        private final Integer divorceYear;
+        private final boolean first;
+
+        Spouse(String spouseId, int year, Integer divorceYear, boolean first) {
+            this.spouseId = spouseId;
+            this.year = year;
+            this.divorceYear = divorceYear;
+            this.first = first;
+        }
+
+        public String getSpouseId() { return spouseId; }
+        public int getYear() { return year; }
+        public Integer getDivorceYear() { return divorceYear; }
+        public boolean isFirst() { return first; }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof Spouse s && s.spouseId.equals(spouseId) && s.year == year && Objects.equals(s.divorceYear, divorceYear)
+                    && s.first == first;
+        }
+        @Override public int hashCode() { return spouseId.hashCode() * 31 + year; }
+    }
+
+    private PersonVersion(String id, String fullName, Gender gender, int birthYear, Integer deathYear, boolean minor,
+                          String[] parents, String[] children, Spouse[] marriages, String mergedInto) {
+        this.id = id;
+        this.fullName = fullName;
+        this.gender = gender;
+        this.birthYear = birthYear;
+        this.deathYear = deathYear;
+        this.minor = minor;
+        this.parents = parents;
+        this.children = children;
+        this.marriages = marriages;
+        this.mergedInto = mergedInto;
+    }
+
+    /** The person's current state, links and marriages included. */
+    static PersonVersion of(Person p) {
+        Spouse[] ms = NO_SPOUSES;
+        if (!p.getMarriages().isEmpty()) {
+            ms = new Spouse[p.getMarriages().size()];
+            int i = 0;
+            for (Marriage m : p.getMarriages()) ms[i++] = new Spouse(m.getOtherSpouseId(p.getId()), m.getMarriageYear(), m.getDivorceYear(),
+                    m.getSpouseAId().equals(p.getId()));
+        }
+        return new PersonVersion(p.getId(), p.getFullName(), p.getGender(), p.getBirthYear(), p.getDeathYear(), p instanceof Minor,
+                p.getParentIds().toArray(NO_IDS), p.getChildrenIds().toArray(NO_IDS), ms, null);
+    }
+
+    public String getId() { return id; }
+    public String getFullName() { return fullName; }
+    public Gender getGender() { return gender; }
+    public int getBirthYear() { return birthYear; }
+    public Integer getDeathYear() { return deathYear; }
+    /** Whether the person was created a Minor; the class stays as created when the birth year is edited. */
+    public boolean isMinor() { return minor; }
+    /** Parents in slot order and children in the order they were linked, as the traversals visit them. */
+    public List<String> getParentIds() { return Collections.unmodifiableList(Arrays.asList(parents)); }
+    public List<String> getChildrenIds() { return Collections.unmodifiableList(Arrays.asList(children)); }
+    public List<Spouse> getMarriages() { return Collections.unmodifiableList(Arrays.asList(marriages)); }
+    /** The person this record was merged into, or null; later merges of that person are not followed. */
+    public String getMergedInto() { return mergedInto; }
+
+    // ---- copies with one change ----
+
+    PersonVersion withName(String name) { return new PersonVersion(id, name, gender, birthYear, deathYear, minor, parents, children, marriages, mergedInto); }
+    PersonVersion withBirthYear(int year) { return new PersonVersion(id, fullName, gender, year, deathYear, minor, parents, children, marriages, mergedInto); }
+    PersonVersion withDeathYear(Integer year) { return new PersonVersion(id, fullName, gender, birthYear, year, minor, parents, children, marriages, mergedInto); }
+    PersonVersion withParent(String parentId) { return new PersonVersion(id, fullName, gender, birthYear, deathYear, minor, plus(parents, parentId), children, marriages, mergedInto); }
+    PersonVersion withoutParent(String parentId) { return new PersonVersion(id, fullName, gender, birthYear, deathYear, minor, minus(parents, parentId), children, marriages, mergedInto); }
+    PersonVersion withChild(String childId) { return new PersonVersion(id, fullName, gender, birthYear, deathYear, minor, parents, plus(children, childId), marriages, mergedInto); }
+    PersonVersion withoutChild(String childId) { return new PersonVersion(id, fullName, gender, birthYear, deathYear, minor, parents, minus(children, childId), marriages, mergedInto); }
+
+    PersonVersion withMergedInto(String keptId) { return new PersonVersion(id, fullName, gender, birthYear, deathYear, minor, parents, children, marriages, keptId); }
+
+    PersonVersion withMarriage(String spouseId, int year, boolean first) {
+        Spouse[] ms = Arrays.copyOf(marriages, marriages.length + 1);
+        ms[marriages.length] = new Spouse(spouseId, year, null, first);
+        return new PersonVersion(id, fullName, gender, birthYear, deathYear, minor, parents, children, ms, mergedInto);
+    }
+
+    PersonVersion withDivorce(String spouseId, int year, int divorceYear) {
+        Spouse[] ms = marriages.clone();
+        for (int i = ms.length - 1; i >= 0; i--) {
+            Spouse s = ms[i];
+            if (s.divorceYear == null && s.year == year && s.spouseId.equals(spouseId)) {
+                ms[i] = new Spouse(spouseId, year, divorceYear, s.first);
+                break;
+            }
+        }
+        return new PersonVersion(id, fullName, gender, birthYear, deathYear, minor, parents, children, ms, mergedInto);
+    }
+
+    private static String[] plus(String[] ids, String id) {
+        String[] out = Arrays.copyOf(ids, ids.length + 1);
+        out[ids.length] = id;
+        return out;
+    }
+
+    private static String[] minus(String[] ids, String id) {
+        int i = Arrays.asList(ids).indexOf(id);
+        if (i < 0) return ids;
+        String[] out = new String[ids.length - 1];
+        System.arraycopy(ids, 0, out, 0, i);
+        System.arraycopy(ids, i + 1, out, i, out.length - i);
+        return out;
+    }
+
+    /** What differs from {@code before}, e.g. "name, children"; empty if nothing does. */
+    String changesSince(PersonVersion before) {
+        StringBuilder sb = new StringBuilder();
+        if (!fullName.equals(before.fullName)) sb.append(", name");
+        if (birthYear != before.birthYear) sb.append(", born");
+        if (!Objects.equals(deathYear, before.deathYear)) sb.append(", died");
+        if (!Arrays.equals(parents, before.parents)) sb.append(", parents");
+        if (!Arrays.equals(children, before.children)) sb.append(", children");
+        if (!Arrays.equals(marriages, before.marriages)) sb.append(", marriages");
+        if (!Objects.equals(mergedInto, before.mergedInto)) sb.append(", merged");
+        return sb.length() == 0 ? "" : sb.substring(2);
+    }
+
+    /** Same layout as Person.oneLineSummary(). */
+    public String oneLineSummary() {
+        String spouse = "none";
+        for (Spouse s : marriages) if (s.divorceYear == null) spouse = s.spouseId;
+        return String.format("%s | %s | %s | b.%d%s | spouse=%s | children=%d", id, fullName, gender, birthYear,
+                deathYear != null ? " d." + deathYear : "", spouse, children.length);
+    }
+}
@@ -0,0 +1,187 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Person;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * Per-node attributes laid out as columns in direct (off-heap) buffers, kept current as a TreeListener:
+ * birth year, death year (ALIVE while living), gender ordinal, generation depth, both parent nodes
+ * (PersonGraph.NONE when missing) and the year of the first marriage (NONE if never married).
+ * Population analytics then scan a few flat columns in node order instead of chasing Person objects,
+ * with branch-free loop bodies the JIT can unroll. Depths are the reachability index's levels (longest
+ * path from a root), copied over lazily after links change. Capacity doubles as people are added. A record
+ * merged away keeps its row with birth NONE, death ALIVE and no marriage, which every scan already skips.
+ */
+final class PopulationColumns implements TreeListener {
+    static final int ALIVE = Integer.MAX_VALUE;
+    static final int NONE = Integer.MIN_VALUE;
+
+    private final PersonGraph graph;
+    private final ReachabilityIndex reachability;
+    private int capacity, size;
+    private IntBuffer birth, death, depth, parent0, parent1, firstMarriage;
+    private ByteBuffer gender;
+    private boolean depthsStale = true;
+
+    /** Copies everyone already registered; afterwards listener events keep it current. */
+    PopulationColumns(PersonGraph graph, ReachabilityIndex reachability) {
+        this.graph = graph;
+        this.reachability = reachability;
+        allocate(Math.max(16, Integer.highestOneBit(Math.max(1, graph.size())) << 1));
+        for (int v = 0; v < graph.size(); v++) record(graph.person(v));
+        for (int v = 0; v < graph.size(); v++)
+            for (Marriage m : graph.person(v).getMarriages()) firstMarriage.put(v, Math.min(firstMarriage(v), m.getMarriageYear()));
+        for (int v = 0; v < graph.size(); v++) if (graph.isRemoved(v)) clear(v);
+    }
+
+    // ---- maintenance ----
+
+    @Override public synchronized void personAdded(Person p) { record(p); }
+    @Override public synchronized void birthYearChanged(Person p, int oldYear) { if (!graph.isRemoved(p.getNode())) birth.put(p.getNode(), p.getBirthYear()); }
+    @Override public synchronized void deathYearChanged(Person p, Integer oldYear) { if (!graph.isRemoved(p.getNode())) death.put(p.getNode(), deathYear(p)); }
+    @Override public synchronized void removed(Person p) { clear(p.getNode()); }
+    @Override public synchronized void linked(int parent, int child) { parents(child); }
+    @Override public synchronized void unlinked(int parent, int child) { parents(child); }
+
+    @Override
+    public synchronized void married(Marriage m) {
+        for (String id : new String[]{m.getSpouseAId(), m.getSpouseBId()}) {
+            int v = graph.nodeOf(id);
+            if (v != PersonGraph.NONE && !graph.isRemoved(v)) firstMarriage.put(v, Math.min(firstMarriage(v), m.getMarriageYear()));
+        }
+    }
+
+    @Override
+    public synchronized void merged(Person kept, Person dropped, List<Marriage> removed) {
+        firstMarriage(kept);
+        firstMarriage(dropped);
+        for (Marriage m : removed) firstMarriage(graph.person(graph.nodeOf(m.getOtherSpouseId(dropped.getId()))));
+    }
+
+    /** Levels were recomputed wholesale (bulk load), so the depth column must be copied again. */
+    synchronized void depthsChanged() { depthsStale = true; }
+
+    private void record(Person p) {
+        int v = p.getNode();
+        if (v >= capacity) allocate(Math.max(v + 1, capacity * 2));
+        birth.put(v, p.getBirthYear());
+        death.put(v, deathYear(p));
+        gender.put(v, (byte) p.getGender().ordinal());
+        firstMarriage.put(v, NONE);
+        size = Math.max(size, v + 1);
+        parents(v);
+    }
+
+    private void clear(int v) {
+        birth.put(v, NONE);
+        death.put(v, ALIVE);
+        firstMarriage.put(v, NONE);
+    }
+
+    private void parents(int v) {
+        parent0.put(v, graph.parent(v, 0));
+        parent1.put(v, graph.parent(v, 1));
+        depthsStale = true;
+    }
+
+    // Recomputed from scratch: a merge can take marriages away.
+    private void firstMarriage(Person p) {
+        int y = NONE;
+        for (Marriage m : p.getMarriages()) y = y == NONE ? m.getMarriageYear() : Math.min(y, m.getMarriageYear());
+        firstMarriage.put(p.getNode(), y);
+    }
+
+    private int firstMarriage(int v) { int y = firstMarriage.get(v); return y == NONE ? Integer.MAX_VALUE : y; }
+
+    private static int deathYear(Person p) { return p.getDeathYear() == null ? ALIVE : p.getDeathYear(); }
+
+    private void allocate(int cap) {
+        birth = grow(birth, cap);
+        death = grow(death, cap);
+        depth = grow(depth, cap);
+        parent0 = grow(parent0, cap);
+        parent1 = grow(parent1, cap);
+        firstMarriage = grow(firstMarriage, cap);
+        ByteBuffer g = ByteBuffer.allocateDirect(cap);
+        if (gender != null) g.put(0, gender, 0, size);
+        gender = g;
+        capacity = cap;
+    }
+
+    private IntBuffer grow(IntBuffer old, int cap) {
+        IntBuffer b = ByteBuffer.allocateDirect(cap * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        if (old != null) b.put(0, old, 0, size);
+        return b;
+    }
+
+    private void refreshDepths() {
+        if (!depthsStale) return;
+        int[] levels = reachability.levels();
+        depth.put(0, levels, 0, size);
+        depthsStale = false;
+    }
+
+    // ---- analytics ----
+
+    int parent(int v, int slot) { return (slot == 0 ? parent0 : parent1).get(v); }
+
+    /** Lifespan (death minus birth year) of the deceased, grouped by generation depth. */
+    synchronized GroupStats lifespanByGeneration() {
+        refreshDepths();
+        int n = size, maxDepth = 0;
+        for (int v = 0; v < n; v++) maxDepth = Math.max(maxDepth, depth.get(v));
+        long[] counts = new long[maxDepth + 1], sums = new long[maxDepth + 1];
+        for (int v = 0; v < n; v++) {
+            int d = death.get(v), dead = d != ALIVE ? 1 : 0, g = depth.get(v);
+            counts[g] += dead;
+            sums[g] += dead * (d - birth.get(v));   // 0 for the living, whatever the sentinel
+        }
+        return new GroupStats(0, 1, counts, sums);
+    }
+
+    /**
+     * People born in [fromYear, toYear] per decade, and in each sum how many of them have {@code target}
+     * gender, so mean(k) is that gender's share of the decade's births.
+     */
+    synchronized GroupStats genderByDecade(int fromYear, int toYear, Gender target) {
+        if (fromYear > toYear) throw new IllegalArgumentException("Empty year range: " + fromYear + ".." + toYear);
+        int first = Math.floorDiv(fromYear, 10) * 10, groups = (Math.floorDiv(toYear, 10) * 10 - first) / 10 + 1;
+        long[] counts = new long[groups], sums = new long[groups];
+        byte want = (byte) target.ordinal();
+        for (int v = 0, n = size; v < n; v++) {
+            int b = birth.get(v);
+            if (b < fromYear || b > toYear) continue;
+            int k = (b - first) / 10;
+            counts[k]++;
+            sums[k] += gender.get(v) == want ? 1 : 0;
+        }
+        return new GroupStats(first, 10, counts, sums);
+    }
+
+    /** Age at first marriage of everyone who married, grouped by birth decade. */
+    synchronized GroupStats ageAtFirstMarriageByDecade() {
+        int n = size, lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+        for (int v = 0; v < n; v++) {
+            if (firstMarriage.get(v) == NONE) continue;
+            lo = Math.min(lo, birth.get(v));
+            hi = Math.max(hi, birth.get(v));
+        }
+        if (lo > hi) return new GroupStats(0, 10, new long[0], new long[0]);
+        int first = Math.floorDiv(lo, 10) * 10, groups = (Math.floorDiv(hi, 10) * 10 - first) / 10 + 1;
+        long[] counts = new long[groups], sums = new long[groups];
+        for (int v = 0; v < n; v++) {
+            int m = firstMarriage.get(v);
+            if (m == NONE) continue;
+            int b = birth.get(v), k = (b - first) / 10;
+            counts[k]++;
+            sums[k] += m - b;
+        }
+        return new GroupStats(first, 10, counts, sums);
+    }
+}
@@ -0,0 +1,206 @@
+package familytree.service;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally maintained ancestry index over a PersonGraph. Each node keeps
+ * - a topological level (longest path from a root): an ancestor always has a strictly lower level;
+ * - a 64-bit ancestor sketch: OR of a hashed bit for itself and every ancestor. A missing bit
+ *   proves "not an ancestor"; a set bit may be a false positive under pedigree collapse.
+ * Most queries are answered by those two O(1) filters. Otherwise a bidirectional search runs
+ * with visited stamps, expanding only nodes the filters cannot rule out.
+ * Links propagate monotonically down the child cone; unlinks recompute the cone exactly.
+ */
+public final class ReachabilityIndex {
+    private final PersonGraph graph;
+    private int[] level = new int[16];
+    private long[] sketch = new long[16];
+    private int[] mark = new int[16];      // visit stamps, reused across queries
+    private int epoch;
+    private final IntList work = new IntList();
+    private final IntList downWork = new IntList();
+    private Metrics metrics;   // null unless the tree is instrumented
+
+    public ReachabilityIndex(PersonGraph graph) {
+        this.graph = graph;
+        rebuild();
+    }
+
+    /** Adopts labels saved with a snapshot instead of recomputing them. */
+    ReachabilityIndex(PersonGraph graph, int[] level, long[] sketch) {
+        this.graph = graph;
+        this.level = level;
+        this.sketch = sketch;
+        this.mark = new int[level.length];
+        ensureCapacity(graph.size());
+    }
+
+    void setMetrics(Metrics metrics) { this.metrics = metrics; }
+
+    int[] levels() { return level; }
+    long[] sketches() { return sketch; }
+
+    public void onAdd(int node) {
+        ensureCapacity(node + 1);
+        level[node] = 0;
+        sketch[node] = bit(node);
+        mark[node] = 0;
+    }
+
+    // Synchronized like search(): both use work, mark and epoch, and a lock-free reader may be mid-search.
+    public synchronized void onLink(int parent, int child) {
+        // Adding an edge can only raise levels and add sketch bits, so stop where nothing changes.
+        work.clear();
+        work.add(child);
+        while (!work.isEmpty()) {
+            int n = work.pop();
+            if (!recompute(n)) continue;
+            for (int i = 0; i < graph.childCount(n); i++) work.add(graph.child(n, i));
+        }
+    }
+
+    public synchronized void onUnlink(int parent, int child) {
+        // Current levels are still a valid topological order, so recompute the cone in that order.
+        int stamp = nextEpoch();
+        IntList cone = new IntList();
+        work.clear();
+        work.add(child);
+        mark[child] = stamp;
+        while (!work.isEmpty()) {
+            int n = work.pop();
+            cone.add(n);
+            for (int i = 0; i < graph.childCount(n); i++) {
+                int c = graph.child(n, i);
+                if (mark[c] != stamp) { mark[c] = stamp; work.add(c); }
+            }
+        }
+        long[] order = new long[cone.size()];
+        for (int i = 0; i < order.length; i++) order[i] = ((long) level[cone.get(i)] << 32) | cone.get(i);
+        Arrays.sort(order);
+        for (long key : order) recompute((int) key);
+    }
+
+    /** Recomputes every label from scratch in topological order (Kahn); used after bulk loads. */
+    public void rebuild() {
+        int n = graph.size();
+        ensureCapacity(n);
+        int[] pending = new int[n];
+        IntList queue = new IntList(Math.max(1, n));
+        for (int i = 0; i < n; i++) {
+            pending[i] = graph.parentCount(i);
+            if (pending[i] == 0) queue.add(i);
+        }
+        for (int head = 0; head < queue.size(); head++) {
+            int v = queue.get(head);
+            recompute(v);
+            for (int i = 0; i < graph.childCount(v); i++) {
+                int c = graph.child(v, i);
+                if (--pending[c] == 0) queue.add(c);
+            }
+        }
+        if (queue.size() != n) throw new IllegalStateException("Graph contains a cycle");
+    }
+
+    /** True if a is a strict ancestor of b. */
+    public boolean isAncestor(int a, int b) {
+        if (a == b || level[a] >= level[b]) return answered(Metrics.Check.LEVEL, false);
+        long bitA = bit(a);
+        if ((sketch[b] & bitA) == 0) return answered(Metrics.Check.SKETCH, false);
+        if (graph.hasParent(b, a)) return answered(Metrics.Check.PARENT, true);
+        return search(a, b, bitA);
+    }
+
+    private boolean answered(Metrics.Check how, boolean result) {
+        Metrics m = metrics;
+        if (m != null) m.ancestryCheck(how);
+        return result;
+    }
+
+    // Uses the shared scratch buffers, so readers take turns here with each other and with link updates (the filters above are lock-free).
+    private synchronized boolean search(int a, int b, long bitA) {
+        AncestrySearchEvent event = new AncestrySearchEvent();
+        event.begin();
+
+        // Bidirectional search: up from b and down from a, expanding the smaller frontier (alternating on ties).
+        // Meeting a node stamped by the other side proves a path; either side running dry disproves it.
+        int up = nextEpoch(), down = nextEpoch(), expanded = 0;
+        work.clear();
+        downWork.clear();
+        work.add(b);
+        mark[b] = up;
+        downWork.add(a);
+        mark[a] = down;
+        boolean upTurn = false, found = false;
+        search:
+        while (!work.isEmpty() && !downWork.isEmpty()) {
+            boolean expandUp = work.size() != downWork.size() ? work.size() < downWork.size() : (upTurn = !upTurn);
+            expanded++;
+            if (expandUp) {
+                int n = work.pop();
+                for (int s = 0; s < 2; s++) {
+                    int p = graph.parent(n, s);
+                    if (p == PersonGraph.NONE || mark[p] == up) continue;
+                    if (mark[p] == down) { found = true; break search; }
+                    mark[p] = up;
+                    if (level[p] > level[a] && (sketch[p] & bitA) != 0) work.add(p);
+                }
+            } else {
+                int n = downWork.pop();
+                for (int i = 0; i < graph.childCount(n); i++) {
+                    int c = graph.child(n, i);
+                    if (mark[c] == down) continue;
+                    if (mark[c] == up) { found = true; break search; }
+                    mark[c] = down;
+                    if (level[c] < level[b] && (sketch[b] & bit(c)) != 0) downWork.add(c);
+                }
+            }
+        }
+        Metrics m = metrics;
+        if (m != null) {
+            m.ancestryCheck(Metrics.Check.SEARCH);
+            m.ancestrySearch(expanded, found);
+        }
+        if (event.shouldCommit()) {
+            event.expanded = expanded;
+            event.found = found;
+            event.commit();
+        }
+        return found;
+    }
+
+    public int levelOf(int node) { return level[node]; }
+
+    /** Ancestor sketch of a node; disjoint sketches prove two people share no ancestor. */
+    long sketchOf(int node) { return sketch[node]; }
+
+    /** Derives the labels of n from its parents; returns true if they changed. */
+    private boolean recompute(int n) {
+        int lvl = 0;
+        long sk = bit(n);
+        for (int s = 0; s < 2; s++) {
+            int p = graph.parent(n, s);
+            if (p == PersonGraph.NONE) continue;
+            lvl = Math.max(lvl, level[p] + 1);
+            sk |= sketch[p];
+        }
+        if (level[n] == lvl && sketch[n] == sk) return false;
+        level[n] = lvl;
+        sketch[n] = sk;
+        return true;
+    }
+
+    private int nextEpoch() {
+        if (++epoch <= 0) { Arrays.fill(mark, 0); epoch = 1; }
+        return epoch;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= level.length) return;
+        int cap = Math.max(n, level.length * 2);
+        level = Arrays.copyOf(level, cap);
+        sketch = Arrays.copyOf(sketch, cap);
+        mark = Arrays.copyOf(mark, cap);
+    }
+
+    private static long bit(int node) { return 1L << ((node * 0x9E3779B9) >>> 26); }
+}
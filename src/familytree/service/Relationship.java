@@ -0,0 +1,57 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+import java.util.List;
+
+/** How person A is related to person B: the relationship name and every lowest common ancestor. */
+public final class Relationship {
+    static final String UNRELATED = "unrelated";
+
+    /** A lowest common ancestor with its generation distance from each side (0 = the person itself). */
+    public static final class CommonAncestor {
+        private final Person person;
+        private final int fromA;
+        private final int fromB;
+
+        CommonAncestor(Person person, int fromA, int fromB) {
+            this.person = person;
+            this.fromA = fromA;
+            this.fromB = fromB;
+        }
+
+        public Person getPerson() { return person; }
+        public int getFromA() { return fromA; }
+        public int getFromB() { return fromB; }
+
+        @Override
+        public String toString() {
+            return person.getId() + " " + person.getFullName() + " (" + fromA + " up from A, " + fromB + " up from B)";
+        }
+    }
+
+    private final Person a;
+    private final Person b;
+    private final String name;
+    private final List<CommonAncestor> lowestCommonAncestors;
+
+    Relationship(Person a, Person b, String name, List<CommonAncestor> lowestCommonAncestors) {
+        this.a = a;
+        this.b = b;
+        this.name = name;
+        this.lowestCommonAncestors = List.copyOf(lowestCommonAncestors);
+    }
+
+    public Person getA() { return a; }
+    public Person getB() { return b; }
+    /** What A is to B, e.g. "second cousin once removed", "half-sister", "great-grandfather". */
+    public String getName() { return name; }
+    /** Closest first; more than one at the same distances means descent from a couple. */
+    public List<CommonAncestor> getLowestCommonAncestors() { return lowestCommonAncestors; }
+    public boolean isBloodRelated() { return !lowestCommonAncestors.isEmpty(); }
+
+    public String describe() {
+        String who = a.getId() + " " + a.getFullName(), whom = b.getId() + " " + b.getFullName();
+        return name.equals(UNRELATED) ? who + " is not related by blood to " + whom : who + " is the " + name + " of " + whom;
+    }
+}
@@ -0,0 +1,209 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds lowest common ancestors and names relationships. Both sides search upward breadth-first for
+ * shortest generation distances, pruned by the reachability index's ancestor sketches: a node whose
+ * sketch is disjoint from the other person's has no common ancestor at or above it. The search from B
+ * stops at common ancestors, and candidates lying above another candidate are dropped. One upward
+ * search from A is shared by a whole batch of B's. Scratch arrays are stamped, so queries do not clear.
+ */
+final class RelationshipCalculator {
+    private static final String[] ORDINALS = {"", "first", "second", "third", "fourth", "fifth", "sixth",
+            "seventh", "eighth", "ninth", "tenth"};
+
+    private final PersonGraph graph;
+    private final ReachabilityIndex reachability;
+    private int[] stamp = new int[16];
+    private int[] dist = new int[16];
+    private int[] seen = new int[16];
+    private int epoch, seenEpoch;
+    private final IntList queue = new IntList();
+
+    RelationshipCalculator(PersonGraph graph, ReachabilityIndex reachability) {
+        this.graph = graph;
+        this.reachability = reachability;
+    }
+
+    synchronized Relationship relate(int a, int b) {
+        return relateAll(a, new int[] {b}).get(0);
+    }
+
+    /** Relationships of A to each of {@code others}, in order. */
+    synchronized List<Relationship> relateAll(int a, int[] others) {
+        if (stamp.length < graph.size()) grow(graph.size());
+        long wanted = 0;
+        for (int b : others) wanted |= reachability.sketchOf(b);
+
+        // Upward BFS from A, keeping only nodes that may still lead to an ancestor of some B.
+        int fromA = nextEpoch();
+        queue.clear();
+        visit(a, 0, fromA);
+        for (int head = 0; head < queue.size(); head++) {
+            int n = queue.get(head);
+            for (int s = 0; s < 2; s++) {
+                int p = graph.parent(n, s);
+                if (p != PersonGraph.NONE && stamp[p] != fromA && (reachability.sketchOf(p) & wanted) != 0) visit(p, dist[n] + 1, fromA);
+            }
+        }
+
+        List<Relationship> out = new ArrayList<>(others.length);
+        for (int b : others) out.add(relateFrom(a, fromA, b));
+        return out;
+    }
+
+    private Relationship relateFrom(int a, int fromA, int b) {
+        if (a == b) throw new IllegalArgumentException("A person is not related to themselves");
+        long sketchA = reachability.sketchOf(a);
+        List<int[]> found = new ArrayList<>();   // {node, distance from A, distance from B}
+        if ((sketchA & reachability.sketchOf(b)) != 0) {
+            // Upward BFS from B that stops at common ancestors: everything above one is common but not lowest.
+            int fromB = nextSeen();
+            IntList frontier = new IntList(), next = new IntList();
+            frontier.add(b);
+            seen[b] = fromB;
+            for (int d = 0; !frontier.isEmpty(); d++) {
+                next.clear();
+                for (int i = 0; i < frontier.size(); i++) {
+                    int n = frontier.get(i);
+                    if (stamp[n] == fromA) { found.add(new int[] {n, dist[n], d}); continue; }
+                    for (int s = 0; s < 2; s++) {
+                        int p = graph.parent(n, s);
+                        if (p != PersonGraph.NONE && seen[p] != fromB && (reachability.sketchOf(p) & sketchA) != 0) {
+                            seen[p] = fromB;
+                            next.add(p);
+                        }
+                    }
+                }
+                IntList t = frontier; frontier = next; next = t;
+            }
+        }
+        if (found.size() > 1) dropNonLowest(found, fromA);
+
+        found.sort(Comparator.<int[]>comparingInt(f -> f[1] + f[2]).thenComparingInt(f -> f[1]).thenComparingInt(f -> f[0]));
+        List<Relationship.CommonAncestor> lowest = new ArrayList<>(found.size());
+        for (int[] c : found) lowest.add(new Relationship.CommonAncestor(graph.person(c[0]), c[1], c[2]));
+        Person pa = graph.person(a), pb = graph.person(b);
+        return new Relationship(pa, pb, name(pa, pb, lowest), lowest);
+    }
+
+    // B's search may reach a common ancestor along a path that bypasses a lower one. One upward walk from all
+    // candidates marks what lies strictly above them; it stays inside A's stamped ancestry, which holds them all.
+    private void dropNonLowest(List<int[]> found, int fromA) {
+        int above = nextSeen();
+        queue.clear();
+        for (int[] c : found) queue.add(c[0]);
+        for (int head = 0; head < queue.size(); head++) {
+            int n = queue.get(head);
+            for (int s = 0; s < 2; s++) {
+                int p = graph.parent(n, s);
+                if (p != PersonGraph.NONE && stamp[p] == fromA && seen[p] != above) { seen[p] = above; queue.add(p); }
+            }
+        }
+        found.removeIf(c -> seen[c[0]] == above);
+    }
+
+    // ---- naming ----
+
+    private String name(Person a, Person b, List<Relationship.CommonAncestor> lowest) {
+        if (lowest.isEmpty()) {
+            return a.getActiveSpouseId().filter(b.getId()::equals).isPresent() ? word(a, "husband", "wife", "spouse") : Relationship.UNRELATED;
+        }
+        Relationship.CommonAncestor best = lowest.get(0);
+        int up = best.getFromA(), down = best.getFromB();
+        String half = up > 0 && down > 0 && isHalf(a.getNode(), b.getNode(), best.getPerson().getNode()) ? "half-" : "";
+
+        if (up == 0) return down == 1 ? word(a, "father", "mother", "parent") : greats(down - 2, "grand" + word(a, "father", "mother", "parent"));
+        if (down == 0) return up == 1 ? word(a, "son", "daughter", "child") : greats(up - 2, "grand" + word(a, "son", "daughter", "child"));
+        if (up == 1 && down == 1) return half + word(a, "brother", "sister", "sibling");
+        if (up == 1) return half + greats(down - 2, word(a, "uncle", "aunt", "aunt/uncle"));
+        if (down == 1) return half + greats(up - 2, word(a, "nephew", "niece", "niece/nephew"));
+        int degree = Math.min(up, down) - 1, removed = Math.abs(up - down);
+        return half + ordinal(degree) + " cousin" + removed(removed);
+    }
+
+    // The two lines meet in siblings, the children of {@code top} that A and B descend from (or are). They are half-siblings
+    // only if both have two known parents and the other ones differ; a missing parent may well be the same person.
+    private boolean isHalf(int a, int b, int top) {
+        IntList linesA = lines(top, a), linesB = lines(top, b);
+        if (linesA.isEmpty() || linesB.isEmpty()) return false;
+        for (int i = 0; i < linesA.size(); i++) {
+            int x = linesA.get(i);
+            for (int j = 0; j < linesB.size(); j++) {
+                int y = linesB.get(j);
+                if (graph.parentCount(x) < 2 || graph.parentCount(y) < 2 || otherParent(x, top) == otherParent(y, top)) return false;
+            }
+        }
+        return true;
+    }
+
+    // Children of top that are v or lie above it.
+    private IntList lines(int top, int v) {
+        IntList out = new IntList(1);
+        for (int i = 0, n = graph.childCount(top); i < n; i++) {
+            int c = graph.child(top, i);
+            if (c == v || reachability.isAncestor(c, v)) out.add(c);
+        }
+        return out;
+    }
+
+    private int otherParent(int child, int parent) { return graph.parent(child, 0) == parent ? graph.parent(child, 1) : graph.parent(child, 0); }
+
+    // 0 -> base, 1 -> great-base, 2 -> 2nd great-base, ...
+    private static String greats(int n, String base) {
+        return n == 0 ? base : n == 1 ? "great-" + base : ordinalNumber(n) + " great-" + base;
+    }
+
+    private static String word(Person p, String male, String female, String other) {
+        return p.getGender() == Gender.MALE ? male : p.getGender() == Gender.FEMALE ? female : other;
+    }
+
+    private static String ordinal(int n) { return n < ORDINALS.length ? ORDINALS[n] : ordinalNumber(n); }
+
+    private static String ordinalNumber(int n) {
+        int mod100 = n % 100, mod10 = n % 10;
+        String suffix = mod100 >= 11 && mod100 <= 13 ? "th" : mod10 == 1 ? "st" : mod10 == 2 ? "nd" : mod10 == 3 ? "rd" : "th";
+        return n + suffix;
+    }
+
+    private static String removed(int n) {
+        switch (n) {
+            case 0: return "";
+            case 1: return " once removed";
+            case 2: return " twice removed";
+            default: return " " + n + " times removed";
+        }
+    }
+
+    // ---- scratch ----
+
+    private void visit(int node, int d, int epochA) {
+        stamp[node] = epochA;
+        dist[node] = d;
+        queue.add(node);
+    }
+
+    private int nextEpoch() {
+        if (++epoch <= 0) { Arrays.fill(stamp, 0); epoch = 1; }
+        return epoch;
+    }
+
+    private int nextSeen() {
+        if (++seenEpoch <= 0) { Arrays.fill(seen, 0); seenEpoch = 1; }
+        return seenEpoch;
+    }
+
+    private void grow(int n) {
+        int cap = Math.max(n, stamp.length * 2);
+        stamp = Arrays.copyOf(stamp, cap);
+        dist = Arrays.copyOf(dist, cap);
+        seen = Arrays.copyOf(seen, cap);
+    }
+}
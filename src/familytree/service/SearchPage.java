@@ -0,0 +1,23 @@
+package familytree.service;
+
+import familytree.model.Person;
+
+import java.util.List;
+
+/** One page of search results, in registration order, with the total number of matches. */
+public final class SearchPage {
+    private final List<Person> people;
+    private final int total;
+    private final int offset;
+
+    SearchPage(List<Person> people, int total, int offset) {
+        this.people = List.copyOf(people);
+        this.total = total;
+        this.offset = offset;
+    }
+
+    public List<Person> getPeople() { return people; }
+    public int getTotal() { return total; }
+    public int getOffset() { return offset; }
+    public boolean hasMore() { return offset + people.size() < total; }
+}
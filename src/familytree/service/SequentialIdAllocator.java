@@ -0,0 +1,38 @@
+package familytree.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ids made of a prefix and a zero-padded counter: prefix "P", width 3 gives P001 ... P999, P1000 ...
+ * Reserving an id of the same shape moves the counter past it.
+ */
+public final class SequentialIdAllocator implements IdAllocator {
+    private final String prefix;
+    private final int width;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public SequentialIdAllocator(String prefix, int width) {
+        if (width < 1) throw new IllegalArgumentException("width >= 1 required");
+        this.prefix = prefix;
+        this.width = width;
+    }
+
+    @Override
+    public String next() {
+        String digits = Integer.toString(counter.incrementAndGet());
+        StringBuilder sb = new StringBuilder(prefix.length() + Math.max(width, digits.length())).append(prefix);
+        for (int i = digits.length(); i < width; i++) sb.append('0');
+        return sb.append(digits).toString();
+    }
+
+    @Override
+    public void reserve(String id) {
+        int n = id.length() - prefix.length();
+        if (n < 1 || n > 9 || !id.startsWith(prefix)) return;
+        for (int i = prefix.length(); i < id.length(); i++) if (!Character.isDigit(id.charAt(i))) return;
+        advance(Integer.parseInt(id.substring(prefix.length())));
+    }
+
+    @Override public int counter() { return counter.get(); }
+    @Override public void advance(int n) { counter.accumulateAndGet(n, Math::max); }
+}
@@ -0,0 +1,425 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Minor;
+import familytree.model.Person;
+import familytree.strategy.Renderer;
+import familytree.strategy.TraversalStrategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * People partitioned over independent ConcurrentFamilyTree shards, each with its own locks, for archives
+ * made of many unrelated families. Every person belongs to a component (people joined by links and
+ * marriages); a component normally lives in one shard, so its traversals, siblings and link checks are
+ * answered there in full. New people go to the least loaded shard, or next to a given relative.
+ * <p>
+ * When a link or marriage joins components in different shards the smaller one moves over: its people
+ * are re-created under the same ids in the larger one's shard and the old copies become unreachable
+ * orphans, dropped when a shard's orphans outnumber its live people. Marriages always move; links only
+ * move components of up to {@code moveLimit} people, otherwise the edge is kept as a ghost reference
+ * (ids on both sides, held here) and the joined component spans shards. Traversals, siblings and cycle
+ * checks in spanning components follow ghost edges. Components never split on unlink, so one may be
+ * larger than the true family; that only makes a later move carry extra people.
+ * <p>
+ * Reads and links inside a single-shard component share the registry lock and then take the shard's;
+ * moves and ghost edges take it exclusively. Person objects come from their shard and are replaced when
+ * their family moves; their parent and children ids omit ghost edges, see {@link #parentIds}.
+ */
+public final class ShardedRegistry {
+    /** Largest component a cross-shard link moves by default; bigger joins keep a ghost edge. */
+    public static final int DEFAULT_MOVE_LIMIT = 4096;
+    private static final int SPANNING = -1;
+    private static final int COMPACT_MIN = 1024;
+
+    private final TraversalStrategy strategy;
+    private final Renderer renderer;
+    private final int moveLimit;
+    private final IdAllocator ids = IdAllocator.sequential();   // shared, so ids are unique across shards
+    private final ConcurrentFamilyTree[] shards;
+    private final int[] orphans;
+    private final Map<String, Integer> owner = new ConcurrentHashMap<>();
+    private final Map<String, Component> components = new ConcurrentHashMap<>();
+    private final Object unions = new Object();
+    private final Map<String, List<String>> ghostParents = new HashMap<>(), ghostChildren = new HashMap<>();
+    private int ghostEdges;
+    private final ReentrantReadWriteLock topology = new ReentrantReadWriteLock();
+
+    /** People connected by links or marriages; {@code shard} is SPANNING once they live in several. */
+    private static final class Component {
+        final List<String> members = new ArrayList<>(1);
+        volatile int shard;
+        Component(String id, int shard) { members.add(id); this.shard = shard; }
+    }
+
+    public ShardedRegistry(int shards, TraversalStrategy strategy, Renderer renderer) {
+        this(shards, DEFAULT_MOVE_LIMIT, strategy, renderer);
+    }
+
+    public ShardedRegistry(int shards, int moveLimit, TraversalStrategy strategy, Renderer renderer) {
+        if (shards < 1) throw new IllegalArgumentException("shards >= 1 required");
+        if (moveLimit < 0) throw new IllegalArgumentException("moveLimit >= 0 required");
+        this.moveLimit = moveLimit;
+        this.strategy = Objects.requireNonNull(strategy);
+        this.renderer = Objects.requireNonNull(renderer);
+        this.shards = new ConcurrentFamilyTree[shards];
+        this.orphans = new int[shards];
+        for (int s = 0; s < shards; s++) this.shards[s] = newShard();
+    }
+
+    private ConcurrentFamilyTree newShard() { return new ConcurrentFamilyTree(new FamilyTree(strategy, renderer, ids)); }
+
+    public int shardCount() { return shards.length; }
+
+    /** Live people per shard (orphaned copies excluded). */
+    public int[] shardSizes() {
+        return read(() -> {
+            int[] sizes = new int[shards.length];
+            for (int s = 0; s < shards.length; s++) sizes[s] = shards[s].size() - orphans[s];
+            return sizes;
+        });
+    }
+
+    public int size() { return owner.size(); }
+    public int shardOf(String id) { return read(() -> ownerOf(id)); }
+    public int ghostEdges() { return read(() -> ghostEdges); }
+
+    // ---- people ----
+
+    /** Registers someone in the least loaded shard, e.g. the founder of a new family. */
+    public Person addPerson(String fullName, Gender gender, int birthYear, Integer deathYear) {
+        return read(() -> {
+            int best = 0;
+            for (int s = 1; s < shards.length; s++)
+                if (shards[s].size() - orphans[s] < shards[best].size() - orphans[best]) best = s;
+            return add(best, fullName, gender, birthYear, deathYear);
+        });
+    }
+
+    /** Registers someone in {@code relativeId}'s shard, so linking the two later stays local. */
+    public Person addPerson(String fullName, Gender gender, int birthYear, Integer deathYear, String relativeId) {
+        return read(() -> add(ownerOf(relativeId), fullName, gender, birthYear, deathYear));
+    }
+
+    private Person add(int shard, String fullName, Gender gender, int birthYear, Integer deathYear) {
+        Person p = shards[shard].addPerson(fullName, gender, birthYear, deathYear);
+        components.put(p.getId(), new Component(p.getId(), shard));
+        owner.put(p.getId(), shard);
+        return p;
+    }
+
+    public Person getPerson(String id) { return read(() -> shards[ownerOf(id)].getPerson(id)); }
+
+    /** Parents in any shard. */
+    public Set<String> parentIds(String id) { return read(() -> parents(id)); }
+
+    /** Children in any shard. */
+    public Set<String> childIds(String id) { return read(() -> children(id)); }
+
+    // ---- links and marriages ----
+
+    public void linkParentChild(String parentId, String childId) {
+        if (parentId.equals(childId)) throw new IllegalArgumentException("Cannot be own parent");
+        boolean done = read(() -> {
+            Component p = component(parentId), c = component(childId);
+            if (p.shard == SPANNING || p.shard != c.shard) return false;
+            shards[p.shard].linkParentChild(parentId, childId);
+            union(parentId, childId);
+            return true;
+        });
+        if (!done) write(() -> { crossLink(parentId, childId); return null; });
+    }
+
+    // Under the write lock: the components are in different shards or span several.
+    private void crossLink(String parentId, String childId) {
+        Component p = component(parentId), c = component(childId);
+        if (p != c && p.shard != SPANNING && p.shard == c.shard) {
+            shards[p.shard].tree().linkParentChild(parentId, childId);
+        } else {
+            // Checked before anything moves; a move never changes who is whose parent.
+            if (parents(childId).contains(parentId)) return;
+            if (parents(childId).size() >= 2) throw new IllegalArgumentException("Child already has two parents");
+            if (p == c && reaches(childId, parentId)) throw new IllegalArgumentException("Link would create a cycle");
+            if (p != c) colocate(p, c, moveLimit);
+            int ps = ownerOf(parentId), cs = ownerOf(childId);
+            if (ps == cs) shards[ps].tree().linkParentChild(parentId, childId);
+            else addGhost(parentId, childId);
+        }
+        union(parentId, childId);
+    }
+
+    public void unlinkParentChild(String parentId, String childId) {
+        boolean done = read(() -> {
+            if (ghosts(ghostParents, childId).contains(parentId)) return false;
+            shards[ownerOf(childId)].unlinkParentChild(parentId, childId);
+            return true;
+        });
+        if (!done) write(() -> { removeGhost(parentId, childId); return null; });
+    }
+
+    /** Spouses always share a shard: a marriage across shards moves the smaller family. */
+    public void marry(String aId, String bId, int year) {
+        boolean done = read(() -> {
+            Component a = component(aId), b = component(bId);
+            if (a.shard == SPANNING || a.shard != b.shard) return false;
+            shards[a.shard].marry(aId, bId, year);
+            union(aId, bId);
+            return true;
+        });
+        if (done) return;
+        write(() -> {
+            Component a = component(aId), b = component(bId);
+            if (a != b) colocate(a, b, Integer.MAX_VALUE);
+            if (ownerOf(aId) != ownerOf(bId)) move(a, ownerOf(bId));   // one spanning family, spouses apart
+            shards[ownerOf(aId)].tree().marry(aId, bId, year);
+            union(aId, bId);
+            return null;
+        });
+    }
+
+    public void divorce(String aId, String bId, int year) { read(() -> { shards[ownerOf(aId)].divorce(aId, bId, year); return null; }); }
+
+    public Optional<Person> spouseOf(String id) { return read(() -> shards[ownerOf(id)].spouseOf(id)); }
+
+    // ---- queries ----
+
+    public boolean isAncestor(String ancestorId, String descendantId) {
+        return read(() -> {
+            int s = component(descendantId).shard;
+            if (s != SPANNING) return ownerOf(ancestorId) == s && shards[s].isAncestor(ancestorId, descendantId);
+            return reaches(ancestorId, descendantId);
+        });
+    }
+
+    public List<Person> siblingsOf(String id) {
+        return read(() -> {
+            int s = component(id).shard;
+            if (s != SPANNING) return shards[s].siblingsOf(id);
+            Set<String> siblings = new LinkedHashSet<>();
+            for (String parent : parents(id)) siblings.addAll(children(parent));
+            siblings.remove(id);
+            return people(siblings);
+        });
+    }
+
+    public List<List<Person>> ancestorsOf(String id, int generations) { return generations(id, generations, true); }
+    public List<List<Person>> descendantsOf(String id, int generations) { return generations(id, generations, false); }
+
+    private List<List<Person>> generations(String id, int generations, boolean up) {
+        if (generations < 0) throw new IllegalArgumentException("generations >= 0 required");
+        return read(() -> {
+            int s = component(id).shard;
+            if (s != SPANNING) return up ? shards[s].ancestorsOf(id, generations) : shards[s].descendantsOf(id, generations);
+            // Level order as in BFSTraversal, but each step asks the person's own shard plus the ghost edges.
+            List<List<Person>> levels = new ArrayList<>();
+            Set<String> visited = new HashSet<>(Set.of(id));
+            List<String> level = List.of(id);
+            levels.add(people(level));
+            for (int g = 1; g <= generations; g++) {
+                List<String> next = new ArrayList<>();
+                for (String v : level)
+                    for (String w : up ? parents(v) : children(v)) if (visited.add(w)) next.add(w);
+                levels.add(people(next));
+                level = next;
+            }
+            return levels;
+        });
+    }
+
+    // ---- internals ----
+
+    private int ownerOf(String id) {
+        Integer s = owner.get(id);
+        if (s == null) throw new IllegalArgumentException("No such person: " + id);
+        return s;
+    }
+
+    private Component component(String id) {
+        Component c = components.get(id);
+        if (c == null) throw new IllegalArgumentException("No such person: " + id);
+        return c;
+    }
+
+    private Set<String> parents(String id) {
+        Set<String> ps = shards[ownerOf(id)].parentIds(id);
+        ps.addAll(ghosts(ghostParents, id));
+        return ps;
+    }
+
+    private Set<String> children(String id) {
+        Set<String> cs = shards[ownerOf(id)].childIds(id);
+        cs.addAll(ghosts(ghostChildren, id));
+        return cs;
+    }
+
+    private List<Person> people(Iterable<String> ids) {
+        List<Person> out = new ArrayList<>();
+        for (String id : ids) out.add(shards[ownerOf(id)].getPerson(id));
+        return out;
+    }
+
+    // Upward search across shards from the descendant; only needed in components with ghost edges.
+    private boolean reaches(String ancestorId, String descendantId) {
+        Set<String> seen = new HashSet<>();
+        List<String> work = new ArrayList<>(List.of(descendantId));
+        while (!work.isEmpty()) {
+            for (String p : parents(work.remove(work.size() - 1))) {
+                if (p.equals(ancestorId)) return true;
+                if (seen.add(p)) work.add(p);
+            }
+        }
+        return false;
+    }
+
+    // Merges the smaller member list into the larger; the result spans shards if either part did.
+    // Components are looked up here, since a concurrent union may have retired the caller's.
+    private void union(String aId, String bId) {
+        synchronized (unions) {
+            Component a = component(aId), b = component(bId);
+            if (a == b) return;
+            Component big = a.members.size() >= b.members.size() ? a : b, small = big == a ? b : a;
+            for (String id : small.members) components.put(id, big);
+            big.members.addAll(small.members);
+            small.members.clear();
+            if (big.shard != small.shard) big.shard = spanning(big);
+        }
+    }
+
+    private int spanning(Component c) {
+        int s = ownerOf(c.members.get(0));
+        for (String id : c.members) if (ownerOf(id) != s) return SPANNING;
+        return s;
+    }
+
+    // Moves the smaller component into the larger one's shard, if it is no bigger than {@code limit}.
+    private void colocate(Component a, Component b, int limit) {
+        Component big = a.members.size() >= b.members.size() ? a : b, small = big == a ? b : a;
+        if (small.members.size() > limit) return;
+        int target = big.shard != SPANNING ? big.shard : ownerOf(big.members.get(0));
+        move(small, target);
+    }
+
+    private void move(Component c, int target) {
+        List<String> moving = new ArrayList<>();
+        Map<String, Integer> from = new HashMap<>();
+        boolean returning = false;   // someone coming back to a shard that still holds their orphan
+        for (String id : c.members) {
+            int s = ownerOf(id);
+            if (s == target) continue;
+            moving.add(id);
+            from.put(id, s);
+            returning |= shards[target].tree().graph().nodeOf(id) != PersonGraph.NONE;
+        }
+        if (returning) compact(target);
+        try {
+            transfer(moving, id -> shards[from.get(id)].tree(), shards[target].tree(), target);
+        } catch (RuntimeException ex) {
+            compact(target);   // drops the partial copies; nobody owns them yet
+            throw ex;
+        }
+        for (String id : moving) orphans[from.get(id)]++;
+        c.shard = spanning(c);
+        for (int s = 0; s < shards.length; s++)
+            if (orphans[s] > Math.max(COMPACT_MIN, shards[s].size() - orphans[s])) compact(s);
+    }
+
+    // Rebuilds a shard from its live people, dropping the orphaned copies left by moves.
+    private void compact(int s) {
+        FamilyTree old = shards[s].tree();
+        List<String> live = new ArrayList<>();
+        for (Person p : old.allPeople()) if (owner.get(p.getId()) == s) live.add(p.getId());
+        shards[s] = newShard();
+        orphans[s] = 0;
+        transfer(live, id -> old, shards[s].tree(), s);
+    }
+
+    /**
+     * Re-creates {@code ids} in {@code target} (shard index {@code t}) exactly as they are, reading each
+     * from {@code source}: same Person class, years, links and marriages, restored without the rules
+     * that applied when they were made (someone may have become a Minor since). Edges to people outside
+     * the target become ghosts. Ownership and ghost edges change only once the target is complete, so
+     * on failure the registry still points at the old copies.
+     */
+    private void transfer(List<String> ids, Function<String, FamilyTree> source, FamilyTree target, int t) {
+        for (String id : ids) {
+            Person p = source.apply(id).getPerson(id);
+            target.restorePerson(id, p.getFullName(), p.getGender(), p.getBirthYear(), p.getDeathYear(), p instanceof Minor);
+        }
+        Set<String> moved = new HashSet<>(ids);
+        List<String[]> unghost = new ArrayList<>(), ghost = new ArrayList<>();
+        Set<Marriage> marriages = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String id : ids) {
+            Person p = source.apply(id).getPerson(id);
+            Set<String> ps = new LinkedHashSet<>(p.getParentIds()), cs = new LinkedHashSet<>(p.getChildrenIds());
+            ps.addAll(ghosts(ghostParents, id));
+            cs.addAll(ghosts(ghostChildren, id));
+            for (String parent : ps) relink(parent, id, moved, target, t, unghost, ghost);
+            for (String child : cs) if (!moved.contains(child)) relink(id, child, moved, target, t, unghost, ghost);
+            marriages.addAll(p.getMarriages());
+        }
+        List<Marriage> ordered = new ArrayList<>(marriages);
+        // Ended marriages first, so that no one's current spouse is displaced.
+        ordered.sort(Comparator.comparing((Marriage m) -> m.getDivorceYear() == null).thenComparingInt(Marriage::getMarriageYear));
+        for (Marriage m : ordered) target.restoreMarriage(m.getSpouseAId(), m.getSpouseBId(), m.getMarriageYear(), m.getDivorceYear());
+
+        for (String[] e : unghost) removeGhost(e[0], e[1]);
+        for (String[] e : ghost) addGhost(e[0], e[1]);
+        for (String id : ids) owner.put(id, t);
+    }
+
+    // Links the pair in the target if both will live there, else records the edge as a ghost (applied later).
+    private void relink(String parentId, String childId, Set<String> moved, FamilyTree target, int t,
+                        List<String[]> unghost, List<String[]> ghost) {
+        if (ghosts(ghostParents, childId).contains(parentId)) unghost.add(new String[] {parentId, childId});
+        boolean local = (moved.contains(parentId) || ownerOf(parentId) == t) && (moved.contains(childId) || ownerOf(childId) == t);
+        if (local) target.linkParentChild(parentId, childId);
+        else ghost.add(new String[] {parentId, childId});
+    }
+
+    private static List<String> ghosts(Map<String, List<String>> edges, String id) {
+        return edges.getOrDefault(id, List.of());
+    }
+
+    private void addGhost(String parentId, String childId) {
+        ghostParents.computeIfAbsent(childId, k -> new ArrayList<>(2)).add(parentId);
+        ghostChildren.computeIfAbsent(parentId, k -> new ArrayList<>(2)).add(childId);
+        ghostEdges++;
+    }
+
+    private void removeGhost(String parentId, String childId) {
+        List<String> ps = ghostParents.get(childId), cs = ghostChildren.get(parentId);
+        if (ps == null || !ps.remove(parentId)) throw new IllegalArgumentException(parentId + " is not a parent of " + childId);
+        cs.remove(childId);
+        if (ps.isEmpty()) ghostParents.remove(childId);
+        if (cs.isEmpty()) ghostChildren.remove(parentId);
+        ghostEdges--;
+    }
+
+    // ---- locking ----
+
+    private <T> T read(Supplier<T> action) {
+        topology.readLock().lock();
+        try { return action.get(); } finally { topology.readLock().unlock(); }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        topology.writeLock().lock();
+        try { return action.get(); } finally { topology.writeLock().unlock(); }
+    }
+}
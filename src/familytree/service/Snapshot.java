@@ -0,0 +1,334 @@
+package familytree.service;
+
+import familytree.model.*;
+import familytree.strategy.Renderer;
+import familytree.strategy.TraversalStrategy;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot of a FamilyTree. Layout (big-endian, sections 8-byte aligned):
+ * <pre>
+ * header   magic "FTSP", version, nodeCount, marriageCount, slotCount, idCounter, edgeCount, mergeCount,
+ *          then one long file offset per section (see the S_* constants)
+ * strings  UTF-8 blob plus int offsets[2n+1]; string 2n is the id of node n, 2n+1 its name
+ * columns  birth int[n], death int[n] (NO_YEAR when alive), gender byte[n] (bit 7 set = Minor)
+ * edges    parents int[2n], child CSR offsets int[n+1] + adjacency int[edgeCount],
+ *          marriages int[4m] (a, b, year, divorce|NO_YEAR) + per-node CSR offsets int[n+1] + index
+ * indexes  id hash slots int[slotCount], reachability level int[n] and sketch long[n]
+ * merges   (dropped node, kept node) int[2 * mergeCount], in merge order; version 2 on
+ * </pre>
+ * Loading maps the file read-only (on Windows it reads it whole): the mutable int arrays are bulk-copied,
+ * the child CSR is used in place and Person objects (with their marriages) are decoded from the columns
+ * on first access.
+ */
+final class Snapshot {
+    static final int MAGIC = 0x46545350;   // "FTSP"
+    static final int VERSION = 2;
+    static final int NO_YEAR = Integer.MIN_VALUE;
+
+    private static final int S_STRING_OFFSETS = 0, S_STRINGS = 1, S_BIRTH = 2, S_DEATH = 3, S_GENDER = 4,
+            S_PARENTS = 5, S_CHILD_OFFSETS = 6, S_CHILDREN = 7, S_MARRIAGES = 8, S_MARRIAGE_OFFSETS = 9,
+            S_MARRIAGE_INDEX = 10, S_SLOTS = 11, S_LEVEL = 12, S_SKETCH = 13, S_MERGED = 14, SECTIONS = 15;
+    private static final int HEADER_BYTES = 32 + 8 * SECTIONS;
+    // Windows cannot replace or delete a file while a mapping of it is alive, and a mapping lives until
+    // it is collected, so saving over the loaded file would fail there; read it onto the heap instead.
+    private static final boolean MAP_FILES = !System.getProperty("os.name", "").startsWith("Windows");
+
+    private Snapshot() {}
+
+    // ---- save ----
+
+    static void save(FamilyTree tree, Path path) throws IOException {
+        PersonGraph g = tree.graph();
+        MappedSource mapped = g.source() instanceof MappedSource ? (MappedSource) g.source() : null;
+        int n = g.size();
+        long[] sections = new long[SECTIONS];
+        List<Marriage> marriages = new ArrayList<>();
+        int edges = 0;
+
+        // Write next to the target and rename: the tree may still be reading a mapping of the old file.
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Out out = new Out(ch)) {
+            out.skip(HEADER_BYTES);
+
+            int[] stringOffsets = new int[2 * n + 1];
+            sections[S_STRINGS] = out.position();
+            int blob = 0;
+            for (int v = 0; v < n; v++) {
+                byte[] id = g.idOf(v).getBytes(StandardCharsets.UTF_8);
+                byte[] name = (g.isMaterialized(v) ? g.person(v).getFullName() : mapped.name(v)).getBytes(StandardCharsets.UTF_8);
+                out.put(id);
+                out.put(name);
+                stringOffsets[2 * v + 1] = blob += id.length;
+                stringOffsets[2 * v + 2] = blob += name.length;
+            }
+            sections[S_STRING_OFFSETS] = out.align();
+            for (int off : stringOffsets) out.putInt(off);
+
+            sections[S_BIRTH] = out.align();
+            for (int v = 0; v < n; v++) out.putInt(g.isMaterialized(v) ? g.person(v).getBirthYear() : mapped.birth(v));
+            sections[S_DEATH] = out.align();
+            for (int v = 0; v < n; v++) {
+                if (!g.isMaterialized(v)) { out.putInt(mapped.death(v)); continue; }
+                Integer d = g.person(v).getDeathYear();
+                out.putInt(d == null ? NO_YEAR : d);
+            }
+            sections[S_GENDER] = out.align();
+            for (int v = 0; v < n; v++) {
+                if (!g.isMaterialized(v)) { out.put(mapped.genderByte(v)); continue; }
+                Person p = g.person(v);
+                out.put((byte) (p.getGender().ordinal() | (p instanceof Minor ? 0x80 : 0)));
+            }
+
+            sections[S_PARENTS] = out.align();
+            for (int v = 0; v < n; v++) { out.putInt(g.parent(v, 0)); out.putInt(g.parent(v, 1)); }
+            sections[S_CHILD_OFFSETS] = out.align();
+            for (int v = 0; v < n; v++) { out.putInt(edges); edges += g.childCount(v); }
+            out.putInt(edges);
+            sections[S_CHILDREN] = out.align();
+            for (int v = 0; v < n; v++) for (int i = 0; i < g.childCount(v); i++) out.putInt(g.child(v, i));
+
+            // Each marriage is written once, from spouse A's side.
+            for (int v = 0; v < n; v++) {
+                List<Marriage> ms = g.isMaterialized(v) ? g.person(v).getMarriages() : mapped.marriagesOf(v);
+                String id = g.idOf(v);
+                for (Marriage m : ms) if (m.getSpouseAId().equals(id)) marriages.add(m);
+            }
+            int[] perNode = new int[n + 1];
+            int[] mNodes = new int[2 * marriages.size()];
+            sections[S_MARRIAGES] = out.align();
+            for (int i = 0; i < marriages.size(); i++) {
+                Marriage m = marriages.get(i);
+                int a = g.require(m.getSpouseAId()), b = g.require(m.getSpouseBId());
+                mNodes[2 * i] = a;
+                mNodes[2 * i + 1] = b;
+                perNode[a + 1]++;
+                perNode[b + 1]++;
+                out.putInt(a);
+                out.putInt(b);
+                out.putInt(m.getMarriageYear());
+                out.putInt(m.getDivorceYear() == null ? NO_YEAR : m.getDivorceYear());
+            }
+            for (int v = 0; v < n; v++) perNode[v + 1] += perNode[v];
+            sections[S_MARRIAGE_OFFSETS] = out.align();
+            for (int off : perNode) out.putInt(off);
+            int[] index = new int[mNodes.length];
+            for (int i = 0; i < mNodes.length; i++) index[perNode[mNodes[i]]++] = i / 2;
+            sections[S_MARRIAGE_INDEX] = out.align();
+            for (int i : index) out.putInt(i);   // perNode now holds end offsets, the index is in node order
+
+            int[] slots = g.slotTable();
+            sections[S_SLOTS] = out.align();
+            for (int s : slots) out.putInt(s);
+            ReachabilityIndex reach = tree.reachability();
+            sections[S_LEVEL] = out.align();
+            for (int v = 0; v < n; v++) out.putInt(reach.levels()[v]);
+            sections[S_SKETCH] = out.align();
+            for (int v = 0; v < n; v++) out.putLong(reach.sketches()[v]);
+            int[] merges = tree.merges();
+            sections[S_MERGED] = out.align();
+            for (int v : merges) out.putInt(v);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(marriages.size()).putInt(slots.length)
+                    .putInt(tree.ids().counter()).putInt(edges).putInt(merges.length / 2);
+            for (long off : sections) header.putLong(off);
+            header.flip();
+            while (header.hasRemaining()) ch.write(header, header.position());
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // ---- load ----
+
+    static FamilyTree load(Path path, TraversalStrategy traversalStrategy, Renderer renderer) throws IOException {
+        ByteBuffer map;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("Snapshots over 2 GB are not supported");
+            if (ch.size() < HEADER_BYTES) throw new IOException("Not a family tree snapshot: " + path);
+            if (MAP_FILES) map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            else {
+                map = ByteBuffer.allocate((int) ch.size());
+                while (map.hasRemaining()) if (ch.read(map, map.position()) < 0) throw new EOFException(path.toString());
+                map.flip();
+            }
+        }
+        if (map.getInt(0) != MAGIC) throw new IOException("Not a family tree snapshot: " + path);
+        int version = map.getInt(4);
+        if (version != 1 && version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+        int n = map.getInt(8), m = map.getInt(12), slotCount = map.getInt(16), counter = map.getInt(20), edges = map.getInt(24);
+        int mergeCount = version == 1 ? 0 : map.getInt(28);   // version 1 had no merges and a zero here
+        long[] sec = new long[SECTIONS];
+        for (int i = 0; i < (version == 1 ? S_MERGED : SECTIONS); i++) sec[i] = map.getLong(32 + 8 * i);
+
+        int[] parents = new int[Math.max(32, 2 * n)];
+        ints(map, sec[S_PARENTS], 2 * n).get(parents, 0, 2 * n);
+        int[] slots = new int[slotCount];
+        ints(map, sec[S_SLOTS], slotCount).get(slots);
+        int[] level = new int[Math.max(16, n)];
+        ints(map, sec[S_LEVEL], n).get(level, 0, n);
+        long[] sketch = new long[Math.max(16, n)];
+        map.slice((int) sec[S_SKETCH], 8 * n).asLongBuffer().get(sketch, 0, n);
+
+        MappedSource source = new MappedSource(map, sec, n, m);
+        PersonGraph graph = PersonGraph.restore(n, parents, ints(map, sec[S_CHILD_OFFSETS], n + 1),
+                ints(map, sec[S_CHILDREN], edges), slots, source);
+        source.graph = graph;
+        MarriageRegistry marriages = new MarriageRegistry(graph, source::marriage);
+        IntBuffer mc = ints(map, sec[S_MARRIAGES], 4 * m);
+        for (int i = 0; i < m; i++) {
+            int a = mc.get(4 * i), b = mc.get(4 * i + 1);
+            marriages.restore(a, b, mc.get(4 * i + 2), mc.get(4 * i + 3), source.death(a), source.death(b));
+        }
+        IdAllocator ids = IdAllocator.sequential();
+        ids.advance(counter);
+        FamilyTree tree = new FamilyTree(traversalStrategy, renderer, ids, graph, new ReachabilityIndex(graph, level, sketch), marriages);
+        int[] merges = new int[2 * mergeCount];
+        if (mergeCount > 0) ints(map, sec[S_MERGED], merges.length).get(merges);
+        tree.restoreMerges(merges);
+        return tree;
+    }
+
+    private static IntBuffer ints(ByteBuffer map, long offset, int count) {
+        return map.slice((int) offset, 4 * count).asIntBuffer();
+    }
+
+    /** Decodes people and marriages straight from the mapped columns. */
+    static final class MappedSource implements PersonSource {
+        private final ByteBuffer map;
+        private final IntBuffer stringOffsets, birth, death, marriages, marriageOffsets, marriageIndex;
+        private final int stringBase, genderBase;
+        private final Marriage[] marriageCache;   // shared between both spouses once decoded
+        PersonGraph graph;
+
+        MappedSource(ByteBuffer map, long[] sec, int n, int m) {
+            this.map = map;
+            this.stringOffsets = ints(map, sec[S_STRING_OFFSETS], 2 * n + 1);
+            this.stringBase = (int) sec[S_STRINGS];
+            this.birth = ints(map, sec[S_BIRTH], n);
+            this.death = ints(map, sec[S_DEATH], n);
+            this.genderBase = (int) sec[S_GENDER];
+            this.marriages = ints(map, sec[S_MARRIAGES], 4 * m);
+            this.marriageOffsets = ints(map, sec[S_MARRIAGE_OFFSETS], n + 1);
+            this.marriageIndex = ints(map, sec[S_MARRIAGE_INDEX], 2 * m);
+            this.marriageCache = new Marriage[m];
+        }
+
+        @Override
+        public Person materialize(int node) {
+            Gender gender = Gender.values()[genderByte(node) & 0x7F];
+            int d = death(node);
+            Integer deathYear = d == NO_YEAR ? null : d;
+            Person p = PersonFactory.restore(idOf(node), name(node), gender, birth(node), deathYear, (genderByte(node) & 0x80) != 0);
+            for (Marriage m : marriagesOf(node)) PersonGraph.MODEL.addMarriage(p, m);
+            return p;
+        }
+
+        @Override public String idOf(int node) { return string(2 * node); }
+
+        @Override
+        public boolean idEquals(int node, String id) {
+            int from = stringBase + stringOffsets.get(2 * node), len = stringOffsets.get(2 * node + 1) - stringOffsets.get(2 * node);
+            if (len != id.length()) return id.equals(idOf(node));
+            for (int i = 0; i < len; i++) {
+                byte b = map.get(from + i);
+                if (b < 0) return id.equals(idOf(node));
+                if (b != id.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        String name(int node) { return string(2 * node + 1); }
+        int birth(int node) { return birth.get(node); }
+        int death(int node) { return death.get(node); }
+        byte genderByte(int node) { return map.get(genderBase + node); }
+
+        List<Marriage> marriagesOf(int node) {
+            int from = marriageOffsets.get(node), to = marriageOffsets.get(node + 1);
+            List<Marriage> out = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) out.add(marriage(marriageIndex.get(i)));
+            return out;
+        }
+
+        // Synchronized: both spouses, and MarriageRegistry lookups from readers, must get the same Marriage.
+        synchronized Marriage marriage(int i) {
+            Marriage m = marriageCache[i];
+            if (m == null) {
+                m = new Marriage(graph.idOf(marriages.get(4 * i)), graph.idOf(marriages.get(4 * i + 1)), marriages.get(4 * i + 2));
+                if (marriages.get(4 * i + 3) != NO_YEAR) PersonGraph.MODEL.setDivorceYear(m, marriages.get(4 * i + 3));
+                marriageCache[i] = m;
+            }
+            return m;
+        }
+
+        private String string(int i) {
+            int from = stringOffsets.get(i), to = stringOffsets.get(i + 1);
+            byte[] bytes = new byte[to - from];
+            map.get(stringBase + from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Sequential writer with an off-heap staging buffer; the header is patched in at the end. */
+    private static final class Out implements Closeable {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+        private long flushed;
+
+        Out(FileChannel ch) { this.ch = ch; }
+
+        long position() { return flushed + buf.position(); }
+
+        void skip(int bytes) throws IOException { for (int i = 0; i < bytes; i++) put((byte) 0); }
+
+        long align() throws IOException {
+            while (position() % 8 != 0) put((byte) 0);
+            return position();
+        }
+
+        void put(byte b) throws IOException { room(1); buf.put(b); }
+        void putInt(int v) throws IOException { room(4); buf.putInt(v); }
+        void putLong(long v) throws IOException { room(8); buf.putLong(v); }
+
+        void put(byte[] bytes) throws IOException {
+            for (int off = 0; off < bytes.length; ) {
+                room(1);
+                int len = Math.min(buf.remaining(), bytes.length - off);
+                buf.put(bytes, off, len);
+                off += len;
+            }
+        }
+
+        private void room(int bytes) throws IOException { if (buf.remaining() < bytes) flush(); }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) flushed += ch.write(buf);
+            buf.clear();
+        }
+
+        @Override public void close() throws IOException { flush(); }
+    }
+}
@@ -0,0 +1,186 @@
+package familytree.service;
+
+import familytree.model.Person;
+import familytree.strategy.Renderer;
+import familytree.strategy.TraversalStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of traversal results and renders, keyed by person, direction, generations,
+ * strategy and renderer. Invalidation is by per-node version stamps rather than by clearing:
+ * a link stamps the child's "parents changed" and the parent's "children changed" slot, a setter
+ * stamps the person's "attributes changed" slot. An entry remembers the people it covers and when it
+ * was computed; on lookup it is stale only if a person it expanded (every level but the last) had the
+ * relevant side relinked since, or, for renders, a person it shows was edited. Adding people and
+ * marriages change no traversal, so they stamp nothing. Bounded by entries and by people held.
+ */
+final class TraversalCache implements TreeListener {
+
+    private static final class Key {
+        final int node, generations;
+        final boolean up;
+        final TraversalStrategy strategy;
+        final Renderer renderer;   // null for a traversal result
+
+        Key(int node, boolean up, int generations, TraversalStrategy strategy, Renderer renderer) {
+            this.node = node; this.up = up; this.generations = generations; this.strategy = strategy; this.renderer = renderer;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return node == k.node && up == k.up && generations == k.generations && strategy == k.strategy && renderer == k.renderer;
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(node, up, generations, System.identityHashCode(strategy), System.identityHashCode(renderer));
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final int[] nodes;     // everyone covered, level by level
+        final int expanded;    // prefix of nodes whose parents/children were read
+        final int computedAt;
+
+        Entry(Object value, int[] nodes, int expanded, int computedAt) {
+            this.value = value; this.nodes = nodes; this.expanded = expanded; this.computedAt = computedAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxPeople;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private int[] parentsChanged = new int[16], childrenChanged = new int[16], attributesChanged = new int[16];
+    private int clock = 1;
+    private long people;
+    private long hits, misses, evictions, invalidations;
+
+    TraversalCache(int maxEntries, long maxPeople) {
+        this.maxEntries = maxEntries;
+        this.maxPeople = maxPeople;
+    }
+
+    // ---- lookups ----
+
+    /** Clock value to pass to a put for a result computed from now on. */
+    synchronized int now() { return clock; }
+
+    /** A fresh, mutable copy of the cached result, as callers of an uncached traversal would get; null on a miss. */
+    @SuppressWarnings("unchecked")
+    synchronized List<List<Person>> traversal(int node, boolean up, int generations, TraversalStrategy s) {
+        List<List<Person>> cached = (List<List<Person>>) lookup(new Key(node, up, generations, s, null));
+        if (cached == null) return null;
+        List<List<Person>> copy = new ArrayList<>(cached.size());
+        for (List<Person> level : cached) copy.add(new ArrayList<>(level));
+        return copy;
+    }
+
+    synchronized String render(int node, boolean up, int generations, TraversalStrategy s, Renderer r) {
+        return (String) lookup(new Key(node, up, generations, s, r));
+    }
+
+    /** Stores an immutable copy of the result; the caller keeps the original. */
+    synchronized void putTraversal(int node, boolean up, int generations, TraversalStrategy s,
+                                   List<List<Person>> result, int computedAt) {
+        List<List<Person>> copy = new ArrayList<>(result.size());
+        for (List<Person> level : result) copy.add(List.copyOf(level));
+        store(new Key(node, up, generations, s, null), List.copyOf(copy), result, computedAt);
+    }
+
+    synchronized void putRender(int node, boolean up, int generations, TraversalStrategy s, Renderer r,
+                                List<List<Person>> covered, String text, int computedAt) {
+        store(new Key(node, up, generations, s, r), text, covered, computedAt);
+    }
+
+    synchronized CacheStats stats() { return new CacheStats(hits, misses, evictions, invalidations, entries.size()); }
+
+    synchronized void clear() {
+        entries.clear();
+        people = 0;
+    }
+
+    private Object lookup(Key key) {
+        if (maxEntries == 0) { misses++; return null; }
+        Entry e = entries.get(key);
+        if (e == null) { misses++; return null; }
+        if (stale(e, key)) {
+            entries.remove(key);
+            people -= e.nodes.length;
+            invalidations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.value;
+    }
+
+    private boolean stale(Entry e, Key key) {
+        int[] structure = key.up ? parentsChanged : childrenChanged;
+        for (int i = 0; i < e.expanded; i++) if (stamp(structure, e.nodes[i]) > e.computedAt) return true;
+        if (key.renderer != null) {
+            for (int v : e.nodes) if (stamp(attributesChanged, v) > e.computedAt) return true;
+        }
+        return false;
+    }
+
+    private void store(Key key, Object value, List<List<Person>> covered, int computedAt) {
+        if (maxEntries == 0 || computedAt > clock) return;   // clock wrapped while computing
+        int total = 0;
+        for (List<Person> level : covered) total += level.size();
+        if (total > maxPeople) return;
+        int[] nodes = new int[total];
+        int i = 0, expanded = total - (covered.isEmpty() ? 0 : covered.get(covered.size() - 1).size());
+        for (List<Person> level : covered) for (Person p : level) nodes[i++] = p.getNode();
+        Entry old = entries.put(key, new Entry(value, nodes, expanded, computedAt));
+        if (old != null) people -= old.nodes.length;
+        people += total;
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || people > maxPeople) && eldest.hasNext()) {
+            people -= eldest.next().getValue().nodes.length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // ---- invalidation stamps ----
+
+    @Override public synchronized void linked(int parent, int child) { relinked(parent, child); }
+    @Override public synchronized void unlinked(int parent, int child) { relinked(parent, child); }
+    @Override public synchronized void nameChanged(Person p, String oldName) { attributesChanged = stamp(attributesChanged, p.getNode(), tick()); }
+    @Override public synchronized void birthYearChanged(Person p, int oldYear) { attributesChanged = stamp(attributesChanged, p.getNode(), tick()); }
+    @Override public synchronized void deathYearChanged(Person p, Integer oldYear) { attributesChanged = stamp(attributesChanged, p.getNode(), tick()); }
+
+    private void relinked(int parent, int child) {
+        int t = tick();
+        parentsChanged = stamp(parentsChanged, child, t);
+        childrenChanged = stamp(childrenChanged, parent, t);
+    }
+
+    // Results computed before a change carry an older clock than its stamp; after wrap-around start over.
+    private int tick() {
+        if (clock == Integer.MAX_VALUE) {
+            clear();
+            Arrays.fill(parentsChanged, 0);
+            Arrays.fill(childrenChanged, 0);
+            Arrays.fill(attributesChanged, 0);
+            clock = 1;
+        }
+        return ++clock;
+    }
+
+    private static int stamp(int[] stamps, int node) { return node < stamps.length ? stamps[node] : 0; }
+
+    private static int[] stamp(int[] stamps, int node, int t) {
+        if (node >= stamps.length) stamps = Arrays.copyOf(stamps, Math.max(node + 1, stamps.length * 2));
+        stamps[node] = t;
+        return stamps;
+    }
+}
@@ -0,0 +1,26 @@
+package familytree.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A TraversalStrategy run (a cache miss or a streamed render) with the number of people it visited. */
+@Name("familytree.Traversal")
+@Label("Traversal")
+@Category("Family Tree")
+@Description("Ancestors or descendants computed by a TraversalStrategy")
+final class TraversalEvent extends Event {
+    @Label("Strategy")
+    String strategy;
+
+    @Label("Ancestors")
+    boolean up;
+
+    @Label("Generations")
+    int generations;
+
+    @Label("People Visited")
+    int nodes;
+}
@@ -0,0 +1,142 @@
+package familytree.service;
+
+import familytree.model.Marriage;
+import familytree.model.Person;
+import familytree.strategy.Renderer;
+import familytree.strategy.TraversalStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versions of a FamilyTree, kept current as a TreeListener. Each mutation updates a persistent map of
+ * PersonVersions in O(log n) (the touched people are copied, everything else is shared) and commit()
+ * seals the result as a numbered TreeVersion in O(1). Old versions stay readable at no cost and diff
+ * each other through the structure they share. Checking out a version makes it the head in O(1); the
+ * live tree, with its indexes, is then rebuilt from it and followed from there, and later commits
+ * branch off that version while the ones after it remain available.
+ */
+public final class TreeHistory implements TreeListener {
+    private FamilyTree tree;
+    private PersonGraph graph;
+    private PersonHamt working;
+    private TreeVersion head;
+    private final List<TreeVersion> versions = new ArrayList<>();
+
+    /** Starts recording {@code tree}: version 0 is its current state. */
+    public static TreeHistory track(FamilyTree tree) {
+        TreeHistory history = new TreeHistory(tree);
+        tree.addListener(history);
+        return history;
+    }
+
+    private TreeHistory(FamilyTree tree) {
+        this.tree = tree;
+        this.graph = tree.graph();
+        PersonHamt people = PersonHamt.EMPTY;
+        for (int v = 0; v < graph.size(); v++) people = people.put(PersonVersion.of(graph.person(v)));
+        int[] merges = tree.merges();
+        for (int i = 0; i < merges.length; i += 2)
+            people = people.put(people.get(graph.idOf(merges[i])).withMergedInto(graph.idOf(merges[i + 1])));
+        working = people;
+        head = new TreeVersion(0, -1, "start", people, tree.ids().counter());
+        versions.add(head);
+    }
+
+    // ---- recording ----
+
+    @Override public synchronized void personAdded(Person p) { update(PersonVersion.of(p)); }
+    @Override public synchronized void nameChanged(Person p, String oldName) { update(working.get(p.getId()).withName(p.getFullName())); }
+    @Override public synchronized void birthYearChanged(Person p, int oldYear) { update(working.get(p.getId()).withBirthYear(p.getBirthYear())); }
+    @Override public synchronized void deathYearChanged(Person p, Integer oldYear) { update(working.get(p.getId()).withDeathYear(p.getDeathYear())); }
+
+    @Override
+    public synchronized void linked(int parent, int child) {
+        String p = graph.idOf(parent), c = graph.idOf(child);
+        update(working.get(c).withParent(p));
+        update(working.get(p).withChild(c));
+    }
+
+    @Override
+    public synchronized void unlinked(int parent, int child) {
+        String p = graph.idOf(parent), c = graph.idOf(child);
+        update(working.get(c).withoutParent(p));
+        update(working.get(p).withoutChild(c));
+    }
+
+    @Override
+    public synchronized void married(Marriage m) {
+        String a = m.getSpouseAId(), b = m.getSpouseBId();
+        update(working.get(a).withMarriage(b, m.getMarriageYear(), true));
+        update(working.get(b).withMarriage(a, m.getMarriageYear(), false));
+    }
+
+    @Override
+    public synchronized void divorced(Marriage m) {
+        String a = m.getSpouseAId(), b = m.getSpouseBId();
+        update(working.get(a).withDivorce(b, m.getMarriageYear(), m.getDivorceYear()));
+        update(working.get(b).withDivorce(a, m.getMarriageYear(), m.getDivorceYear()));
+    }
+
+    // Links moved through linked/unlinked already; the marriages changed hands, so re-read everyone they touch.
+    // The dropped record is kept with the person it went into, so that a checkout leaves it out again.
+    @Override
+    public synchronized void merged(Person kept, Person dropped, List<Marriage> removed) {
+        update(reread(kept));
+        update(PersonVersion.of(dropped).withMergedInto(kept.getId()));
+        for (Marriage m : kept.getMarriages()) update(reread(graph.person(graph.require(m.getOtherSpouseId(kept.getId())))));
+        for (Marriage m : removed) update(reread(graph.person(graph.require(m.getOtherSpouseId(dropped.getId())))));
+    }
+
+    private void update(PersonVersion p) { working = working.put(p); }
+
+    // The person as they are now; a spouse may be a record merged away earlier, and stays marked as one.
+    private PersonVersion reread(Person p) {
+        PersonVersion was = working.get(p.getId()), now = PersonVersion.of(p);
+        return was != null && was.getMergedInto() != null ? now.withMergedInto(was.getMergedInto()) : now;
+    }
+
+    // ---- versions ----
+
+    /** Seals the changes since the head as a new version; returns the head unchanged if there are none. */
+    public synchronized TreeVersion commit(String label) {
+        if (working == head.people()) return head;
+        head = new TreeVersion(versions.size(), head.number(), label, working, tree.ids().counter());
+        versions.add(head);
+        return head;
+    }
+
+    public synchronized TreeVersion head() { return head; }
+
+    /** The uncommitted state, e.g. to diff against the head. */
+    public synchronized TreeVersion working() { return new TreeVersion(-1, head.number(), "working", working, tree.ids().counter()); }
+
+    public synchronized TreeVersion version(int number) {
+        if (number < 0 || number >= versions.size()) throw new IllegalArgumentException("No such version: " + number);
+        return versions.get(number);
+    }
+
+    public synchronized List<TreeVersion> versions() { return new ArrayList<>(versions); }
+
+    /**
+     * Makes version {@code number} the head and returns a new live tree in that state, which this
+     * history follows from now on; uncommitted changes are dropped. The old tree is left as it was.
+     */
+    public synchronized FamilyTree checkout(int number, TraversalStrategy traversalStrategy, Renderer renderer) {
+        TreeVersion v = version(number);
+        FamilyTree next = v.toTree(traversalStrategy, renderer);
+        tree.removeListener(this);
+        tree = next;
+        graph = next.graph();
+        next.addListener(this);
+        head = v;
+        working = v.people();
+        return next;
+    }
+
+    /** Checks out the version the head was committed on top of. */
+    public synchronized FamilyTree undo(TraversalStrategy traversalStrategy, Renderer renderer) {
+        if (head.parent() < 0) throw new IllegalArgumentException("Nothing to undo");
+        return checkout(head.parent(), traversalStrategy, renderer);
+    }
+}
@@ -0,0 +1,32 @@
+package familytree.service;
+
+import familytree.model.Marriage;
+import familytree.model.Person;
+
+import java.util.List;
+
+/**
+ * Observer for registry mutations, fired after a change has been validated and applied.
+ * Person setters report through the graph they are attached to, so direct calls like
+ * {@code person.setDeathYear(..)} are seen too. Nodes are PersonGraph node ids.
+ */
+public interface TreeListener {
+    default void personAdded(Person p) {}
+    default void linked(int parent, int child) {}
+    default void unlinked(int parent, int child) {}
+    default void married(Marriage m) {}
+    default void divorced(Marriage m) {}
+    default void nameChanged(Person p, String oldName) {}
+    default void birthYearChanged(Person p, int oldYear) {}
+    default void deathYearChanged(Person p, Integer oldYear) {}
+    /**
+     * {@code dropped} was merged into {@code kept}. Its links were moved first, as unlinked and linked events;
+     * its marriages now belong to {@code kept}, except {@code removed}, which duplicated one of kept's own.
+     */
+    default void merged(Person kept, Person dropped, List<Marriage> removed) {}
+    /**
+     * {@code p} no longer counts as one of the tree's people (it was merged away, just after merged()). Its id
+     * still resolves and edits to it are still reported, but indexes should leave it out from now on.
+     */
+    default void removed(Person p) {}
+}
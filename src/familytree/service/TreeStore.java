@@ -0,0 +1,126 @@
+package familytree.service;
+
+import familytree.strategy.Renderer;
+import familytree.strategy.TraversalStrategy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Durable home of a FamilyTree in a directory of numbered files: {@code snapshot-K.bin} holds everything
+ * from journal segments below K, {@code journal-N.log} the mutations after it. Opening loads the newest
+ * snapshot and replays the remaining segments; new mutations go to a fresh segment through the Journal.
+ * Compaction seals the current segment and folds it into a new snapshot on a background thread, using
+ * a private replica built from the previous snapshot, so the live tree is never locked or paused.
+ */
+public final class TreeStore implements Closeable {
+    private final Path dir;
+    private final FamilyTree tree;
+    private final Journal journal;
+    private final TraversalStrategy traversalStrategy;
+    private final Renderer renderer;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "familytree-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private int segment;
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+
+    private TreeStore(Path dir, TraversalStrategy traversalStrategy, Renderer renderer,
+                      Journal.Durability durability, long groupWindowMillis) throws IOException {
+        this.dir = dir;
+        this.traversalStrategy = traversalStrategy;
+        this.renderer = renderer;
+        Files.createDirectories(dir);
+        int base = latest("snapshot-");
+        this.tree = base > 0 ? FamilyTree.load(snapshot(base), traversalStrategy, renderer)
+                : new FamilyTree(traversalStrategy, renderer);
+        int last = base - 1;
+        for (int n : numbers("journal-")) {
+            if (n < base) continue;
+            Journal.replay(tree, segment(n));
+            last = n;
+        }
+        deleteBefore(base);
+        this.segment = Math.max(last, base - 1) + 1;
+        this.journal = new Journal(tree.graph(), segment(segment), durability, groupWindowMillis);
+        tree.addListener(journal);
+    }
+
+    public static TreeStore open(Path dir, TraversalStrategy traversalStrategy, Renderer renderer,
+                                 Journal.Durability durability, long groupWindowMillis) throws IOException {
+        return new TreeStore(dir, traversalStrategy, renderer, durability, groupWindowMillis);
+    }
+
+    public FamilyTree tree() { return tree; }
+    public Journal journal() { return journal; }
+
+    /** Seals the current segment and folds it into a new snapshot in the background. */
+    public synchronized CompletableFuture<Void> compact() throws IOException {
+        if (!compaction.isDone()) return compaction;
+        int sealed = segment++;
+        journal.rotate(segment(segment));
+        compaction = CompletableFuture.runAsync(() -> {
+            try { fold(sealed); } catch (IOException ex) { throw new UncheckedIOException(ex); }
+        }, compactor);
+        return compaction;
+    }
+
+    private void fold(int sealed) throws IOException {
+        int base = latest("snapshot-");
+        FamilyTree replica = base > 0 ? FamilyTree.load(snapshot(base), traversalStrategy, renderer)
+                : new FamilyTree(traversalStrategy, renderer);
+        for (int n : numbers("journal-")) if (n >= base && n <= sealed) Journal.replay(replica, segment(n));
+        replica.save(snapshot(sealed + 1));
+        deleteBefore(sealed + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        compaction.exceptionally(ex -> null).join();
+        compactor.shutdown();
+        tree.removeListener(journal);
+        journal.close();
+    }
+
+    // ---- file naming ----
+
+    private Path snapshot(int n) { return dir.resolve(String.format("snapshot-%06d.bin", n)); }
+    private Path segment(int n) { return dir.resolve(String.format("journal-%06d.log", n)); }
+
+    private int latest(String prefix) throws IOException {
+        List<Integer> ns = numbers(prefix);
+        return ns.isEmpty() ? 0 : ns.get(ns.size() - 1);
+    }
+
+    private List<Integer> numbers(String prefix) throws IOException {
+        List<Integer> out = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(f -> f.startsWith(prefix) && f.length() == prefix.length() + 10)
+                    .forEach(f -> out.add(Integer.parseInt(f.substring(prefix.length(), prefix.length() + 6))));
+        }
+        out.sort(null);
+        return out;
+    }
+
+    // Older snapshots and folded segments; a failure just leaves them for the next open to retry.
+    private void deleteBefore(int base) throws IOException {
+        for (int n : numbers("snapshot-")) if (n < base) tryDelete(snapshot(n));
+        for (int n : numbers("journal-")) if (n < base) tryDelete(segment(n));
+    }
+
+    private static void tryDelete(Path p) {
+        try { Files.deleteIfExists(p); } catch (IOException ignored) { }
+    }
+}
@@ -0,0 +1,119 @@
+package familytree.service;
+
+import familytree.strategy.Renderer;
+import familytree.strategy.TraversalStrategy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable state of a tree recorded by TreeHistory: every person as a PersonVersion in a persistent
+ * map that shares structure with the versions before and after it. Holding one costs nothing extra and
+ * reading it never blocks the live tree.
+ */
+public final class TreeVersion {
+    private final int number;
+    private final int parent;
+    private final String label;
+    private final PersonHamt people;
+    private final int idCounter;
+
+    /** One person whose state differs between two versions; {@code before} is null if they were added. */
+    public static final class Change {
+        private final PersonVersion before, after;
+
+        Change(PersonVersion before, PersonVersion after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        public String getId() { return after != null ? after.getId() : before.getId(); }
+        public PersonVersion getBefore() { return before; }
+        public PersonVersion getAfter() { return after; }
+
+        /** "added", "removed" or the fields that changed, e.g. "born, children". */
+        public String describe() {
+            return before == null ? "added" : after == null ? "removed" : after.changesSince(before);
+        }
+    }
+
+    private static final class Wedding {
+        final String first;
+        final PersonVersion.Spouse spouse;
+        Wedding(String first, PersonVersion.Spouse spouse) { this.first = first; this.spouse = spouse; }
+    }
+
+    TreeVersion(int number, int parent, String label, PersonHamt people, int idCounter) {
+        this.number = number;
+        this.parent = parent;
+        this.label = label;
+        this.people = people;
+        this.idCounter = idCounter;
+    }
+
+    public int number() { return number; }
+    /** The version this one was committed on top of; -1 for the first. */
+    public int parent() { return parent; }
+    public String label() { return label; }
+    public int size() { return people.size(); }
+    PersonHamt people() { return people; }
+
+    public boolean contains(String id) { return people.get(id) != null; }
+
+    public PersonVersion getPerson(String id) {
+        PersonVersion p = people.get(id);
+        if (p == null) throw new IllegalArgumentException("No such person in version " + number + ": " + id);
+        return p;
+    }
+
+    /** People whose state differs in {@code to}, by id; only the paths the two versions do not share are visited. */
+    public List<Change> diff(TreeVersion to) {
+        List<Change> changes = new ArrayList<>();
+        people.diff(to.people, (a, b) -> changes.add(new Change(a, b)));
+        changes.sort(Comparator.comparing(Change::getId, TreeVersion::compareIds));
+        return changes;
+    }
+
+    /**
+     * A live FamilyTree in this state, in O(n): people in id order under their own ids and recorded class,
+     * merged records marked as merged, links applied in one pass and indexed once, then marriages as
+     * recorded, without re-checking the rules against edited birth years. New ids continue after the highest ever handed out.
+     */
+    public FamilyTree toTree(TraversalStrategy traversalStrategy, Renderer renderer) {
+        FamilyTree tree = new FamilyTree(traversalStrategy, renderer);
+        List<PersonVersion> all = new ArrayList<>(people.size());
+        people.forEach(all::add);
+        all.sort(Comparator.comparing(PersonVersion::getId, TreeVersion::compareIds));
+        for (PersonVersion p : all)
+            tree.restorePerson(p.getId(), p.getFullName(), p.getGender(), p.getBirthYear(), p.getDeathYear(), p.isMinor());
+        tree.ids().advance(idCounter);
+        PersonGraph graph = tree.graph();
+        IntList merges = new IntList();
+        for (PersonVersion p : all)
+            if (p.getMergedInto() != null) { merges.add(graph.require(p.getId())); merges.add(graph.require(p.getMergedInto())); }
+        tree.restoreMerges(merges.toArray());
+        // Each parent's children in their recorded order, then parent slots put back; traversals visit both in that order.
+        for (PersonVersion p : all) {
+            int parent = graph.require(p.getId());
+            for (String childId : p.getChildrenIds()) graph.addEdge(parent, graph.require(childId));
+        }
+        for (PersonVersion p : all)
+            if (p.getParentIds().size() == 2) graph.firstParent(graph.require(p.getId()), graph.require(p.getParentIds().get(0)));
+        tree.rebuildIndexes();
+        // Ended marriages first, each divorced at once, so that no one has an active spouse in the way.
+        List<Wedding> ended = new ArrayList<>(), active = new ArrayList<>();
+        for (PersonVersion p : all)
+            for (PersonVersion.Spouse s : p.getMarriages())
+                if (s.isFirst()) (s.getDivorceYear() != null ? ended : active).add(new Wedding(p.getId(), s));   // once per couple
+        ended.sort(Comparator.comparingInt(w -> w.spouse.getYear()));
+        for (Wedding w : ended) tree.restoreMarriage(w.first, w.spouse.getSpouseId(), w.spouse.getYear(), w.spouse.getDivorceYear());
+        for (Wedding w : active) tree.restoreMarriage(w.first, w.spouse.getSpouseId(), w.spouse.getYear(), null);
+        return tree;
+    }
+
+    // Shorter ids first, so that P999 sorts before P1000.
+    private static int compareIds(String a, String b) {
+        return a.length() != b.length() ? Integer.compare(a.length(), b.length()) : a.compareTo(b);
+    }
+}
@@ -2,52 +2,65 @@ package familytree.strategy;
 
 import familytree.model.Person;
 import familytree.service.FamilyTree;
+import familytree.service.IntList;
+import familytree.service.PersonGraph;
 
 import java.util.*;
 
-/** Breadth-first traversal for generations (level-order). */
+/** Breadth-first traversal for generations (level-order), over primitive node ids. */
 public class BFSTraversal implements TraversalStrategy {
     @Override
     public List<List<Person>> traverseAncestors(FamilyTree registry, String personId, int generations) {
-        List<List<Person>> result = new ArrayList<>();
-        Person start = registry.getPerson(personId);
-        List<Person> level = new ArrayList<>(); level.add(start);
-        result.add(new ArrayList<>(level));
+        return traverse(registry.graph(), personId, generations, true);
+    }
 
-        Set<String> visited = new HashSet<>(); visited.add(personId);
+    @Override
+    public List<List<Person>> traverseDescendants(FamilyTree registry, String personId, int generations) {
+        return traverse(registry.graph(), personId, generations, false);
+    }
 
-        for (int g = 1; g <= generations; g++) {
-            List<Person> next = new ArrayList<>();
-            for (Person p : level) {
-                for (String pid : p.getParentIds()) {
-                    if (visited.add(pid)) next.add(registry.getPerson(pid));
-                }
-            }
-            result.add(next);
-            level = next;
-        }
-        return result;
+    @Override
+    public void visitAncestors(FamilyTree registry, String personId, int generations, GenerationVisitor visitor) {
+        walk(registry.graph(), personId, generations, true, visitor);
     }
 
     @Override
-    public List<List<Person>> traverseDescendants(FamilyTree registry, String personId, int generations) {
+    public void visitDescendants(FamilyTree registry, String personId, int generations, GenerationVisitor visitor) {
+        walk(registry.graph(), personId, generations, false, visitor);
+    }
+
+    private List<List<Person>> traverse(PersonGraph g, String personId, int generations, boolean up) {
         List<List<Person>> result = new ArrayList<>();
-        Person start = registry.getPerson(personId);
-        List<Person> level = new ArrayList<>(); level.add(start);
-        result.add(new ArrayList<>(level));
+        walk(g, personId, generations, up, (depth, people) -> result.add(new ArrayList<>(people)));
+        return result;
+    }
 
-        Set<String> visited = new HashSet<>(); visited.add(personId);
+    // Only the current frontier and the visited bits are live; each level is handed over, then dropped.
+    private void walk(PersonGraph g, String personId, int generations, boolean up, GenerationVisitor visitor) {
+        int start = g.require(personId);
+        IntList level = new IntList(1); level.add(start);
+        visitor.generation(0, g.peopleView(level));
 
-        for (int g = 1; g <= generations; g++) {
-            List<Person> next = new ArrayList<>();
-            for (Person p : level) {
-                for (String cid : p.getChildrenIds()) {
-                    if (visited.add(cid)) next.add(registry.getPerson(cid));
+        BitSet visited = new BitSet(); visited.set(start);
+
+        for (int gen = 1; gen <= generations; gen++) {
+            IntList next = new IntList();
+            for (int i = 0; i < level.size(); i++) {
+                int node = level.get(i);
+                if (up) {
+                    for (int s = 0; s < 2; s++) {
+                        int pid = g.parent(node, s);
+                        if (pid != PersonGraph.NONE && !visited.get(pid)) { visited.set(pid); next.add(pid); }
+                    }
+                } else {
+                    for (int c = 0; c < g.childCount(node); c++) {
+                        int cid = g.child(node, c);
+                        if (!visited.get(cid)) { visited.set(cid); next.add(cid); }
+                    }
                 }
             }
-            result.add(next);
+            visitor.generation(gen, g.peopleView(next));
             level = next;
         }
-        return result;
     }
 }
@@ -0,0 +1,33 @@
+package familytree.strategy;
+
+import familytree.model.Person;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/** Copies each generation as it arrives and writes the whole rendering once the traversal is done. */
+final class BufferedGenerations implements GenerationVisitor {
+    private final Appendable out;
+    private final Function<List<List<Person>>, String> render;
+    private final List<List<Person>> generations = new ArrayList<>();
+
+    BufferedGenerations(Appendable out, Function<List<List<Person>>, String> render) {
+        this.out = out;
+        this.render = render;
+    }
+
+    @Override
+    public void generation(int depth, List<Person> people) { generations.add(new ArrayList<>(people)); }
+
+    @Override
+    public void done() {
+        try {
+            out.append(render.apply(generations));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package familytree.strategy;
 
 import familytree.model.Person;
 import familytree.service.FamilyTree;
+import familytree.service.IntList;
+import familytree.service.PersonGraph;
 
 import java.util.*;
 
@@ -13,35 +15,36 @@ public class DFSTraversal implements TraversalStrategy {
 
     @Override
     public List<List<Person>> traverseAncestors(FamilyTree registry, String personId, int generations) {
-        List<List<Person>> levels = new ArrayList<>();
-        for (int i = 0; i <= generations; i++) levels.add(new ArrayList<>());
-        Set<String> visited = new HashSet<>();
-        dfsAncestors(registry, personId, 0, generations, visited, levels);
-        return levels;
-    }
-
-    private void dfsAncestors(FamilyTree reg, String id, int depth, int maxDepth, Set<String> visited, List<List<Person>> levels) {
-        if (depth > maxDepth) return;
-        if (!visited.add(id)) return;
-        levels.get(depth).add(reg.getPerson(id));
-        Person p = reg.getPerson(id);
-        for (String pid : p.getParentIds()) dfsAncestors(reg, pid, depth + 1, maxDepth, visited, levels);
+        return traverse(registry.graph(), personId, generations, true);
     }
 
     @Override
     public List<List<Person>> traverseDescendants(FamilyTree registry, String personId, int generations) {
-        List<List<Person>> levels = new ArrayList<>();
-        for (int i = 0; i <= generations; i++) levels.add(new ArrayList<>());
-        Set<String> visited = new HashSet<>();
-        dfsDesc(registry, personId, 0, generations, visited, levels);
-        return levels;
+        return traverse(registry.graph(), personId, generations, false);
+    }
+
+    private List<List<Person>> traverse(PersonGraph g, String personId, int generations, boolean up) {
+        int start = g.require(personId);
+        IntList[] levels = new IntList[generations + 1];
+        for (int i = 0; i <= generations; i++) levels[i] = new IntList();
+        dfs(g, start, 0, generations, up, new BitSet(), levels);
+        List<List<Person>> out = new ArrayList<>(levels.length);
+        for (IntList lvl : levels) out.add(g.people(lvl));
+        return out;
     }
 
-    private void dfsDesc(FamilyTree reg, String id, int depth, int maxDepth, Set<String> visited, List<List<Person>> levels) {
+    private void dfs(PersonGraph g, int node, int depth, int maxDepth, boolean up, BitSet visited, IntList[] levels) {
         if (depth > maxDepth) return;
-        if (!visited.add(id)) return;
-        levels.get(depth).add(reg.getPerson(id));
-        Person p = reg.getPerson(id);
-        for (String cid : p.getChildrenIds()) dfsDesc(reg, cid, depth + 1, maxDepth, visited, levels);
+        if (visited.get(node)) return;
+        visited.set(node);
+        levels[depth].add(node);
+        if (up) {
+            for (int s = 0; s < 2; s++) {
+                int pid = g.parent(node, s);
+                if (pid != PersonGraph.NONE) dfs(g, pid, depth + 1, maxDepth, up, visited, levels);
+            }
+        } else {
+            for (int c = 0; c < g.childCount(node); c++) dfs(g, g.child(node, c), depth + 1, maxDepth, up, visited, levels);
+        }
     }
 }
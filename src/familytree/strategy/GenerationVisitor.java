@@ -0,0 +1,18 @@
+package familytree.strategy;
+
+import familytree.model.Person;
+
+import java.util.List;
+
+/**
+ * Receives a traversal one generation at a time, in order; depth 0 is the starting person.
+ * The list is only valid during the call, so a traversal can drop each level once it is visited.
+ * Whoever starts the traversal calls done() after the last generation.
+ */
+@FunctionalInterface
+public interface GenerationVisitor {
+    void generation(int depth, List<Person> people);
+
+    /** The traversal is over; a visitor that buffers writes its output here. */
+    default void done() {}
+}
@@ -2,47 +2,53 @@ package familytree.strategy;
 
 import familytree.model.Person;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /** Renders generations as indented tree (child -> parent or parent -> child). */
 public class IndentedTreeRenderer implements Renderer {
+    // "  " per generation plus the bullet, built once per depth and shared by every render.
+    private static volatile String[] prefixes = {"- "};
 
     @Override
     public String renderAncestors(List<List<Person>> generations) {
         StringBuilder sb = new StringBuilder();
-        for (int depth = 0; depth < generations.size(); depth++) {
-            List<Person> lvl = generations.get(depth);
-            if (depth == 0) {
-                // show self on top
-                for (Person p : lvl) sb.append("- ").append(nodeLine(p)).append("\n");
-            } else {
-                for (Person p : lvl) {
-                    sb.append("  ".repeat(Math.max(0, depth))).append("- ").append(nodeLine(p)).append("\n");
-                }
-            }
-        }
+        TraversalStrategy.replay(generations, lines(sb));
         return sb.toString();
     }
 
     @Override
-    public String renderDescendants(List<List<Person>> generations) {
-        StringBuilder sb = new StringBuilder();
-        for (int depth = 0; depth < generations.size(); depth++) {
-            List<Person> lvl = generations.get(depth);
-            if (depth == 0) {
-                for (Person p : lvl) sb.append("- ").append(nodeLine(p)).append("\n");
-            } else {
-                for (Person p : lvl) {
-                    sb.append("  ".repeat(Math.max(0, depth))).append("- ").append(nodeLine(p)).append("\n");
+    public String renderDescendants(List<List<Person>> generations) { return renderAncestors(generations); }
+
+    @Override
+    public GenerationVisitor ancestorsTo(Appendable out) { return lines(out); }
+
+    @Override
+    public GenerationVisitor descendantsTo(Appendable out) { return lines(out); }
+
+    private static GenerationVisitor lines(Appendable out) {
+        return (depth, people) -> {
+            String prefix = prefix(depth);
+            try {
+                for (Person p : people) {
+                    out.append(prefix).append(p.getId()).append(' ').append(p.getFullName())
+                            .append(" (b.").append(Integer.toString(p.getBirthYear())).append(")\n");
                 }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
             }
-        }
-        return sb.toString();
+        };
     }
 
-    private String nodeLine(Person p) {
-        return String.format("%s %s (b.%d)", p.getId(), p.getFullName(), p.getBirthYear());
+    private static String prefix(int depth) {
+        String[] cache = prefixes;
+        if (depth >= cache.length) {
+            String[] grown = Arrays.copyOf(cache, Math.max(depth + 1, cache.length * 2));
+            for (int d = cache.length; d < grown.length; d++) grown[d] = "  ".repeat(d) + "- ";
+            prefixes = cache = grown;
+        }
+        return cache[depth];
     }
 }
-
@@ -2,21 +2,16 @@ package familytree.strategy;
 
 import familytree.model.Person;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /** Compact single-line per person listing grouped by generation. */
 public class LineRenderer implements Renderer {
     @Override
     public String renderAncestors(List<List<Person>> generations) {
         StringBuilder sb = new StringBuilder();
-        for (int g = 0; g < generations.size(); g++) {
-            List<Person> lvl = generations.get(g);
-            sb.append("Gen ").append(g).append(": ");
-            if (lvl.isEmpty()) sb.append("(none)");
-            else sb.append(lvl.stream().map(p -> p.getId() + ":" + p.getFullName()).collect(Collectors.joining(", ")));
-            sb.append("\n");
-        }
+        TraversalStrategy.replay(generations, ancestorsTo(sb));
         return sb.toString();
     }
 
@@ -24,5 +19,27 @@ public class LineRenderer implements Renderer {
     public String renderDescendants(List<List<Person>> generations) {
         return renderAncestors(generations);
     }
-}
 
+    @Override
+    public GenerationVisitor ancestorsTo(Appendable out) {
+        return (g, lvl) -> {
+            try {
+                out.append("Gen ").append(Integer.toString(g)).append(": ");
+                if (lvl.isEmpty()) out.append("(none)");
+                for (int i = 0; i < lvl.size(); i++) {
+                    Person p = lvl.get(i);
+                    if (i > 0) out.append(", ");
+                    out.append(p.getId()).append(':').append(p.getFullName());
+                }
+                out.append('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        };
+    }
+
+    @Override
+    public GenerationVisitor descendantsTo(Appendable out) {
+        return ancestorsTo(out);
+    }
+}
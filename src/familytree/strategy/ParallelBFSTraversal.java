@@ -0,0 +1,174 @@
+package familytree.strategy;
+
+import familytree.model.Person;
+import familytree.service.FamilyTree;
+import familytree.service.IntList;
+import familytree.service.PersonGraph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Level-synchronous breadth-first traversal that expands wide generations on a ForkJoinPool.
+ * Small frontiers are expanded sequentially; once a frontier reaches {@code threshold} the frontier is
+ * cut into chunks and each node discovered is claimed with an atomic minimum of its discoverer's
+ * position in the level. A second pass keeps each node only under its winning discoverer, so the
+ * output matches BFSTraversal exactly, in the same order.
+ */
+public class ParallelBFSTraversal implements TraversalStrategy {
+    public static final int DEFAULT_THRESHOLD = 4096;
+    private static final int GRAIN = 1024;   // frontier nodes per leaf task
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public ParallelBFSTraversal() { this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD); }
+
+    public ParallelBFSTraversal(ForkJoinPool pool, int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("threshold >= 1 required");
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public List<List<Person>> traverseAncestors(FamilyTree registry, String personId, int generations) {
+        return traverse(registry.graph(), personId, generations, true);
+    }
+
+    @Override
+    public List<List<Person>> traverseDescendants(FamilyTree registry, String personId, int generations) {
+        return traverse(registry.graph(), personId, generations, false);
+    }
+
+    @Override
+    public void visitAncestors(FamilyTree registry, String personId, int generations, GenerationVisitor visitor) {
+        walk(registry.graph(), personId, generations, true, visitor);
+    }
+
+    @Override
+    public void visitDescendants(FamilyTree registry, String personId, int generations, GenerationVisitor visitor) {
+        walk(registry.graph(), personId, generations, false, visitor);
+    }
+
+    private List<List<Person>> traverse(PersonGraph g, String personId, int generations, boolean up) {
+        List<List<Person>> result = new ArrayList<>();
+        walk(g, personId, generations, up, (depth, people) -> result.add(new ArrayList<>(people)));
+        return result;
+    }
+
+    private void walk(PersonGraph g, String personId, int generations, boolean up, GenerationVisitor visitor) {
+        int start = g.require(personId);
+        IntList level = new IntList(1); level.add(start);
+        visitor.generation(0, g.peopleView(level));
+
+        // Sequential bookkeeping until a frontier is wide enough to be worth splitting.
+        BitSet visited = new BitSet(); visited.set(start);
+        AtomicIntegerArray claim = null;   // per node: smallest discoverer position, below `base` once visited
+        int base = 0;
+
+        for (int gen = 1; gen <= generations; gen++) {
+            IntList next;
+            if (claim == null && level.size() < threshold) {
+                next = expand(g, level, visited, up);
+            } else {
+                if (claim == null) claim = claims(g.size(), visited);
+                next = expand(g, level, claim, base, up);
+                base += level.size();
+            }
+            visitor.generation(gen, g.peopleView(next));
+            level = next;
+        }
+    }
+
+    private static IntList expand(PersonGraph g, IntList level, BitSet visited, boolean up) {
+        IntList next = new IntList();
+        for (int i = 0; i < level.size(); i++) {
+            int node = level.get(i);
+            for (int k = 0, n = degree(g, node, up); k < n; k++) {
+                int v = neighbour(g, node, k, up);
+                if (v != PersonGraph.NONE && !visited.get(v)) { visited.set(v); next.add(v); }
+            }
+        }
+        return next;
+    }
+
+    private IntList expand(PersonGraph g, IntList level, AtomicIntegerArray claim, int base, boolean up) {
+        if (level.isEmpty()) return new IntList();
+        int chunks = (level.size() + GRAIN - 1) / GRAIN;
+        IntList[] parts = new IntList[chunks];
+        run(new Pass(g, level, claim, base, up, null, 0, chunks), level.size());    // claim; the join orders it
+        run(new Pass(g, level, claim, base, up, parts, 0, chunks), level.size());   // before any collect
+        int total = 0;
+        for (IntList p : parts) total += p.size();
+        IntList next = new IntList(total);
+        for (IntList p : parts) for (int i = 0; i < p.size(); i++) next.add(p.get(i));
+        return next;
+    }
+
+    // Narrow levels after the switch stay on the calling thread, one chunk at a time.
+    private void run(Pass pass, int width) {
+        if (width >= threshold) { pool.invoke(pass); return; }
+        for (int c = pass.lo; c < pass.hi; c++) pass.slice(c, c + 1).compute();
+    }
+
+    private static AtomicIntegerArray claims(int size, BitSet visited) {
+        AtomicIntegerArray claim = new AtomicIntegerArray(size);
+        for (int v = 0; v < size; v++) claim.setPlain(v, visited.get(v) ? -1 : Integer.MAX_VALUE);
+        return claim;
+    }
+
+    private static int degree(PersonGraph g, int node, boolean up) { return up ? 2 : g.childCount(node); }
+    private static int neighbour(PersonGraph g, int node, int k, boolean up) { return up ? g.parent(node, k) : g.child(node, k); }
+
+    /**
+     * One pass over chunks [lo, hi) of the frontier: without {@code parts} it claims every neighbour with
+     * an atomic minimum of the discoverer's position; with it, it keeps the neighbours each node won.
+     */
+    private static final class Pass extends RecursiveAction {
+        private static final long serialVersionUID = 1L;   // never serialized; tasks live for one pass
+
+        private final transient PersonGraph g;
+        private final transient IntList level;
+        private final AtomicIntegerArray claim;
+        private final int base;
+        private final boolean up;
+        private final transient IntList[] parts;
+        private final int lo, hi;
+
+        Pass(PersonGraph g, IntList level, AtomicIntegerArray claim, int base, boolean up, IntList[] parts, int lo, int hi) {
+            this.g = g; this.level = level; this.claim = claim; this.base = base; this.up = up;
+            this.parts = parts; this.lo = lo; this.hi = hi;
+        }
+
+        Pass slice(int from, int to) { return new Pass(g, level, claim, base, up, parts, from, to); }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(slice(lo, mid), slice(mid, hi));
+                return;
+            }
+            int from = lo * GRAIN, to = Math.min(from + GRAIN, level.size());
+            IntList out = parts == null ? null : new IntList();
+            for (int i = from; i < to; i++) {
+                int node = level.get(i), pos = base + i;
+                for (int k = 0, n = degree(g, node, up); k < n; k++) {
+                    int v = neighbour(g, node, k, up);
+                    if (v == PersonGraph.NONE) continue;
+                    if (out != null) {
+                        if (claim.get(v) == pos) out.add(v);
+                    } else {
+                        int cur = claim.get(v);
+                        while (pos < cur && !claim.compareAndSet(v, cur, pos)) cur = claim.get(v);
+                    }
+                }
+            }
+            if (out != null) parts[lo] = out;
+        }
+    }
+}
@@ -4,7 +4,17 @@ import familytree.model.Person;
 
 import java.util.List;
 
+/**
+ * Writes generations as text. The visitors write to an Appendable as a traversal produces them; an
+ * IOException from the target surfaces as UncheckedIOException. By default they collect the
+ * generations and write the rendered String when the traversal is done; renderers that can write
+ * one generation at a time override them to stream.
+ */
 public interface Renderer {
     String renderAncestors(List<List<Person>> generations);
     String renderDescendants(List<List<Person>> generations);
+
+    default GenerationVisitor ancestorsTo(Appendable out) { return new BufferedGenerations(out, this::renderAncestors); }
+
+    default GenerationVisitor descendantsTo(Appendable out) { return new BufferedGenerations(out, this::renderDescendants); }
 }
@@ -12,5 +12,18 @@ import java.util.List;
 public interface TraversalStrategy {
     List<List<Person>> traverseAncestors(FamilyTree registry, String personId, int generations);
     List<List<Person>> traverseDescendants(FamilyTree registry, String personId, int generations);
-}
 
+    /** Streams the same generations to a visitor; level-order strategies emit each one as soon as it is known. */
+    default void visitAncestors(FamilyTree registry, String personId, int generations, GenerationVisitor visitor) {
+        replay(traverseAncestors(registry, personId, generations), visitor);
+    }
+
+    default void visitDescendants(FamilyTree registry, String personId, int generations, GenerationVisitor visitor) {
+        replay(traverseDescendants(registry, personId, generations), visitor);
+    }
+
+    static void replay(List<List<Person>> generations, GenerationVisitor visitor) {
+        for (int depth = 0; depth < generations.size(); depth++) visitor.generation(depth, generations.get(depth));
+    }
+
+}
@@ -0,0 +1,106 @@
+package familytree.io;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Person;
+import familytree.service.FamilyTree;
+import familytree.service.ImportReport;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** CSV lines to people, links and marriages, with quoting, registry ids as keys and one problem per bad line. */
+class CsvImporterTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsRecordsAndReportsBadLines() throws IOException {
+        FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        Person old = tree.addPerson("Old Smith", Gender.MALE, 1820, 1890);
+        ImportReport report = CsvImporter.importFile(tree, write("family.csv",
+                "# people first",
+                "PERSON,a,\"Smith, John\",male,1850,1920",
+                "PERSON, b ,Mary Jones,FEMALE,1852",
+                "",
+                "PERSON,c,\"Tom \"\"Tommy\"\" Smith\",MALE,1880,",
+                "PARENT,a,c",
+                "parent,b,c",
+                "PARENT," + old.getId() + ",a",
+                "MARRY,a,b,1875,1890",
+                "PERSON,a,Again,MALE,1900",         // line 10
+                "PERSON,x,Bad,ROBOT,1900",
+                "PERSON,y,Short",
+                "PARENT,c,zz",
+                "BOGUS,1,2",
+                "MARRY,a,b,eighteen"));
+
+        assertEquals(13, report.getRecords());
+        assertEquals(3, report.getPeople());     // the duplicate key adds no one
+        assertEquals(3, report.getLinks());
+        assertEquals(1, report.getMarriages());
+        assertTrue(report.isLinksApplied());
+        List<String> problems = report.getProblems();
+        assertEquals(6, problems.size(), problems.toString());
+        assertTrue(problems.contains("line 10: duplicate key a"), problems.toString());
+        assertTrue(problems.stream().anyMatch(p -> p.startsWith("line 11: ") && p.contains("ROBOT")), problems.toString());
+        assertTrue(problems.contains("line 12: PERSON needs 4 fields"), problems.toString());
+        assertTrue(problems.contains("line 13: unknown person key zz"), problems.toString());
+        assertTrue(problems.contains("line 14: unknown record type BOGUS"), problems.toString());
+        assertTrue(problems.stream().anyMatch(p -> p.startsWith("line 15: ")), problems.toString());
+        assertEquals(4, tree.allPeople().size());
+
+        Person john = named(tree, "Smith, John"), mary = named(tree, "Mary Jones"), tom = named(tree, "Tom \"Tommy\" Smith");
+        assertEquals(1920, john.getDeathYear());
+        assertEquals(Gender.FEMALE, mary.getGender());
+        assertEquals(null, tom.getDeathYear());
+        assertEquals(Set.of(john.getId(), mary.getId()), tom.getParentIds());
+        assertEquals(Set.of(old.getId()), john.getParentIds());
+        Marriage m = mary.getMarriages().get(0);
+        assertEquals(john.getId(), m.getSpouseAId());
+        assertEquals(1890, m.getDivorceYear());
+    }
+
+    @Test
+    void refusesEveryLinkWhenOneChildGetsThreeParents() throws IOException {
+        FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        ImportReport report = CsvImporter.importFile(tree, write("parents.csv",
+                "PERSON,a,Ann,FEMALE,1900",
+                "PERSON,b,Ben,MALE,1900",
+                "PERSON,c,Cy,MALE,1901",
+                "PERSON,d,Dot,FEMALE,1930",
+                "PERSON,e,Eve,FEMALE,1932",
+                "PARENT,a,d",
+                "PARENT,b,d",
+                "PARENT,c,d",
+                "PARENT,a,e",
+                "PARENT,e,a"));
+
+        assertFalse(report.isLinksApplied());
+        assertEquals(0, report.getLinks());
+        assertEquals(2, report.getProblems().size(), report.getProblems().toString());
+        assertTrue(report.getProblems().stream().anyMatch(p -> p.contains(" would have 3 parents")), report.getProblems().toString());
+        assertTrue(report.getProblems().stream().anyMatch(p -> p.startsWith("Cycle among")), report.getProblems().toString());
+        for (Person p : tree.allPeople()) assertTrue(p.getParentIds().isEmpty(), p.getId());
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.write(dir.resolve(name), List.of(lines), StandardCharsets.UTF_8);
+    }
+
+    private static Person named(FamilyTree tree, String name) {
+        return tree.allPeople().stream().filter(p -> p.getFullName().equals(name)).findFirst().orElseThrow(() -> new AssertionError(name));
+    }
+}
@@ -0,0 +1,130 @@
+package familytree.io;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Person;
+import familytree.service.FamilyTree;
+import familytree.service.ImportReport;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** GEDCOM records to people, links and marriages; bad records are reported and skipped, and families may come first. */
+class GedcomImporterTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsPeopleFamiliesAndProblems() throws IOException {
+        FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        ImportReport report = GedcomImporter.importFile(tree, write("family.ged",
+                "\uFEFF0 HEAD",                // byte order mark
+                "1 CHAR UTF-8",
+                "0 @I1@ INDI",
+                "1 NAME John  /Smith/ Jr",
+                "1 SEX M",
+                "1 BIRT",
+                "2 DATE 12 JAN 1850",
+                "1 DEAT",
+                "2 DATE ABT 1920",
+                "0 @F1@ FAM",              // before two of its members
+                "1 HUSB @I1@",
+                "1 WIFE @I2@",
+                "1 CHIL @I3@",
+                "1 CHIL @I4@",
+                "1 MARR",
+                "2 DATE 1875",
+                "1 DIV",
+                "2 DATE 3 MAR 1890",
+                "0 @I2@ INDI",
+                "1 NAME Mary /Jones/",
+                "1 NAME Maria /Jonas/",    // only the first name counts
+                "1 SEX F",
+                "1 BIRT",
+                "2 DATE BET 1849 AND 1852",
+                "0 @I3@ INDI",
+                "1 NAME Tom /Smith/",
+                "1 SEX M",
+                "1 BIRT",
+                "2 DATE 1880",
+                "0 @I4@ INDI",
+                "1 SEX X",
+                "1 BIRT",
+                "2 DATE 1882",
+                "0 @I5@ INDI",
+                "1 NAME Nobody",
+                "garbage",
+                "0 @F2@ FAM",
+                "1 HUSB @I3@",
+                "1 CHIL @I9@",
+                "0 TRLR"));
+
+        assertEquals(7, report.getRecords());   // five INDI, two FAM
+        assertEquals(4, report.getPeople());
+        assertEquals(4, report.getLinks());
+        assertEquals(1, report.getMarriages());
+        assertTrue(report.isLinksApplied());     // bad records do not hold back the good links
+        List<String> problems = report.getProblems();
+        assertEquals(3, problems.size(), problems.toString());
+        assertTrue(problems.stream().anyMatch(p -> p.contains("@I5@") && p.contains("no birth year")), problems.toString());
+        assertTrue(problems.stream().anyMatch(p -> p.contains("malformed")), problems.toString());
+        assertTrue(problems.stream().anyMatch(p -> p.contains("@F2@") && p.contains("unknown individual @I9@")), problems.toString());
+
+        Person john = named(tree, "John Smith Jr"), mary = named(tree, "Mary Jones"), tom = named(tree, "Tom Smith"), unknown = named(tree, "Unknown");
+        assertEquals(Gender.MALE, john.getGender());
+        assertEquals(1850, john.getBirthYear());
+        assertEquals(1920, john.getDeathYear());
+        assertEquals(Gender.FEMALE, mary.getGender());
+        assertEquals(1852, mary.getBirthYear());
+        assertNull(mary.getDeathYear());
+        assertEquals(Gender.OTHER, unknown.getGender());
+        assertEquals(Set.of(john.getId(), mary.getId()), tom.getParentIds());
+        assertEquals(Set.of(john.getId(), mary.getId()), unknown.getParentIds());
+        assertTrue(tom.getChildrenIds().isEmpty());
+        Marriage m = john.getMarriages().get(0);
+        assertEquals(mary.getId(), m.getOtherSpouseId(john.getId()));
+        assertEquals(1875, m.getMarriageYear());
+        assertEquals(1890, m.getDivorceYear());
+        assertFalse(tree.spouseOf(john.getId()).isPresent());
+    }
+
+    @Test
+    void refusesEveryLinkWhenFamiliesFormACycle() throws IOException {
+        FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        ImportReport report = GedcomImporter.importFile(tree, write("cycle.ged",
+                "0 @A@ INDI", "1 NAME Ann", "1 BIRT", "2 DATE 1900",
+                "0 @B@ INDI", "1 NAME Ben", "1 BIRT", "2 DATE 1920",
+                "0 @C@ INDI", "1 NAME Cat", "1 BIRT", "2 DATE 1930",
+                "0 @F1@ FAM", "1 WIFE @A@", "1 CHIL @B@",
+                "0 @F2@ FAM", "1 HUSB @B@", "1 CHIL @A@",
+                "0 @F3@ FAM", "1 HUSB @B@", "1 CHIL @C@"));
+
+        assertEquals(3, report.getPeople());
+        assertFalse(report.isLinksApplied());
+        assertEquals(0, report.getLinks());
+        assertEquals(1, report.getProblems().size(), report.getProblems().toString());
+        assertTrue(report.getProblems().get(0).startsWith("Cycle among"), report.getProblems().toString());
+        for (Person p : tree.allPeople()) assertTrue(p.getParentIds().isEmpty(), p.getId());
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.write(dir.resolve(name), List.of(lines), StandardCharsets.UTF_8);
+    }
+
+    private static Person named(FamilyTree tree, String name) {
+        return tree.allPeople().stream().filter(p -> p.getFullName().equals(name)).findFirst().orElseThrow(() -> new AssertionError(name));
+    }
+}
@@ -0,0 +1,138 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bulk links: every cycle and every 3+-parent child reported by one finish(), and the batch applied whole
+ * or not at all, against a brute-force closure of the existing links plus the batch.
+ */
+class BulkLoaderTest {
+    @Test
+    void reportsEveryViolationAndAppliesNothing() {
+        FamilyTree tree = Trees.empty();
+        String[] id = new String[10];
+        for (int i = 0; i < id.length; i++) id[i] = tree.addPerson("Person " + i, Gender.MALE, 1900, null).getId();
+        tree.linkParentChild(id[0], id[1]);
+        tree.linkParentChild(id[2], id[3]);
+        tree.linkParentChild(id[4], id[3]);
+
+        BulkLoader loader = tree.bulkLoader();
+        PersonGraph g = loader.graph();
+        int fresh = loader.addPerson("New", Gender.FEMALE, 1950, null);
+        boolean[][] existing = edges(g);
+        loader.link(g.require(id[1]), g.require(id[0]));   // closes 0 -> 1 through the existing link
+        loader.link(g.require(id[5]), g.require(id[6]));
+        loader.link(g.require(id[6]), g.require(id[7]));
+        loader.link(g.require(id[7]), g.require(id[5]));   // a second, separate cycle
+        loader.link(g.require(id[8]), g.require(id[3]));   // a third parent beside two existing ones
+        loader.link(g.require(id[0]), fresh);
+        loader.link(g.require(id[2]), fresh);
+        loader.link(g.require(id[9]), fresh);              // three new parents
+        loader.link(g.require(id[9]), g.require(id[9]));
+        loader.link(g.require(id[8]), g.require(id[2]));   // fine on its own
+        loader.marry(g.require(id[8]), fresh, 1970, null);
+        ImportReport report = loader.finish();
+
+        List<String> problems = report.getProblems();
+        assertEquals(5, problems.size(), problems.toString());
+        assertTrue(problems.contains(id[9] + " cannot be own parent"), problems.toString());
+        assertTrue(problems.contains(id[3] + " would have 3 parents: " + id[2] + " " + id[4] + " " + id[8]), problems.toString());
+        assertTrue(problems.contains(g.idOf(fresh) + " would have 3 parents: " + id[0] + " " + id[2] + " " + id[9]), problems.toString());
+        assertTrue(problems.contains("Cycle among " + id[0] + ", " + id[1]) || problems.contains("Cycle among " + id[1] + ", " + id[0]),
+                problems.toString());
+        assertTrue(problems.stream().anyMatch(p -> p.startsWith("Cycle among") && p.contains(id[5]) && p.contains(id[6]) && p.contains(id[7])),
+                problems.toString());
+
+        assertFalse(report.isLinksApplied());
+        assertEquals(0, report.getLinks());
+        assertEquals(1, report.getPeople());
+        assertEquals(1, report.getMarriages());   // marriages do not wait on the links
+        assertSameEdges(existing, edges(g), "refused batch");
+        assertFalse(tree.isAncestor(id[8], id[2]));
+    }
+
+    @Test
+    void matchesClosureOfExistingAndNewLinks() {
+        SplittableRandom rnd = new SplittableRandom(3);
+        int applied = 0, refused = 0;
+        for (int round = 0; round < 300; round++) {
+            FamilyTree tree = Trees.random(round, 40, 120);
+            PersonGraph g = tree.graph();
+            tree.isAncestor(g.idOf(0), g.idOf(1));   // the index is live before the load
+            BulkLoader loader = tree.bulkLoader();
+            int extra = rnd.nextInt(3);
+            for (int i = 0; i < extra; i++) loader.addPerson("New " + i, Gender.OTHER, 1950, null);
+            int total = g.size(), selfLinks = 0;
+            boolean[][] existing = edges(g), union = edges(g);
+            for (int i = 0, m = 1 + rnd.nextInt(rnd.nextBoolean() ? 4 : 12); i < m; i++) {
+                int p = rnd.nextInt(total), c = rnd.nextInt(total);
+                if (p == c && rnd.nextInt(10) != 0) continue;
+                loader.link(p, c);
+                if (p == c) selfLinks++; else union[p][c] = true;
+            }
+            ImportReport report = loader.finish();
+            String where = "round " + round + ": " + report.getProblems();
+
+            int overParented = 0;
+            for (int c = 0; c < total; c++) {
+                int parents = 0;
+                for (int p = 0; p < total; p++) if (union[p][c]) parents++;
+                if (parents > 2) overParented++;
+            }
+            boolean[][] reach = closure(union);
+            int cycles = 0;
+            boolean[] inCycle = new boolean[total];
+            for (int v = 0; v < total; v++) {
+                if (inCycle[v] || !reach[v][v]) continue;
+                cycles++;
+                for (int w = 0; w < total; w++) if (reach[v][w] && reach[w][v]) inCycle[w] = true;
+            }
+            List<String> problems = report.getProblems();
+            assertEquals(selfLinks, problems.stream().filter(p -> p.endsWith(" cannot be own parent")).count(), where);
+            assertEquals(overParented, problems.stream().filter(p -> p.contains(" would have ")).count(), where);
+            assertEquals(cycles, problems.stream().filter(p -> p.startsWith("Cycle among ")).count(), where);
+            assertEquals(selfLinks + overParented + cycles, problems.size(), where);
+
+            boolean ok = problems.isEmpty();
+            assertEquals(ok, report.isLinksApplied(), where);
+            assertSameEdges(ok ? union : existing, edges(g), where);
+            if (ok) {
+                applied++;
+                ReachabilityIndex fresh = new ReachabilityIndex(g);
+                for (int k = 0; k < 50; k++) {
+                    int a = rnd.nextInt(total), b = rnd.nextInt(total);
+                    assertEquals(fresh.isAncestor(a, b), tree.isAncestor(g.idOf(a), g.idOf(b)), where);
+                }
+            } else refused++;
+        }
+        assertTrue(applied > 20 && refused > 20, applied + " applied, " + refused + " refused");
+    }
+
+    // edge[p][c] for every parent link now in the graph.
+    private static boolean[][] edges(PersonGraph g) {
+        boolean[][] edge = new boolean[g.size()][g.size()];
+        for (int v = 0; v < g.size(); v++) for (int s = 0; s < 2; s++) if (g.parent(v, s) != PersonGraph.NONE) edge[g.parent(v, s)][v] = true;
+        return edge;
+    }
+
+    private static void assertSameEdges(boolean[][] want, boolean[][] got, String where) {
+        for (int p = 0; p < want.length; p++) assertArrayEquals(want[p], got[p], "children of node " + p + ", " + where);
+    }
+
+    private static boolean[][] closure(boolean[][] edge) {
+        int n = edge.length;
+        boolean[][] r = new boolean[n][];
+        for (int i = 0; i < n; i++) r[i] = edge[i].clone();
+        for (int k = 0; k < n; k++) for (int i = 0; i < n; i++) if (r[i][k]) for (int j = 0; j < n; j++) if (r[k][j]) r[i][j] = true;
+        return r;
+    }
+}
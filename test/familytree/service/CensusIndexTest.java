@@ -0,0 +1,92 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Census counts against a scan of every person, with cached cones kept across random edits. */
+class CensusIndexTest {
+    @Test
+    void matchesFullScanAcrossEdits() {
+        FamilyTree tree = Trees.random(16, 400, 3000);
+        SplittableRandom rnd = new SplittableRandom(16);
+        int[] roots = new int[40];
+        for (int i = 0; i < roots.length; i++) roots[i] = rnd.nextInt(tree.graph().size());
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 10; i++) {
+                if (i % 5 == 0) Trees.add(tree, rnd);
+                Trees.edit(tree, rnd);
+            }
+            PersonGraph g = tree.graph();
+            int year = 1790 + rnd.nextInt(260);
+            assertEquals(alive(tree, BitSet.valueOf(new long[0]), year, true), tree.aliveIn(year), "aliveIn " + year);
+            int width = 1 + rnd.nextInt(20);
+            assertArrayEquals(histogram(tree, year, width), tree.ageHistogram(year, width), "ages in " + year);
+            for (int root : roots) {
+                int y = 1790 + rnd.nextInt(260);
+                assertEquals(alive(tree, descendants(g, root), y, false), tree.livingDescendants(g.idOf(root), y),
+                        "descendants of " + g.idOf(root) + " in " + y + ", round " + round);
+            }
+        }
+    }
+
+    @Test
+    void bornAfterDeathCountsAsNeverAlive() {
+        FamilyTree tree = Trees.empty();
+        Person p = tree.addPerson("Ann", Gender.FEMALE, 1500, 1550);
+        assertEquals(1, tree.aliveIn(1520));
+        p.setBirthYear(2000);
+        assertEquals(2000, tree.getPerson(p.getId()).getBirthYear());
+        assertEquals(0, tree.aliveIn(1520));
+        assertEquals(0, tree.aliveIn(2000));
+        assertEquals(0, tree.ageHistogram(2000, 10).length);
+        tree.addPerson("Bob", Gender.MALE, 1990, null);
+        assertEquals(1, tree.aliveIn(2000));
+        p.setBirthYear(1510);
+        assertEquals(1, tree.aliveIn(1520));
+        assertEquals(2, tree.aliveIn(1520) + tree.aliveIn(2000));
+    }
+
+    private static boolean aliveIn(Person p, int year) {
+        return p.getBirthYear() <= year && (p.getDeathYear() == null || p.getDeathYear() >= year);
+    }
+
+    private static int alive(FamilyTree tree, BitSet among, int year, boolean everyone) {
+        int n = 0;
+        for (Person p : tree.allPeople()) if ((everyone || among.get(p.getNode())) && aliveIn(p, year)) n++;
+        return n;
+    }
+
+    private static int[] histogram(FamilyTree tree, int year, int width) {
+        int[] out = new int[0];
+        for (Person p : tree.allPeople()) {
+            if (!aliveIn(p, year)) continue;
+            int k = (year - p.getBirthYear()) / width;
+            if (k >= out.length) out = Arrays.copyOf(out, k + 1);
+            out[k]++;
+        }
+        return out;
+    }
+
+    private static BitSet descendants(PersonGraph g, int root) {
+        BitSet seen = new BitSet();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            for (int i = 0; i < g.childCount(v); i++) {
+                int c = g.child(v, i);
+                if (!seen.get(c)) { seen.set(c); queue.add(c); }
+            }
+        }
+        return seen;
+    }
+}
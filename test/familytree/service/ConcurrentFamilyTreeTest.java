@@ -0,0 +1,171 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many threads on one tree: the structure and the reachability labels stay consistent under a mixed
+ * load, ancestry checks never break a link in progress, and a render written to a stalled reader does
+ * not hold the lock writers need.
+ */
+class ConcurrentFamilyTreeTest {
+    @Test
+    void invariantsHoldUnderMixedLoad() throws Exception {
+        FamilyTree plain = Trees.empty();
+        ConcurrentFamilyTree tree = new ConcurrentFamilyTree(plain);
+        List<String> seed = new ArrayList<>();
+        SplittableRandom rnd = new SplittableRandom(6);
+        for (int i = 0; i < 3000; i++) {
+            seed.add(plain.addPerson("Person " + i, Gender.values()[i % 2], 1800 + i / 20, null).getId());
+            if (i >= 50) plain.linkParentChild(seed.get(i - 50 - rnd.nextInt(Math.min(i - 49, 300))), seed.get(i));
+        }
+        String[] ids = seed.toArray(new String[0]);
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            long s = t;
+            workers.add(CompletableFuture.runAsync(() -> {
+                SplittableRandom r = new SplittableRandom(s);
+                for (int i = 0; i < 20_000; i++) {
+                    String a = ids[r.nextInt(ids.length)], b = ids[r.nextInt(ids.length)];
+                    try {
+                        switch (r.nextInt(20)) {
+                            case 0 -> tree.linkParentChild(a, b);
+                            case 1 -> { if (tree.parentIds(b).contains(a)) tree.unlinkParentChild(a, b); }
+                            case 2 -> tree.marry(a, b, 2000);
+                            case 3 -> tree.divorce(a, b, 2010);
+                            case 4 -> tree.addPerson("Extra", Gender.OTHER, 2000, null);
+                            case 5, 6, 7, 8 -> tree.isAncestor(a, b);
+                            case 9, 10 -> tree.ancestorsOf(a, 3);
+                            case 11, 12 -> tree.siblingsOf(a);
+                            default -> tree.getPerson(a);
+                        }
+                    } catch (IllegalArgumentException rejected) {
+                        // cycles, third parents, people already married and the like
+                    }
+                }
+            }, pool));
+        }
+        try {
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        checkInvariants(plain);
+    }
+
+    @Test
+    void ancestryChecksDoNotBreakLinksInProgress() throws Exception {
+        FamilyTree plain = Trees.empty();
+        ConcurrentFamilyTree tree = new ConcurrentFamilyTree(plain);
+        String[] chain = new String[3000];
+        for (int i = 0; i < chain.length; i++) chain[i] = plain.addPerson("Person " + i, Gender.MALE, 1800, null).getId();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Void>> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long s = t;
+            readers.add(CompletableFuture.runAsync(() -> {
+                SplittableRandom r = new SplittableRandom(s);
+                for (int i = 0; i < 3000; i++) {
+                    // Pairs down the part linked first, which the level and sketch filters cannot settle, so a search runs.
+                    int x = chain.length / 2 + r.nextInt(chain.length / 2), y = chain.length / 2 + r.nextInt(chain.length / 2);
+                    tree.isAncestor(chain[Math.min(x, y)], chain[Math.max(x, y)]);
+                    LockSupport.parkNanos(20_000);   // gaps for the writer, whose lock back-to-back readers could keep from it
+                }
+            }, pool));
+        }
+        try {
+            // Back to front, so each link relabels the whole chain below it while the readers search.
+            for (int i = chain.length - 1; i > 0; i--) tree.linkParentChild(chain[i - 1], chain[i]);
+        } finally {
+            CompletableFuture.allOf(readers.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+            pool.shutdownNow();
+        }
+        checkInvariants(plain);
+        assertTrue(tree.isAncestor(chain[0], chain[chain.length - 1]));
+    }
+
+    // Two parents at most, parent slots and child lists agree, one active marriage each and both sides
+    // of it recorded, no cycle, and reachability labels equal to a fresh rebuild.
+    private static void checkInvariants(FamilyTree tree) {
+        PersonGraph g = tree.graph();
+        int n = g.size();
+        for (int v = 0; v < n; v++) {
+            int p0 = g.parent(v, 0), p1 = g.parent(v, 1);
+            assertTrue(p0 != PersonGraph.NONE || p1 == PersonGraph.NONE, "parent slots out of order at " + g.idOf(v));
+            assertTrue(p0 == PersonGraph.NONE || p0 != p1, "duplicate parent of " + g.idOf(v));
+            for (int s = 0; s < g.parentCount(v); s++) assertTrue(hasChild(g, g.parent(v, s), v), "child list misses " + g.idOf(v));
+            for (int i = 0; i < g.childCount(v); i++) assertTrue(g.hasParent(g.child(v, i), v), "parent slots miss " + g.idOf(v));
+            Person p = g.person(v);
+            assertTrue(p.getMarriages().stream().filter(Marriage::isActive).count() <= 1, p.getId() + " has two active marriages");
+            for (Marriage m : p.getMarriages())
+                assertTrue(tree.getPerson(m.getOtherSpouseId(p.getId())).getMarriages().contains(m), "one-sided marriage of " + p.getId());
+        }
+        ReachabilityIndex fresh = new ReachabilityIndex(g);   // throws if there is a cycle
+        ReachabilityIndex kept = tree.reachability();
+        for (int v = 0; v < n; v++) {
+            assertEquals(fresh.levelOf(v), kept.levelOf(v), "level of " + g.idOf(v));
+            assertEquals(fresh.sketchOf(v), kept.sketchOf(v), "sketch of " + g.idOf(v));
+        }
+    }
+
+    private static boolean hasChild(PersonGraph g, int parent, int child) {
+        for (int i = 0; i < g.childCount(parent); i++) if (g.child(parent, i) == child) return true;
+        return false;
+    }
+
+    @Test
+    void writersProceedWhileRenderOutputIsBlocked() throws Exception {
+        ConcurrentFamilyTree tree = new ConcurrentFamilyTree(Trees.empty());
+        Person a = tree.addPerson("Ann", Gender.FEMALE, 1900, null), b = tree.addPerson("Bob", Gender.MALE, 1930, null);
+        tree.linkParentChild(a.getId(), b.getId());
+
+        CountDownLatch writing = new CountDownLatch(1), release = new CountDownLatch(1);
+        StringBuilder received = new StringBuilder();
+        Appendable stalled = new Appendable() {
+            @Override public Appendable append(CharSequence s) throws IOException { stall(); received.append(s); return this; }
+            @Override public Appendable append(CharSequence s, int from, int to) throws IOException { return append(s.subSequence(from, to)); }
+            @Override public Appendable append(char c) throws IOException { return append(String.valueOf(c)); }
+
+            private void stall() throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        };
+        CompletableFuture<Void> render = CompletableFuture.runAsync(() -> {
+            try {
+                tree.renderAncestors(b.getId(), 3, stalled);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        assertEquals(true, writing.await(5, TimeUnit.SECONDS));
+        Person c = CompletableFuture.supplyAsync(() -> tree.addPerson("Cid", Gender.MALE, 1960, null)).get(5, TimeUnit.SECONDS);
+        assertNotNull(c);
+        tree.linkParentChild(b.getId(), c.getId());
+        release.countDown();
+        render.get(5, TimeUnit.SECONDS);
+        assertEquals(tree.renderAncestors(b.getId(), 3), received.toString());
+    }
+}
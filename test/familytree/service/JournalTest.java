@@ -0,0 +1,82 @@
+package familytree.service;
+
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Journal replay: a reopened store prints like the tree that was closed, across compactions and torn tails. */
+class JournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysRandomEditsAcrossCompactions() throws Exception {
+        SplittableRandom rnd = new SplittableRandom(5);
+        String expected;
+        try (TreeStore store = open()) {
+            FamilyTree tree = store.tree();
+            for (int i = 0; i < 300; i++) Trees.add(tree, rnd);
+            for (int i = 0; i < 6000; i++) {
+                Trees.edit(tree, rnd);
+                if (i % 25 == 0) Trees.add(tree, rnd);
+                if (i % 2000 == 1999) store.compact().join();
+                if (i % 1500 == 0) merge(tree, rnd);
+            }
+            expected = Trees.dump(tree);
+        }
+        try (TreeStore store = open()) {
+            assertEquals(expected, Trees.dump(store.tree()));
+            Trees.edit(store.tree(), rnd);
+            expected = Trees.dump(store.tree());
+        }
+        try (TreeStore store = open()) {
+            assertEquals(expected, Trees.dump(store.tree()));
+        }
+    }
+
+    @Test
+    void dropsTornTail() throws Exception {
+        SplittableRandom rnd = new SplittableRandom(6);
+        String expected;
+        try (TreeStore store = open()) {
+            for (int i = 0; i < 50; i++) Trees.add(store.tree(), rnd);
+            for (int i = 0; i < 500; i++) Trees.edit(store.tree(), rnd);
+            expected = Trees.dump(store.tree());
+        }
+        Path last;
+        try (Stream<Path> files = Files.list(dir)) {
+            last = files.filter(p -> p.getFileName().toString().startsWith("journal-")).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        try (FileChannel ch = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, Journal.LINK, 0, 0}));   // a record cut short by a crash
+        }
+        try (TreeStore store = open()) {
+            assertEquals(expected, Trees.dump(store.tree()));
+        }
+    }
+
+    private static void merge(FamilyTree tree, SplittableRandom rnd) {
+        int n = tree.graph().size();
+        try {
+            tree.merge(tree.graph().idOf(rnd.nextInt(n)), tree.graph().idOf(rnd.nextInt(n)));
+        } catch (IllegalArgumentException rejected) {
+            // the rules refused this pair
+        }
+    }
+
+    private TreeStore open() throws IOException {
+        return TreeStore.open(dir, new BFSTraversal(), new IndentedTreeRenderer(), Journal.Durability.GROUPED, 5);
+    }
+}
@@ -0,0 +1,77 @@
+package familytree.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/** The tree's cached Kinship against the recursive coancestry definition, through random relinking. */
+class KinshipTest {
+    private static final double EPS = 1e-13;
+
+    @Test
+    void matchesRecursiveDefinitionAcrossEdits() {
+        FamilyTree tree = Trees.random(10, 150, 1500);
+        Kinship kinship = tree.kinship();
+        assertSame(kinship, Kinship.of(tree));
+        SplittableRandom rnd = new SplittableRandom(10);
+        for (int round = 0; round < 20; round++) {
+            PersonGraph g = tree.graph();
+            Brute brute = new Brute(g);
+            double[] all = kinship.inbreedingAll(round % 2 == 0);
+            for (int v = 0; v < g.size(); v++) {
+                double f = g.parentCount(v) < 2 ? 0 : brute.phi(g.parent(v, 0), g.parent(v, 1));
+                assertEquals(f, all[v], EPS, "F of " + g.idOf(v) + " in round " + round);
+                assertEquals(f, kinship.inbreeding(g.idOf(v)), EPS);
+            }
+            for (int i = 0; i < 200; i++) {
+                int a = rnd.nextInt(g.size()), b = rnd.nextInt(g.size());
+                assertEquals(brute.phi(a, b), kinship.coancestry(g.idOf(a), g.idOf(b)), EPS);
+            }
+            for (int i = 0; i < 100; i++) {
+                if (i % 20 == 0) Trees.add(tree, rnd);
+                Trees.edit(tree, rnd);
+            }
+        }
+    }
+
+    /** phi(a, b) by recursing on whichever of the two cannot be the other's ancestor. */
+    private static final class Brute {
+        final PersonGraph g;
+        final int[] depth;
+        final Map<Long, Double> memo = new HashMap<>();
+
+        Brute(PersonGraph g) {
+            this.g = g;
+            this.depth = new int[g.size()];
+            for (int v = 0; v < g.size(); v++) depth(v);
+        }
+
+        // Longest path up to a root, plus one; an ancestor is always shallower than its descendants.
+        int depth(int v) {
+            if (depth[v] == 0) {
+                int d = 0;
+                for (int s = 0; s < 2; s++) if (g.parent(v, s) != PersonGraph.NONE) d = Math.max(d, depth(g.parent(v, s)));
+                depth[v] = d + 1;
+            }
+            return depth[v];
+        }
+
+        double phi(int a, int b) {
+            if (depth[a] < depth[b] || depth[a] == depth[b] && a < b) { int t = a; a = b; b = t; }
+            long key = (long) a << 32 | b;
+            Double hit = memo.get(key);
+            if (hit != null) return hit;
+            int s = g.parent(a, 0), d = g.parent(a, 1);
+            double r;
+            if (a == b) r = (1 + (s == PersonGraph.NONE || d == PersonGraph.NONE ? 0 : phi(s, d))) / 2;
+            else r = ((s == PersonGraph.NONE ? 0 : phi(s, b)) + (d == PersonGraph.NONE ? 0 : phi(d, b))) / 2;
+            memo.put(key, r);
+            return r;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lineage counts kept current through links, unlinks and deaths, against a fresh index and a walk of
+ * each cone: exact counts must match it, sketched ones stay within 20% (over four standard errors).
+ */
+class LineageIndexTest {
+    @Test
+    void matchesConeWalksAcrossEdits() {
+        SplittableRandom rnd = new SplittableRandom(24);
+        for (int round = 0; round < 6; round++) {
+            FamilyTree tree = Trees.empty();
+            List<String> ids = new ArrayList<>();
+            if (round % 2 == 0) tree.lineage(tree.addPerson("Root", Gender.MALE, 1800, null).getId());   // indexed from the start
+            for (Person p : tree.allPeople()) ids.add(p.getId());
+            int n = 300 + rnd.nextInt(700);
+            for (int i = 0; i < n; i++) {
+                String id = tree.addPerson("Person " + i, Gender.MALE, 1800, rnd.nextInt(4) == 0 ? 1900 : null).getId();
+                ids.add(id);
+                // Parents among the last few people added, so cones run deep and overlap.
+                for (int k = 0; k < 2 && ids.size() > 1; k++) link(tree, ids.get(ids.size() - 2 - rnd.nextInt(Math.min(ids.size() - 1, 60))), id);
+                if (rnd.nextInt(10) == 0) {
+                    Person p = tree.getPerson(ids.get(rnd.nextInt(ids.size())));
+                    if (!p.getChildrenIds().isEmpty()) tree.unlinkParentChild(p.getId(), p.getChildrenIds().iterator().next());
+                }
+                if (rnd.nextInt(8) == 0) {
+                    Person p = tree.getPerson(ids.get(rnd.nextInt(ids.size())));
+                    p.setDeathYear(p.getDeathYear() == null ? Integer.valueOf(1950) : null);
+                }
+                if (rnd.nextInt(20) == 0) link(tree, ids.get(rnd.nextInt(ids.size())), ids.get(rnd.nextInt(ids.size())));
+            }
+
+            PersonGraph g = tree.graph();
+            LineageIndex fresh = new LineageIndex(g, tree.reachability());
+            for (String id : ids) {
+                int v = g.require(id);
+                Lineage kept = tree.lineage(id), rebuilt = fresh.lineage(v);
+                BitSet down = cone(g, v, false), up = cone(g, v, true);
+                int living = 0;
+                for (int d = down.nextSetBit(0); d >= 0; d = down.nextSetBit(d + 1)) if (g.person(d).isAlive()) living++;
+                int[] truth = {down.cardinality(), living, up.cardinality()};
+                for (Lineage.Measure m : Lineage.Measure.values()) {
+                    String where = id + " " + m + ", round " + round;
+                    assertEquals(rebuilt.get(m), kept.get(m), where);
+                    assertEquals(rebuilt.isExact(m), kept.isExact(m), where);
+                    int want = truth[m.ordinal()];
+                    if (kept.isExact(m)) assertEquals(want, kept.get(m), where);
+                    else assertTrue(Math.abs(kept.get(m) - want) <= 0.2 * want, where + ": " + kept.get(m) + " for " + want);
+                }
+            }
+            for (Lineage.Measure m : Lineage.Measure.values()) {
+                List<Lineage> top = tree.topLineages(m, 5);
+                int least = top.get(top.size() - 1).get(m);
+                for (String id : ids)
+                    if (tree.lineage(id).get(m) > least)
+                        assertTrue(top.stream().anyMatch(l -> l.getPerson().getId().equals(id)), id + " missing from top " + m);
+            }
+        }
+    }
+
+    private static void link(FamilyTree tree, String parent, String child) {
+        try {
+            tree.linkParentChild(parent, child);
+        } catch (IllegalArgumentException rejected) {
+            // cycles and third parents
+        }
+    }
+
+    // Everyone strictly below (or above) v.
+    private static BitSet cone(PersonGraph g, int v, boolean up) {
+        BitSet seen = new BitSet();
+        IntList queue = new IntList();
+        queue.add(v);
+        for (int h = 0; h < queue.size(); h++) {
+            int u = queue.get(h), count = up ? g.parentCount(u) : g.childCount(u);
+            for (int i = 0; i < count; i++) {
+                int w = up ? g.parent(u, i) : g.child(u, i);
+                if (!seen.get(w)) { seen.set(w); queue.add(w); }
+            }
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,135 @@
+package familytree.service;
+
+import familytree.model.Marriage;
+import familytree.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Marriage lookups against a scan of everyone's marriages, across marriages and divorces, deaths that
+ * bring ends forward or move them back, ranges that grow, and merges that hand marriages over or retire them.
+ */
+class MarriageRegistryTest {
+    @Test
+    void matchesFullScanAcrossEdits() {
+        FamilyTree tree = Trees.random(15, 300, 2000);
+        SplittableRandom rnd = new SplittableRandom(15);
+        for (int round = 0; round < 150; round++) {
+            for (int i = 0; i < 20; i++) {
+                if (i % 10 == 0) Trees.add(tree, rnd);
+                Trees.edit(tree, rnd);
+                if (i % 2 == 0) marry(tree, rnd);
+            }
+            if (round % 3 == 1) enterTwice(tree, rnd);
+            if (round % 3 == 0) {
+                int n = tree.graph().size();
+                try {
+                    tree.merge(tree.graph().idOf(rnd.nextInt(n)), tree.graph().idOf(rnd.nextInt(n)));
+                } catch (IllegalArgumentException rejected) {
+                    // the rules refused this pair
+                }
+            }
+            List<Marriage> all = marriages(tree);
+            assertEquals(all.size(), tree.marriageCount(), "round " + round);
+
+            int from = 1800 + rnd.nextInt(240), to = from + rnd.nextInt(rnd.nextInt(4) == 0 ? 200 : 15);
+            List<Marriage> got = tree.marriagesBetween(from, to);
+            for (int k = 1; k < got.size(); k++) assertTrue(got.get(k - 1).getMarriageYear() <= got.get(k).getMarriageYear(), "order in round " + round);
+            List<String> want = new ArrayList<>();
+            for (Marriage m : all) if (m.getMarriageYear() <= to && end(tree, m) >= from) want.add(key(m));
+            assertEquals(sorted(want), sorted(got.stream().map(MarriageRegistryTest::key).toList()), from + ".." + to + ", round " + round);
+
+            int[] decades = new int[Math.floorDiv(to, 10) - Math.floorDiv(from, 10) + 1];
+            for (Marriage m : all)
+                if (m.getMarriageYear() >= from && m.getMarriageYear() <= to) decades[Math.floorDiv(m.getMarriageYear(), 10) - Math.floorDiv(from, 10)]++;
+            assertArrayEquals(decades, tree.marriagesPerDecade(from, to), "per decade " + from + ".." + to + ", round " + round);
+
+            for (int k = 0; k < 30; k++) {
+                Person p = tree.graph().person(rnd.nextInt(tree.graph().size()));
+                int year = 1820 + rnd.nextInt(220);
+                assertEquals(spouseAsOf(tree, p, year), tree.spouseOf(p.getId(), year).map(Person::getId).orElse(null),
+                        p.getId() + " in " + year + ", round " + round);
+                assertEquals(p.getActiveSpouseId().orElse(null), tree.spouseOf(p.getId()).map(Person::getId).orElse(null),
+                        p.getId() + " now, round " + round);
+            }
+        }
+    }
+
+    // Marriages clustered on fewer couples than Trees.edit picks, so remarriages and same-year ties come up.
+    private static void marry(FamilyTree tree, SplittableRandom rnd) {
+        int n = Math.min(tree.graph().size(), 60);
+        String a = tree.graph().idOf(rnd.nextInt(n)), b = tree.graph().idOf(rnd.nextInt(n));
+        try {
+            Person p = tree.getPerson(a);
+            if (p.getActiveSpouseId().isPresent()) tree.divorce(a, p.getActiveSpouseId().get(), 1880 + rnd.nextInt(60));
+            tree.marry(a, b, 1880 + rnd.nextInt(60));
+        } catch (IllegalArgumentException rejected) {
+            // minors, the already married and divorces before the wedding
+        }
+    }
+
+    // Enters a married couple again and merges one spouse back, so the duplicate marriage is retired.
+    private static void enterTwice(FamilyTree tree, SplittableRandom rnd) {
+        List<Marriage> all = marriages(tree);
+        if (all.isEmpty()) return;
+        Marriage m = all.get(rnd.nextInt(all.size()));
+        Person a = tree.getPerson(m.getSpouseAId()), b = tree.getPerson(m.getSpouseBId());
+        try {
+            Person a2 = tree.addPerson(a.getFullName(), a.getGender(), a.getBirthYear(), a.getDeathYear());
+            Person b2 = tree.addPerson(b.getFullName(), b.getGender(), b.getBirthYear(), b.getDeathYear());
+            tree.marry(a2.getId(), b2.getId(), m.getMarriageYear());
+            if (m.getDivorceYear() != null) tree.divorce(a2.getId(), b2.getId(), m.getDivorceYear());
+            int before = tree.marriageCount();
+            tree.merge(a.getId(), a2.getId());
+            assertEquals(before - 1, tree.marriageCount(), "the twin of " + key(m));
+        } catch (IllegalArgumentException rejected) {
+            // years edited into ones a new record or marriage cannot have
+        }
+    }
+
+    // Every marriage someone holds, once each; merged-away records hold none.
+    private static List<Marriage> marriages(FamilyTree tree) {
+        Set<Marriage> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Marriage> out = new ArrayList<>();
+        for (int v = 0; v < tree.graph().size(); v++)
+            for (Marriage m : tree.graph().person(v).getMarriages()) if (seen.add(m)) out.add(m);
+        return out;
+    }
+
+    // The last year in effect: divorce or either spouse's death, never before the wedding.
+    private static int end(FamilyTree tree, Marriage m) {
+        int e = m.getDivorceYear() != null ? m.getDivorceYear() : Integer.MAX_VALUE;
+        for (String id : new String[] {m.getSpouseAId(), m.getSpouseBId()}) {
+            Integer death = tree.getPerson(id).getDeathYear();
+            if (death != null) e = Math.min(e, death);
+        }
+        return Math.max(m.getMarriageYear(), e);
+    }
+
+    private static String spouseAsOf(FamilyTree tree, Person p, int year) {
+        Marriage best = null;
+        for (Marriage m : p.getMarriages())
+            if (m.getMarriageYear() <= year && end(tree, m) >= year && (best == null || m.getMarriageYear() >= best.getMarriageYear())) best = m;
+        return best == null ? null : best.getOtherSpouseId(p.getId());
+    }
+
+    private static String key(Marriage m) {
+        return m.getSpouseAId() + "+" + m.getSpouseBId() + "@" + m.getMarriageYear() + "-" + m.getDivorceYear();
+    }
+
+    private static List<String> sorted(List<String> keys) {
+        List<String> out = new ArrayList<>(keys);
+        Collections.sort(out);
+        return out;
+    }
+}
@@ -0,0 +1,81 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/** Merged-away records leave allPeople(), search, the census and the demographics, however the indexes came to be. */
+class MergeTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void duplicateCountsOnce() throws IOException {
+        for (boolean indexedFirst : new boolean[] {true, false}) {
+            FamilyTree tree = Trees.empty();
+            Person keep = tree.addPerson("John Smith", Gender.MALE, 1900, null), drop = tree.addPerson("John Smith", Gender.MALE, 1900, null);
+            if (indexedFirst) counts(tree, 2);
+            tree.merge(keep.getId(), drop.getId());
+            counts(tree, 1);
+            drop.setBirthYear(1905);   // edits to the dropped record stay out of the counts
+            drop.setDeathYear(1990);
+            drop.setFullName("John Smythe");
+            counts(tree, 1);
+
+            Path file = dir.resolve("merged-" + indexedFirst + ".ftsp");
+            tree.save(file);
+            counts(FamilyTree.load(file, new BFSTraversal(), new IndentedTreeRenderer()), 1);
+        }
+    }
+
+    @Test
+    void indexesMatchFullScanAcrossMerges() {
+        FamilyTree tree = Trees.random(25, 300, 2000);
+        SplittableRandom rnd = new SplittableRandom(25);
+        tree.aliveIn(1900);
+        tree.search(new PersonQuery());
+        tree.genderByDecade(1800, 2020, Gender.MALE);
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 20; i++) {
+                if (i % 10 == 0) Trees.add(tree, rnd);
+                Trees.edit(tree, rnd);
+            }
+            int n = tree.graph().size();
+            try {
+                tree.merge(tree.graph().idOf(rnd.nextInt(n)), tree.graph().idOf(rnd.nextInt(n)));
+            } catch (IllegalArgumentException rejected) {
+                // the rules refused this pair
+            }
+            int year = 1800 + rnd.nextInt(220), alive = 0, male = 0, born = 0;
+            for (Person p : tree.allPeople()) {
+                assertFalse(tree.mergedInto(p.getId()).isPresent());
+                if (p.getBirthYear() <= year && (p.getDeathYear() == null || p.getDeathYear() >= year)) alive++;
+                if (p.getBirthYear() / 10 == year / 10) { born++; if (p.getGender() == Gender.MALE) male++; }
+            }
+            assertEquals(alive, tree.aliveIn(year), "round " + round);
+            assertEquals(tree.allPeople().size(), tree.search(new PersonQuery()).getTotal(), "round " + round);
+            GroupStats decade = tree.genderByDecade(year / 10 * 10, year / 10 * 10 + 9, Gender.MALE);
+            assertEquals(born, decade.count(0), "round " + round);
+            assertEquals(male, decade.sum(0), "round " + round);
+        }
+    }
+
+    private static void counts(FamilyTree tree, int expected) {
+        assertEquals(expected, tree.allPeople().size());
+        assertEquals(expected, tree.aliveIn(1950));
+        assertEquals(expected, tree.search(new PersonQuery().name("John")).getTotal());
+        assertEquals(expected, tree.search(new PersonQuery()).getTotal());
+        assertEquals(expected, tree.genderByDecade(1900, 1909, Gender.MALE).count(0));
+        assertEquals(expected, tree.ageHistogram(1950, 10)[5]);
+    }
+}
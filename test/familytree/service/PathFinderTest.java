@@ -0,0 +1,110 @@
+package familytree.service;
+
+import familytree.model.Marriage;
+import familytree.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bidirectional chains against a plain one-sided BFS over the allowed links: lengths, hop limits, and paths
+ * that really are chains of those links, one query at a time and in parallel batches.
+ */
+class PathFinderTest {
+    private static final List<Set<PathFinder.Link>> FILTERS = List.of(PathFinder.ALL, EnumSet.of(PathFinder.Link.PARENT),
+            EnumSet.of(PathFinder.Link.CHILD), EnumSet.of(PathFinder.Link.PARENT, PathFinder.Link.CHILD),
+            EnumSet.of(PathFinder.Link.SPOUSE, PathFinder.Link.CHILD), EnumSet.noneOf(PathFinder.Link.class));
+
+    @Test
+    void matchesPlainSearch() {
+        FamilyTree tree = Trees.random(23, 400, 3000);
+        SplittableRandom rnd = new SplittableRandom(23);
+        PathFinder finder = PathFinder.of(tree);
+        PersonGraph g = tree.graph();
+        for (int round = 0; round < 30; round++) {
+            for (int i = 0; i < 40; i++) {
+                if (i % 10 == 0) Trees.add(tree, rnd);
+                Trees.edit(tree, rnd);
+            }
+            Set<PathFinder.Link> links = FILTERS.get(round % FILTERS.size());
+            int maxHops = rnd.nextInt(4) == 0 ? 1000 : rnd.nextInt(9);
+            List<String> from = new ArrayList<>(), to = new ArrayList<>();
+            for (int k = 0; k < 100; k++) {
+                int a = rnd.nextInt(g.size());
+                from.add(g.idOf(a));
+                to.add(g.idOf(k % 25 == 0 ? a : rnd.nextInt(g.size())));
+            }
+            List<Optional<FamilyPath>> paths = finder.shortestPaths(from, to, links, maxHops);
+            int[] degrees = finder.degrees(from, to, links, maxHops);
+            for (int k = 0; k < from.size(); k++) {
+                String where = from.get(k) + " to " + to.get(k) + " over " + links + " within " + maxHops + ", round " + round;
+                int[] dist = distances(tree, g.require(from.get(k)), links);
+                int d = dist[g.require(to.get(k))], want = d >= 0 && d <= maxHops ? d : -1;
+                assertEquals(want, finder.degrees(from.get(k), to.get(k), links, maxHops), where);
+                assertEquals(want, degrees[k], "batched " + where);
+                Optional<FamilyPath> one = finder.shortestPath(from.get(k), to.get(k), links, maxHops);
+                assertEquals(want >= 0, one.isPresent(), where);
+                assertEquals(want >= 0, paths.get(k).isPresent(), "batched " + where);
+                if (want < 0) continue;
+                check(tree, one.get(), from.get(k), to.get(k), want, links, where);
+                check(tree, paths.get(k).get(), from.get(k), to.get(k), want, links, "batched " + where);
+            }
+        }
+    }
+
+    // A chain from a to b of the given length, each link one of the allowed kinds and true of the people it joins.
+    private static void check(FamilyTree tree, FamilyPath path, String a, String b, int hops, Set<PathFinder.Link> links, String where) {
+        assertEquals(hops, path.hops(), where);
+        assertEquals(hops + 1, path.getPeople().size(), where);
+        assertEquals(a, path.getFrom().getId(), where);
+        assertEquals(b, path.getTo().getId(), where);
+        for (int i = 0; i < hops; i++) {
+            Person p = path.getPeople().get(i), q = path.getPeople().get(i + 1);
+            PathFinder.Link link = path.getLinks().get(i);
+            assertTrue(links.contains(link), where);
+            assertTrue(linked(tree, p, q, link), p.getId() + " " + link + " " + q.getId() + ", " + where);
+        }
+    }
+
+    private static boolean linked(FamilyTree tree, Person p, Person q, PathFinder.Link link) {
+        switch (link) {
+            case PARENT: return p.getParentIds().contains(q.getId());
+            case CHILD: return p.getChildrenIds().contains(q.getId());
+            default:
+                for (Marriage m : p.getMarriages()) if (m.involves(q.getId())) return true;
+                return false;
+        }
+    }
+
+    // Hops from v to everyone over the allowed links, former spouses included; -1 where unreachable.
+    private static int[] distances(FamilyTree tree, int v, Set<PathFinder.Link> links) {
+        PersonGraph g = tree.graph();
+        int[] dist = new int[g.size()];
+        Arrays.fill(dist, -1);
+        dist[v] = 0;
+        IntList queue = new IntList();
+        queue.add(v);
+        for (int h = 0; h < queue.size(); h++) {
+            int u = queue.get(h);
+            IntList next = new IntList();
+            if (links.contains(PathFinder.Link.PARENT)) for (int s = 0; s < 2; s++) if (g.parent(u, s) != PersonGraph.NONE) next.add(g.parent(u, s));
+            if (links.contains(PathFinder.Link.CHILD)) for (int i = 0; i < g.childCount(u); i++) next.add(g.child(u, i));
+            if (links.contains(PathFinder.Link.SPOUSE))
+                for (Marriage m : g.person(u).getMarriages()) next.add(g.require(m.getOtherSpouseId(g.idOf(u))));
+            for (int i = 0; i < next.size(); i++) {
+                int w = next.get(i);
+                if (dist[w] < 0) { dist[w] = dist[u] + 1; queue.add(w); }
+            }
+        }
+        return dist;
+    }
+}
@@ -0,0 +1,60 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Search results against a scan of every person, with renames and year edits between queries. */
+class PersonIndexTest {
+    @Test
+    void matchesFullScanAcrossEdits() {
+        FamilyTree tree = Trees.random(11, 500, 0);
+        SplittableRandom rnd = new SplittableRandom(11);
+        for (int round = 0; round < 300; round++) {
+            for (int i = 0; i < 20; i++) {
+                if (i % 10 == 0) Trees.add(tree, rnd);
+                Trees.edit(tree, rnd);
+            }
+            PersonQuery q = new PersonQuery();
+            String name = null;
+            int bornFrom = Integer.MIN_VALUE, bornTo = Integer.MAX_VALUE, diedFrom = Integer.MIN_VALUE, diedTo = Integer.MAX_VALUE;
+            Gender gender = null;
+            Boolean alive = null;
+            if (rnd.nextBoolean()) q.name(name = rnd.nextBoolean() ? "person " + rnd.nextInt(50) : Integer.toString(rnd.nextInt(5)));
+            if (rnd.nextBoolean()) q.bornBetween(bornFrom = 1800 + rnd.nextInt(220), bornTo = bornFrom + rnd.nextInt(60));
+            if (rnd.nextInt(4) == 0) q.diedBetween(diedFrom = 1850 + rnd.nextInt(200), diedTo = diedFrom + rnd.nextInt(60));
+            if (rnd.nextInt(3) == 0) q.gender(gender = Gender.values()[rnd.nextInt(2)]);
+            if (rnd.nextInt(3) == 0) q.alive(alive = rnd.nextBoolean());
+            int offset = rnd.nextInt(5), limit = 1 + rnd.nextInt(30);
+            q.page(offset, limit);
+
+            List<String> expected = new ArrayList<>();
+            for (Person p : tree.allPeople()) {
+                if (name != null && !matchesName(p.getFullName(), name)) continue;
+                if (p.getBirthYear() < bornFrom || p.getBirthYear() > bornTo) continue;
+                Integer d = p.getDeathYear();
+                if ((diedFrom != Integer.MIN_VALUE || diedTo != Integer.MAX_VALUE) && (d == null || d < diedFrom || d > diedTo)) continue;
+                if (gender != null && p.getGender() != gender) continue;
+                if (alive != null && alive != (d == null)) continue;
+                expected.add(p.getId());
+            }
+            SearchPage page = tree.search(q);
+            assertEquals(expected.size(), page.getTotal(), "round " + round);
+            assertEquals(expected.subList(Math.min(offset, expected.size()), Math.min(offset + limit, expected.size())),
+                    page.getPeople().stream().map(Person::getId).toList(), "round " + round);
+        }
+    }
+
+    private static boolean matchesName(String fullName, String query) {
+        List<String> words = PersonIndex.normalizedWords(fullName);
+        for (String w : PersonIndex.normalizedWords(query))
+            if (words.stream().noneMatch(x -> x.startsWith(w))) return false;
+        return true;
+    }
+}
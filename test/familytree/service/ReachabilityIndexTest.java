@@ -0,0 +1,94 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * isAncestor and cycle checks against a plain BFS over parent links, through random link/unlink steps;
+ * label updates wait for a search in progress, since both use the same scratch buffers.
+ */
+class ReachabilityIndexTest {
+    private static final int PEOPLE = 300, STEPS = 20_000;
+
+    @Test
+    void labelUpdatesWaitForSearchInProgress() throws Exception {
+        FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        for (int i = 0; i < 4; i++) tree.addPerson("Person " + i, Gender.MALE, 1800, null);
+        PersonGraph g = tree.graph();
+        ReachabilityIndex reach = tree.reachability();
+        Thread writer = new Thread(() -> {
+            g.addEdge(0, 1);
+            reach.onLink(0, 1);
+            g.removeEdge(0, 1);
+            reach.onUnlink(0, 1);
+        });
+        synchronized (reach) {   // where search() holds it
+            writer.start();
+            for (long deadline = System.nanoTime() + 5_000_000_000L; writer.getState() != Thread.State.BLOCKED; ) {
+                assertTrue(writer.isAlive() && System.nanoTime() < deadline, "onLink ran alongside a search");
+                Thread.onSpinWait();
+            }
+        }
+        writer.join(5000);
+        assertEquals(0, reach.levelOf(1));
+    }
+
+    @Test
+    void matchesBfsThroughRandomLinksAndUnlinks() {
+        SplittableRandom rnd = new SplittableRandom(2);
+        FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+        for (int i = 0; i < PEOPLE; i++) tree.addPerson("Person " + i, Gender.values()[i % 2], 1800 + i % 100, null);
+        PersonGraph g = tree.graph();
+        ReachabilityIndex reach = tree.reachability();
+
+        for (int step = 0; step < STEPS; step++) {
+            int a = rnd.nextInt(PEOPLE), b = rnd.nextInt(PEOPLE);
+            String aId = g.idOf(a), bId = g.idOf(b);
+            switch (rnd.nextInt(3)) {
+                case 0 -> {
+                    boolean allowed = a != b && !ancestor(g, b, a) && (g.hasParent(b, a) || g.parentCount(b) < 2);
+                    if (allowed) tree.linkParentChild(aId, bId);
+                    else assertThrows(IllegalArgumentException.class, () -> tree.linkParentChild(aId, bId));
+                }
+                case 1 -> {
+                    if (g.parentCount(b) > 0) {
+                        int p = g.parent(b, rnd.nextInt(2) == 0 || g.parent(b, 1) == PersonGraph.NONE ? 0 : 1);
+                        if (p == PersonGraph.NONE) p = g.parent(b, 1);
+                        tree.unlinkParentChild(g.idOf(p), bId);
+                    }
+                }
+                default -> assertEquals(ancestor(g, a, b), reach.isAncestor(a, b), aId + " -> " + bId + " at step " + step);
+            }
+        }
+        for (int v = 0; v < PEOPLE; v++)
+            for (int s = 0; s < 2; s++)
+                if (g.parent(v, s) != PersonGraph.NONE) assertTrue(reach.levelOf(g.parent(v, s)) < reach.levelOf(v));
+    }
+
+    // Whether a is a proper ancestor of b, walking parent links up from b.
+    private static boolean ancestor(PersonGraph g, int a, int b) {
+        boolean[] seen = new boolean[g.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(b);
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            for (int s = 0; s < 2; s++) {
+                int p = g.parent(v, s);
+                if (p == PersonGraph.NONE || seen[p]) continue;
+                if (p == a) return true;
+                seen[p] = true;
+                queue.add(p);
+            }
+        }
+        return false;
+    }
+}
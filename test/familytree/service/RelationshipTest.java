@@ -0,0 +1,151 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Relationship names on small hand-built families, and lowest common ancestors against a walk of both ancestries. */
+class RelationshipTest {
+    @Test
+    void namesSiblingsAndHalfSiblings() {
+        FamilyTree tree = Trees.empty();
+        String f = add(tree, "Fred", Gender.MALE, 1900), m1 = add(tree, "Mary", Gender.FEMALE, 1902), m2 = add(tree, "Meg", Gender.FEMALE, 1905);
+        String full1 = child(tree, "Al", Gender.MALE, 1930, f, m1), full2 = child(tree, "Bea", Gender.FEMALE, 1932, f, m1);
+        String half = child(tree, "Cy", Gender.MALE, 1935, f, m2);
+        String lone1 = child(tree, "Di", Gender.FEMALE, 1936, f), lone2 = child(tree, "Ed", Gender.MALE, 1938, f);
+
+        assertEquals("brother", name(tree, full1, full2));
+        assertEquals(List.of(f + ":1:1", m1 + ":1:1"), lca(tree, full1, full2));
+        assertEquals("half-brother", name(tree, half, full1));
+        assertEquals(List.of(f + ":1:1"), lca(tree, half, full1));
+        // A parent nobody recorded may be the same one: not half unless both sides show two different parents.
+        assertEquals("sister", name(tree, lone1, full1));
+        assertEquals("brother", name(tree, lone2, lone1));
+        assertEquals(List.of(f + ":1:1"), lca(tree, lone2, lone1));
+    }
+
+    @Test
+    void namesCollateralLinesByTheSiblingsTheyStartFrom() {
+        FamilyTree tree = Trees.empty();
+        String f = add(tree, "Fred", Gender.MALE, 1850), m1 = add(tree, "Mary", Gender.FEMALE, 1852), m2 = add(tree, "Meg", Gender.FEMALE, 1855);
+        String x = child(tree, "Xan", Gender.MALE, 1880, f, m1), y = child(tree, "Yva", Gender.FEMALE, 1882, f, m1);
+        String z = child(tree, "Zed", Gender.MALE, 1885, f, m2);
+        String xk = child(tree, "Xia", Gender.FEMALE, 1910, x), yk = child(tree, "Yul", Gender.MALE, 1912, y), zk = child(tree, "Zoe", Gender.FEMALE, 1915, z);
+        String ykk = child(tree, "Yan", Gender.MALE, 1940, yk);
+
+        assertEquals("aunt", name(tree, y, xk));
+        assertEquals("half-uncle", name(tree, z, xk));
+        assertEquals("half-niece", name(tree, xk, z));
+        assertEquals("first cousin", name(tree, xk, yk));
+        assertEquals(List.of(f + ":2:2", m1 + ":2:2"), lca(tree, xk, yk));
+        assertEquals("half-first cousin", name(tree, zk, xk));
+        assertEquals("half-first cousin once removed", name(tree, zk, ykk));
+        assertEquals(List.of(f + ":2:3"), lca(tree, zk, ykk));
+        assertEquals("great-grandfather", name(tree, f, ykk));
+        assertEquals(List.of(f + ":0:3"), lca(tree, f, ykk));
+        assertEquals("great-grandson", name(tree, ykk, f));
+    }
+
+    @Test
+    void dropsCommonAncestorsAboveALowerOne() {
+        // G is X's parent and also B's, so G is common to A and B but lies above X, through which B descends too.
+        FamilyTree tree = Trees.empty();
+        String g = add(tree, "Gus", Gender.MALE, 1850), x = child(tree, "Xan", Gender.MALE, 1875, g);
+        String a = child(tree, "Ada", Gender.FEMALE, 1900, x), y = child(tree, "Yul", Gender.MALE, 1902, x);
+        String b = child(tree, "Bo", Gender.MALE, 1930, y, g);
+        assertEquals(List.of(x + ":1:2"), lca(tree, a, b));
+        assertEquals("aunt", name(tree, a, b));
+        assertEquals(List.of(x + ":2:1"), lca(tree, b, a));
+        assertEquals("nephew", name(tree, b, a));
+
+        String s = add(tree, "Sam", Gender.MALE, 1901);
+        tree.marry(s, a, 1925);
+        assertEquals("husband", name(tree, s, a));
+        assertEquals("unrelated", name(tree, s, b));
+        assertEquals(List.of(), lca(tree, s, b));
+    }
+
+    @Test
+    void lowestCommonAncestorsMatchAncestryWalks() {
+        FamilyTree tree = Trees.random(9, 400, 4000);
+        SplittableRandom rnd = new SplittableRandom(9);
+        PersonGraph g = tree.graph();
+        for (int round = 0; round < 40; round++) {
+            for (int i = 0; i < 20; i++) Trees.edit(tree, rnd);
+            int a = rnd.nextInt(g.size());
+            List<String> others = new ArrayList<>();
+            for (int k = 0; k < 10; k++) {
+                int b = rnd.nextInt(g.size());
+                if (b != a) others.add(g.idOf(b));
+            }
+            List<Relationship> batch = tree.relations(g.idOf(a), others);
+            for (int k = 0; k < others.size(); k++) {
+                int b = g.require(others.get(k));
+                List<String> want = lowest(g, a, b);
+                String where = g.idOf(a) + " to " + others.get(k) + ", round " + round;
+                assertEquals(want, lca(tree.relation(g.idOf(a), others.get(k))), where);
+                assertEquals(want, lca(batch.get(k)), "batched " + where);
+            }
+        }
+    }
+
+    // Every common ancestor (or self) with no other one below it, closest first, ties by A's distance then node.
+    private static List<String> lowest(PersonGraph g, int a, int b) {
+        Map<Integer, Integer> upA = distances(g, a), upB = distances(g, b);
+        List<Integer> common = new ArrayList<>();
+        for (int v : upA.keySet()) if (upB.containsKey(v)) common.add(v);
+        Set<Integer> above = new HashSet<>();
+        for (int d : common) for (int c : distances(g, d).keySet()) if (c != d) above.add(c);
+        List<int[]> out = new ArrayList<>();
+        for (int c : common) if (!above.contains(c)) out.add(new int[] {c, upA.get(c), upB.get(c)});
+        out.sort((x, y) -> x[1] + x[2] != y[1] + y[2] ? Integer.compare(x[1] + x[2], y[1] + y[2])
+                : x[1] != y[1] ? Integer.compare(x[1], y[1]) : Integer.compare(x[0], y[0]));
+        List<String> ids = new ArrayList<>();
+        for (int[] c : out) ids.add(g.idOf(c[0]) + ":" + c[1] + ":" + c[2]);
+        return ids;
+    }
+
+    // Shortest generation distance to each ancestor of v, v itself at 0.
+    private static Map<Integer, Integer> distances(PersonGraph g, int v) {
+        Map<Integer, Integer> dist = new HashMap<>();
+        dist.put(v, 0);
+        IntList queue = new IntList();
+        queue.add(v);
+        for (int h = 0; h < queue.size(); h++) {
+            int u = queue.get(h);
+            for (int s = 0; s < 2; s++) {
+                int p = g.parent(u, s);
+                if (p != PersonGraph.NONE && !dist.containsKey(p)) { dist.put(p, dist.get(u) + 1); queue.add(p); }
+            }
+        }
+        return dist;
+    }
+
+    private static String add(FamilyTree tree, String name, Gender gender, int born) {
+        return tree.addPerson(name, gender, born, null).getId();
+    }
+
+    private static String child(FamilyTree tree, String name, Gender gender, int born, String... parents) {
+        String id = add(tree, name, gender, born);
+        for (String p : parents) tree.linkParentChild(p, id);
+        return id;
+    }
+
+    private static String name(FamilyTree tree, String a, String b) { return tree.relation(a, b).getName(); }
+
+    private static List<String> lca(FamilyTree tree, String a, String b) { return lca(tree.relation(a, b)); }
+
+    private static List<String> lca(Relationship r) {
+        return r.getLowestCommonAncestors().stream().map(c -> c.getPerson().getId() + ":" + c.getFromA() + ":" + c.getFromB()).toList();
+    }
+}
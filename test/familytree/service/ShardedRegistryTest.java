@@ -0,0 +1,124 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A sharded registry against one FamilyTree given the same random edits, birth-year moves included:
+ * both accept or reject each edit, and answer every query alike.
+ */
+class ShardedRegistryTest {
+    @Test
+    void behavesLikeOneTree() {
+        for (int moveLimit : new int[] {0, 6, ShardedRegistry.DEFAULT_MOVE_LIMIT}) {
+            ShardedRegistry sharded = new ShardedRegistry(4, moveLimit, new BFSTraversal(), new IndentedTreeRenderer());
+            FamilyTree single = Trees.empty();
+            SplittableRandom rnd = new SplittableRandom(21 + moveLimit);
+            List<String> ids = new ArrayList<>();
+            for (int step = 0; step < 6000; step++) {
+                String a = ids.isEmpty() ? null : ids.get(rnd.nextInt(ids.size())), b = ids.isEmpty() ? null : ids.get(rnd.nextInt(ids.size()));
+                int op = ids.size() < 30 ? 0 : rnd.nextInt(9), year = 1800 + rnd.nextInt(220);
+                String where = "step " + step + ", move limit " + moveLimit;
+                switch (op) {
+                    case 0 -> {
+                        Gender g = Gender.values()[rnd.nextInt(2)];
+                        Person p = rnd.nextBoolean() || a == null ? sharded.addPerson("Person " + step, g, year, null)
+                                : sharded.addPerson("Person " + step, g, year, null, a);
+                        assertEquals(p.getId(), single.addPerson("Person " + step, g, year, null).getId());
+                        ids.add(p.getId());
+                    }
+                    case 1, 2 -> same(() -> { sharded.linkParentChild(a, b); return null; }, () -> { single.linkParentChild(a, b); return null; }, where);
+                    case 3 -> {
+                        if (!single.getPerson(b).getParentIds().contains(a)) break;
+                        sharded.unlinkParentChild(a, b);
+                        single.unlinkParentChild(a, b);
+                    }
+                    case 4 -> same(() -> { sharded.marry(a, b, year); return null; }, () -> { single.marry(a, b, year); return null; }, where);
+                    case 5 -> {
+                        String spouse = single.spouseOf(a).map(Person::getId).orElse(null);
+                        if (spouse == null) break;
+                        int y = Math.max(year, single.getPerson(a).getActiveMarriage().get().getMarriageYear());
+                        sharded.divorce(a, spouse, y);
+                        single.divorce(a, spouse, y);
+                    }
+                    case 6, 7 -> {
+                        // Moves adults born late into minority; a later move of their family must keep them married.
+                        sharded.getPerson(a).setBirthYear(year);
+                        single.getPerson(a).setBirthYear(year);
+                    }
+                    default -> {
+                        Integer death = rnd.nextBoolean() ? null : single.getPerson(a).getBirthYear() + rnd.nextInt(90);
+                        sharded.getPerson(a).setDeathYear(death);
+                        single.getPerson(a).setDeathYear(death);
+                    }
+                }
+                if (a != null && step % 10 == 0) compare(sharded, single, a, b, where);
+            }
+            for (String id : ids) compare(sharded, single, id, ids.get(0), "end, move limit " + moveLimit);
+            assertEquals(ids.size(), sharded.size());
+        }
+    }
+
+    @Test
+    void moveKeepsMarriageOfSpouseNowTooYoung() {
+        ShardedRegistry sharded = new ShardedRegistry(2, new BFSTraversal(), new IndentedTreeRenderer());
+        Person a = sharded.addPerson("Ann", Gender.FEMALE, 1950, null);
+        Person b = sharded.addPerson("Bob", Gender.MALE, 1948, null, a.getId());
+        sharded.marry(a.getId(), b.getId(), 1975);
+        Person c = sharded.addPerson("Cid", Gender.MALE, 1900, null);
+        for (int i = 0; i < 3; i++) sharded.linkParentChild(c.getId(), sharded.addPerson("Kid " + i, Gender.MALE, 1930, null, c.getId()).getId());
+        assertNotEquals(sharded.shardOf(c.getId()), sharded.shardOf(a.getId()));
+        sharded.getPerson(a.getId()).setBirthYear(2010);
+
+        sharded.linkParentChild(c.getId(), a.getId());
+        assertEquals(sharded.shardOf(c.getId()), sharded.shardOf(a.getId()));
+        assertEquals(b.getId(), sharded.spouseOf(a.getId()).orElseThrow().getId());
+        assertEquals(a.getClass(), sharded.getPerson(a.getId()).getClass());
+        assertThrows(IllegalArgumentException.class, () -> sharded.linkParentChild(a.getId(), c.getId()));
+        assertEquals(Set.of(c.getId()), sharded.parentIds(a.getId()));
+    }
+
+    private static void same(Supplier<Object> sharded, Supplier<Object> single, String where) {
+        RuntimeException expected = null;
+        try { single.get(); } catch (IllegalArgumentException ex) { expected = ex; }
+        if (expected == null) sharded.get();
+        else assertThrows(IllegalArgumentException.class, sharded::get, where + ": " + expected.getMessage());
+    }
+
+    private static void compare(ShardedRegistry sharded, FamilyTree single, String a, String b, String where) {
+        Person s = sharded.getPerson(a), p = single.getPerson(a);
+        assertEquals(Trees.dump(List.of(p)).replaceAll(" parents=.*", ""), Trees.dump(List.of(s)).replaceAll(" parents=.*", ""), where);
+        assertEquals(p.getMarriages().size(), s.getMarriages().size(), where);
+        assertEquals(new HashSet<>(p.getParentIds()), sharded.parentIds(a), where);
+        assertEquals(new HashSet<>(p.getChildrenIds()), sharded.childIds(a), where);
+        assertEquals(single.spouseOf(a).map(Person::getId), sharded.spouseOf(a).map(Person::getId), where);
+        assertEquals(single.isAncestor(a, b), sharded.isAncestor(a, b), where);
+        assertEquals(ids(single.siblingsOf(a)), ids(sharded.siblingsOf(a)), where);
+        List<List<Person>> up = single.ancestorsOf(a, 4), down = single.descendantsOf(a, 4);
+        List<List<Person>> shardedUp = sharded.ancestorsOf(a, 4), shardedDown = sharded.descendantsOf(a, 4);
+        for (int g = 0; g <= 4; g++) {
+            assertEquals(ids(up.get(g)), ids(shardedUp.get(g)), where + ", ancestors " + g);
+            assertEquals(ids(down.get(g)), ids(shardedDown.get(g)), where + ", descendants " + g);
+        }
+    }
+
+    private static Set<String> ids(List<Person> people) {
+        Set<String> out = new HashSet<>();
+        for (Person p : people) out.add(p.getId());
+        return out;
+    }
+}
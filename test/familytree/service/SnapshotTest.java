@@ -0,0 +1,78 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Save/load round trips: a loaded tree prints like the saved one, and keeps behaving like it under the same edits. */
+class SnapshotTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsRandomTrees() throws IOException {
+        for (long seed = 1; seed <= 5; seed++) {
+            FamilyTree tree = Trees.random(seed, 400, 4000);
+            SplittableRandom rnd = new SplittableRandom(seed);
+            for (int i = 0; i < 40; i++) {
+                int n = tree.graph().size();
+                try {
+                    tree.merge(tree.graph().idOf(rnd.nextInt(n)), tree.graph().idOf(rnd.nextInt(n)));
+                } catch (IllegalArgumentException rejected) {
+                    // the rules refused this pair
+                }
+            }
+            Path file = dir.resolve("tree-" + seed + ".ftsp");
+            tree.save(file);
+            FamilyTree loaded = load(file);
+            assertEquals(Trees.dump(tree), Trees.dump(loaded), "seed " + seed);
+            assertEquals(tree.ids().counter(), loaded.ids().counter());
+            for (int v = 0; v < tree.graph().size(); v++)
+                assertEquals(tree.mergedInto(tree.graph().idOf(v)), loaded.mergedInto(tree.graph().idOf(v)));
+
+            // The same edits on both, partly on people the loaded tree has not materialized yet.
+            SplittableRandom a = new SplittableRandom(seed * 31), b = new SplittableRandom(seed * 31);
+            for (int i = 0; i < 2000; i++) {
+                if (i % 50 == 0) { Trees.add(tree, a); Trees.add(loaded, b); }
+                Trees.edit(tree, a);
+                Trees.edit(loaded, b);
+            }
+            assertEquals(Trees.dump(tree), Trees.dump(loaded), "seed " + seed + " after edits");
+
+            // Saving over the file the loaded tree was read from.
+            loaded.save(file);
+            assertEquals(Trees.dump(tree), Trees.dump(load(file)), "seed " + seed + " re-saved");
+        }
+    }
+
+    @Test
+    void keepsDeathBeforeMovedBirthAndAdultMovedIntoMinority() throws IOException {
+        FamilyTree tree = Trees.empty();
+        Person a = tree.addPerson("Ann", Gender.FEMALE, 1950, 1980);
+        Person b = tree.addPerson("Bob", Gender.MALE, 1948, null);
+        tree.marry(a.getId(), b.getId(), 1970);
+        a.setBirthYear(2010);
+        Path file = dir.resolve("moved.ftsp");
+        tree.save(file);
+
+        FamilyTree loaded = load(file);
+        Person ann = loaded.getPerson(a.getId());
+        assertEquals(2010, ann.getBirthYear());
+        assertEquals(1980, ann.getDeathYear());
+        assertEquals(a.getClass(), ann.getClass());
+        assertEquals(b.getId(), loaded.spouseOf(a.getId()).orElseThrow().getId());
+    }
+
+    private static FamilyTree load(Path file) throws IOException {
+        return FamilyTree.load(file, new BFSTraversal(), new IndentedTreeRenderer());
+    }
+}
@@ -0,0 +1,31 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Cached traversals hand out lists callers may change, as uncached ones always did. */
+class TraversalCacheTest {
+    @Test
+    void hitsAreMutableCopies() {
+        FamilyTree tree = Trees.empty();
+        Person a = tree.addPerson("Ann", Gender.FEMALE, 1900, null), b = tree.addPerson("Bob", Gender.MALE, 1930, null);
+        tree.linkParentChild(a.getId(), b.getId());
+
+        List<List<Person>> first = tree.ancestorsOf(b.getId(), 3);
+        List<List<Person>> expected = first.stream().map(List::copyOf).toList();
+        first.get(1).clear();
+        first.add(List.of());
+        List<List<Person>> hit = tree.ancestorsOf(b.getId(), 3);
+        assertEquals(1, tree.cacheStats().getHits());
+        hit.get(0).add(a);
+        hit.remove(1);
+        assertEquals(expected, tree.ancestorsOf(b.getId(), 3));
+        assertEquals(List.of(b), expected.get(0));
+        assertEquals(List.of(a), expected.get(1));
+    }
+}
@@ -0,0 +1,106 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Checked-out versions against the tree as it was at each commit: people, classes, marriages, merges and traversal order. */
+class TreeHistoryTest {
+    @Test
+    void checkoutRestoresEachCommit() {
+        FamilyTree tree = Trees.random(22, 200, 0);
+        TreeHistory history = TreeHistory.track(tree);
+        SplittableRandom rnd = new SplittableRandom(22);
+        List<String> states = new ArrayList<>();
+        states.add(state(tree));
+        for (int round = 1; round < 60; round++) {
+            for (int i = 0; i < 80; i++) {
+                if (i % 20 == 0) Trees.add(tree, rnd);
+                Trees.edit(tree, rnd);
+            }
+            int n = tree.graph().size();
+            try {
+                tree.merge(tree.graph().idOf(rnd.nextInt(n)), tree.graph().idOf(rnd.nextInt(n)));
+            } catch (IllegalArgumentException rejected) {
+                // the rules refused this pair
+            }
+            assertEquals(round, history.commit("round " + round).number());
+            states.add(state(tree));
+            if (round % 5 == 0) {
+                int v = rnd.nextInt(round + 1);
+                tree = history.checkout(v, new BFSTraversal(), new IndentedTreeRenderer());
+                assertEquals(states.get(v), state(tree), "checkout of " + v);
+            }
+        }
+        for (TreeVersion v : history.versions())
+            assertEquals(states.get(v.number()), state(v.toTree(new BFSTraversal(), new IndentedTreeRenderer())), "version " + v.number());
+    }
+
+    @Test
+    void undoKeepsMarriageOfSpouseNowTooYoung() {
+        FamilyTree tree = Trees.empty();
+        TreeHistory history = TreeHistory.track(tree);
+        Person a = tree.addPerson("Ann", Gender.FEMALE, 1950, null), b = tree.addPerson("Bob", Gender.MALE, 1948, null);
+        tree.marry(a.getId(), b.getId(), 1975);
+        tree.getPerson(a.getId()).setBirthYear(2010);
+        history.commit("born late");
+        String expected = state(tree);
+        tree.addPerson("Cid", Gender.MALE, 1990, null);
+        history.commit("one more");
+
+        tree = history.undo(new BFSTraversal(), new IndentedTreeRenderer());
+        assertEquals(expected, state(tree));
+        assertEquals(b.getId(), tree.spouseOf(a.getId()).orElseThrow().getId());
+    }
+
+    @Test
+    void checkoutKeepsMergedRecordsOut() {
+        FamilyTree tree = Trees.empty();
+        TreeHistory history = TreeHistory.track(tree);
+        Person keep = tree.addPerson("John Smith", Gender.MALE, 1900, null), drop = tree.addPerson("John Smith", Gender.MALE, 1900, null);
+        history.commit("entered twice");
+        tree.merge(keep.getId(), drop.getId());
+        TreeVersion merged = history.commit("merged");
+        assertEquals("merged", history.version(1).diff(merged).stream()
+                .filter(c -> c.getId().equals(drop.getId())).findFirst().orElseThrow().describe());
+
+        tree = history.checkout(merged.number(), new BFSTraversal(), new IndentedTreeRenderer());
+        assertEquals(1, tree.allPeople().size());
+        assertEquals(1, tree.aliveIn(1950));
+        assertEquals(1, tree.search(new PersonQuery().name("John")).getTotal());
+        assertEquals(keep.getId(), tree.mergedInto(drop.getId()).orElseThrow());
+        assertThrows(IllegalArgumentException.class, () -> history.checkout(merged.number(), new BFSTraversal(), new IndentedTreeRenderer())
+                .merge(keep.getId(), drop.getId()));
+
+        tree = history.checkout(1, new BFSTraversal(), new IndentedTreeRenderer());
+        assertEquals(2, tree.allPeople().size());
+        assertTrue(tree.mergedInto(drop.getId()).isEmpty());
+    }
+
+    /** The dump plus every person's ancestors and descendants in the order the traversal returns them. */
+    private static String state(FamilyTree tree) {
+        StringBuilder sb = new StringBuilder(Trees.dump(tree));
+        for (Person p : tree.allPeople()) {
+            sb.append(p.getId()).append(" up=");
+            for (List<Person> level : tree.ancestorsOf(p.getId(), 3)) sb.append(level.stream().map(Person::getId).toList());
+            sb.append(" down=");
+            for (List<Person> level : tree.descendantsOf(p.getId(), 3)) sb.append(level.stream().map(Person::getId).toList());
+            sb.append('\n');
+        }
+        for (int v = 0; v < tree.graph().size(); v++) {
+            String id = tree.graph().idOf(v);
+            tree.mergedInto(id).ifPresent(kept -> sb.append(id).append(" merged into ").append(kept).append('\n'));
+        }
+        return sb.toString();
+    }
+}
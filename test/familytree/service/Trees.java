@@ -0,0 +1,83 @@
+package familytree.service;
+
+import familytree.model.Gender;
+import familytree.model.Marriage;
+import familytree.model.Person;
+import familytree.strategy.BFSTraversal;
+import familytree.strategy.IndentedTreeRenderer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/** Random trees for the differential tests, and a dump that prints two equal trees identically. */
+final class Trees {
+    private Trees() {}
+
+    static FamilyTree empty() { return new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer()); }
+
+    /** {@code people} people born 1800-2019, then {@code steps} random edits. */
+    static FamilyTree random(long seed, int people, int steps) {
+        FamilyTree tree = empty();
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int i = 0; i < people; i++) add(tree, rnd);
+        for (int i = 0; i < steps; i++) edit(tree, rnd);
+        return tree;
+    }
+
+    static Person add(FamilyTree tree, SplittableRandom rnd) {
+        int birth = 1800 + rnd.nextInt(220);
+        Integer death = rnd.nextInt(3) == 0 ? birth + rnd.nextInt(90) : null;
+        return tree.addPerson("Person " + rnd.nextInt(50), Gender.values()[rnd.nextInt(2)], birth, death);
+    }
+
+    /**
+     * One random link, unlink, marriage, divorce, rename or year edit; edits the rules reject are skipped.
+     * Birth years move freely, so adults can end up born too late to marry and dead before they were born.
+     */
+    static void edit(FamilyTree tree, SplittableRandom rnd) {
+        int n = tree.graph().size();
+        String a = tree.graph().idOf(rnd.nextInt(n)), b = tree.graph().idOf(rnd.nextInt(n));
+        Person p = tree.getPerson(a);
+        try {
+            switch (rnd.nextInt(8)) {
+                case 0, 1 -> tree.linkParentChild(a, b);
+                case 2 -> { if (p.getParentIds().contains(b)) tree.unlinkParentChild(b, a); }
+                case 3 -> tree.marry(a, b, 1850 + rnd.nextInt(170));
+                case 4 -> { if (p.getActiveSpouseId().isPresent()) tree.divorce(a, p.getActiveSpouseId().get(), 1900 + rnd.nextInt(120)); }
+                case 5 -> p.setFullName("Person " + rnd.nextInt(50));
+                case 6 -> p.setBirthYear(1800 + rnd.nextInt(220));
+                default -> p.setDeathYear(rnd.nextInt(3) == 0 ? null : p.getBirthYear() + rnd.nextInt(90));
+            }
+        } catch (IllegalArgumentException rejected) {
+            // cycles, third parents, minors marrying and the like
+        }
+    }
+
+    static String dump(FamilyTree tree) { return dump(tree.allPeople()); }
+
+    /**
+     * One line per person, by id: fields, concrete class, parents, children in their order and marriages.
+     * Parents and marriages are sorted, since their order depends on how the tree was built.
+     */
+    static String dump(Collection<Person> people) {
+        List<Person> sorted = new ArrayList<>(people);
+        sorted.sort(Comparator.comparing(Person::getId));
+        StringBuilder sb = new StringBuilder();
+        for (Person p : sorted) {
+            List<String> marriages = new ArrayList<>();
+            for (Marriage m : p.getMarriages())
+                marriages.add(m.getSpouseAId() + "+" + m.getSpouseBId() + "@" + m.getMarriageYear() + "-" + m.getDivorceYear());
+            marriages.sort(null);
+            sb.append(p.getId()).append(' ').append(p.getFullName()).append(' ').append(p.getGender())
+                    .append(' ').append(p.getBirthYear()).append(' ').append(p.getDeathYear())
+                    .append(' ').append(p.getClass().getSimpleName())
+                    .append(" parents=").append(new ArrayList<>(p.getParentIds()).stream().sorted().toList())
+                    .append(" children=").append(new ArrayList<>(p.getChildrenIds()))
+                    .append(" marriages=").append(marriages).append('\n');
+        }
+        return sb.toString();
+    }
+}
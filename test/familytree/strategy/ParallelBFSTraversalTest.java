@@ -0,0 +1,81 @@
+package familytree.strategy;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import familytree.service.FamilyTree;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Parallel levels against BFSTraversal on DAGs with pedigree collapse, where many people share ancestors
+ * and some are reachable at two depths, with thresholds that keep it sequential, switch it over partway
+ * and split every frontier.
+ */
+class ParallelBFSTraversalTest {
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdown() { POOL.shutdownNow(); }
+
+    @Test
+    void matchesSequentialAboveAndBelowThreshold() {
+        SplittableRandom rnd = new SplittableRandom(7);
+        for (int round = 0; round < 3; round++) {
+            FamilyTree tree = new FamilyTree(new BFSTraversal(), new IndentedTreeRenderer());
+            List<List<String>> layers = collapsed(tree, rnd, 8, 300 + round * 700);
+            BFSTraversal bfs = new BFSTraversal();
+            for (int threshold : new int[] {1, 3, 50, 1000, ParallelBFSTraversal.DEFAULT_THRESHOLD}) {
+                ParallelBFSTraversal par = new ParallelBFSTraversal(POOL, threshold);
+                for (int k = 0; k < 12; k++) {
+                    List<String> layer = layers.get(k % 2 == 0 ? rnd.nextInt(3) : layers.size() - 1 - rnd.nextInt(3));
+                    String id = layer.get(rnd.nextInt(layer.size()));
+                    int gens = 1 + rnd.nextInt(10);
+                    String where = id + " over " + gens + ", threshold " + threshold + ", round " + round;
+                    assertEquals(ids(bfs.traverseDescendants(tree, id, gens)), ids(par.traverseDescendants(tree, id, gens)), "down from " + where);
+                    assertEquals(ids(bfs.traverseAncestors(tree, id, gens)), ids(par.traverseAncestors(tree, id, gens)), "up from " + where);
+                    List<List<Person>> streamed = new ArrayList<>();
+                    par.visitDescendants(tree, id, gens, (depth, people) -> streamed.add(new ArrayList<>(people)));
+                    assertEquals(ids(bfs.traverseDescendants(tree, id, gens)), ids(streamed), "visited down from " + where);
+                }
+            }
+        }
+    }
+
+    // Layers of {@code width} people whose parents come from a narrow band of the layer above, now and then
+    // from two layers up, so lines keep rejoining.
+    private static List<List<String>> collapsed(FamilyTree tree, SplittableRandom rnd, int depth, int width) {
+        List<List<String>> layers = new ArrayList<>();
+        for (int d = 0; d < depth; d++) {
+            List<String> layer = new ArrayList<>();
+            for (int i = 0; i < width; i++) {
+                String id = tree.addPerson("Person " + d + "." + i, i % 2 == 0 ? Gender.MALE : Gender.FEMALE, 1700 + 30 * d, null).getId();
+                layer.add(id);
+                if (d == 0) continue;
+                for (int p = 0; p < 2; p++) {
+                    List<String> above = layers.get(d >= 2 && rnd.nextInt(6) == 0 ? d - 2 : d - 1);
+                    int band = Math.max(1, above.size() / 8), from = Math.min(above.size() - band, i * above.size() / width);
+                    try {
+                        tree.linkParentChild(above.get(from + rnd.nextInt(band)), id);
+                    } catch (IllegalArgumentException rejected) {
+                        // drew the same parent twice
+                    }
+                }
+            }
+            layers.add(layer);
+        }
+        return layers;
+    }
+
+    private static List<List<String>> ids(List<List<Person>> levels) {
+        List<List<String>> out = new ArrayList<>();
+        for (List<Person> level : levels) out.add(level.stream().map(Person::getId).toList());
+        return out;
+    }
+}
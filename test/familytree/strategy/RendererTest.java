@@ -0,0 +1,47 @@
+package familytree.strategy;
+
+import familytree.model.Gender;
+import familytree.model.Person;
+import familytree.service.FamilyTree;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Streaming and String rendering agree, for the built-in renderers and for one written against the String methods only. */
+class RendererTest {
+    /** A renderer as written before the streaming visitors existed. */
+    static final class CountingRenderer implements Renderer {
+        @Override
+        public String renderAncestors(List<List<Person>> generations) {
+            StringBuilder sb = new StringBuilder();
+            for (List<Person> lvl : generations) sb.append(lvl.size()).append(' ');
+            return sb.append("up").toString();
+        }
+
+        @Override
+        public String renderDescendants(List<List<Person>> generations) {
+            return renderAncestors(generations).replace("up", "down");
+        }
+    }
+
+    @Test
+    void streamedOutputMatchesRenderedString() throws IOException {
+        for (Renderer r : List.of(new IndentedTreeRenderer(), new LineRenderer(), new CountingRenderer())) {
+            FamilyTree tree = new FamilyTree(new BFSTraversal(), r);
+            Person a = tree.addPerson("Ann", Gender.FEMALE, 1900, null), b = tree.addPerson("Bob", Gender.MALE, 1901, null);
+            Person c = tree.addPerson("Cid", Gender.MALE, 1930, null), d = tree.addPerson("Dee", Gender.FEMALE, 1960, null);
+            tree.linkParentChild(a.getId(), c.getId());
+            tree.linkParentChild(b.getId(), c.getId());
+            tree.linkParentChild(c.getId(), d.getId());
+
+            StringBuilder up = new StringBuilder(), down = new StringBuilder();
+            tree.renderAncestors(d.getId(), 5, up);
+            tree.renderDescendants(a.getId(), 5, down);
+            assertEquals(tree.renderAncestors(d.getId(), 5), up.toString(), r.getClass().getSimpleName());
+            assertEquals(tree.renderDescendants(a.getId(), 5), down.toString(), r.getClass().getSimpleName());
+        }
+    }
+}